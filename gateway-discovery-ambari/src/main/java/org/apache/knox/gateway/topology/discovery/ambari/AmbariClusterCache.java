@@ -0,0 +1,155 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements. See the NOTICE file distributed with this
+ * work for additional information regarding copyright ownership. The ASF
+ * licenses this file to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.apache.knox.gateway.topology.discovery.ambari;
+
+import org.apache.knox.gateway.i18n.messages.MessagesFactory;
+import org.apache.knox.gateway.topology.discovery.ServiceDiscoveryConfig;
+
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * Cache of the discovered AmbariCluster models, shared by all the descriptors referencing the same cluster.
+ *
+ * Concurrent discoveries of the same cluster wait for a single discovery. Cached models remain valid until the
+ * AmbariConfigurationMonitor reports a change of the cluster's configuration versions; a model whose discovery was
+ * in progress when its cluster was invalidated is not cached.
+ *
+ * Incomplete models, resulting from a failed discovery (e.g., Ambari being unavailable or rejecting the credentials),
+ * are not cached either. They carry no configuration versions for the monitor to watch, so nothing would ever
+ * invalidate them.
+ */
+class AmbariClusterCache {
+
+    private static final String KEY_DELIM = "::";
+
+    private static final AmbariServiceDiscoveryMessages log = MessagesFactory.get(AmbariServiceDiscoveryMessages.class);
+
+    private final AtomicLong revision = new AtomicLong();
+
+    // address::clusterName -> The revision at which the cluster was last invalidated
+    private final Map<String, Long> invalidations = new ConcurrentHashMap<>();
+
+    // address::clusterName::user::passwordAlias -> cluster model
+    private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+
+    /**
+     * Get the model of the specified cluster, performing the discovery if there is no current model.
+     *
+     * @param config      The discovery configuration.
+     * @param address     The address of the Ambari instance.
+     * @param clusterName The name of the cluster.
+     * @param discovery   The discovery of the cluster, invoked if there is no current model.
+     *
+     * @return The cluster model.
+     */
+    AmbariCluster get(ServiceDiscoveryConfig config,
+                      String                 address,
+                      String                 clusterName,
+                      Supplier<AmbariCluster> discovery) {
+        String clusterKey = getClusterKey(address, clusterName);
+        String key = clusterKey + KEY_DELIM + config.getUser() + KEY_DELIM + config.getPasswordAlias();
+
+        Entry entry = entries.get(key);
+        if (entry != null && !isCurrent(clusterKey, entry.revision)) {
+            entries.remove(key, entry);
+            entry = null;
+        }
+
+        if (entry == null) {
+            Entry created = new Entry(revision.get());
+            entry = entries.putIfAbsent(key, created);
+            if (entry == null) {
+                return discover(key, clusterKey, created, discovery);
+            }
+        }
+
+        log.usingSharedClusterModel(clusterName, address);
+        try {
+            return entry.cluster.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw e;
+        }
+    }
+
+    private AmbariCluster discover(String key, String clusterKey, Entry entry, Supplier<AmbariCluster> discovery) {
+        AmbariCluster cluster;
+        try {
+            cluster = discovery.get();
+        } catch (RuntimeException e) {
+            entries.remove(key, entry);
+            entry.cluster.completeExceptionally(e);
+            throw e;
+        }
+
+        // Waiting discoveries get the result either way, but only keep a complete model which is still current
+        if (!isComplete(cluster)) {
+            log.notCachingIncompleteClusterModel(clusterKey);
+            entries.remove(key, entry);
+        } else if (!isCurrent(clusterKey, entry.revision)) {
+            entries.remove(key, entry);
+        }
+        entry.cluster.complete(cluster);
+        return cluster;
+    }
+
+    /**
+     * Invalidate the cached model of the specified cluster.
+     *
+     * @param address     The address of the Ambari instance.
+     * @param clusterName The name of the cluster.
+     */
+    void invalidate(String address, String clusterName) {
+        String clusterKey = getClusterKey(address, clusterName);
+        invalidations.put(clusterKey, revision.incrementAndGet());
+        entries.keySet().removeIf(key -> key.startsWith(clusterKey + KEY_DELIM));
+    }
+
+    /**
+     * A discovery which failed to fetch either the service configurations or the host roles yields a model without
+     * service configurations or without components.
+     */
+    private static boolean isComplete(AmbariCluster cluster) {
+        return cluster != null
+                   && !cluster.getServiceConfigurations().isEmpty()
+                   && !cluster.getComponents().isEmpty();
+    }
+
+    private boolean isCurrent(String clusterKey, long fetchRevision) {
+        return fetchRevision >= invalidations.getOrDefault(clusterKey, 0L);
+    }
+
+    private static String getClusterKey(String address, String clusterName) {
+        return address + KEY_DELIM + clusterName;
+    }
+
+    private static final class Entry {
+        private final long revision;
+        private final CompletableFuture<AmbariCluster> cluster = new CompletableFuture<>();
+
+        Entry(long revision) {
+            this.revision = revision;
+        }
+    }
+}
@@ -36,6 +36,7 @@ import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Properties;
+import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.locks.ReadWriteLock;
 import java.util.concurrent.locks.ReentrantReadWriteLock;
 
@@ -71,6 +72,9 @@ class AmbariConfigurationMonitor implements ClusterConfigurationMonitor {
 
     private List<ConfigurationChangeListener> changeListeners = new ArrayList<>();
 
+    // The discovered cluster models, which are invalidated when the cluster configuration changes
+    private List<AmbariClusterCache> clusterCaches = new CopyOnWriteArrayList<>();
+
     private AmbariClientCommon ambariClient;
 
     PollingConfigAnalyzer internalMonitor;
@@ -286,6 +290,22 @@ class AmbariConfigurationMonitor implements ClusterConfigurationMonitor {
     @Override
     public void clearCache(String source, String clusterName) {
         this.removeClusterConfigVersions(source, clusterName);
+        invalidateClusterModels(source, clusterName);
+    }
+
+    /**
+     * Add a cache of discovered cluster models, which should be invalidated when the configuration of a cluster changes.
+     *
+     * @param clusterCache The cluster model cache.
+     */
+    void addClusterCache(AmbariClusterCache clusterCache) {
+        clusterCaches.add(clusterCache);
+    }
+
+    private void invalidateClusterModels(String source, String clusterName) {
+        for (AmbariClusterCache clusterCache : clusterCaches) {
+            clusterCache.invalidate(source, clusterName);
+        }
     }
 
     /**
@@ -425,6 +445,9 @@ class AmbariConfigurationMonitor implements ClusterConfigurationMonitor {
      * @param clusterName The name of the cluster whose configuration details have changed.
      */
     void notifyChangeListeners(String source, String clusterName) {
+        // Invalidate the discovered models first, so the listeners' rediscovery does not get the outdated ones
+        invalidateClusterModels(source, clusterName);
+
         for (ConfigurationChangeListener listener : changeListeners) {
             listener.onConfigurationChange(source, clusterName);
         }
@@ -45,6 +45,13 @@ import java.util.Locale;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Properties;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 class AmbariServiceDiscovery implements ServiceDiscovery {
 
@@ -69,6 +76,11 @@ class AmbariServiceDiscovery implements ServiceDiscovery {
 
     private static final AmbariServiceDiscoveryMessages log = MessagesFactory.get(AmbariServiceDiscoveryMessages.class);
 
+    private static final int FETCH_THREAD_POOL_SIZE = 4;
+
+    // Executor for the REST requests issued in parallel with those of the discovering thread
+    private static final ExecutorService fetchExecutor = createFetchExecutor();
+
     // Map of component names to service configuration types
     private static Map<String, String> componentServiceConfigs = new HashMap<>();
     static {
@@ -84,6 +96,9 @@ class AmbariServiceDiscovery implements ServiceDiscovery {
     private RESTInvoker restClient;
     private AmbariClientCommon ambariClient;
 
+    // The cluster models shared by the descriptors referencing the same cluster
+    private final AmbariClusterCache clusterCache = new AmbariClusterCache();
+
     // This is used to update the monitor when new cluster configuration details are discovered.
     private AmbariConfigurationMonitor configChangeMonitor;
 
@@ -154,6 +169,9 @@ class AmbariServiceDiscovery implements ServiceDiscovery {
             }
             this.ambariClient = new AmbariClientCommon(restClient);
             this.configChangeMonitor = getConfigurationChangeMonitor();
+            if (configChangeMonitor != null) {
+                configChangeMonitor.addClusterCache(clusterCache);
+            }
 
             isInitialized = true;
         }
@@ -229,8 +247,6 @@ class AmbariServiceDiscovery implements ServiceDiscovery {
         AmbariCluster cluster = null;
 
         String discoveryAddress = config.getAddress();
-        String discoveryUser = config.getUser();
-        String discoveryPwdAlias = config.getPasswordAlias();
 
         // Handle missing discovery address value with the default if it has been defined
         if (discoveryAddress == null || discoveryAddress.isEmpty()) {
@@ -254,105 +270,158 @@ class AmbariServiceDiscovery implements ServiceDiscovery {
 
         // There must be a discovery address and cluster or discovery cannot be performed
         if (discoveryAddress != null && clusterName != null) {
-            cluster = new AmbariCluster(clusterName);
+            init(gatewayConfig);
 
-            String encodedClusterName;
-            try {
-                encodedClusterName = URLEncoder.encode(clusterName, StandardCharsets.UTF_8.name());
-            } catch (UnsupportedEncodingException e) {
-                e.printStackTrace(); // TODO: Logging
-                encodedClusterName = clusterName;
+            final String address = discoveryAddress;
+            final String name = clusterName;
+            if (configChangeMonitor != null && address.equals(config.getAddress())) {
+                // The monitor invalidates the shared model when the cluster configuration versions change
+                cluster = clusterCache.get(config, address, name, () -> discoverCluster(config, address, name));
+            } else {
+                cluster = discoverCluster(config, address, name);
             }
+        }
+
+        return cluster;
+    }
 
-            Map<String, String> serviceComponents = new HashMap<>();
 
-            init(gatewayConfig);
+    private AmbariCluster discoverCluster(ServiceDiscoveryConfig config, String discoveryAddress, String clusterName) {
+        String discoveryUser = config.getUser();
+        String discoveryPwdAlias = config.getPasswordAlias();
 
-            Map<String, List<String>> componentHostNames = new HashMap<>();
-            String hostRolesURL =
-                        String.format(Locale.ROOT, "%s" + AMBARI_HOSTROLES_URI, discoveryAddress, encodedClusterName);
-            JSONObject hostRolesJSON = restClient.invoke(hostRolesURL, discoveryUser, discoveryPwdAlias);
-            if (hostRolesJSON != null) {
-                // Process the host roles JSON
-                JSONArray items = (JSONArray) hostRolesJSON.get("items");
-                for (Object obj : items) {
-                    JSONArray components = (JSONArray) ((JSONObject) obj).get("components");
-                    for (Object component : components) {
-                        JSONArray hostComponents = (JSONArray) ((JSONObject) component).get("host_components");
-                        for (Object hostComponent : hostComponents) {
-                            JSONObject hostRoles = (JSONObject) ((JSONObject) hostComponent).get("HostRoles");
-                            String serviceName = (String) hostRoles.get("service_name");
-                            String componentName = (String) hostRoles.get("component_name");
-
-                            serviceComponents.put(componentName, serviceName);
-
-                            // Assuming public host name is more applicable than host_name
-                            String hostName = (String) hostRoles.get("public_host_name");
-                            if (hostName == null) {
-                                // Some (even slightly) older versions of Ambari/HDP do not return public_host_name,
-                                // so fall back to host_name in those cases.
-                                hostName = (String) hostRoles.get("host_name");
-                            }
+        AmbariCluster cluster = new AmbariCluster(clusterName);
+
+        String encodedClusterName;
+        try {
+            encodedClusterName = URLEncoder.encode(clusterName, StandardCharsets.UTF_8.name());
+        } catch (UnsupportedEncodingException e) {
+            e.printStackTrace(); // TODO: Logging
+            encodedClusterName = clusterName;
+        }
+
+        // Fetch the service configurations while the host roles are being fetched
+        final String encodedName = encodedClusterName;
+        Future<Map<String, Map<String, AmbariCluster.ServiceConfiguration>>> serviceConfigsFetch =
+            fetchExecutor.submit(() -> ambariClient.getActiveServiceConfigurations(discoveryAddress,
+                                                                                    encodedName,
+                                                                                    discoveryUser,
+                                                                                    discoveryPwdAlias));
+
+        Map<String, String> serviceComponents = new HashMap<>();
+
+        Map<String, List<String>> componentHostNames = new HashMap<>();
+        String hostRolesURL =
+                    String.format(Locale.ROOT, "%s" + AMBARI_HOSTROLES_URI, discoveryAddress, encodedClusterName);
+        JSONObject hostRolesJSON = restClient.invoke(hostRolesURL, discoveryUser, discoveryPwdAlias);
+        if (hostRolesJSON != null) {
+            // Process the host roles JSON
+            JSONArray items = (JSONArray) hostRolesJSON.get("items");
+            for (Object obj : items) {
+                JSONArray components = (JSONArray) ((JSONObject) obj).get("components");
+                for (Object component : components) {
+                    JSONArray hostComponents = (JSONArray) ((JSONObject) component).get("host_components");
+                    for (Object hostComponent : hostComponents) {
+                        JSONObject hostRoles = (JSONObject) ((JSONObject) hostComponent).get("HostRoles");
+                        String serviceName = (String) hostRoles.get("service_name");
+                        String componentName = (String) hostRoles.get("component_name");
+
+                        serviceComponents.put(componentName, serviceName);
+
+                        // Assuming public host name is more applicable than host_name
+                        String hostName = (String) hostRoles.get("public_host_name");
+                        if (hostName == null) {
+                            // Some (even slightly) older versions of Ambari/HDP do not return public_host_name,
+                            // so fall back to host_name in those cases.
+                            hostName = (String) hostRoles.get("host_name");
+                        }
 
-                            if (hostName != null) {
-                                log.discoveredServiceHost(serviceName, hostName);
-                                if (!componentHostNames.containsKey(componentName)) {
-                                    componentHostNames.put(componentName, new ArrayList<>());
-                                }
-                                // Avoid duplicates
-                                if (!componentHostNames.get(componentName).contains(hostName)) {
-                                    componentHostNames.get(componentName).add(hostName);
-                                }
+                        if (hostName != null) {
+                            log.discoveredServiceHost(serviceName, hostName);
+                            if (!componentHostNames.containsKey(componentName)) {
+                                componentHostNames.put(componentName, new ArrayList<>());
+                            }
+                            // Avoid duplicates
+                            if (!componentHostNames.get(componentName).contains(hostName)) {
+                                componentHostNames.get(componentName).add(hostName);
                             }
                         }
                     }
                 }
             }
+        }
 
-            // Service configurations
-            Map<String, Map<String, AmbariCluster.ServiceConfiguration>> serviceConfigurations =
-                ambariClient.getActiveServiceConfigurations(discoveryAddress,
-                                                            encodedClusterName,
-                                                            discoveryUser,
-                                                            discoveryPwdAlias);
-            if (serviceConfigurations.isEmpty()) {
-                log.failedToAccessServiceConfigs(clusterName);
-            }
-            for (Entry<String, Map<String, AmbariCluster.ServiceConfiguration>> serviceConfiguration : serviceConfigurations.entrySet()) {
-                for (Map.Entry<String, AmbariCluster.ServiceConfiguration> serviceConfig : serviceConfiguration.getValue().entrySet()) {
-                    cluster.addServiceConfiguration(serviceConfiguration.getKey(), serviceConfig.getKey(), serviceConfig.getValue());
-                }
+        // Service configurations
+        Map<String, Map<String, AmbariCluster.ServiceConfiguration>> serviceConfigurations =
+            getServiceConfigurations(serviceConfigsFetch);
+        if (serviceConfigurations.isEmpty()) {
+            log.failedToAccessServiceConfigs(clusterName);
+        }
+        for (Entry<String, Map<String, AmbariCluster.ServiceConfiguration>> serviceConfiguration : serviceConfigurations.entrySet()) {
+            for (Map.Entry<String, AmbariCluster.ServiceConfiguration> serviceConfig : serviceConfiguration.getValue().entrySet()) {
+                cluster.addServiceConfiguration(serviceConfiguration.getKey(), serviceConfig.getKey(), serviceConfig.getValue());
             }
+        }
 
-            // Construct the AmbariCluster model
-            for (Entry<String, String> entry : serviceComponents.entrySet()) {
-                String componentName = entry.getKey();
-                String serviceName = entry.getValue();
-                List<String> hostNames = componentHostNames.get(componentName);
-
-                Map<String, AmbariCluster.ServiceConfiguration> configs = serviceConfigurations.get(serviceName);
-                String configType = componentServiceConfigs.get(componentName);
-                if (configType != null) {
-                    AmbariCluster.ServiceConfiguration svcConfig = configs.get(configType);
-                    if (svcConfig != null) {
-                        AmbariComponent c = new AmbariComponent(componentName,
-                                                                svcConfig.getVersion(),
-                                                                encodedClusterName,
-                                                                serviceName,
-                                                                hostNames,
-                                                                svcConfig.getProperties());
-                        cluster.addComponent(c);
-                    }
+        // Construct the AmbariCluster model
+        for (Entry<String, String> entry : serviceComponents.entrySet()) {
+            String componentName = entry.getKey();
+            String serviceName = entry.getValue();
+            List<String> hostNames = componentHostNames.get(componentName);
+
+            Map<String, AmbariCluster.ServiceConfiguration> configs = serviceConfigurations.get(serviceName);
+            String configType = componentServiceConfigs.get(componentName);
+            if (configType != null) {
+                AmbariCluster.ServiceConfiguration svcConfig = configs.get(configType);
+                if (svcConfig != null) {
+                    AmbariComponent c = new AmbariComponent(componentName,
+                                                            svcConfig.getVersion(),
+                                                            encodedClusterName,
+                                                            serviceName,
+                                                            hostNames,
+                                                            svcConfig.getProperties());
+                    cluster.addComponent(c);
                 }
             }
+        }
 
-            if (configChangeMonitor != null) {
-                // Notify the cluster config monitor about these cluster configuration details
-                configChangeMonitor.addClusterConfigVersions(cluster, config);
-            }
+        if (configChangeMonitor != null) {
+            // Notify the cluster config monitor about these cluster configuration details
+            configChangeMonitor.addClusterConfigVersions(cluster, config);
         }
 
         return cluster;
     }
 
+
+    private static Map<String, Map<String, AmbariCluster.ServiceConfiguration>> getServiceConfigurations(
+                        Future<Map<String, Map<String, AmbariCluster.ServiceConfiguration>>> serviceConfigsFetch) {
+        try {
+            return serviceConfigsFetch.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+        }
+        return new HashMap<>();
+    }
+
+
+    @SuppressWarnings("PMD.DoNotUseThreads")
+    private static ExecutorService createFetchExecutor() {
+        AtomicInteger threadCount = new AtomicInteger();
+        ThreadPoolExecutor executor =
+            new ThreadPoolExecutor(FETCH_THREAD_POOL_SIZE, FETCH_THREAD_POOL_SIZE, 60L, TimeUnit.SECONDS,
+                                   new LinkedBlockingQueue<>(),
+                                   r -> {
+                                       Thread thread = new Thread(r, "AmbariServiceDiscovery-" + threadCount.incrementAndGet());
+                                       thread.setDaemon(true);
+                                       return thread;
+                                   });
+        executor.allowCoreThreadTimeOut(true);
+        return executor;
+    }
+
 }
@@ -153,4 +153,12 @@ public interface AmbariServiceDiscoveryMessages {
     @Message(level = MessageLevel.WARN,
              text = "The declared nameservice {0} is not defined in the HDFS configuration.")
     void undefinedHDFSNameService(String nameservice);
+
+    @Message(level = MessageLevel.DEBUG,
+             text = "Using the shared model of the {0} cluster discovered from {1}")
+    void usingSharedClusterModel(String clusterName, String discoveryAddress);
+
+    @Message(level = MessageLevel.DEBUG,
+             text = "Not sharing the incomplete model of cluster {0}; it will be discovered again when next requested")
+    void notCachingIncompleteClusterModel(String cluster);
 }
@@ -0,0 +1,188 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements. See the NOTICE file distributed with this
+ * work for additional information regarding copyright ownership. The ASF
+ * licenses this file to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.apache.knox.gateway.topology.discovery.ambari;
+
+import org.apache.knox.gateway.topology.discovery.ServiceDiscoveryConfig;
+import org.easymock.EasyMock;
+import org.junit.Test;
+
+import java.util.Collections;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.fail;
+
+public class AmbariClusterCacheTest {
+
+  private static final String ADDRESS = "http://ambarihost:8080";
+  private static final String CLUSTER = "myCluster";
+
+  @Test
+  public void testModelIsShared() {
+    final AmbariClusterCache cache = new AmbariClusterCache();
+    final ServiceDiscoveryConfig config = createDiscoveryConfig("admin");
+    final AtomicInteger discoveries = new AtomicInteger();
+
+    AmbariCluster first = cache.get(config, ADDRESS, CLUSTER, () -> discover(discoveries));
+    AmbariCluster second = cache.get(config, ADDRESS, CLUSTER, () -> discover(discoveries));
+    assertSame(first, second);
+    assertEquals(1, discoveries.get());
+
+    // Different credentials may not see the same cluster details
+    AmbariCluster other = cache.get(createDiscoveryConfig("guest"), ADDRESS, CLUSTER, () -> discover(discoveries));
+    assertNotSame(first, other);
+    assertEquals(2, discoveries.get());
+  }
+
+  @Test
+  public void testInvalidation() {
+    final AmbariClusterCache cache = new AmbariClusterCache();
+    final ServiceDiscoveryConfig config = createDiscoveryConfig("admin");
+    final AtomicInteger discoveries = new AtomicInteger();
+
+    AmbariCluster first = cache.get(config, ADDRESS, CLUSTER, () -> discover(discoveries));
+    cache.invalidate(ADDRESS, "otherCluster");
+    assertSame(first, cache.get(config, ADDRESS, CLUSTER, () -> discover(discoveries)));
+
+    cache.invalidate(ADDRESS, CLUSTER);
+    AmbariCluster second = cache.get(config, ADDRESS, CLUSTER, () -> discover(discoveries));
+    assertNotSame(first, second);
+    assertEquals(2, discoveries.get());
+  }
+
+  @Test
+  public void testModelDiscoveredDuringInvalidationIsNotCached() {
+    final AmbariClusterCache cache = new AmbariClusterCache();
+    final ServiceDiscoveryConfig config = createDiscoveryConfig("admin");
+    final AtomicInteger discoveries = new AtomicInteger();
+
+    cache.get(config, ADDRESS, CLUSTER, () -> {
+      // The configuration changes while the cluster is being discovered
+      cache.invalidate(ADDRESS, CLUSTER);
+      return discover(discoveries);
+    });
+    cache.get(config, ADDRESS, CLUSTER, () -> discover(discoveries));
+    assertEquals(2, discoveries.get());
+  }
+
+  @Test
+  public void testFailedDiscoveryIsNotCached() {
+    final AmbariClusterCache cache = new AmbariClusterCache();
+    final ServiceDiscoveryConfig config = createDiscoveryConfig("admin");
+    final AtomicInteger discoveries = new AtomicInteger();
+
+    try {
+      cache.get(config, ADDRESS, CLUSTER, () -> {
+        throw new IllegalStateException("Ambari is unavailable");
+      });
+      fail("Expected the discovery failure to be propagated");
+    } catch (IllegalStateException e) {
+      // Expected
+    }
+    cache.get(config, ADDRESS, CLUSTER, () -> discover(discoveries));
+    assertEquals(1, discoveries.get());
+  }
+
+  @Test
+  public void testIncompleteModelIsNotCached() {
+    final AmbariClusterCache cache = new AmbariClusterCache();
+    final ServiceDiscoveryConfig config = createDiscoveryConfig("admin");
+    final AtomicInteger discoveries = new AtomicInteger();
+
+    // e.g., Ambari rejected the credentials, so neither configurations nor host roles could be fetched
+    AmbariCluster empty = cache.get(config, ADDRESS, CLUSTER, () -> {
+      discoveries.incrementAndGet();
+      return new AmbariCluster(CLUSTER);
+    });
+
+    // The service configurations were fetched, but the host roles were not
+    AmbariCluster noComponents = cache.get(config, ADDRESS, CLUSTER, () -> {
+      discoveries.incrementAndGet();
+      AmbariCluster cluster = new AmbariCluster(CLUSTER);
+      cluster.addServiceConfiguration("HDFS", "hdfs-site",
+          new AmbariCluster.ServiceConfiguration("hdfs-site", "1", Collections.emptyMap()));
+      return cluster;
+    });
+    assertNotSame(empty, noComponents);
+
+    AmbariCluster complete = cache.get(config, ADDRESS, CLUSTER, () -> discover(discoveries));
+    assertSame(complete, cache.get(config, ADDRESS, CLUSTER, () -> discover(discoveries)));
+    assertEquals(3, discoveries.get());
+  }
+
+  @Test(timeout = 10000)
+  public void testConcurrentDiscoveriesAreDeduplicated() throws Exception {
+    final AmbariClusterCache cache = new AmbariClusterCache();
+    final ServiceDiscoveryConfig config = createDiscoveryConfig("admin");
+    final AtomicInteger discoveries = new AtomicInteger();
+    final CountDownLatch discovering = new CountDownLatch(1);
+    final CountDownLatch release = new CountDownLatch(1);
+
+    ExecutorService executor = Executors.newFixedThreadPool(2);
+    try {
+      Future<AmbariCluster> first = executor.submit(() -> cache.get(config, ADDRESS, CLUSTER, () -> {
+        discovering.countDown();
+        awaitQuietly(release);
+        return discover(discoveries);
+      }));
+      discovering.await();
+
+      Future<AmbariCluster> second = executor.submit(() -> cache.get(config, ADDRESS, CLUSTER, () -> discover(discoveries)));
+      release.countDown();
+
+      assertSame(first.get(), second.get());
+      assertEquals(1, discoveries.get());
+    } finally {
+      executor.shutdownNow();
+      executor.awaitTermination(5, TimeUnit.SECONDS);
+    }
+  }
+
+  private static AmbariCluster discover(AtomicInteger discoveries) {
+    discoveries.incrementAndGet();
+    AmbariCluster cluster = new AmbariCluster(CLUSTER);
+    cluster.addServiceConfiguration("HDFS", "hdfs-site",
+        new AmbariCluster.ServiceConfiguration("hdfs-site", "1", Collections.emptyMap()));
+    cluster.addComponent(new AmbariComponent("NAMENODE", "1", CLUSTER, "HDFS",
+        Collections.singletonList("host1"), Collections.emptyMap()));
+    return cluster;
+  }
+
+  private static void awaitQuietly(CountDownLatch latch) {
+    try {
+      latch.await();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  private static ServiceDiscoveryConfig createDiscoveryConfig(String user) {
+    ServiceDiscoveryConfig config = EasyMock.createNiceMock(ServiceDiscoveryConfig.class);
+    EasyMock.expect(config.getAddress()).andReturn(ADDRESS).anyTimes();
+    EasyMock.expect(config.getUser()).andReturn(user).anyTimes();
+    EasyMock.expect(config.getPasswordAlias()).andReturn("ambari.discovery.password").anyTimes();
+    EasyMock.replay(config);
+    return config;
+  }
+}
@@ -17,7 +17,6 @@
 package org.apache.knox.gateway.topology.discovery.cm;
 
 import com.cloudera.api.swagger.ClustersResourceApi;
-import com.cloudera.api.swagger.RolesResourceApi;
 import com.cloudera.api.swagger.ServicesResourceApi;
 import com.cloudera.api.swagger.client.ApiException;
 import com.cloudera.api.swagger.model.ApiCluster;
@@ -28,6 +27,7 @@ import com.cloudera.api.swagger.model.ApiRoleList;
 import com.cloudera.api.swagger.model.ApiService;
 import com.cloudera.api.swagger.model.ApiServiceConfig;
 import com.cloudera.api.swagger.model.ApiServiceList;
+import org.apache.commons.lang3.concurrent.BasicThreadFactory;
 import org.apache.knox.gateway.GatewayServer;
 import org.apache.knox.gateway.config.GatewayConfig;
 import org.apache.knox.gateway.i18n.messages.MessagesFactory;
@@ -39,6 +39,7 @@ import org.apache.knox.gateway.topology.ClusterConfigurationMonitorService;
 import org.apache.knox.gateway.topology.discovery.ClusterConfigurationMonitor;
 import org.apache.knox.gateway.topology.discovery.ServiceDiscovery;
 import org.apache.knox.gateway.topology.discovery.ServiceDiscoveryConfig;
+import org.apache.knox.gateway.topology.discovery.cm.DiscoveryResponseCache.ServiceResponses;
 import org.apache.knox.gateway.topology.discovery.cm.monitor.ClouderaManagerClusterConfigurationMonitor;
 
 import java.util.ArrayList;
@@ -49,6 +50,10 @@ import java.util.Locale;
 import java.util.Map;
 import java.util.ServiceLoader;
 import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 
 
 /**
@@ -65,7 +70,6 @@ public class ClouderaManagerServiceDiscovery implements ServiceDiscovery {
 
   private static final String CLUSTER_TYPE_ANY = "any";
   private static final String VIEW_SUMMARY     = "summary";
-  private static final String VIEW_FULL        = "full";
 
   static final String DEFAULT_USER_ALIAS = "cm.discovery.user";
   static final String DEFAULT_PWD_ALIAS  = "cm.discovery.password";
@@ -83,6 +87,10 @@ public class ClouderaManagerServiceDiscovery implements ServiceDiscovery {
     }
   }
 
+  private static final int DEFAULT_FETCH_THREAD_POOL_SIZE = 8;
+
+  private static ExecutorService fetchExecutor;
+
   private boolean debug;
 
   private AliasService aliasService;
@@ -117,8 +125,10 @@ public class ClouderaManagerServiceDiscovery implements ServiceDiscovery {
       throw new IllegalArgumentException("Missing or invalid discovery address.");
     }
 
-    DiscoveryApiClient client = new DiscoveryApiClient(discoveryConfig, aliasService, keystoreService);
-    client.setDebugging(debug);
+    DiscoveryApiClient client = DiscoveryApiClientPool.getClient(discoveryConfig, aliasService, keystoreService);
+    if (debug) {
+      client.setDebugging(true);
+    }
     return client;
   }
 
@@ -181,7 +191,7 @@ public class ClouderaManagerServiceDiscovery implements ServiceDiscovery {
     }
 
     try {
-      cluster = discoverCluster(client, clusterName);
+      cluster = discoverCluster(gatewayConfig, client, clusterName);
 
       if (configChangeMonitor != null) {
         // Notify the cluster config monitor about these cluster configuration details
@@ -189,6 +199,7 @@ public class ClouderaManagerServiceDiscovery implements ServiceDiscovery {
       }
     } catch (ApiException e) {
       log.clusterDiscoveryError(clusterName, e);
+      DiscoveryApiClientPool.evictOnFailure(client, e);
     }
 
     return cluster;
@@ -204,16 +215,16 @@ public class ClouderaManagerServiceDiscovery implements ServiceDiscovery {
       }
     } catch (Exception e) {
       log.clusterDiscoveryError(CLUSTER_TYPE_ANY, e);
+      DiscoveryApiClientPool.evictOnFailure(client, e);
     }
     return clusters;
   }
 
-  private static ClouderaManagerCluster discoverCluster(DiscoveryApiClient client, String clusterName)
+  private ClouderaManagerCluster discoverCluster(GatewayConfig gatewayConfig, DiscoveryApiClient client, String clusterName)
       throws ApiException {
     ClouderaManagerCluster cluster;
 
     ServicesResourceApi servicesResourceApi = new ServicesResourceApi(client);
-    RolesResourceApi rolesResourceApi = new RolesResourceApi(client);
 
     log.discoveringCluster(clusterName);
 
@@ -234,26 +245,24 @@ public class ClouderaManagerServiceDiscovery implements ServiceDiscovery {
       cmService.setType(CM_SERVICE_TYPE);
       serviceList.addItemsItem(cmService);
 
+      // Responses are only cached while the configuration change monitor is there to invalidate them
+      ServiceConfigurationFetcher fetcher =
+          new ServiceConfigurationFetcher(client,
+                                          getFetchExecutor(gatewayConfig),
+                                          configChangeMonitor != null ? client.getResponseCache() : null);
+      Map<String, ServiceResponses> responses = fetcher.fetch(clusterName, serviceList.getItems());
+
       for (ApiService service : serviceList.getItems()) {
         String serviceName = service.getName();
         log.discoveredService(serviceName, service.getType());
-        ApiServiceConfig serviceConfig = null;
-        /* no reason to check service config for CM service */
-        if(!CM_SERVICE_TYPE.equals(service.getType())) {
-          serviceConfig =
-              getServiceConfig(servicesResourceApi, clusterName, serviceName);
-        }
-        ApiRoleList roleList = getRoles(rolesResourceApi, clusterName, serviceName);
+        ServiceResponses serviceResponses = responses.get(serviceName);
+        ApiServiceConfig serviceConfig = serviceResponses.getServiceConfig();
+        ApiRoleList roleList = serviceResponses.getRoles();
         if (roleList != null) {
           for (ApiRole role : roleList.getItems()) {
             String roleName = role.getName();
             log.discoveredServiceRole(roleName, role.getType());
-            ApiConfigList roleConfig = null;
-            /* no reason to check role config for CM service */
-            if(!CM_SERVICE_TYPE.equals(service.getType())) {
-              roleConfig =
-                  getRoleConfig(rolesResourceApi, clusterName, serviceName, roleName);
-            }
+            ApiConfigList roleConfig = serviceResponses.getRoleConfig(roleName);
 
             List<ServiceModelGenerator> smgList = serviceModelGenerators.get(service.getType());
             if (smgList != null) {
@@ -278,6 +287,27 @@ public class ClouderaManagerServiceDiscovery implements ServiceDiscovery {
     return cluster;
   }
 
+  /**
+   * Get the executor on which the discovery requests are issued, which is shared by all the discovery instances.
+   */
+  private static synchronized ExecutorService getFetchExecutor(GatewayConfig gatewayConfig) {
+    if (fetchExecutor == null) {
+      int poolSize = (gatewayConfig != null) ? gatewayConfig.getClouderaManagerServiceDiscoveryThreadPoolSize() : 0;
+      if (poolSize <= 0) {
+        poolSize = DEFAULT_FETCH_THREAD_POOL_SIZE;
+      }
+      ThreadPoolExecutor executor =
+          new ThreadPoolExecutor(poolSize, poolSize, 60L, TimeUnit.SECONDS, new LinkedBlockingQueue<>(),
+                                 new BasicThreadFactory.Builder()
+                                     .namingPattern("ClouderaManagerServiceDiscovery-%d")
+                                     .daemon(true)
+                                     .build());
+      executor.allowCoreThreadTimeOut(true);
+      fetchExecutor = executor;
+    }
+    return fetchExecutor;
+  }
+
   private static ApiServiceList getClusterServices(final ServicesResourceApi servicesResourceApi,
                                                    final String              clusterName) {
     ApiServiceList services = null;
@@ -285,55 +315,9 @@ public class ClouderaManagerServiceDiscovery implements ServiceDiscovery {
       services = servicesResourceApi.readServices(clusterName, VIEW_SUMMARY);
     } catch (ApiException e) {
       log.failedToAccessServiceConfigs(clusterName, e);
+      DiscoveryApiClientPool.evictOnFailure(servicesResourceApi.getApiClient(), e);
     }
     return services;
   }
 
-  private static ApiServiceConfig getServiceConfig(final ServicesResourceApi servicesResourceApi,
-                                                   final String clusterName,
-                                                   final String serviceName) {
-    ApiServiceConfig serviceConfig = null;
-    try {
-      serviceConfig = servicesResourceApi.readServiceConfig(clusterName, serviceName, VIEW_FULL);
-    } catch (Exception e) {
-      log.failedToAccessServiceConfigs(clusterName, e);
-    }
-    return serviceConfig;
-  }
-
-  private static ApiRoleList getRoles(RolesResourceApi rolesResourceApi,
-                                      String clusterName,
-                                      String serviceName) {
-    ApiRoleList roles = null;
-    try {
-      /* Populate roles for CM Service since they are not discoverable */
-      if(CM_SERVICE_TYPE.equalsIgnoreCase(serviceName)) {
-        roles = new ApiRoleList();
-        final ApiRole cmRole = new ApiRole();
-        cmRole.setName(CM_ROLE_TYPE);
-        cmRole.setType(CM_ROLE_TYPE);
-        roles.addItemsItem(cmRole);
-        return roles;
-      } else {
-        roles = rolesResourceApi.readRoles(clusterName, serviceName, "", VIEW_SUMMARY);
-      }
-    } catch (Exception e) {
-      log.failedToAccessServiceRoleConfigs(clusterName, e);
-    }
-    return roles;
-  }
-
-  private static ApiConfigList getRoleConfig(RolesResourceApi rolesResourceApi,
-                                             String           clusterName,
-                                             String           serviceName,
-                                             String           roleName) {
-    ApiConfigList configList = null;
-    try {
-      configList = rolesResourceApi.readRoleConfig(clusterName, roleName, serviceName, VIEW_FULL);
-    } catch (Exception e) {
-      log.failedToAccessServiceRoleConfigs(clusterName, e);
-    }
-    return configList;
-  }
-
 }
@@ -197,4 +197,13 @@ public interface ClouderaManagerServiceDiscoveryMessages {
 
   @Message(level = MessageLevel.ERROR, text = "Failed to configure truststore")
   void failedToConfigureTruststore();
+
+  @Message(level = MessageLevel.DEBUG, text = "Using the cached configuration of the {0} service of {1}")
+  void usingCachedServiceConfiguration(String serviceName, String clusterName);
+
+  @Message(level = MessageLevel.DEBUG, text = "Invalidating the cached configuration of the {0} service(s) of {1}")
+  void invalidatingCachedServiceConfiguration(String serviceName, String clusterName);
+
+  @Message(level = MessageLevel.INFO, text = "Discarding the Cloudera Manager client for {0}: {1}")
+  void discardingDiscoveryApiClient(String address, String reason);
 }
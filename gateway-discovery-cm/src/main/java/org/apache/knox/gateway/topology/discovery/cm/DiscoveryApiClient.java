@@ -34,6 +34,7 @@ import org.apache.knox.gateway.util.TruststoreSSLContextUtils;
 import javax.net.ssl.SSLContext;
 import javax.security.auth.Subject;
 import java.util.List;
+import java.util.Objects;
 
 import static org.apache.knox.gateway.topology.discovery.cm.ClouderaManagerServiceDiscovery.API_PATH;
 import static org.apache.knox.gateway.topology.discovery.cm.ClouderaManagerServiceDiscovery.DEFAULT_USER_ALIAS;
@@ -51,12 +52,21 @@ public class DiscoveryApiClient extends ApiClient {
 
   private ServiceDiscoveryConfig config;
 
+  private final DiscoveryResponseCache responseCache = new DiscoveryResponseCache();
+
   public DiscoveryApiClient(ServiceDiscoveryConfig discoveryConfig, AliasService aliasService,
                             KeystoreService keystoreService) {
     this.config = discoveryConfig;
     configure(aliasService, keystoreService);
   }
 
+  /**
+   * @return The cache of the discovery responses received by this client.
+   */
+  public DiscoveryResponseCache getResponseCache() {
+    return responseCache;
+  }
+
   boolean isKerberos() {
     return isKerberos;
   }
@@ -67,32 +77,62 @@ public class DiscoveryApiClient extends ApiClient {
 
     setBasePath(apiAddress);
 
-    String username = config.getUser();
-    String passwordAlias = config.getPasswordAlias();
-
-    String password = null;
-    // If no configured username, then use default username alias
+    String username = resolveUsername(aliasService);
+    // If no username could be determined
     if (username == null) {
-      if (aliasService != null) {
-        try {
-          char[] defaultUser = aliasService.getPasswordFromAliasForGateway(DEFAULT_USER_ALIAS);
-          if (defaultUser != null) {
-            username = new String(defaultUser);
-          }
-        } catch (AliasServiceException e) {
-          log.aliasServiceUserError(DEFAULT_USER_ALIAS, e.getLocalizedMessage());
-        }
+      log.aliasServiceUserNotFound();
+      throw new ConfigurationException("No username is configured for Cloudera Manager service discovery.");
+    }
+
+    String password = resolvePassword(aliasService);
+    // If the password could not be determined
+    if (password == null) {
+      log.aliasServicePasswordNotFound();
+      isKerberos = Boolean.getBoolean(GatewayConfig.HADOOP_KERBEROS_SECURED);
+    }
+
+    setUsername(username);
+    setPassword(password);
+
+    if (isKerberos) {
+      // If there is a Kerberos subject, then add the SPNEGO auth interceptor
+      Subject subject = AuthUtils.getKerberosSubject();
+      if (subject != null) {
+        SpnegoAuthInterceptor spnegoInterceptor = new SpnegoAuthInterceptor(subject);
+        getHttpClient().interceptors().add(spnegoInterceptor);
       }
+    }
 
-      // If username is still null
-      if (username == null) {
-        log.aliasServiceUserNotFound();
-        throw new ConfigurationException("No username is configured for Cloudera Manager service discovery.");
+    configureTruststore(keystoreService);
+  }
+
+  /**
+   * @return The configured username or, if there is none, the value of the default username alias.
+   */
+  private String resolveUsername(AliasService aliasService) {
+    String username = config.getUser();
+    // If no configured username, then use default username alias
+    if (username == null && aliasService != null) {
+      try {
+        char[] defaultUser = aliasService.getPasswordFromAliasForGateway(DEFAULT_USER_ALIAS);
+        if (defaultUser != null) {
+          username = new String(defaultUser);
+        }
+      } catch (AliasServiceException e) {
+        log.aliasServiceUserError(DEFAULT_USER_ALIAS, e.getLocalizedMessage());
       }
     }
+    return username;
+  }
 
+  /**
+   * @return The value of the configured password alias or, if there is none, of the default password alias.
+   */
+  private String resolvePassword(AliasService aliasService) {
+    String password = null;
     if (aliasService != null) {
       // If no password alias is configured, then try the default alias
+      String passwordAlias = config.getPasswordAlias();
       if (passwordAlias == null) {
         passwordAlias = DEFAULT_PWD_ALIAS;
       }
@@ -107,26 +147,18 @@ public class DiscoveryApiClient extends ApiClient {
         log.aliasServicePasswordError(passwordAlias, e.getLocalizedMessage());
       }
     }
+    return password;
+  }
 
-    // If the password could not be determined
-    if (password == null) {
-      log.aliasServicePasswordNotFound();
-      isKerberos = Boolean.getBoolean(GatewayConfig.HADOOP_KERBEROS_SECURED);
-    }
-
-    setUsername(username);
-    setPassword(password);
-
-    if (isKerberos) {
-      // If there is a Kerberos subject, then add the SPNEGO auth interceptor
-      Subject subject = AuthUtils.getKerberosSubject();
-      if (subject != null) {
-        SpnegoAuthInterceptor spnegoInterceptor = new SpnegoAuthInterceptor(subject);
-        getHttpClient().interceptors().add(spnegoInterceptor);
-      }
-    }
-
-    configureTruststore(keystoreService);
+  /**
+   * @param aliasService The AliasService used to resolve the discovery credentials.
+   *
+   * @return true, if the discovery credentials have changed since this client was configured, e.g. because the
+   * password alias has been updated.
+   */
+  boolean hasCredentialsChanged(AliasService aliasService) {
+    return !Objects.equals(resolveUsername(aliasService), getUsername())
+               || !Objects.equals(resolvePassword(aliasService), getPassword());
   }
 
   @Override
@@ -153,6 +185,18 @@ public class DiscoveryApiClient extends ApiClient {
     return username;
   }
 
+  /**
+   * @return The password set from the discovery configuration when this instance was initialized.
+   */
+  private String getPassword() {
+    String password = null;
+    Authentication basicAuth = getAuthentication("basic");
+    if (basicAuth instanceof HttpBasicAuth) {
+      password = ((HttpBasicAuth) basicAuth).getPassword();
+    }
+    return password;
+  }
+
   private void configureTruststore(KeystoreService keystoreService) {
     SSLContext truststoreSSLContext = TruststoreSSLContextUtils.getTruststoreSSLContext(keystoreService);
     if (truststoreSSLContext != null) {
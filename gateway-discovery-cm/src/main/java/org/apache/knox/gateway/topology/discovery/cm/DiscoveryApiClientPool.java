@@ -0,0 +1,107 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements. See the NOTICE file distributed with this
+ * work for additional information regarding copyright ownership. The ASF
+ * licenses this file to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.apache.knox.gateway.topology.discovery.cm;
+
+import com.cloudera.api.swagger.client.ApiClient;
+import com.cloudera.api.swagger.client.ApiException;
+import org.apache.knox.gateway.i18n.messages.MessagesFactory;
+import org.apache.knox.gateway.services.security.AliasService;
+import org.apache.knox.gateway.services.security.KeystoreService;
+import org.apache.knox.gateway.topology.discovery.ServiceDiscoveryConfig;
+
+import javax.net.ssl.SSLException;
+import java.net.HttpURLConnection;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Shares a single DiscoveryApiClient, and with it the HTTP connection pool and the
+ * cached discovery responses, per Cloudera Manager address and credentials.
+ * <p>
+ * A client resolves the discovery credentials and the truststore when it is created. It is therefore
+ * replaced when the value of its credential aliases changes, and evicted when a request fails
+ * authentication or TLS negotiation, so that the next request resolves them again.
+ *
+ * @since 1.6.0
+ */
+public final class DiscoveryApiClientPool {
+
+  private static final ClouderaManagerServiceDiscoveryMessages log =
+      MessagesFactory.get(ClouderaManagerServiceDiscoveryMessages.class);
+
+  private static final String KEY_DELIM = "#";
+
+  private static final Map<String, DiscoveryApiClient> clients = new ConcurrentHashMap<>();
+
+  private DiscoveryApiClientPool() {
+  }
+
+  /**
+   * Get the client for the ClouderaManager instance described by the specified discovery configuration,
+   * creating it the first time it is requested.
+   *
+   * @param discoveryConfig The discovery configuration for interacting with a ClouderaManager instance.
+   * @param aliasService    The AliasService used to resolve the discovery credentials.
+   * @param keystoreService The KeystoreService used to configure the truststore.
+   *
+   * @return The shared DiscoveryApiClient.
+   */
+  public static DiscoveryApiClient getClient(final ServiceDiscoveryConfig discoveryConfig,
+                                             final AliasService           aliasService,
+                                             final KeystoreService        keystoreService) {
+    final String key = getKey(discoveryConfig);
+    final DiscoveryApiClient client = clients.get(key);
+    if (client != null && client.hasCredentialsChanged(aliasService)) {
+      log.discardingDiscoveryApiClient(discoveryConfig.getAddress(), "the discovery credentials have changed");
+      clients.remove(key, client);
+    }
+    return clients.computeIfAbsent(key, k -> new DiscoveryApiClient(discoveryConfig, aliasService, keystoreService));
+  }
+
+  /**
+   * Evict the specified client if the specified failure indicates that the credentials or the truststore it was
+   * created with are no longer valid.
+   *
+   * @param client  The client whose request failed.
+   * @param failure The failure.
+   */
+  public static void evictOnFailure(final ApiClient client, final Throwable failure) {
+    final String reason = getEvictionReason(failure);
+    if (reason != null && clients.values().remove(client)) {
+      log.discardingDiscoveryApiClient(client.getBasePath(), reason);
+    }
+  }
+
+  private static String getEvictionReason(final Throwable failure) {
+    for (Throwable t = failure; t != null; t = t.getCause()) {
+      if (t instanceof ApiException) {
+        int code = ((ApiException) t).getCode();
+        if (code == HttpURLConnection.HTTP_UNAUTHORIZED || code == HttpURLConnection.HTTP_FORBIDDEN) {
+          return "authentication failed (HTTP " + code + ")";
+        }
+      } else if (t instanceof SSLException) {
+        return "TLS failure (" + t.getMessage() + ")";
+      }
+    }
+    return null;
+  }
+
+  private static String getKey(final ServiceDiscoveryConfig discoveryConfig) {
+    return discoveryConfig.getAddress() + KEY_DELIM + discoveryConfig.getUser() + KEY_DELIM
+               + discoveryConfig.getPasswordAlias();
+  }
+}
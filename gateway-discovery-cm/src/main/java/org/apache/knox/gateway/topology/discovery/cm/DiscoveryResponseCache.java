@@ -0,0 +1,181 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements. See the NOTICE file distributed with this
+ * work for additional information regarding copyright ownership. The ASF
+ * licenses this file to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.apache.knox.gateway.topology.discovery.cm;
+
+import com.cloudera.api.swagger.model.ApiConfigList;
+import com.cloudera.api.swagger.model.ApiRoleList;
+import com.cloudera.api.swagger.model.ApiServiceConfig;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+
+/**
+ * Cache of the service configuration, roles and role configurations discovered for the services
+ * of the clusters managed by a ClouderaManager instance.
+ * <p>
+ * Every invalidation advances the revision of the cache. Responses are only cached, and cached
+ * responses are only used, if neither their service nor their cluster has been invalidated since
+ * the revision at which they were fetched, so responses fetched while a service is restarted are
+ * not kept.
+ * <p>
+ * Responses also expire once they are older than the time-to-live of the cache, so that changes
+ * the configuration change monitor does not report (e.g. while it is not polling) are picked up eventually.
+ *
+ * @since 1.6.0
+ */
+public class DiscoveryResponseCache {
+
+  static final long DEFAULT_TIME_TO_LIVE = TimeUnit.MINUTES.toMillis(10);
+
+  private static final String KEY_DELIM = "::";
+
+  private final long timeToLive;
+
+  private final LongSupplier clock;
+
+  private final AtomicLong revision = new AtomicLong();
+
+  // The revision at which a cluster or a service was last invalidated
+  private final Map<String, Long> invalidations = new ConcurrentHashMap<>();
+
+  private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+
+  public DiscoveryResponseCache() {
+    this(DEFAULT_TIME_TO_LIVE, System::currentTimeMillis);
+  }
+
+  /**
+   * @param timeToLive The number of milliseconds for which responses are cached.
+   * @param clock      The source of the current time in milliseconds.
+   */
+  DiscoveryResponseCache(final long timeToLive, final LongSupplier clock) {
+    this.timeToLive = timeToLive;
+    this.clock = clock;
+  }
+
+  /**
+   * @return The current revision, to be passed to {@link #put} with the responses fetched afterwards.
+   */
+  long getRevision() {
+    return revision.get();
+  }
+
+  ServiceResponses get(final String clusterName, final String serviceName) {
+    String key = getKey(clusterName, serviceName);
+    Entry entry = entries.get(key);
+    if (entry == null) {
+      return null;
+    }
+    if (clock.getAsLong() - entry.fetchTime >= timeToLive) {
+      entries.remove(key, entry);
+      return null;
+    }
+    return isCurrent(clusterName, serviceName, entry.revision) ? entry.responses : null;
+  }
+
+  void put(final String clusterName, final String serviceName, final long fetchRevision, final ServiceResponses responses) {
+    if (isCurrent(clusterName, serviceName, fetchRevision)) {
+      entries.put(getKey(clusterName, serviceName), new Entry(fetchRevision, clock.getAsLong(), responses));
+    }
+  }
+
+  /**
+   * Invalidate the cached responses for the specified service.
+   *
+   * @param clusterName The name of the cluster.
+   * @param serviceName The name of the service.
+   */
+  public void invalidate(final String clusterName, final String serviceName) {
+    String key = getKey(clusterName, serviceName);
+    invalidations.put(key, revision.incrementAndGet());
+    entries.remove(key);
+  }
+
+  /**
+   * Invalidate the cached responses for all the services of the specified cluster.
+   *
+   * @param clusterName The name of the cluster.
+   */
+  public void invalidate(final String clusterName) {
+    invalidations.put(clusterName, revision.incrementAndGet());
+    entries.keySet().removeIf(key -> key.startsWith(clusterName + KEY_DELIM));
+  }
+
+  private boolean isCurrent(final String clusterName, final String serviceName, final long fetchRevision) {
+    return fetchRevision >= invalidations.getOrDefault(clusterName, 0L)
+               && fetchRevision >= invalidations.getOrDefault(getKey(clusterName, serviceName), 0L);
+  }
+
+  private static String getKey(final String clusterName, final String serviceName) {
+    return clusterName + KEY_DELIM + serviceName;
+  }
+
+  private static final class Entry {
+    private final long revision;
+    private final long fetchTime;
+    private final ServiceResponses responses;
+
+    Entry(final long revision, final long fetchTime, final ServiceResponses responses) {
+      this.revision = revision;
+      this.fetchTime = fetchTime;
+      this.responses = responses;
+    }
+  }
+
+  /**
+   * The responses discovered for a single service.
+   */
+  static final class ServiceResponses {
+    private final ApiServiceConfig serviceConfig;
+    private final ApiRoleList roles;
+    private final Map<String, ApiConfigList> roleConfigs = new ConcurrentHashMap<>();
+
+    ServiceResponses(final ApiServiceConfig serviceConfig, final ApiRoleList roles) {
+      this.serviceConfig = serviceConfig;
+      this.roles = roles;
+    }
+
+    ApiServiceConfig getServiceConfig() {
+      return serviceConfig;
+    }
+
+    ApiRoleList getRoles() {
+      return roles;
+    }
+
+    ApiConfigList getRoleConfig(final String roleName) {
+      return roleConfigs.get(roleName);
+    }
+
+    void putRoleConfig(final String roleName, final ApiConfigList roleConfig) {
+      if (roleConfig != null) {
+        roleConfigs.put(roleName, roleConfig);
+      }
+    }
+
+    /**
+     * @return true if none of the requests for this service failed.
+     */
+    boolean isComplete() {
+      return serviceConfig != null && roles != null
+                 && (roles.getItems() == null || roleConfigs.size() == roles.getItems().size());
+    }
+  }
+}
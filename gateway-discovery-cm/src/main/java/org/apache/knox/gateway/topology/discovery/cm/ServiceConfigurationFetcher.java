@@ -0,0 +1,215 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements. See the NOTICE file distributed with this
+ * work for additional information regarding copyright ownership. The ASF
+ * licenses this file to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.apache.knox.gateway.topology.discovery.cm;
+
+import com.cloudera.api.swagger.RolesResourceApi;
+import com.cloudera.api.swagger.ServicesResourceApi;
+import com.cloudera.api.swagger.client.ApiClient;
+import com.cloudera.api.swagger.model.ApiConfigList;
+import com.cloudera.api.swagger.model.ApiRole;
+import com.cloudera.api.swagger.model.ApiRoleList;
+import com.cloudera.api.swagger.model.ApiService;
+import com.cloudera.api.swagger.model.ApiServiceConfig;
+import org.apache.knox.gateway.i18n.messages.MessagesFactory;
+import org.apache.knox.gateway.topology.discovery.cm.DiscoveryResponseCache.ServiceResponses;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+import static org.apache.knox.gateway.topology.discovery.cm.ClouderaManagerServiceDiscovery.CM_ROLE_TYPE;
+import static org.apache.knox.gateway.topology.discovery.cm.ClouderaManagerServiceDiscovery.CM_SERVICE_TYPE;
+
+/**
+ * Fetches the service configurations, roles and role configurations of the services of a cluster.
+ * <p>
+ * The requests for the different services, and then for all their roles, are issued concurrently on
+ * the specified executor. The responses for services which have not been invalidated since they were
+ * last fetched are taken from the response cache, if one is specified.
+ *
+ * @since 1.6.0
+ */
+class ServiceConfigurationFetcher {
+
+  private static final ClouderaManagerServiceDiscoveryMessages log =
+                                        MessagesFactory.get(ClouderaManagerServiceDiscoveryMessages.class);
+
+  private static final String VIEW_SUMMARY = "summary";
+  private static final String VIEW_FULL    = "full";
+
+  private final ApiClient client;
+  private final ServicesResourceApi servicesResourceApi;
+  private final RolesResourceApi rolesResourceApi;
+  private final ExecutorService executor;
+  private final DiscoveryResponseCache cache;
+
+  /**
+   * @param client   The client for the ClouderaManager instance.
+   * @param executor The executor on which the requests are issued.
+   * @param cache    The response cache, or null if responses should not be cached.
+   */
+  ServiceConfigurationFetcher(final ApiClient              client,
+                              final ExecutorService        executor,
+                              final DiscoveryResponseCache cache) {
+    this.client = client;
+    this.servicesResourceApi = new ServicesResourceApi(client);
+    this.rolesResourceApi = new RolesResourceApi(client);
+    this.executor = executor;
+    this.cache = cache;
+  }
+
+  /**
+   * @param clusterName The name of the cluster.
+   * @param services    The services of the cluster.
+   *
+   * @return The responses for each of the specified services, keyed by service name.
+   */
+  Map<String, ServiceResponses> fetch(final String clusterName, final List<ApiService> services) {
+    final Map<String, ServiceResponses> responses = new HashMap<>();
+    final long revision = (cache != null) ? cache.getRevision() : 0L;
+
+    final List<ApiService> uncached = new ArrayList<>();
+    for (ApiService service : services) {
+      ServiceResponses cached = (cache != null) ? cache.get(clusterName, service.getName()) : null;
+      if (cached != null) {
+        log.usingCachedServiceConfiguration(service.getName(), clusterName);
+        responses.put(service.getName(), cached);
+      } else {
+        uncached.add(service);
+      }
+    }
+
+    // Fetch the configuration and the roles of every service
+    final List<Callable<ServiceResponses>> serviceRequests = new ArrayList<>();
+    for (ApiService service : uncached) {
+      serviceRequests.add(() -> fetchService(clusterName, service));
+    }
+    final List<ServiceResponses> fetched = invokeAll(serviceRequests);
+
+    // Then fetch the configuration of every role of those services
+    final List<Callable<Void>> roleRequests = new ArrayList<>();
+    for (int i = 0; i < uncached.size(); i++) {
+      final ApiService service = uncached.get(i);
+      final ServiceResponses serviceResponses = fetched.get(i);
+      /* no reason to check role config for CM service */
+      if (serviceResponses != null && serviceResponses.getRoles() != null && !isCMService(service)) {
+        for (ApiRole role : serviceResponses.getRoles().getItems()) {
+          roleRequests.add(() -> {
+            serviceResponses.putRoleConfig(role.getName(),
+                                           getRoleConfig(clusterName, service.getName(), role.getName()));
+            return null;
+          });
+        }
+      }
+    }
+    invokeAll(roleRequests);
+
+    for (int i = 0; i < uncached.size(); i++) {
+      final ApiService service = uncached.get(i);
+      ServiceResponses serviceResponses = fetched.get(i);
+      if (serviceResponses == null) {
+        serviceResponses = new ServiceResponses(null, null);
+      } else if (cache != null && !isCMService(service) && serviceResponses.isComplete()) {
+        cache.put(clusterName, service.getName(), revision, serviceResponses);
+      }
+      responses.put(service.getName(), serviceResponses);
+    }
+
+    return responses;
+  }
+
+  private ServiceResponses fetchService(final String clusterName, final ApiService service) {
+    ApiServiceConfig serviceConfig = null;
+    /* no reason to check service config for CM service */
+    if (!isCMService(service)) {
+      serviceConfig = getServiceConfig(clusterName, service.getName());
+    }
+    return new ServiceResponses(serviceConfig, getRoles(clusterName, service.getName()));
+  }
+
+  private <T> List<T> invokeAll(final List<Callable<T>> requests) {
+    final List<T> results = new ArrayList<>(requests.size());
+    if (!requests.isEmpty()) {
+      try {
+        for (Future<T> future : executor.invokeAll(requests)) {
+          try {
+            results.add(future.get());
+          } catch (ExecutionException e) {
+            results.add(null);
+          }
+        }
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+    }
+    while (results.size() < requests.size()) {
+      results.add(null);
+    }
+    return results;
+  }
+
+  private static boolean isCMService(final ApiService service) {
+    return CM_SERVICE_TYPE.equals(service.getType());
+  }
+
+  private ApiServiceConfig getServiceConfig(final String clusterName, final String serviceName) {
+    ApiServiceConfig serviceConfig = null;
+    try {
+      serviceConfig = servicesResourceApi.readServiceConfig(clusterName, serviceName, VIEW_FULL);
+    } catch (Exception e) {
+      log.failedToAccessServiceConfigs(clusterName, e);
+      DiscoveryApiClientPool.evictOnFailure(client, e);
+    }
+    return serviceConfig;
+  }
+
+  private ApiRoleList getRoles(final String clusterName, final String serviceName) {
+    ApiRoleList roles = null;
+    try {
+      /* Populate roles for CM Service since they are not discoverable */
+      if (CM_SERVICE_TYPE.equalsIgnoreCase(serviceName)) {
+        roles = new ApiRoleList();
+        final ApiRole cmRole = new ApiRole();
+        cmRole.setName(CM_ROLE_TYPE);
+        cmRole.setType(CM_ROLE_TYPE);
+        roles.addItemsItem(cmRole);
+      } else {
+        roles = rolesResourceApi.readRoles(clusterName, serviceName, "", VIEW_SUMMARY);
+      }
+    } catch (Exception e) {
+      log.failedToAccessServiceRoleConfigs(clusterName, e);
+      DiscoveryApiClientPool.evictOnFailure(client, e);
+    }
+    return roles;
+  }
+
+  private ApiConfigList getRoleConfig(final String clusterName, final String serviceName, final String roleName) {
+    ApiConfigList configList = null;
+    try {
+      configList = rolesResourceApi.readRoleConfig(clusterName, roleName, serviceName, VIEW_FULL);
+    } catch (Exception e) {
+      log.failedToAccessServiceRoleConfigs(clusterName, e);
+      DiscoveryApiClientPool.evictOnFailure(client, e);
+    }
+    return configList;
+  }
+}
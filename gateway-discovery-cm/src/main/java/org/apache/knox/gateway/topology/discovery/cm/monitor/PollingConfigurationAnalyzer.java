@@ -40,6 +40,8 @@ import org.apache.knox.gateway.topology.ClusterConfigurationMonitorService;
 import org.apache.knox.gateway.topology.discovery.ServiceDiscoveryConfig;
 import org.apache.knox.gateway.topology.discovery.cm.ClouderaManagerServiceDiscoveryMessages;
 import org.apache.knox.gateway.topology.discovery.cm.DiscoveryApiClient;
+import org.apache.knox.gateway.topology.discovery.cm.DiscoveryApiClientPool;
+import org.apache.knox.gateway.topology.discovery.cm.DiscoveryResponseCache;
 import org.apache.knox.gateway.topology.simple.SimpleDescriptor;
 import org.apache.knox.gateway.topology.simple.SimpleDescriptorFactory;
 
@@ -120,9 +122,6 @@ public class PollingConfigurationAnalyzer implements Runnable {
   // Polling interval in seconds
   private int interval;
 
-  // Cache of ClouderaManager API clients, keyed by discovery address
-  private final Map<String, DiscoveryApiClient> clients = new ConcurrentHashMap<>();
-
   // Timestamp records of the most recent start event query per discovery address
   private Map<String, String> eventQueryTimestamps = new ConcurrentHashMap<>();
 
@@ -194,6 +193,9 @@ public class PollingConfigurationAnalyzer implements Runnable {
 
             // If there are no recent start events, then nothing to do now
             if (!relevantEvents.isEmpty()) {
+              // The discovery responses of the restarted services are no longer current
+              invalidateDiscoveryResponses(address, clusterName, relevantEvents);
+
               // If a change has occurred, notify the listeners
               if (hasConfigChanged(address, clusterName, relevantEvents)) {
                 notifyChangeListener(address, clusterName);
@@ -341,6 +343,28 @@ public class PollingConfigurationAnalyzer implements Runnable {
     }
   }
 
+  /**
+   * Invalidate the cached discovery responses for the services which have been restarted.
+   *
+   * @param address        The address of the ClouderaManager instance.
+   * @param clusterName    The name of the cluster.
+   * @param relevantEvents The start events for the cluster.
+   */
+  private void invalidateDiscoveryResponses(String address, String clusterName, List<StartEvent> relevantEvents) {
+    DiscoveryResponseCache responseCache =
+        getApiClient(configCache.getDiscoveryConfig(address, clusterName)).getResponseCache();
+    for (StartEvent re : relevantEvents) {
+      if (CM_SERVICE_TYPE.equals(re.getServiceType()) || re.getService() == null) {
+        // A cluster restart may affect every service
+        log.invalidatingCachedServiceConfiguration("*", clusterName);
+        responseCache.invalidate(clusterName);
+      } else {
+        log.invalidatingCachedServiceConfiguration(re.getService(), clusterName);
+        responseCache.invalidate(clusterName, re.getService());
+      }
+    }
+  }
+
   /**
    * Notify the registered change listener.
    *
@@ -367,8 +391,7 @@ public class PollingConfigurationAnalyzer implements Runnable {
    * @param discoveryConfig The discovery configuration for interacting with a ClouderaManager instance.
    */
   private DiscoveryApiClient getApiClient(final ServiceDiscoveryConfig discoveryConfig) {
-    return clients.computeIfAbsent(discoveryConfig.getAddress(),
-                                   c -> new DiscoveryApiClient(discoveryConfig, aliasService, keystoreService));
+    return DiscoveryApiClientPool.getClient(discoveryConfig, aliasService, keystoreService);
   }
 
   /**
@@ -449,6 +472,7 @@ public class PollingConfigurationAnalyzer implements Runnable {
       events.addAll(eventsResult.getItems());
     } catch (ApiException e) {
       log.clouderaManagerEventsAPIError(e);
+      DiscoveryApiClientPool.evictOnFailure(client, e);
     }
 
     return events;
@@ -486,6 +510,7 @@ public class PollingConfigurationAnalyzer implements Runnable {
       currentConfig = new ServiceConfigurationModel(svcConfig, roleConfigs);
     } catch (ApiException e) {
       log.clouderaManagerConfigurationAPIError(e);
+      DiscoveryApiClientPool.evictOnFailure(apiClient, e);
     }
     return currentConfig;
   }
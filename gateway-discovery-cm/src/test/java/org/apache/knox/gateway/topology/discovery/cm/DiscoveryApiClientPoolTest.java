@@ -0,0 +1,94 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements. See the NOTICE file distributed with this
+ * work for additional information regarding copyright ownership. The ASF
+ * licenses this file to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.apache.knox.gateway.topology.discovery.cm;
+
+import com.cloudera.api.swagger.client.ApiException;
+import org.apache.knox.gateway.services.security.AliasService;
+import org.apache.knox.gateway.topology.discovery.ServiceDiscoveryConfig;
+import org.easymock.EasyMock;
+import org.junit.Test;
+
+import javax.net.ssl.SSLHandshakeException;
+import java.io.IOException;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+
+public class DiscoveryApiClientPoolTest {
+
+  private static final String PASSWORD_ALIAS = "cm.discovery.password";
+
+  @Test
+  public void testClientIsShared() throws Exception {
+    final ServiceDiscoveryConfig config = createDiscoveryConfig("http://cm-shared:7180");
+    final AliasService aliasService = createAliasService(new AtomicReference<>("password"));
+
+    final DiscoveryApiClient client = DiscoveryApiClientPool.getClient(config, aliasService, null);
+    assertSame(client, DiscoveryApiClientPool.getClient(config, aliasService, null));
+  }
+
+  @Test
+  public void testClientIsReplacedWhenThePasswordAliasChanges() throws Exception {
+    final ServiceDiscoveryConfig config = createDiscoveryConfig("http://cm-rotated:7180");
+    final AtomicReference<String> password = new AtomicReference<>("password");
+    final AliasService aliasService = createAliasService(password);
+
+    final DiscoveryApiClient client = DiscoveryApiClientPool.getClient(config, aliasService, null);
+    password.set("rotated");
+    final DiscoveryApiClient replacement = DiscoveryApiClientPool.getClient(config, aliasService, null);
+    assertNotSame(client, replacement);
+    assertSame(replacement, DiscoveryApiClientPool.getClient(config, aliasService, null));
+  }
+
+  @Test
+  public void testClientIsEvictedOnAuthenticationOrTlsFailure() throws Exception {
+    final ServiceDiscoveryConfig config = createDiscoveryConfig("http://cm-failing:7180");
+    final AliasService aliasService = createAliasService(new AtomicReference<>("password"));
+
+    final DiscoveryApiClient client = DiscoveryApiClientPool.getClient(config, aliasService, null);
+
+    // Other failures do not affect the client
+    DiscoveryApiClientPool.evictOnFailure(client, new ApiException(500, "Internal Server Error"));
+    assertSame(client, DiscoveryApiClientPool.getClient(config, aliasService, null));
+
+    DiscoveryApiClientPool.evictOnFailure(client, new ApiException(401, "Unauthorized"));
+    final DiscoveryApiClient second = DiscoveryApiClientPool.getClient(config, aliasService, null);
+    assertNotSame(client, second);
+
+    DiscoveryApiClientPool.evictOnFailure(second,
+        new ApiException(new IOException(new SSLHandshakeException("PKIX path building failed"))));
+    assertNotSame(second, DiscoveryApiClientPool.getClient(config, aliasService, null));
+  }
+
+  private static ServiceDiscoveryConfig createDiscoveryConfig(String address) {
+    ServiceDiscoveryConfig config = EasyMock.createNiceMock(ServiceDiscoveryConfig.class);
+    EasyMock.expect(config.getAddress()).andReturn(address).anyTimes();
+    EasyMock.expect(config.getUser()).andReturn("admin").anyTimes();
+    EasyMock.expect(config.getPasswordAlias()).andReturn(PASSWORD_ALIAS).anyTimes();
+    EasyMock.replay(config);
+    return config;
+  }
+
+  private static AliasService createAliasService(AtomicReference<String> password) throws Exception {
+    AliasService aliasService = EasyMock.createNiceMock(AliasService.class);
+    EasyMock.expect(aliasService.getPasswordFromAliasForGateway(PASSWORD_ALIAS))
+        .andAnswer(() -> password.get().toCharArray()).anyTimes();
+    EasyMock.replay(aliasService);
+    return aliasService;
+  }
+}
@@ -0,0 +1,130 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements. See the NOTICE file distributed with this
+ * work for additional information regarding copyright ownership. The ASF
+ * licenses this file to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.apache.knox.gateway.topology.discovery.cm;
+
+import com.cloudera.api.swagger.model.ApiConfigList;
+import com.cloudera.api.swagger.model.ApiRole;
+import com.cloudera.api.swagger.model.ApiRoleList;
+import com.cloudera.api.swagger.model.ApiServiceConfig;
+import org.apache.knox.gateway.topology.discovery.cm.DiscoveryResponseCache.ServiceResponses;
+import org.junit.Test;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class DiscoveryResponseCacheTest {
+
+  private static final String CLUSTER = "Cluster 1";
+
+  @Test
+  public void testCachedResponses() {
+    final DiscoveryResponseCache cache = new DiscoveryResponseCache();
+    final ServiceResponses hdfs = createResponses();
+    final ServiceResponses hive = createResponses();
+
+    cache.put(CLUSTER, "hdfs", cache.getRevision(), hdfs);
+    cache.put(CLUSTER, "hive", cache.getRevision(), hive);
+    assertSame(hdfs, cache.get(CLUSTER, "hdfs"));
+    assertSame(hive, cache.get(CLUSTER, "hive"));
+    assertNull(cache.get("Cluster 2", "hdfs"));
+  }
+
+  @Test
+  public void testServiceInvalidation() {
+    final DiscoveryResponseCache cache = new DiscoveryResponseCache();
+    final ServiceResponses hive = createResponses();
+
+    cache.put(CLUSTER, "hdfs", cache.getRevision(), createResponses());
+    cache.put(CLUSTER, "hive", cache.getRevision(), hive);
+
+    cache.invalidate(CLUSTER, "hdfs");
+    assertNull(cache.get(CLUSTER, "hdfs"));
+    assertSame(hive, cache.get(CLUSTER, "hive"));
+  }
+
+  @Test
+  public void testClusterInvalidation() {
+    final DiscoveryResponseCache cache = new DiscoveryResponseCache();
+    final ServiceResponses other = createResponses();
+
+    cache.put(CLUSTER, "hdfs", cache.getRevision(), createResponses());
+    cache.put(CLUSTER, "hive", cache.getRevision(), createResponses());
+    cache.put("Cluster 2", "hdfs", cache.getRevision(), other);
+
+    cache.invalidate(CLUSTER);
+    assertNull(cache.get(CLUSTER, "hdfs"));
+    assertNull(cache.get(CLUSTER, "hive"));
+    assertSame(other, cache.get("Cluster 2", "hdfs"));
+  }
+
+  @Test
+  public void testResponsesFetchedDuringInvalidationAreNotCached() {
+    final DiscoveryResponseCache cache = new DiscoveryResponseCache();
+
+    // The service is restarted while its configuration is being fetched
+    final long revision = cache.getRevision();
+    cache.invalidate(CLUSTER, "hdfs");
+    cache.put(CLUSTER, "hdfs", revision, createResponses());
+    assertNull(cache.get(CLUSTER, "hdfs"));
+
+    final long clusterRevision = cache.getRevision();
+    cache.invalidate(CLUSTER);
+    cache.put(CLUSTER, "hive", clusterRevision, createResponses());
+    assertNull(cache.get(CLUSTER, "hive"));
+
+    // Responses fetched after the invalidation are cached again
+    final ServiceResponses hdfs = createResponses();
+    cache.put(CLUSTER, "hdfs", cache.getRevision(), hdfs);
+    assertSame(hdfs, cache.get(CLUSTER, "hdfs"));
+  }
+
+  @Test
+  public void testResponsesExpire() {
+    final AtomicLong clock = new AtomicLong();
+    final DiscoveryResponseCache cache = new DiscoveryResponseCache(1000L, clock::get);
+    final ServiceResponses hdfs = createResponses();
+
+    cache.put(CLUSTER, "hdfs", cache.getRevision(), hdfs);
+    clock.set(999L);
+    assertSame(hdfs, cache.get(CLUSTER, "hdfs"));
+    clock.set(1000L);
+    assertNull(cache.get(CLUSTER, "hdfs"));
+  }
+
+  @Test
+  public void testCompleteResponses() {
+    final ServiceResponses responses = createResponses();
+    assertFalse(responses.isComplete());
+    responses.putRoleConfig("role-1", new ApiConfigList());
+    assertTrue(responses.isComplete());
+
+    assertFalse(new ServiceResponses(null, new ApiRoleList()).isComplete());
+    assertFalse(new ServiceResponses(new ApiServiceConfig(), null).isComplete());
+  }
+
+  private static ServiceResponses createResponses() {
+    final ApiRoleList roles = new ApiRoleList();
+    final ApiRole role = new ApiRole();
+    role.setName("role-1");
+    roles.addItemsItem(role);
+    return new ServiceResponses(new ApiServiceConfig(), roles);
+  }
+}
@@ -42,8 +42,20 @@ public class Log4jMessageLogger implements MessageLogger {
 
   @Override
   public final void log( final StackTraceElement caller, final MessageLevel messageLevel, final String messageId, final String messageText, final Throwable thrown ) {
+    log( CLASS_NAME, toLocationInfo( caller ), messageLevel, messageText, thrown );
+  }
+
+  /**
+   * Leaves the location to log4j, which only walks the stack when an appender or layout asks for it.
+   */
+  @Override
+  public final void log( final Class<?> callerBoundary, final MessageLevel messageLevel, final String messageId, final String messageText, final Throwable thrown ) {
+    log( callerBoundary.getName(), null, messageLevel, messageText, thrown );
+  }
+
+  private void log( final String fqn, final LocationInfo location, final MessageLevel messageLevel, final String messageText, final Throwable thrown ) {
     LoggingEvent event = new LoggingEvent(
-        /* String fqnOfCategoryClass */ CLASS_NAME,
+        /* String fqnOfCategoryClass */ fqn,
         /* Category logger */ logger,
         /* long timeStamp */ System.currentTimeMillis(),
         /* Level level */ toLevel( messageLevel ),
@@ -51,7 +63,7 @@ public class Log4jMessageLogger implements MessageLogger {
         /* String threadName */ Thread.currentThread().getName(),
         /* ThrowableInformation throwable */ toThrownInformation( thrown ),
         /* String ndc */ null,
-        /* LocationInfo info */ toLocationInfo( caller ),
+        /* LocationInfo info */ location,
         /* java.util.Map properties */ null );
     logger.callAppenders( event );
   }
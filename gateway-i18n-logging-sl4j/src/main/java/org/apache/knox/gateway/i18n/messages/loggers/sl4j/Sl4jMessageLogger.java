@@ -42,6 +42,12 @@ public class Sl4jMessageLogger implements MessageLogger {
     }
   }
 
+  @Override
+  public void log( final Class<?> callerBoundary, final MessageLevel messageLevel, final String messageId, final String messageText, final Throwable thrown ) {
+    // slf4j finds the location itself, there is no point in looking up the caller here
+    log( (StackTraceElement)null, messageLevel, messageId, messageText, thrown );
+  }
+
   @Override
   public void log( final StackTraceElement caller, final MessageLevel messageLevel, final String messageId, final String messageText, final Throwable thrown ) {
     switch( messageLevel ) {
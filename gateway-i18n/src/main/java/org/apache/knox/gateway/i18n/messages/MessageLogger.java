@@ -23,4 +23,13 @@ public interface MessageLogger {
 
   void log( StackTraceElement caller, MessageLevel messageLevel, String messageId, String messageText, Throwable thrown );
 
+  /**
+   * Logs a message on behalf of whoever called into the given class.
+   * Loggers that can resolve the caller lazily should override this to avoid walking the stack
+   * for messages that never end up needing the location.
+   */
+  default void log( Class<?> callerBoundary, MessageLevel messageLevel, String messageId, String messageText, Throwable thrown ) {
+    log( MessagesInvoker.findCaller( callerBoundary ), messageLevel, messageId, messageText, thrown );
+  }
+
 }
@@ -23,13 +23,19 @@ import java.lang.annotation.Annotation;
 import java.lang.reflect.InvocationHandler;
 import java.lang.reflect.Method;
 import java.text.MessageFormat;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 public class MessagesInvoker extends ResourcesInvoker implements InvocationHandler {
 
   private String codes;
   private MessageLogger logger;
   private String bundle;
+  // Everything about a method that does not depend on the arguments, computed once per method
+  private final Map<Method, MessageMethod> methods = new ConcurrentHashMap<>();
 
   public MessagesInvoker( Class<?> clazz, MessageLoggerFactory loggers ) {
     super( clazz );
@@ -37,28 +43,50 @@ public class MessagesInvoker extends ResourcesInvoker implements InvocationHandl
     codes = calcCodePattern( clazz, anno );
     bundle = calcBundleName( clazz, anno );
     logger = getLogger( clazz, anno, loggers );
+    for( Method method : clazz.getMethods() ) {
+      methods.put( method, new MessageMethod( method ) );
+    }
   }
 
   @Override
   public Object invoke( final Object proxy, final Method method, final Object[] args ) throws Throwable {
     String message = null;
-    MessageLevel level = getLevel( method );
-    if( logger.isLoggable( level ) ) {
-      message = getText( method, args );
-      String code = getCode( method );
-      Throwable throwable = findLoggableThrowable( logger, method, args );
-      // Supposedly this Throwable way is faster than the Thread way.
-      // From looking at the JRE code it looks this is probably the case.
-      // The second version ends up calling the first version after getting the current thread
-      // and then checking that it is being called from the current thread.
-      //TODO: Should probably only do this if the logger is at debug or finer to make sure there isn't a performance impact during production usage.
-      StackTraceElement caller = new Throwable().getStackTrace()[2];
-      // StackTraceElement caller = Thread.currentThread().getStackTrace()[3];
-      logger.log( caller, level, code, message, throwable );
+    MessageMethod messageMethod = getMessageMethod( method );
+    if( logger.isLoggable( messageMethod.level ) ) {
+      message = messageMethod.format( args );
+      Throwable throwable = messageMethod.findLoggableThrowable( logger, args );
+      // The caller is whoever called the proxy, the logger only looks it up if it needs it
+      logger.log( proxy.getClass(), messageMethod.level, messageMethod.code, message, throwable );
     }
     return message;
   }
 
+  private MessageMethod getMessageMethod( final Method method ) {
+    MessageMethod messageMethod = methods.get( method );
+    if( messageMethod == null ) {
+      messageMethod = methods.computeIfAbsent( method, MessageMethod::new );
+    }
+    return messageMethod;
+  }
+
+  /**
+   * Finds the frame that called into the given class, skipping any frames of that class itself.
+   *
+   * @param boundary the class whose caller is wanted
+   * @return the calling frame, or <code>null</code> if the class is not on the current stack
+   */
+  static StackTraceElement findCaller( final Class<?> boundary ) {
+    final String name = boundary.getName();
+    // Supposedly this Throwable way is faster than the Thread way.
+    final StackTraceElement[] stack = new Throwable().getStackTrace();
+    for( int i = stack.length - 1; i > 0; i-- ) {
+      if( name.equals( stack[ i - 1 ].getClassName() ) ) {
+        return stack[ i ];
+      }
+    }
+    return null;
+  }
+
   private String getCode( final Method method ) {
     String code = null;
     Message anno = method.getAnnotation( Message.class );
@@ -82,23 +110,6 @@ public class MessagesInvoker extends ResourcesInvoker implements InvocationHandl
     return null;
   }
 
-  private static Throwable findLoggableThrowable( final MessageLogger logger, final Method method, final Object[] args ) {
-    Throwable throwable = null;
-    if( args != null ) {
-      for( int i=0; i<args.length; i++ ) {
-        Object arg = args[i];
-        if( arg instanceof Throwable ) {
-          StackTrace anno = getStackTraceAnno( method, i );
-          if( anno != null && logger.isLoggable( anno.level() ) ) {
-            throwable = (Throwable)arg;
-            break;
-          }
-        }
-      }
-    }
-    return throwable;
-  }
-
   @Override
   protected String getAnnotationPattern(final Method method ) {
     String pattern = null;
@@ -170,4 +181,64 @@ public class MessagesInvoker extends ResourcesInvoker implements InvocationHandl
     return "MessageInvoker["+bundle+"]";
   }
 
+  private final class MessageMethod {
+    private final Method method;
+    private final MessageLevel level;
+    private final String code;
+    // The parameters annotated with @StackTrace and the level each one is logged at
+    private final int[] stackTraceParams;
+    private final MessageLevel[] stackTraceLevels;
+    private volatile LocalizedFormat format;
+
+    MessageMethod( final Method method ) {
+      this.method = method;
+      this.level = getLevel( method );
+      this.code = getCode( method );
+      final List<Integer> params = new ArrayList<>();
+      final List<MessageLevel> levels = new ArrayList<>();
+      for( int i = 0; i < method.getParameterCount(); i++ ) {
+        final StackTrace anno = getStackTraceAnno( method, i );
+        if( anno != null ) {
+          params.add( i );
+          levels.add( anno.level() );
+        }
+      }
+      this.stackTraceParams = params.stream().mapToInt( Integer::intValue ).toArray();
+      this.stackTraceLevels = levels.toArray( new MessageLevel[ 0 ] );
+    }
+
+    String format( final Object[] args ) {
+      final Locale locale = Locale.getDefault();
+      LocalizedFormat localized = format;
+      if( localized == null || !localized.locale.equals( locale ) ) {
+        localized = new LocalizedFormat( locale, new MessageFormat( getPattern( method ), Locale.ROOT ) );
+        format = localized;
+      }
+      // MessageFormat is not thread safe, copying the parsed pattern is cheaper than parsing it again
+      return ( (MessageFormat)localized.format.clone() ).format( args );
+    }
+
+    Throwable findLoggableThrowable( final MessageLogger logger, final Object[] args ) {
+      if( args != null ) {
+        for( int i = 0; i < stackTraceParams.length; i++ ) {
+          final Object arg = args[ stackTraceParams[ i ] ];
+          if( arg instanceof Throwable && logger.isLoggable( stackTraceLevels[ i ] ) ) {
+            return (Throwable)arg;
+          }
+        }
+      }
+      return null;
+    }
+  }
+
+  private static final class LocalizedFormat {
+    private final Locale locale;
+    private final MessageFormat format;
+
+    LocalizedFormat( final Locale locale, final MessageFormat format ) {
+      this.locale = locale;
+      this.format = format;
+    }
+  }
+
 }
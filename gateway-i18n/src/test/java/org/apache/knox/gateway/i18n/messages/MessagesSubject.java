@@ -21,4 +21,7 @@ package org.apache.knox.gateway.i18n.messages;
 public interface MessagesSubject {
   @Message(level= MessageLevel.ERROR, code=3, text="p0={0}" )
   void withFullAnnotationAndParameter( int x );
+
+  @Message(level= MessageLevel.WARN, code=4, text="p0={0} p1={1}" )
+  String withStackTrace( String x, @StackTrace( level = MessageLevel.WARN ) Exception e );
 }
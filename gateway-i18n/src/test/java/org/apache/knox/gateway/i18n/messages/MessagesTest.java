@@ -45,4 +45,29 @@ public class MessagesTest {
     assertThat( record.getCaller().getClassName(), is( this.getClass().getName() ) );
     assertThat( record.getCaller().getMethodName(), is( "testFirst" ) );
   }
+
+  @Test
+  public void testRepeatedMessagesKeepCodeTextAndCaller() {
+    MessagesSubject log = MessagesFactory.get( MessagesSubject.class );
+    TestMessageLogger logger = (TestMessageLogger)TestMessageLoggerFactory.getFactory().getLogger( "some.logger.name" );
+    logger.records.clear();
+    try {
+      Exception e = new Exception( "boom" );
+      for( int i = 0; i < 3; i++ ) {
+        assertThat( log.withStackTrace( "x" + i, e ), is( "p0=x" + i + " p1=java.lang.Exception: boom" ) );
+      }
+      assertThat( logger.records.size(), equalTo( 3 ) );
+      for( int i = 0; i < 3; i++ ) {
+        TestMessageRecord record = logger.records.get( i );
+        assertThat( record.getLevel(), is( MessageLevel.WARN ) );
+        assertThat( record.getId(), is( "ID:4" ) );
+        assertThat( record.getMessage(), is( "p0=x" + i + " p1=java.lang.Exception: boom" ) );
+        assertThat( record.getThrowable(), is( (Throwable)e ) );
+        assertThat( record.getCaller().getClassName(), is( this.getClass().getName() ) );
+        assertThat( record.getCaller().getMethodName(), is( "testRepeatedMessagesKeepCodeTextAndCaller" ) );
+      }
+    } finally {
+      logger.records.clear();
+    }
+  }
 }
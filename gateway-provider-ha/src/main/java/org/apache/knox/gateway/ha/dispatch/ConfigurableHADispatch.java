@@ -110,6 +110,11 @@ public class ConfigurableHADispatch extends ConfigurableDispatch {
     this.haProvider = haProvider;
   }
 
+  @Override
+  protected boolean isRequestReplayRequired() {
+    return haProvider != null && maxFailoverAttempts > 0;
+  }
+
   @Override
   protected void executeRequestWrapper(HttpUriRequest outboundRequest,
           HttpServletRequest inboundRequest, HttpServletResponse outboundResponse)
@@ -139,7 +144,7 @@ public class ConfigurableHADispatch extends ConfigurableDispatch {
       IOException {
     HttpResponse inboundResponse = null;
     try {
-      inboundResponse = executeOutboundRequest(outboundRequest);
+      inboundResponse = executeTrackedOutboundRequest(outboundRequest);
       writeOutboundResponse(outboundRequest, inboundRequest, outboundResponse, inboundResponse);
     } catch ( IOException e ) {
       LOG.errorConnectingToServer(outboundRequest.getURI().toString(), e);
@@ -147,6 +152,26 @@ public class ConfigurableHADispatch extends ConfigurableDispatch {
     }
   }
 
+  /**
+   * Executes the outbound request while reporting the in-flight request and its latency to the HA provider.
+   */
+  private HttpResponse executeTrackedOutboundRequest(HttpUriRequest outboundRequest) throws IOException {
+    if ( haProvider == null ) {
+      return executeOutboundRequest(outboundRequest);
+    }
+    String url = outboundRequest.getURI().toString();
+    haProvider.markRequestStarted(getServiceRole(), url);
+    long start = System.nanoTime();
+    boolean succeeded = false;
+    try {
+      HttpResponse response = executeOutboundRequest(outboundRequest);
+      succeeded = true;
+      return response;
+    } finally {
+      haProvider.markRequestCompleted(getServiceRole(), url, System.nanoTime() - start, succeeded);
+    }
+  }
+
   private Optional<URI> setBackendfromHaCookie(HttpUriRequest outboundRequest, HttpServletRequest inboundRequest) {
       if (stickySessionsEnabled && inboundRequest.getCookies() != null) {
           for (Cookie cookie : inboundRequest.getCookies()) {
@@ -213,6 +238,10 @@ public class ConfigurableHADispatch extends ConfigurableDispatch {
       return;
     }
     haProvider.markFailedURL(getServiceRole(), outboundRequest.getURI().toString());
+    if ( !isRequestReplayable(outboundRequest) ) {
+      LOG.requestNotReplayable(getServiceRole());
+      throw new IOException(exception);
+    }
     AtomicInteger counter = (AtomicInteger) inboundRequest.getAttribute(FAILOVER_COUNTER_ATTRIBUTE);
     if ( counter == null ) {
       counter = new AtomicInteger(0);
@@ -44,4 +44,7 @@ public interface HaDispatchMessages {
 
   @Message(level = MessageLevel.ERROR, text = "noFallback flag is turned on for sticky session so aborting request without retrying")
   void noFallbackError();
+
+  @Message(level = MessageLevel.ERROR, text = "Request body for service {0} exceeded the replay buffer quota so aborting request without retrying")
+  void requestNotReplayable(String service);
 }
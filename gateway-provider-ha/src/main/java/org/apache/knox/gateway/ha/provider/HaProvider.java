@@ -79,4 +79,22 @@ public interface HaProvider {
    * @param serviceName the name of the service
    */
   List<String> getURLs(String serviceName);
+
+  /**
+   * Records that a request is being dispatched to the URL of the service.
+   *
+   * @param serviceName the name of the service
+   * @param url         the URL the request is dispatched to
+   */
+  void markRequestStarted(String serviceName, String url);
+
+  /**
+   * Records the outcome of a request dispatched to the URL of the service.
+   *
+   * @param serviceName  the name of the service
+   * @param url          the URL the request was dispatched to
+   * @param elapsedNanos the time spent waiting for the backend response
+   * @param succeeded    whether a response was received from the backend
+   */
+  void markRequestCompleted(String serviceName, String url, long elapsedNanos, boolean succeeded);
 }
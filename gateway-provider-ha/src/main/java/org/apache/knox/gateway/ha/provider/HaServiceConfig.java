@@ -57,4 +57,16 @@ public interface HaServiceConfig {
   boolean isNoFallbackEnabled();
 
   void setNoFallbackEnabled(boolean noFallbackEnabled);
+
+  String getUrlSelection();
+
+  void setUrlSelection(String urlSelection);
+
+  String getHealthCheckPath();
+
+  void setHealthCheckPath(String healthCheckPath);
+
+  int getHealthCheckInterval();
+
+  void setHealthCheckInterval(int healthCheckInterval);
 }
@@ -17,11 +17,13 @@
  */
 package org.apache.knox.gateway.ha.provider;
 
+import com.codahale.metrics.MetricRegistry;
 import org.apache.knox.gateway.ha.provider.impl.DefaultHaProvider;
 import org.apache.knox.gateway.ha.provider.impl.HaDescriptorManager;
 import org.apache.knox.gateway.services.ServiceType;
 import org.apache.knox.gateway.services.GatewayServices;
 import org.apache.knox.gateway.services.registry.ServiceRegistry;
+import org.apache.knox.gateway.services.security.KeystoreService;
 
 import javax.servlet.ServletContext;
 import javax.servlet.ServletContextEvent;
@@ -38,6 +40,8 @@ public class HaServletContextListener implements ServletContextListener {
    public static final String DESCRIPTOR_DEFAULT_FILE_NAME = "ha.xml";
    public static final String DESCRIPTOR_DEFAULT_LOCATION = "/WEB-INF/" + DESCRIPTOR_DEFAULT_FILE_NAME;
 
+   private static final String METRICS_REGISTRY_ATTRIBUTE = "com.codahale.metrics.servlets.MetricsServlet.registry";
+
    @Override
    public void contextInitialized(ServletContextEvent event) {
       HaDescriptor descriptor;
@@ -53,6 +57,10 @@ public class HaServletContextListener implements ServletContextListener {
 
    @Override
    public void contextDestroyed(ServletContextEvent event) {
+      HaProvider provider = getHaProvider(event.getServletContext());
+      if (provider instanceof DefaultHaProvider) {
+         ((DefaultHaProvider) provider).close();
+      }
       event.getServletContext().removeAttribute(PROVIDER_ATTRIBUTE_NAME);
    }
 
@@ -64,7 +72,13 @@ public class HaServletContextListener implements ServletContextListener {
       GatewayServices services = (GatewayServices) servletContext.getAttribute(GatewayServices.GATEWAY_SERVICES_ATTRIBUTE);
       String clusterName = (String) servletContext.getAttribute(GatewayServices.GATEWAY_CLUSTER_ATTRIBUTE);
       ServiceRegistry serviceRegistry = services.getService(ServiceType.SERVICE_REGISTRY_SERVICE);
-      HaProvider provider = new DefaultHaProvider(descriptor);
+      MetricRegistry metrics = null;
+      if (servletContext.getAttribute(METRICS_REGISTRY_ATTRIBUTE) instanceof MetricRegistry) {
+         metrics = (MetricRegistry) servletContext.getAttribute(METRICS_REGISTRY_ATTRIBUTE);
+      }
+      KeystoreService keystoreService = services.getService(ServiceType.KEYSTORE_SERVICE);
+      HaProvider provider = new DefaultHaProvider(descriptor, metrics,
+          MetricRegistry.name("ha", clusterName == null ? "default" : clusterName), keystoreService);
       List<String> serviceNames = descriptor.getEnabledServiceNames();
       for (String serviceName : serviceNames) {
          provider.addHaService(serviceName, serviceRegistry.lookupServiceURLs(clusterName, serviceName));
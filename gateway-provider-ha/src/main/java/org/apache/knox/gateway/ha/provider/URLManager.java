@@ -35,4 +35,25 @@ public interface URLManager {
   void markFailed(String url);
 
   void makeNextActiveURLAvailable();
+
+  /**
+   * Notifies the manager that a request is about to be dispatched to the given URL.
+   *
+   * @param url the URL the request is dispatched to
+   */
+  default void markRequestStarted(String url) {
+    //no-op
+  }
+
+  /**
+   * Notifies the manager that a request previously reported through {@link #markRequestStarted(String)}
+   * has completed.
+   *
+   * @param url          the URL the request was dispatched to
+   * @param elapsedNanos the time spent waiting for the backend response
+   * @param succeeded    whether a response was received from the backend
+   */
+  default void markRequestCompleted(String url, long elapsedNanos, boolean succeeded) {
+    //no-op
+  }
 }
@@ -23,6 +23,8 @@ import java.util.ArrayList;
 import java.util.List;
 import java.util.concurrent.ConcurrentLinkedQueue;
 
+import javax.net.ssl.SSLContext;
+
 import org.apache.knox.gateway.config.GatewayConfig;
 import org.apache.knox.gateway.dispatch.KnoxSpnegoAuthSchemeFactory;
 import org.apache.knox.gateway.ha.provider.HaServiceConfig;
@@ -38,6 +40,7 @@ import org.apache.http.client.config.RequestConfig;
 import org.apache.http.client.methods.HttpGet;
 import org.apache.http.config.Registry;
 import org.apache.http.config.RegistryBuilder;
+import org.apache.http.conn.ssl.SSLConnectionSocketFactory;
 import org.apache.http.impl.client.BasicCredentialsProvider;
 import org.apache.http.impl.client.CloseableHttpClient;
 import org.apache.http.impl.client.HttpClientBuilder;
@@ -199,15 +202,27 @@ public abstract class BaseZookeeperURLManager implements URLManager {
    *
    * @return Apache HttpClient
    */
-  private CloseableHttpClient buildHttpClient() {
-    CloseableHttpClient client;
+  static CloseableHttpClient buildHttpClient() {
+    return buildHttpClient(null);
+  }
 
+  /**
+   * Construct an Apache HttpClient with suitable timeout and authentication.
+   *
+   * @param sslContext the SSLContext trusting the backends, e.g. one built from the gateway truststore;
+   *                   the default SSLContext is used when null
+   * @return Apache HttpClient
+   */
+  static CloseableHttpClient buildHttpClient(SSLContext sslContext) {
     // Construct a HttpClient with short term timeout
     RequestConfig.Builder requestBuilder = RequestConfig.custom()
                                                         .setConnectTimeout(TIMEOUT)
                                                         .setSocketTimeout(TIMEOUT)
                                                         .setConnectionRequestTimeout(TIMEOUT);
 
+    HttpClientBuilder clientBuilder = HttpClientBuilder.create()
+                                                       .setDefaultRequestConfig(requestBuilder.build());
+
     // If Kerberos is enabled, allow for challenge/response transparent to client
     if (Boolean.getBoolean(GatewayConfig.HADOOP_KERBEROS_SECURED)) {
       CredentialsProvider credentialsProvider = new BasicCredentialsProvider();
@@ -218,18 +233,15 @@ public abstract class BaseZookeeperURLManager implements URLManager {
                                            .register(AuthSchemes.SPNEGO, new KnoxSpnegoAuthSchemeFactory(true))
                                            .build();
 
-      client = HttpClientBuilder.create()
-                                .setDefaultRequestConfig(requestBuilder.build())
-                                .setDefaultAuthSchemeRegistry(authSchemeRegistry)
-                                .setDefaultCredentialsProvider(credentialsProvider)
-                                .build();
-    } else {
-      client = HttpClientBuilder.create()
-                                .setDefaultRequestConfig(requestBuilder.build())
-                                .build();
+      clientBuilder.setDefaultAuthSchemeRegistry(authSchemeRegistry)
+                   .setDefaultCredentialsProvider(credentialsProvider);
+    }
+
+    if (sslContext != null) {
+      clientBuilder.setSSLSocketFactory(new SSLConnectionSocketFactory(sslContext));
     }
 
-    return client;
+    return clientBuilder.build();
   }
 
   private static class NullCredentials implements Credentials {
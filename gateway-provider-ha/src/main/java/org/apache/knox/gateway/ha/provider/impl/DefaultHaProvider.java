@@ -17,6 +17,7 @@
  */
 package org.apache.knox.gateway.ha.provider.impl;
 
+import com.codahale.metrics.MetricRegistry;
 import org.apache.knox.gateway.ha.provider.HaDescriptor;
 import org.apache.knox.gateway.ha.provider.HaProvider;
 import org.apache.knox.gateway.ha.provider.HaServiceConfig;
@@ -24,6 +25,7 @@ import org.apache.knox.gateway.ha.provider.URLManager;
 import org.apache.knox.gateway.ha.provider.URLManagerLoader;
 import org.apache.knox.gateway.ha.provider.impl.i18n.HaMessages;
 import org.apache.knox.gateway.i18n.messages.MessagesFactory;
+import org.apache.knox.gateway.services.security.KeystoreService;
 
 import java.util.Collections;
 import java.util.List;
@@ -37,11 +39,32 @@ public class DefaultHaProvider implements HaProvider {
 
   private ConcurrentHashMap<String, URLManager> haServices;
 
+  private final MetricRegistry metrics;
+
+  private final String metricsPrefix;
+
+  private final KeystoreService keystoreService;
+
   public DefaultHaProvider(HaDescriptor descriptor) {
+    this(descriptor, null, null, null);
+  }
+
+  /**
+   * @param descriptor      the HA descriptor of the topology
+   * @param metrics         registry receiving the per-URL metrics of health aware URL managers (optional)
+   * @param metricsPrefix   prefix of the metric names, usually derived from the topology name
+   * @param keystoreService provides the gateway truststore used by the health checks of health aware URL
+   *                        managers (optional)
+   */
+  public DefaultHaProvider(HaDescriptor descriptor, MetricRegistry metrics, String metricsPrefix,
+                           KeystoreService keystoreService) {
     if ( descriptor == null ) {
       throw new IllegalArgumentException("Descriptor can not be null");
     }
     this.descriptor = descriptor;
+    this.metrics = metrics;
+    this.metricsPrefix = metricsPrefix == null ? "ha" : metricsPrefix;
+    this.keystoreService = keystoreService;
     haServices = new ConcurrentHashMap<>();
   }
 
@@ -54,6 +77,16 @@ public class DefaultHaProvider implements HaProvider {
   public void addHaService(String serviceName, List<String> urls) {
     HaServiceConfig haServiceConfig = descriptor.getServiceConfig(serviceName);
     URLManager manager = URLManagerLoader.loadURLManager(haServiceConfig);
+    URLManager previous = haServices.remove(serviceName);
+    if (previous instanceof HealthAwareURLManager) {
+      ((HealthAwareURLManager) previous).close();
+    }
+    if (manager instanceof HealthAwareURLManager) {
+      ((HealthAwareURLManager) manager).setKeystoreService(keystoreService);
+      if (metrics != null) {
+        ((HealthAwareURLManager) manager).setMetricRegistry(metrics, MetricRegistry.name(metricsPrefix, serviceName));
+      }
+    }
     manager.setURLs(urls);
     haServices.put(serviceName, manager);
   }
@@ -110,4 +143,31 @@ public class DefaultHaProvider implements HaProvider {
       return Collections.emptyList();
     }
   }
+
+  @Override
+  public void markRequestStarted(String serviceName, String url) {
+    URLManager manager = haServices.get(serviceName);
+    if ( manager != null ) {
+      manager.markRequestStarted(url);
+    }
+  }
+
+  @Override
+  public void markRequestCompleted(String serviceName, String url, long elapsedNanos, boolean succeeded) {
+    URLManager manager = haServices.get(serviceName);
+    if ( manager != null ) {
+      manager.markRequestCompleted(url, elapsedNanos, succeeded);
+    }
+  }
+
+  /**
+   * Stops the background health checks of the URL managers owned by this provider.
+   */
+  public void close() {
+    for (URLManager manager : haServices.values()) {
+      if (manager instanceof HealthAwareURLManager) {
+        ((HealthAwareURLManager) manager).close();
+      }
+    }
+  }
 }
@@ -37,6 +37,12 @@ public class DefaultHaServiceConfig implements HaServiceConfig, HaServiceConfigC
 
   private String stickySessionCookieName = DEFAULT_STICKY_SESSION_COOKIE_NAME;
 
+  private String urlSelection = DEFAULT_URL_SELECTION;
+
+  private String healthCheckPath;
+
+  private int healthCheckInterval = DEFAULT_HEALTH_CHECK_INTERVAL;
+
   private String zookeeperEnsemble;
 
   private String zookeeperNamespace;
@@ -144,4 +150,34 @@ public class DefaultHaServiceConfig implements HaServiceConfig, HaServiceConfigC
   public void setNoFallbackEnabled(boolean noFallbackEnabled) {
     isNoFallbackEnabled = noFallbackEnabled;
   }
+
+  @Override
+  public String getUrlSelection() {
+    return urlSelection;
+  }
+
+  @Override
+  public void setUrlSelection(String urlSelection) {
+    this.urlSelection = urlSelection;
+  }
+
+  @Override
+  public String getHealthCheckPath() {
+    return healthCheckPath;
+  }
+
+  @Override
+  public void setHealthCheckPath(String healthCheckPath) {
+    this.healthCheckPath = healthCheckPath;
+  }
+
+  @Override
+  public int getHealthCheckInterval() {
+    return healthCheckInterval;
+  }
+
+  @Override
+  public void setHealthCheckInterval(int healthCheckInterval) {
+    this.healthCheckInterval = healthCheckInterval;
+  }
 }
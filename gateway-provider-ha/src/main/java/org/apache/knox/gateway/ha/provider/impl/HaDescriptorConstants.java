@@ -51,4 +51,10 @@ public interface HaDescriptorConstants {
    String ENABLE_NO_FALLBACK = "noFallback";
 
    String STICKY_SESSION_COOKIE_NAME = "stickySessionCookieName";
+
+   String URL_SELECTION = "urlSelection";
+
+   String HEALTH_CHECK_PATH = "healthCheckPath";
+
+   String HEALTH_CHECK_INTERVAL = "healthCheckInterval";
 }
@@ -40,8 +40,12 @@ public abstract class HaDescriptorFactory implements HaServiceConfigConstants {
       String loadBalancingEnabled = configMap.get(CONFIG_LOAD_BALANCING_ENABLED);
       String stickySessionCookieName = configMap.get(STICKY_SESSION_COOKIE_NAME);
       String noFallbackEnabled = configMap.get(CONFIG_NO_FALLBACK_ENABLED);
+      String urlSelection = configMap.get(CONFIG_URL_SELECTION);
+      String healthCheckPath = configMap.get(CONFIG_HEALTH_CHECK_PATH);
+      String healthCheckInterval = configMap.get(CONFIG_HEALTH_CHECK_INTERVAL);
       return createServiceConfig(serviceName, enabledValue, maxFailoverAttempts, failoverSleep,
-          zookeeperEnsemble, zookeeperNamespace, loadBalancingEnabled, stickySessionEnabled, stickySessionCookieName, noFallbackEnabled);
+          zookeeperEnsemble, zookeeperNamespace, loadBalancingEnabled, stickySessionEnabled, stickySessionCookieName, noFallbackEnabled,
+          urlSelection, healthCheckPath, healthCheckInterval);
    }
 
    public static HaServiceConfig createServiceConfig(String serviceName, String enabledValue,
@@ -50,6 +54,19 @@ public abstract class HaDescriptorFactory implements HaServiceConfigConstants {
                                                      String loadBalancingEnabledValue, String stickySessionsEnabledValue,
                                                      String stickySessionCookieNameValue,
                                                      String noFallbackEnabledValue) {
+      return createServiceConfig(serviceName, enabledValue, maxFailoverAttemptsValue, failoverSleepValue,
+          zookeeperEnsemble, zookeeperNamespace, loadBalancingEnabledValue, stickySessionsEnabledValue,
+          stickySessionCookieNameValue, noFallbackEnabledValue, null, null, null);
+   }
+
+   public static HaServiceConfig createServiceConfig(String serviceName, String enabledValue,
+                                                     String maxFailoverAttemptsValue, String failoverSleepValue,
+                                                     String zookeeperEnsemble, String zookeeperNamespace,
+                                                     String loadBalancingEnabledValue, String stickySessionsEnabledValue,
+                                                     String stickySessionCookieNameValue,
+                                                     String noFallbackEnabledValue,
+                                                     String urlSelectionValue, String healthCheckPathValue,
+                                                     String healthCheckIntervalValue) {
       boolean enabled = DEFAULT_ENABLED;
       int maxFailoverAttempts = DEFAULT_MAX_FAILOVER_ATTEMPTS;
       int failoverSleep = DEFAULT_FAILOVER_SLEEP;
@@ -57,6 +74,9 @@ public abstract class HaDescriptorFactory implements HaServiceConfigConstants {
       boolean loadBalancingEnabled = DEFAULT_LOAD_BALANCING_ENABLED;
       boolean noFallbackEnabled = DEFAULT_NO_FALLBACK_ENABLED;
       String stickySessionCookieName = DEFAULT_STICKY_SESSION_COOKIE_NAME;
+      String urlSelection = DEFAULT_URL_SELECTION;
+      String healthCheckPath = null;
+      int healthCheckInterval = DEFAULT_HEALTH_CHECK_INTERVAL;
       if (enabledValue != null && !enabledValue.trim().isEmpty()) {
          enabled = Boolean.parseBoolean(enabledValue);
       }
@@ -78,6 +98,15 @@ public abstract class HaDescriptorFactory implements HaServiceConfigConstants {
       if (noFallbackEnabledValue != null && !noFallbackEnabledValue.trim().isEmpty()) {
          noFallbackEnabled = Boolean.parseBoolean(noFallbackEnabledValue);
       }
+      if (urlSelectionValue != null && !urlSelectionValue.trim().isEmpty()) {
+         urlSelection = urlSelectionValue.trim();
+      }
+      if (healthCheckPathValue != null && !healthCheckPathValue.trim().isEmpty()) {
+         healthCheckPath = healthCheckPathValue.trim();
+      }
+      if (healthCheckIntervalValue != null && !healthCheckIntervalValue.trim().isEmpty()) {
+         healthCheckInterval = Integer.parseInt(healthCheckIntervalValue);
+      }
 
       DefaultHaServiceConfig serviceConfig = new DefaultHaServiceConfig(serviceName);
       serviceConfig.setEnabled(enabled);
@@ -89,6 +118,9 @@ public abstract class HaDescriptorFactory implements HaServiceConfigConstants {
       serviceConfig.setLoadBalancingEnabled(loadBalancingEnabled);
       serviceConfig.setStickySessionCookieName(stickySessionCookieName);
       serviceConfig.setNoFallbackEnabled(noFallbackEnabled);
+      serviceConfig.setUrlSelection(urlSelection);
+      serviceConfig.setHealthCheckPath(healthCheckPath);
+      serviceConfig.setHealthCheckInterval(healthCheckInterval);
       return serviceConfig;
    }
 
@@ -66,6 +66,13 @@ public class HaDescriptorManager implements HaDescriptorConstants {
                if (config.getStickySessionCookieName() != null) {
                  serviceElement.setAttribute(STICKY_SESSION_COOKIE_NAME, config.getStickySessionCookieName());
                }
+               if (config.getUrlSelection() != null) {
+                 serviceElement.setAttribute(URL_SELECTION, config.getUrlSelection());
+               }
+               if (config.getHealthCheckPath() != null) {
+                 serviceElement.setAttribute(HEALTH_CHECK_PATH, config.getHealthCheckPath());
+               }
+               serviceElement.setAttribute(HEALTH_CHECK_INTERVAL, Integer.toString(config.getHealthCheckInterval()));
                root.appendChild(serviceElement);
             }
          }
@@ -95,7 +102,10 @@ public class HaDescriptorManager implements HaDescriptorConstants {
                      element.getAttribute(ENABLE_LOAD_BALANCING),
                      element.getAttribute(ENABLE_STICKY_SESSIONS),
                      element.getAttribute(STICKY_SESSION_COOKIE_NAME),
-                     element.getAttribute(ENABLE_NO_FALLBACK));
+                     element.getAttribute(ENABLE_NO_FALLBACK),
+                     element.getAttribute(URL_SELECTION),
+                     element.getAttribute(HEALTH_CHECK_PATH),
+                     element.getAttribute(HEALTH_CHECK_INTERVAL));
                descriptor.addServiceConfig(config);
             }
          }
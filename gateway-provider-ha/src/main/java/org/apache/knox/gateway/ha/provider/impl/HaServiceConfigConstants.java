@@ -40,6 +40,18 @@ public interface HaServiceConfigConstants {
 
    String STICKY_SESSION_COOKIE_NAME = "stickySessionCookieName";
 
+   String CONFIG_URL_SELECTION = "urlSelection";
+
+   String CONFIG_HEALTH_CHECK_PATH = "healthCheckPath";
+
+   String CONFIG_HEALTH_CHECK_INTERVAL = "healthCheckInterval";
+
+   String URL_SELECTION_ORDERED = "ordered";
+
+   String URL_SELECTION_LEAST_OUTSTANDING = "leastOutstanding";
+
+   String URL_SELECTION_POWER_OF_TWO_CHOICES = "powerOfTwoChoices";
+
    int DEFAULT_MAX_FAILOVER_ATTEMPTS = 3;
 
    int DEFAULT_FAILOVER_SLEEP = 1000;
@@ -53,4 +65,8 @@ public interface HaServiceConfigConstants {
    boolean DEFAULT_NO_FALLBACK_ENABLED = false;
 
    String DEFAULT_STICKY_SESSION_COOKIE_NAME = "KNOX_BACKEND";
+
+   String DEFAULT_URL_SELECTION = URL_SELECTION_ORDERED;
+
+   int DEFAULT_HEALTH_CHECK_INTERVAL = 10000;
 }
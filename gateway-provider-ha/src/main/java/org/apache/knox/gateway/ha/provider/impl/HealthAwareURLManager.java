@@ -0,0 +1,576 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * <p/>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p/>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.knox.gateway.ha.provider.impl;
+
+import com.codahale.metrics.Counter;
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.Timer;
+import org.apache.http.client.ResponseHandler;
+import org.apache.http.client.methods.HttpGet;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.util.EntityUtils;
+import org.apache.knox.gateway.ha.provider.HaServiceConfig;
+import org.apache.knox.gateway.ha.provider.URLManager;
+import org.apache.knox.gateway.ha.provider.impl.i18n.HaMessages;
+import org.apache.knox.gateway.i18n.messages.MessagesFactory;
+import org.apache.knox.gateway.services.security.KeystoreService;
+import org.apache.knox.gateway.util.TruststoreSSLContextUtils;
+
+import java.io.IOException;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.LongSupplier;
+import java.util.function.Predicate;
+
+/**
+ * A URL manager for statically configured service URLs that tracks the health and load of every URL.
+ * <p>
+ * The URLs and the currently active one are kept in an immutable snapshot that is swapped atomically,
+ * so looking up the active URL never takes a lock. A URL that fails is ejected for an exponentially
+ * growing period and the next active URL is picked from the remaining ones according to the configured
+ * {@link HaServiceConfigConstants#CONFIG_URL_SELECTION} strategy:
+ * <ul>
+ *   <li>{@code ordered} - the next available URL in configuration order</li>
+ *   <li>{@code leastOutstanding} - the available URL with the fewest in-flight requests</li>
+ *   <li>{@code powerOfTwoChoices} - the less loaded of two randomly chosen available URLs</li>
+ * </ul>
+ * When a {@link HaServiceConfigConstants#CONFIG_HEALTH_CHECK_PATH} is configured every URL is probed in the
+ * background, so failed URLs are restored (and unhealthy ones ejected) without involving the request path.
+ */
+public class HealthAwareURLManager implements URLManager {
+
+  private static final HaMessages LOG = MessagesFactory.get(HaMessages.class);
+
+  static final long BASE_EJECTION_MILLIS = 1000L;
+
+  static final long MAX_EJECTION_MILLIS = 300000L;
+
+  /**
+   * Returns the status code of a health check response. The body is not needed, so a response
+   * without one (e.g. 204 No Content) is as healthy as any other 2xx response.
+   */
+  static final ResponseHandler<Integer> HEALTH_CHECK_RESPONSE_HANDLER = response -> {
+    EntityUtils.consumeQuietly(response.getEntity());
+    return response.getStatusLine().getStatusCode();
+  };
+
+  private final AtomicReference<Snapshot> snapshot = new AtomicReference<>(Snapshot.EMPTY);
+
+  private final LongSupplier clock;
+
+  private final Predicate<String> healthCheck;
+
+  private volatile String urlSelection = HaServiceConfigConstants.DEFAULT_URL_SELECTION;
+
+  private volatile String healthCheckPath;
+
+  private volatile MetricRegistry metrics;
+
+  private volatile String metricsPrefix;
+
+  private ScheduledFuture<?> healthCheckTask;
+
+  private CloseableHttpClient httpClient;
+
+  private KeystoreService keystoreService;
+
+  public HealthAwareURLManager() {
+    this(System::currentTimeMillis, null);
+  }
+
+  /**
+   * @param clock       source of the current time in milliseconds
+   * @param healthCheck probe deciding whether a URL is healthy; when null an HTTP GET of the health check path is used
+   */
+  HealthAwareURLManager(LongSupplier clock, Predicate<String> healthCheck) {
+    this.clock = clock;
+    this.healthCheck = healthCheck == null ? this::ping : healthCheck;
+  }
+
+  @Override
+  public boolean supportsConfig(HaServiceConfig config) {
+    String zookeeperEnsemble = config.getZookeeperEnsemble();
+    if (zookeeperEnsemble != null && !zookeeperEnsemble.trim().isEmpty()) {
+      return false;
+    }
+    String selection = config.getUrlSelection();
+    return (selection != null && !HaServiceConfigConstants.URL_SELECTION_ORDERED.equalsIgnoreCase(selection))
+        || (config.getHealthCheckPath() != null && !config.getHealthCheckPath().trim().isEmpty());
+  }
+
+  @Override
+  public synchronized void setConfig(HaServiceConfig config) {
+    if (config.getUrlSelection() != null) {
+      urlSelection = config.getUrlSelection();
+    }
+    healthCheckPath = config.getHealthCheckPath();
+    if (healthCheckTask != null) {
+      healthCheckTask.cancel(false);
+      healthCheckTask = null;
+    }
+    int interval = config.getHealthCheckInterval();
+    if (healthCheckPath != null && interval > 0) {
+      healthCheckTask = HealthCheckExecutor.INSTANCE.scheduleWithFixedDelay(
+          this::checkHealth, interval, interval, TimeUnit.MILLISECONDS);
+    }
+  }
+
+  /**
+   * Publishes per URL latency, error and outstanding request metrics under the given prefix.
+   *
+   * @param metrics registry receiving the metrics
+   * @param prefix  prefix of the metric names
+   */
+  public void setMetricRegistry(MetricRegistry metrics, String prefix) {
+    this.metricsPrefix = prefix;
+    this.metrics = metrics;
+    for (Endpoint endpoint : snapshot.get().endpoints) {
+      registerMetrics(endpoint);
+    }
+  }
+
+  /**
+   * Makes the health checks trust the backends the same way dispatches do, using the gateway truststore
+   * when one is configured.
+   *
+   * @param keystoreService provides the gateway truststore, may be null
+   */
+  public synchronized void setKeystoreService(KeystoreService keystoreService) {
+    this.keystoreService = keystoreService;
+    closeHttpClient();
+  }
+
+  @Override
+  public String getActiveURL() {
+    Endpoint active = snapshot.get().active();
+    return active == null ? null : active.url;
+  }
+
+  @Override
+  public void setActiveURL(String url) {
+    Snapshot current;
+    do {
+      current = snapshot.get();
+      int index = current.indexOf(url);
+      if (index < 0 || index == current.active) {
+        return;
+      }
+    } while (!snapshot.compareAndSet(current, current.withActive(current.indexOf(url))));
+  }
+
+  @Override
+  public List<String> getURLs() {
+    List<Endpoint> endpoints = snapshot.get().endpoints;
+    List<String> result = new ArrayList<>(endpoints.size());
+    for (Endpoint endpoint : endpoints) {
+      result.add(endpoint.url);
+    }
+    return result;
+  }
+
+  @Override
+  public void setURLs(List<String> urls) {
+    if (urls == null || urls.isEmpty()) {
+      return;
+    }
+    Snapshot previous = snapshot.get();
+    List<Endpoint> endpoints = new ArrayList<>(urls.size());
+    for (String url : urls) {
+      int index = previous.indexOf(url);
+      Endpoint endpoint = index < 0 ? new Endpoint(url) : previous.endpoints.get(index);
+      if (index < 0) {
+        registerMetrics(endpoint);
+      }
+      endpoints.add(endpoint);
+    }
+    snapshot.set(new Snapshot(Collections.unmodifiableList(endpoints), 0));
+    for (Endpoint endpoint : previous.endpoints) {
+      if (!endpoints.contains(endpoint)) {
+        unregisterMetrics(endpoint);
+      }
+    }
+  }
+
+  @Override
+  public void markFailed(String url) {
+    Endpoint failed = snapshot.get().find(url);
+    if (failed == null) {
+      return;
+    }
+    if (failed.errors != null) {
+      failed.errors.inc();
+    }
+    eject(failed, clock.getAsLong());
+    String next = failover(failed);
+    if (next != null) {
+      LOG.markedFailedUrl(failed.url, next);
+    }
+  }
+
+  @Override
+  public void makeNextActiveURLAvailable() {
+    long now = clock.getAsLong();
+    Snapshot current;
+    Snapshot next;
+    do {
+      current = snapshot.get();
+      if (current.endpoints.isEmpty()) {
+        return;
+      }
+      next = current.withActive(select(current, now));
+    } while (next != current && !snapshot.compareAndSet(current, next));
+  }
+
+  @Override
+  public void markRequestStarted(String url) {
+    Endpoint endpoint = snapshot.get().find(url);
+    if (endpoint != null) {
+      endpoint.outstanding.incrementAndGet();
+    }
+  }
+
+  @Override
+  public void markRequestCompleted(String url, long elapsedNanos, boolean succeeded) {
+    Endpoint endpoint = snapshot.get().find(url);
+    if (endpoint == null) {
+      return;
+    }
+    endpoint.outstanding.updateAndGet(count -> count > 0 ? count - 1 : 0);
+    if (succeeded) {
+      endpoint.recordLatency(elapsedNanos);
+      if (endpoint.latency != null) {
+        endpoint.latency.update(elapsedNanos, TimeUnit.NANOSECONDS);
+      }
+      restore(endpoint);
+    }
+  }
+
+  /**
+   * Stops the background health checks and removes the metrics of this manager.
+   */
+  public synchronized void close() {
+    if (healthCheckTask != null) {
+      healthCheckTask.cancel(false);
+      healthCheckTask = null;
+    }
+    closeHttpClient();
+    for (Endpoint endpoint : snapshot.get().endpoints) {
+      unregisterMetrics(endpoint);
+    }
+  }
+
+  private synchronized void closeHttpClient() {
+    if (httpClient != null) {
+      try {
+        httpClient.close();
+      } catch (IOException e) {
+        // Ignore errors
+      }
+      httpClient = null;
+    }
+  }
+
+  /**
+   * Probes every URL once, ejecting the ones that fail and restoring the ones that recovered.
+   */
+  void checkHealth() {
+    try {
+      for (Endpoint endpoint : snapshot.get().endpoints) {
+        if (healthCheck.test(endpoint.url)) {
+          restore(endpoint);
+        } else if (endpoint.isAvailable(clock.getAsLong())) {
+          if (endpoint.errors != null) {
+            endpoint.errors.inc();
+          }
+          eject(endpoint, clock.getAsLong());
+        }
+      }
+      Endpoint active = snapshot.get().active();
+      if (active != null && !active.isAvailable(clock.getAsLong())) {
+        failover(active);
+      }
+    } catch (RuntimeException e) {
+      // Keep the scheduled check alive, the next run will probe again
+      LOG.healthCheckFailed(String.valueOf(healthCheckPath), e.toString());
+    }
+  }
+
+  private boolean ping(String url) {
+    String path = healthCheckPath;
+    if (path == null) {
+      return true;
+    }
+    try {
+      HttpGet get = new HttpGet(url + path);
+      int status = getHttpClient().execute(get, HEALTH_CHECK_RESPONSE_HANDLER);
+      if (isHealthy(status)) {
+        return true;
+      }
+      LOG.healthCheckFailed(url, "HTTP status " + status);
+      return false;
+    } catch (IOException | IllegalArgumentException e) {
+      LOG.healthCheckFailed(url, e.toString());
+      return false;
+    }
+  }
+
+  static boolean isHealthy(int status) {
+    return status >= 200 && status < 300;
+  }
+
+  private synchronized CloseableHttpClient getHttpClient() {
+    if (httpClient == null) {
+      // Trust the backends the same way the dispatch does
+      httpClient = BaseZookeeperURLManager.buildHttpClient(TruststoreSSLContextUtils.getTruststoreSSLContext(keystoreService));
+    }
+    return httpClient;
+  }
+
+  /**
+   * Moves the active URL away from the given endpoint if it is still the active one.
+   *
+   * @return the new active URL, or null if the endpoint was no longer active
+   */
+  private String failover(Endpoint failed) {
+    long now = clock.getAsLong();
+    Snapshot current;
+    Snapshot next;
+    do {
+      current = snapshot.get();
+      if (current.active() != failed) {
+        return null;
+      }
+      next = current.withActive(select(current, now));
+    } while (!snapshot.compareAndSet(current, next));
+    return next.active().url;
+  }
+
+  private void eject(Endpoint endpoint, long now) {
+    int failures = endpoint.failures.incrementAndGet();
+    long ejection = Math.min(BASE_EJECTION_MILLIS << Math.min(failures - 1, 20), MAX_EJECTION_MILLIS);
+    endpoint.ejectedUntil = now + ejection;
+    LOG.ejectedUrl(endpoint.url, ejection, failures);
+  }
+
+  private void restore(Endpoint endpoint) {
+    if (endpoint.failures.getAndSet(0) > 0) {
+      endpoint.ejectedUntil = 0L;
+      LOG.restoredUrl(endpoint.url);
+    }
+  }
+
+  /**
+   * Picks the index of the next active endpoint. Ejected endpoints are only considered when every
+   * endpoint is ejected, in which case the one whose ejection ends first is returned.
+   */
+  int select(Snapshot current, long now) {
+    List<Endpoint> endpoints = current.endpoints;
+    int size = endpoints.size();
+    int available = 0;
+    for (Endpoint endpoint : endpoints) {
+      if (endpoint.isAvailable(now)) {
+        available++;
+      }
+    }
+    if (available == 0) {
+      int soonest = 0;
+      for (int i = 1; i < size; i++) {
+        if (endpoints.get(i).ejectedUntil < endpoints.get(soonest).ejectedUntil) {
+          soonest = i;
+        }
+      }
+      return soonest;
+    }
+
+    if (HaServiceConfigConstants.URL_SELECTION_LEAST_OUTSTANDING.equalsIgnoreCase(urlSelection)) {
+      int best = -1;
+      for (int i = 0; i < size; i++) {
+        Endpoint endpoint = endpoints.get(i);
+        if (endpoint.isAvailable(now) && (best < 0 || endpoint.isLessLoadedThan(endpoints.get(best)))) {
+          best = i;
+        }
+      }
+      return best;
+    }
+
+    if (HaServiceConfigConstants.URL_SELECTION_POWER_OF_TWO_CHOICES.equalsIgnoreCase(urlSelection) && available > 1) {
+      ThreadLocalRandom random = ThreadLocalRandom.current();
+      int firstRank = random.nextInt(available);
+      int secondRank = random.nextInt(available - 1);
+      if (secondRank >= firstRank) {
+        secondRank++;
+      }
+      int first = nthAvailable(endpoints, now, firstRank);
+      int second = nthAvailable(endpoints, now, secondRank);
+      return endpoints.get(second).isLessLoadedThan(endpoints.get(first)) ? second : first;
+    }
+
+    // Ordered: the next available endpoint after the active one
+    for (int step = 1; step <= size; step++) {
+      int candidate = (Math.max(current.active, 0) + step) % size;
+      if (endpoints.get(candidate).isAvailable(now)) {
+        return candidate;
+      }
+    }
+    return Math.max(current.active, 0);
+  }
+
+  private static int nthAvailable(List<Endpoint> endpoints, long now, int n) {
+    int seen = 0;
+    for (int i = 0; i < endpoints.size(); i++) {
+      if (endpoints.get(i).isAvailable(now) && seen++ == n) {
+        return i;
+      }
+    }
+    return -1;
+  }
+
+  private void registerMetrics(Endpoint endpoint) {
+    MetricRegistry registry = metrics;
+    if (registry == null) {
+      return;
+    }
+    String name = MetricRegistry.name(metricsPrefix, endpoint.key);
+    endpoint.latency = registry.timer(MetricRegistry.name(name, "latency"));
+    endpoint.errors = registry.counter(MetricRegistry.name(name, "errors"));
+    registry.remove(MetricRegistry.name(name, "outstanding"));
+    registry.register(MetricRegistry.name(name, "outstanding"), (Gauge<Integer>) endpoint.outstanding::get);
+  }
+
+  private void unregisterMetrics(Endpoint endpoint) {
+    MetricRegistry registry = metrics;
+    if (registry == null) {
+      return;
+    }
+    String name = MetricRegistry.name(metricsPrefix, endpoint.key);
+    registry.remove(MetricRegistry.name(name, "latency"));
+    registry.remove(MetricRegistry.name(name, "errors"));
+    registry.remove(MetricRegistry.name(name, "outstanding"));
+  }
+
+  static String hostPort(String url) {
+    try {
+      URI uri = URI.create(url);
+      return uri.getHost() + ":" + uri.getPort();
+    } catch (IllegalArgumentException e) {
+      return url;
+    }
+  }
+
+  /**
+   * A service URL together with its load and health state. The state is updated in place with atomic
+   * operations, membership and order only change by replacing the enclosing {@link Snapshot}.
+   */
+  static final class Endpoint {
+    final String url;
+    final String key;
+    final AtomicInteger outstanding = new AtomicInteger();
+    final AtomicInteger failures = new AtomicInteger();
+    final AtomicLong averageLatencyNanos = new AtomicLong();
+    volatile long ejectedUntil;
+    volatile Timer latency;
+    volatile Counter errors;
+
+    Endpoint(String url) {
+      this.url = url;
+      this.key = hostPort(url);
+    }
+
+    boolean isAvailable(long now) {
+      return ejectedUntil <= now;
+    }
+
+    boolean isLessLoadedThan(Endpoint other) {
+      int load = outstanding.get();
+      int otherLoad = other.outstanding.get();
+      return load < otherLoad || (load == otherLoad && averageLatencyNanos.get() < other.averageLatencyNanos.get());
+    }
+
+    void recordLatency(long elapsedNanos) {
+      // Exponentially weighted moving average with a weight of 1/8 for the new sample
+      averageLatencyNanos.updateAndGet(average -> average == 0 ? elapsedNanos : average + ((elapsedNanos - average) >> 3));
+    }
+  }
+
+  static final class Snapshot {
+    static final Snapshot EMPTY = new Snapshot(Collections.emptyList(), -1);
+
+    final List<Endpoint> endpoints;
+    final int active;
+
+    Snapshot(List<Endpoint> endpoints, int active) {
+      this.endpoints = endpoints;
+      this.active = active;
+    }
+
+    Endpoint active() {
+      return active < 0 ? null : endpoints.get(active);
+    }
+
+    Snapshot withActive(int index) {
+      return index == active ? this : new Snapshot(endpoints, index);
+    }
+
+    int indexOf(String url) {
+      for (int i = 0; i < endpoints.size(); i++) {
+        if (endpoints.get(i).url.equals(url)) {
+          return i;
+        }
+      }
+      return -1;
+    }
+
+    Endpoint find(String url) {
+      if (url == null) {
+        return null;
+      }
+      int index = indexOf(url);
+      if (index >= 0) {
+        return endpoints.get(index);
+      }
+      String key = hostPort(url);
+      for (Endpoint endpoint : endpoints) {
+        if (endpoint.key.equals(key)) {
+          return endpoint;
+        }
+      }
+      return null;
+    }
+  }
+
+  private static final class HealthCheckExecutor {
+    private static final AtomicInteger THREADS = new AtomicInteger();
+
+    static final ScheduledExecutorService INSTANCE = Executors.newScheduledThreadPool(2, runnable -> {
+      Thread thread = new Thread(runnable, "ha-health-check-" + THREADS.incrementAndGet());
+      thread.setDaemon(true);
+      return thread;
+    });
+  }
+}
@@ -42,4 +42,13 @@ public interface HaMessages {
   @Message(level = MessageLevel.ERROR, text = "Failed to get Zookeeper URLs : {0}")
   void failedToGetZookeeperUrls(Exception e);
 
+  @Message(level = MessageLevel.INFO, text = "Ejecting URL {0} for {1} ms after {2} consecutive failures")
+  void ejectedUrl(String url, long ejectionMillis, int failures);
+
+  @Message(level = MessageLevel.INFO, text = "URL {0} passed its health check and is available again")
+  void restoredUrl(String url);
+
+  @Message(level = MessageLevel.DEBUG, text = "Health check of URL {0} failed: {1}")
+  void healthCheckFailed(String url, String reason);
+
 }
@@ -0,0 +1,181 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.knox.gateway.ha.dispatch;
+
+import org.apache.http.HttpEntityEnclosingRequest;
+import org.apache.http.HttpResponse;
+import org.apache.http.client.methods.HttpUriRequest;
+import org.apache.http.impl.client.HttpClientBuilder;
+import org.apache.knox.gateway.config.GatewayConfig;
+import org.apache.knox.gateway.dispatch.ReplayBufferPool;
+import org.apache.knox.gateway.ha.provider.HaDescriptor;
+import org.apache.knox.gateway.ha.provider.HaProvider;
+import org.apache.knox.gateway.ha.provider.impl.DefaultHaProvider;
+import org.apache.knox.gateway.ha.provider.impl.HaDescriptorFactory;
+import org.easymock.EasyMock;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import javax.servlet.AsyncContext;
+import javax.servlet.ReadListener;
+import javax.servlet.ServletContext;
+import javax.servlet.ServletInputStream;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+public class AsyncHaDispatchTest {
+
+  private static final int HEAP_BUFFER_SIZE = 16 * 1024;
+
+  @Rule
+  public final TemporaryFolder tempFolder = new TemporaryFolder();
+
+  /*
+   * The request thread returns as soon as the dispatch is queued. The recorded body, which
+   * is larger than the heap buffer and therefore partly spilled to disk, has to stay available
+   * to the dispatch executor for the first attempt and for the replay after the failover.
+   */
+  @Test
+  public void testRequestBodyIsReleasedWhenAsyncDispatchCompletes() throws Exception {
+    String serviceName = "OOZIE";
+    HaDescriptor descriptor = HaDescriptorFactory.createDescriptor();
+    descriptor.addServiceConfig(HaDescriptorFactory.createServiceConfig(serviceName, "true", "1", "0", null, null, null, null, null, null));
+    HaProvider provider = new DefaultHaProvider(descriptor);
+    URI uri1 = new URI( "http://unreachable-host-1.invalid" );
+    URI uri2 = new URI( "http://unreachable-host-2.invalid" );
+    ArrayList<String> urlList = new ArrayList<>();
+    urlList.add(uri1.toString());
+    urlList.add(uri2.toString());
+    provider.addHaService(serviceName, urlList);
+
+    GatewayConfig config = EasyMock.createNiceMock(GatewayConfig.class);
+    EasyMock.expect(config.isDispatchReplayEnabled()).andReturn(true).anyTimes();
+    EasyMock.expect(config.getDispatchReplayHeapBufferSize()).andReturn(HEAP_BUFFER_SIZE).anyTimes();
+    EasyMock.expect(config.getDispatchReplayHeapQuota()).andReturn(1024L * 1024L).anyTimes();
+    EasyMock.expect(config.getDispatchReplayDiskQuota()).andReturn(16L * 1024L * 1024L).anyTimes();
+    EasyMock.expect(config.getGatewayDataDir()).andReturn(tempFolder.getRoot().getAbsolutePath()).anyTimes();
+
+    ServletContext servletContext = EasyMock.createNiceMock(ServletContext.class);
+    EasyMock.expect(servletContext.getAttribute(GatewayConfig.GATEWAY_CONFIG_ATTRIBUTE)).andReturn(config).anyTimes();
+
+    final CountDownLatch completed = new CountDownLatch(1);
+    AsyncContext asyncContext = EasyMock.createNiceMock(AsyncContext.class);
+    asyncContext.complete();
+    EasyMock.expectLastCall().andAnswer(() -> {
+      completed.countDown();
+      return null;
+    });
+
+    byte[] body = new byte[8 * HEAP_BUFFER_SIZE];
+    new Random().nextBytes(body);
+    final ByteArrayInputStream bodyStream = new ByteArrayInputStream(body);
+    ServletInputStream inputStream = new ServletInputStream() {
+      @Override
+      public int read() {
+        return bodyStream.read();
+      }
+
+      @Override
+      public int read(byte[] buffer, int offset, int length) {
+        return bodyStream.read(buffer, offset, length);
+      }
+
+      @Override
+      public boolean isFinished() {
+        return bodyStream.available() == 0;
+      }
+
+      @Override
+      public boolean isReady() {
+        return true;
+      }
+
+      @Override
+      public void setReadListener(ReadListener readListener) {
+      }
+    };
+
+    final Map<Object, Object> attributes = Collections.synchronizedMap(new HashMap<>());
+    HttpServletResponse outboundResponse = EasyMock.createNiceMock(HttpServletResponse.class);
+    HttpServletRequest inboundRequest = EasyMock.createNiceMock(HttpServletRequest.class);
+    EasyMock.expect(inboundRequest.getServletContext()).andReturn(servletContext).anyTimes();
+    EasyMock.expect(inboundRequest.getInputStream()).andReturn(inputStream).anyTimes();
+    EasyMock.expect(inboundRequest.getContentLength()).andReturn(body.length).anyTimes();
+    EasyMock.expect(inboundRequest.getHeaderNames()).andReturn(Collections.emptyEnumeration()).anyTimes();
+    EasyMock.expect(inboundRequest.getRequestURL()).andAnswer(() -> new StringBuffer(uri2.toString())).anyTimes();
+    EasyMock.expect(inboundRequest.isAsyncSupported()).andReturn(true).anyTimes();
+    EasyMock.expect(inboundRequest.isAsyncStarted()).andReturn(false).anyTimes();
+    EasyMock.expect(inboundRequest.startAsync(inboundRequest, outboundResponse)).andReturn(asyncContext).once();
+    EasyMock.expect(inboundRequest.getAttribute(EasyMock.anyString()))
+        .andAnswer(() -> attributes.get(EasyMock.getCurrentArguments()[0])).anyTimes();
+    inboundRequest.setAttribute(EasyMock.anyString(), EasyMock.anyObject());
+    EasyMock.expectLastCall().andAnswer(() -> {
+      attributes.put(EasyMock.getCurrentArguments()[0], EasyMock.getCurrentArguments()[1]);
+      return null;
+    }).anyTimes();
+    EasyMock.replay(config, servletContext, asyncContext, inboundRequest, outboundResponse);
+
+    final CountDownLatch requestThreadReturned = new CountDownLatch(1);
+    final List<byte[]> sentBodies = Collections.synchronizedList(new ArrayList<>());
+    AsyncHaDispatch dispatch = new AsyncHaDispatch() {
+      @Override
+      protected HttpResponse executeOutboundRequest(HttpUriRequest outboundRequest) throws IOException {
+        try {
+          Assert.assertTrue(requestThreadReturned.await(10, TimeUnit.SECONDS));
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+          throw new IOException(e);
+        }
+        ByteArrayOutputStream sent = new ByteArrayOutputStream();
+        ((HttpEntityEnclosingRequest) outboundRequest).getEntity().writeTo(sent);
+        sentBodies.add(sent.toByteArray());
+        throw new IOException(outboundRequest.getURI().getHost());
+      }
+    };
+    dispatch.setHttpClient(HttpClientBuilder.create().build());
+    dispatch.setHaProvider(provider);
+    dispatch.setServiceRole(serviceName);
+    dispatch.init();
+
+    dispatch.doPost(uri1, inboundRequest, outboundResponse);
+    requestThreadReturned.countDown();
+
+    Assert.assertTrue(completed.await(10, TimeUnit.SECONDS));
+    Assert.assertEquals(2, sentBodies.size());
+    Assert.assertArrayEquals(body, sentBodies.get(0));
+    Assert.assertArrayEquals(body, sentBodies.get(1));
+
+    ReplayBufferPool pool = ReplayBufferPool.getInstance(config);
+    Assert.assertEquals(0L, pool.getHeapBytesInUse());
+    Assert.assertEquals(0L, pool.getDiskBytesInUse());
+  }
+}
@@ -0,0 +1,191 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.knox.gateway.ha.provider.impl;
+
+import org.apache.http.HttpResponse;
+import org.apache.http.HttpStatus;
+import org.apache.http.HttpVersion;
+import org.apache.http.entity.StringEntity;
+import org.apache.http.message.BasicHttpResponse;
+import org.apache.knox.gateway.ha.provider.HaServiceConfig;
+import org.apache.knox.gateway.ha.provider.URLManager;
+import org.apache.knox.gateway.ha.provider.URLManagerLoader;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class HealthAwareURLManagerTest {
+
+   private static final String URL1 = "http://host1:8080";
+   private static final String URL2 = "http://host2:8080";
+   private static final String URL3 = "http://host3:8080";
+
+   @Test
+   public void testFailedURLIsEjectedWithBackoff() {
+      AtomicLong clock = new AtomicLong(1000L);
+      HealthAwareURLManager manager = new HealthAwareURLManager(clock::get, url -> true);
+      manager.setURLs(Arrays.asList(URL1, URL2));
+      assertEquals(URL1, manager.getActiveURL());
+
+      manager.markFailed(URL1 + "/path?op=GET");
+      assertEquals(URL2, manager.getActiveURL());
+      // Rotation skips the ejected URL
+      manager.makeNextActiveURLAvailable();
+      assertEquals(URL2, manager.getActiveURL());
+
+      clock.addAndGet(HealthAwareURLManager.BASE_EJECTION_MILLIS);
+      manager.makeNextActiveURLAvailable();
+      assertEquals(URL1, manager.getActiveURL());
+
+      // A second consecutive failure doubles the ejection time
+      manager.markFailed(URL1);
+      assertEquals(URL2, manager.getActiveURL());
+      clock.addAndGet(HealthAwareURLManager.BASE_EJECTION_MILLIS);
+      manager.makeNextActiveURLAvailable();
+      assertEquals(URL2, manager.getActiveURL());
+      clock.addAndGet(HealthAwareURLManager.BASE_EJECTION_MILLIS);
+      manager.makeNextActiveURLAvailable();
+      assertEquals(URL1, manager.getActiveURL());
+   }
+
+   @Test
+   public void testAllURLsFailed() {
+      AtomicLong clock = new AtomicLong(1000L);
+      HealthAwareURLManager manager = new HealthAwareURLManager(clock::get, url -> true);
+      manager.setURLs(Arrays.asList(URL1, URL2));
+      manager.markFailed(URL1);
+      manager.markFailed(URL2);
+      // The URL whose ejection ends first is used rather than none at all
+      assertEquals(URL1, manager.getActiveURL());
+      assertEquals(Arrays.asList(URL1, URL2), manager.getURLs());
+   }
+
+   @Test
+   public void testLeastOutstandingSelection() {
+      HealthAwareURLManager manager = new HealthAwareURLManager(() -> 0L, url -> true);
+      manager.setConfig(config(HaServiceConfigConstants.URL_SELECTION_LEAST_OUTSTANDING, null));
+      manager.setURLs(Arrays.asList(URL1, URL2, URL3));
+      manager.markRequestStarted(URL1 + "/a");
+      manager.markRequestStarted(URL1 + "/b");
+      manager.markRequestStarted(URL2 + "/c");
+      manager.makeNextActiveURLAvailable();
+      assertEquals(URL3, manager.getActiveURL());
+
+      manager.markRequestStarted(URL3);
+      manager.markRequestStarted(URL3);
+      manager.markRequestCompleted(URL1 + "/a", 1000L, true);
+      manager.markRequestCompleted(URL1 + "/b", 1000L, true);
+      manager.makeNextActiveURLAvailable();
+      assertEquals(URL1, manager.getActiveURL());
+   }
+
+   @Test
+   public void testPowerOfTwoChoicesSkipsEjectedURLs() {
+      HealthAwareURLManager manager = new HealthAwareURLManager(() -> 0L, url -> true);
+      manager.setConfig(config(HaServiceConfigConstants.URL_SELECTION_POWER_OF_TWO_CHOICES, null));
+      manager.setURLs(Arrays.asList(URL1, URL2, URL3));
+      manager.markFailed(URL2);
+      Set<String> selected = new HashSet<>();
+      for (int i = 0; i < 200; i++) {
+         manager.makeNextActiveURLAvailable();
+         selected.add(manager.getActiveURL());
+      }
+      assertEquals(new HashSet<>(Arrays.asList(URL1, URL3)), selected);
+   }
+
+   @Test
+   public void testHealthCheckEjectsAndRestores() {
+      AtomicLong clock = new AtomicLong(1000L);
+      Set<String> down = new HashSet<>();
+      HealthAwareURLManager manager = new HealthAwareURLManager(clock::get, url -> !down.contains(url));
+      manager.setURLs(Arrays.asList(URL1, URL2));
+
+      down.add(URL1);
+      manager.checkHealth();
+      assertEquals(URL2, manager.getActiveURL());
+
+      down.clear();
+      manager.checkHealth();
+      manager.makeNextActiveURLAvailable();
+      assertEquals(URL1, manager.getActiveURL());
+   }
+
+   @Test
+   public void testURLManagerLoading() {
+      HaServiceConfig config = config(HaServiceConfigConstants.URL_SELECTION_LEAST_OUTSTANDING, null);
+      URLManager manager = URLManagerLoader.loadURLManager(config);
+      assertTrue(manager instanceof HealthAwareURLManager);
+
+      config = config(null, null);
+      assertFalse(URLManagerLoader.loadURLManager(config) instanceof HealthAwareURLManager);
+
+      config = config(null, null);
+      config.setZookeeperEnsemble("host1:2181");
+      config.setUrlSelection(HaServiceConfigConstants.URL_SELECTION_LEAST_OUTSTANDING);
+      assertFalse(new HealthAwareURLManager().supportsConfig(config));
+   }
+
+   @Test
+   public void testConfigParsing() {
+      HaServiceConfig config = HaDescriptorFactory.createServiceConfig("SERVICE",
+          "enabled=true;urlSelection=powerOfTwoChoices;healthCheckPath=/ping;healthCheckInterval=2000");
+      assertEquals(HaServiceConfigConstants.URL_SELECTION_POWER_OF_TWO_CHOICES, config.getUrlSelection());
+      assertEquals("/ping", config.getHealthCheckPath());
+      assertEquals(2000, config.getHealthCheckInterval());
+
+      List<String> urls = Arrays.asList(URL1, URL2);
+      HealthAwareURLManager manager = new HealthAwareURLManager();
+      assertTrue(manager.supportsConfig(config));
+      manager.setURLs(urls);
+      assertEquals(urls, manager.getURLs());
+      manager.close();
+   }
+
+   @Test
+   public void testAny2xxResponseIsHealthy() throws Exception {
+      // Health endpoints commonly answer without a body
+      assertTrue(HealthAwareURLManager.isHealthy(checkStatus(HttpStatus.SC_NO_CONTENT, null)));
+      assertTrue(HealthAwareURLManager.isHealthy(checkStatus(HttpStatus.SC_OK, "")));
+      assertTrue(HealthAwareURLManager.isHealthy(checkStatus(HttpStatus.SC_OK, "OK")));
+      assertFalse(HealthAwareURLManager.isHealthy(checkStatus(HttpStatus.SC_MOVED_TEMPORARILY, null)));
+      assertFalse(HealthAwareURLManager.isHealthy(checkStatus(HttpStatus.SC_SERVICE_UNAVAILABLE, "down")));
+   }
+
+   private static int checkStatus(int status, String body) throws Exception {
+      HttpResponse response = new BasicHttpResponse(HttpVersion.HTTP_1_1, status, null);
+      if (body != null) {
+         response.setEntity(new StringEntity(body));
+      }
+      return HealthAwareURLManager.HEALTH_CHECK_RESPONSE_HANDLER.handleResponse(response);
+   }
+
+   private static HaServiceConfig config(String urlSelection, String healthCheckPath) {
+      HaServiceConfig config = new DefaultHaServiceConfig("SERVICE");
+      config.setUrlSelection(urlSelection);
+      config.setHealthCheckPath(healthCheckPath);
+      return config;
+   }
+}
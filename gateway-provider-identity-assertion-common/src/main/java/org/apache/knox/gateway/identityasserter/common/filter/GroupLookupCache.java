@@ -0,0 +1,204 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.knox.gateway.identityasserter.common.filter;
+
+import com.codahale.metrics.Counter;
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.Timer;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import com.github.benmanes.caffeine.cache.LoadingCache;
+import org.apache.knox.gateway.services.GatewayServices;
+
+import javax.servlet.FilterConfig;
+import javax.servlet.ServletContext;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A cache of the groups of users, for identity assertion providers that look groups up in a backend.
+ *
+ * <p>
+ * Concurrent lookups of the same user share one backend call. Once an entry is older than the refresh
+ * interval, the next request for it triggers a reload in the background and keeps getting the old
+ * groups until the reload is done, so users that are seen regularly never wait for the backend.
+ * Entries that are not used for the whole time to live are dropped. Users without any groups are
+ * remembered for the (usually shorter) negative time to live. Failed lookups are not cached.
+ */
+public class GroupLookupCache {
+
+  public static final String GROUP_CACHE_ENABLED = "group.cache.enabled";
+  public static final String GROUP_CACHE_TTL = "group.cache.ttl";
+  public static final String GROUP_CACHE_NEGATIVE_TTL = "group.cache.negative.ttl";
+  public static final String GROUP_CACHE_REFRESH_INTERVAL = "group.cache.refresh.interval";
+  public static final String GROUP_CACHE_MAX_ENTRIES = "group.cache.max.entries";
+
+  static final long DEFAULT_TTL = TimeUnit.MINUTES.toMillis(5);
+  static final long DEFAULT_NEGATIVE_TTL = TimeUnit.SECONDS.toMillis(30);
+  static final long DEFAULT_REFRESH_INTERVAL = TimeUnit.MINUTES.toMillis(1);
+  static final long DEFAULT_MAX_ENTRIES = 10000L;
+
+  // Registered by the gateway's metrics servlet context listener in every topology
+  private static final String METRICS_REGISTRY_ATTRIBUTE = "com.codahale.metrics.servlets.MetricsServlet.registry";
+
+  private static final AtomicInteger REFRESH_THREADS = new AtomicInteger();
+
+  /**
+   * Looks the groups of a user up in the backend.
+   */
+  @FunctionalInterface
+  public interface GroupLookup {
+    /**
+     * @return the groups of the user, empty if the user has none
+     * @throws IOException if the backend could not be asked
+     */
+    List<String> getGroups(String user) throws IOException;
+  }
+
+  private final LoadingCache<String, List<String>> cache;
+  private final ExecutorService refreshExecutor;
+  private final Counter hits;
+  private final Counter misses;
+  private final Counter failures;
+  private final Timer loads;
+
+  public GroupLookupCache(String name, GroupLookup lookup, long ttl, long negativeTtl,
+                          long refreshInterval, long maxEntries, MetricRegistry metrics) {
+    this.hits = metrics.counter(MetricRegistry.name(name, "hits"));
+    this.misses = metrics.counter(MetricRegistry.name(name, "misses"));
+    this.failures = metrics.counter(MetricRegistry.name(name, "failures"));
+    this.loads = metrics.timer(MetricRegistry.name(name, "loads"));
+
+    // Lookups may block on LDAP or a shell command, keep them off the common pool
+    this.refreshExecutor = Executors.newFixedThreadPool(2, runnable -> {
+      Thread thread = new Thread(runnable, "group-lookup-refresh-" + REFRESH_THREADS.incrementAndGet());
+      thread.setDaemon(true);
+      return thread;
+    });
+
+    final Caffeine<Object, Object> builder = Caffeine.newBuilder()
+        .maximumSize(maxEntries)
+        .executor(refreshExecutor);
+    if (refreshInterval > 0 && refreshInterval < ttl) {
+      builder.refreshAfterWrite(refreshInterval, TimeUnit.MILLISECONDS);
+    }
+    this.cache = builder.expireAfter(new Expiry<String, List<String>>() {
+      @Override
+      public long expireAfterCreate(String user, List<String> groups, long currentTime) {
+        return TimeUnit.MILLISECONDS.toNanos(groups.isEmpty() ? negativeTtl : ttl);
+      }
+
+      @Override
+      public long expireAfterUpdate(String user, List<String> groups, long currentTime, long currentDuration) {
+        return expireAfterCreate(user, groups, currentTime);
+      }
+
+      @Override
+      public long expireAfterRead(String user, List<String> groups, long currentTime, long currentDuration) {
+        return currentDuration;
+      }
+    }).build(user -> {
+      try (Timer.Context ignored = loads.time()) {
+        return Collections.unmodifiableList(new ArrayList<>(lookup.getGroups(user)));
+      } catch (IOException | RuntimeException e) {
+        failures.inc();
+        throw e;
+      }
+    });
+  }
+
+  /**
+   * Creates the cache configured by the <code>group.cache.*</code> parameters of a filter, registering its
+   * metrics for the topology the filter is deployed in.
+   *
+   * @return the cache, or <code>null</code> if caching is not enabled for the filter
+   */
+  public static GroupLookupCache fromFilterConfig(FilterConfig filterConfig, GroupLookup lookup) {
+    if (!Boolean.parseBoolean(getParameter(filterConfig, GROUP_CACHE_ENABLED))) {
+      return null;
+    }
+    final ServletContext context = filterConfig.getServletContext();
+    MetricRegistry metrics = null;
+    String topology = null;
+    if (context != null) {
+      if (context.getAttribute(METRICS_REGISTRY_ATTRIBUTE) instanceof MetricRegistry) {
+        metrics = (MetricRegistry) context.getAttribute(METRICS_REGISTRY_ATTRIBUTE);
+      }
+      topology = (String) context.getAttribute(GatewayServices.GATEWAY_CLUSTER_ATTRIBUTE);
+    }
+    return new GroupLookupCache(
+        MetricRegistry.name("identity-assertion", topology == null ? "default" : topology,
+            filterConfig.getFilterName(), "groups"),
+        lookup,
+        getLongParameter(filterConfig, GROUP_CACHE_TTL, DEFAULT_TTL),
+        getLongParameter(filterConfig, GROUP_CACHE_NEGATIVE_TTL, DEFAULT_NEGATIVE_TTL),
+        getLongParameter(filterConfig, GROUP_CACHE_REFRESH_INTERVAL, DEFAULT_REFRESH_INTERVAL),
+        getLongParameter(filterConfig, GROUP_CACHE_MAX_ENTRIES, DEFAULT_MAX_ENTRIES),
+        metrics == null ? new MetricRegistry() : metrics);
+  }
+
+  /**
+   * @return the cached groups of the user, looking them up only if the user is not cached yet
+   * @throws IOException if the groups had to be looked up and the lookup failed
+   */
+  public List<String> getGroups(String user) throws IOException {
+    List<String> groups = cache.getIfPresent(user);
+    if (groups != null) {
+      hits.inc();
+      return groups;
+    }
+    misses.inc();
+    try {
+      return cache.get(user);
+    } catch (CompletionException e) {
+      if (e.getCause() instanceof IOException) {
+        throw (IOException) e.getCause();
+      }
+      throw e;
+    }
+  }
+
+  public void invalidateAll() {
+    cache.invalidateAll();
+  }
+
+  public void close() {
+    cache.invalidateAll();
+    refreshExecutor.shutdownNow();
+  }
+
+  private static String getParameter(FilterConfig filterConfig, String name) {
+    String value = filterConfig.getInitParameter(name);
+    if ((value == null || value.isEmpty()) && filterConfig.getServletContext() != null) {
+      value = filterConfig.getServletContext().getInitParameter(name);
+    }
+    return value;
+  }
+
+  private static long getLongParameter(FilterConfig filterConfig, String name, long defaultValue) {
+    final String value = getParameter(filterConfig, name);
+    return value == null || value.trim().isEmpty() ? defaultValue : Long.parseLong(value.trim());
+  }
+}
@@ -0,0 +1,148 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.knox.gateway.identityasserter.filter;
+
+import com.codahale.metrics.MetricRegistry;
+import org.apache.knox.gateway.identityasserter.common.filter.GroupLookupCache;
+import org.apache.knox.gateway.services.GatewayServices;
+import org.easymock.EasyMock;
+import org.junit.After;
+import org.junit.Test;
+
+import javax.servlet.FilterConfig;
+import javax.servlet.ServletContext;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.fail;
+
+public class GroupLookupCacheTest {
+  private final AtomicInteger lookups = new AtomicInteger();
+  private final MetricRegistry metrics = new MetricRegistry();
+  private GroupLookupCache cache;
+
+  @After
+  public void tearDown() {
+    if (cache != null) {
+      cache.close();
+    }
+  }
+
+  @Test
+  public void testGroupsAreCached() throws Exception {
+    cache = new GroupLookupCache("test", user -> {
+      lookups.incrementAndGet();
+      return "guest".equals(user) ? Arrays.asList("users", "analysts") : Collections.emptyList();
+    }, 60000L, 60000L, 0L, 100L, metrics);
+
+    assertEquals(Arrays.asList("users", "analysts"), cache.getGroups("guest"));
+    assertEquals(Arrays.asList("users", "analysts"), cache.getGroups("guest"));
+    assertEquals(Collections.emptyList(), cache.getGroups("nobody"));
+    assertEquals(Collections.emptyList(), cache.getGroups("nobody"));
+    assertEquals(2, lookups.get());
+    assertEquals(2, metrics.counter("test.hits").getCount());
+    assertEquals(2, metrics.counter("test.misses").getCount());
+
+    cache.invalidateAll();
+    cache.getGroups("guest");
+    assertEquals(3, lookups.get());
+  }
+
+  @Test
+  public void testConcurrentLookupsAreCoalesced() throws Exception {
+    final CountDownLatch release = new CountDownLatch(1);
+    cache = new GroupLookupCache("test", user -> {
+      lookups.incrementAndGet();
+      try {
+        release.await(10, TimeUnit.SECONDS);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+      return Collections.singletonList("users");
+    }, 60000L, 60000L, 0L, 100L, metrics);
+
+    final ExecutorService executor = Executors.newFixedThreadPool(8);
+    try {
+      final List<Future<List<String>>> results = new ArrayList<>();
+      for (int i = 0; i < 8; i++) {
+        results.add(executor.submit(() -> cache.getGroups("guest")));
+      }
+      Thread.sleep(100);
+      release.countDown();
+      for (Future<List<String>> result : results) {
+        assertEquals(Collections.singletonList("users"), result.get(10, TimeUnit.SECONDS));
+      }
+    } finally {
+      executor.shutdownNow();
+    }
+    assertEquals(1, lookups.get());
+  }
+
+  @Test
+  public void testFailedLookupsAreNotCached() throws Exception {
+    cache = new GroupLookupCache("test", user -> {
+      lookups.incrementAndGet();
+      throw new IOException("backend down");
+    }, 60000L, 60000L, 0L, 100L, metrics);
+
+    for (int i = 0; i < 2; i++) {
+      try {
+        cache.getGroups("guest");
+        fail("Expected IOException");
+      } catch (IOException e) {
+        assertEquals("backend down", e.getMessage());
+      }
+    }
+    assertEquals(2, lookups.get());
+    assertEquals(2, metrics.counter("test.failures").getCount());
+  }
+
+  @Test
+  public void testFromFilterConfig() throws Exception {
+    assertNull(GroupLookupCache.fromFilterConfig(createFilterConfig(null, metrics), user -> Collections.emptyList()));
+
+    cache = GroupLookupCache.fromFilterConfig(createFilterConfig("true", metrics), user -> Collections.singletonList("users"));
+    assertNotNull(cache);
+    cache.getGroups("guest");
+    assertEquals(1, metrics.counter("identity-assertion.sandbox.identity-assertion.groups.misses").getCount());
+  }
+
+  private static FilterConfig createFilterConfig(String enabled, MetricRegistry metrics) {
+    final ServletContext context = EasyMock.createNiceMock(ServletContext.class);
+    EasyMock.expect(context.getAttribute(GatewayServices.GATEWAY_CLUSTER_ATTRIBUTE)).andReturn("sandbox").anyTimes();
+    EasyMock.expect(context.getAttribute("com.codahale.metrics.servlets.MetricsServlet.registry")).andReturn(metrics).anyTimes();
+    final FilterConfig config = EasyMock.createNiceMock(FilterConfig.class);
+    EasyMock.expect(config.getServletContext()).andReturn(context).anyTimes();
+    EasyMock.expect(config.getFilterName()).andReturn("identity-assertion").anyTimes();
+    EasyMock.expect(config.getInitParameter(GroupLookupCache.GROUP_CACHE_ENABLED)).andReturn(enabled).anyTimes();
+    EasyMock.replay(context, config);
+    return config;
+  }
+}
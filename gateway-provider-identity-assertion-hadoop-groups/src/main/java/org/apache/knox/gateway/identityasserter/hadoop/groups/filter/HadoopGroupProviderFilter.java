@@ -18,6 +18,7 @@
 package org.apache.knox.gateway.identityasserter.hadoop.groups.filter;
 
 import java.io.IOException;
+import java.util.Collections;
 import java.util.Enumeration;
 import java.util.List;
 
@@ -28,6 +29,7 @@ import javax.servlet.ServletException;
 import org.apache.hadoop.conf.Configuration;
 import org.apache.knox.gateway.i18n.messages.MessagesFactory;
 import org.apache.knox.gateway.identityasserter.common.filter.CommonIdentityAssertionFilter;
+import org.apache.knox.gateway.identityasserter.common.filter.GroupLookupCache;
 import org.apache.hadoop.security.GroupMappingServiceProvider;
 import org.apache.hadoop.security.Groups;
 
@@ -45,6 +47,8 @@ public class HadoopGroupProviderFilter extends CommonIdentityAssertionFilter {
   public static final HadoopGroupProviderMessages LOG = MessagesFactory
       .get(HadoopGroupProviderMessages.class);
 
+  private static final String NO_GROUPS_FOUND = "No groups found for user";
+
   /**
    * Configuration object needed by for hadoop classes
    */
@@ -55,6 +59,11 @@ public class HadoopGroupProviderFilter extends CommonIdentityAssertionFilter {
    */
   private Groups hadoopGroups;
 
+  /**
+   * Knox managed cache in front of {@link #hadoopGroups}, null unless enabled.
+   */
+  private GroupLookupCache groupCache;
+
   /* create an instance */
   public HadoopGroupProviderFilter() {
     super();
@@ -79,6 +88,7 @@ public class HadoopGroupProviderFilter extends CommonIdentityAssertionFilter {
 
       }
       hadoopGroups = new Groups(hadoopConfig);
+      groupCache = GroupLookupCache.fromFilterConfig(filterConfig, this::lookupGroups);
 
     } catch (final Exception e) {
       throw new ServletException(e);
@@ -96,24 +106,47 @@ public class HadoopGroupProviderFilter extends CommonIdentityAssertionFilter {
     /* return the groups as seen by Hadoop */
     String[] groups;
     try {
-      final List<String> groupList = hadoopGroups
-          .getGroups(mappedPrincipalName);
-      LOG.groupsFound(mappedPrincipalName, groupList.toString());
-      groups = groupList.toArray(new String[0]);
-
-    } catch (final IOException e) {
-      if (e.toString().contains("No groups found for user")) {
+      final List<String> groupList = groupCache == null
+          ? lookupGroups(mappedPrincipalName)
+          : groupCache.getGroups(mappedPrincipalName);
+      if (groupList.isEmpty()) {
         /* no groups found move on */
         LOG.noGroupsFound(mappedPrincipalName);
       } else {
-        /* Log the error and return empty group */
-        LOG.errorGettingUserGroups(mappedPrincipalName, e);
+        LOG.groupsFound(mappedPrincipalName, groupList.toString());
       }
+      groups = groupList.toArray(new String[0]);
+
+    } catch (final IOException e) {
+      /* Log the error and return empty group */
+      LOG.errorGettingUserGroups(mappedPrincipalName, e);
       groups = new String[0];
     }
     return groups;
   }
 
+  private List<String> lookupGroups(final String principalName) throws IOException {
+    try {
+      return hadoopGroups.getGroups(principalName);
+    } catch (final IOException e) {
+      /* Hadoop reports a user without groups as a failure */
+      final String message = e.getMessage();
+      if (message != null && message.startsWith(NO_GROUPS_FOUND)) {
+        return Collections.emptyList();
+      }
+      throw e;
+    }
+  }
+
+  @Override
+  public void destroy() {
+    if (groupCache != null) {
+      groupCache.close();
+      groupCache = null;
+    }
+    super.destroy();
+  }
+
   @Override
   public String mapUserPrincipal(final String principalName) {
     /* return the passed principal */
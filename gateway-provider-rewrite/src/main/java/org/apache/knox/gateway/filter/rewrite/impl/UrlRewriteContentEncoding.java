@@ -0,0 +1,136 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.knox.gateway.filter.rewrite.impl;
+
+import org.apache.commons.compress.compressors.gzip.GzipCompressorInputStream;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Locale;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.GZIPOutputStream;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * The content codings a rewritten response body can be decoded from and re-encoded with.
+ * Only codecs for which a pure-Java encoder is available in the JDK are supported.
+ */
+enum UrlRewriteContentEncoding {
+
+  GZIP( "gzip", "x-gzip" ) {
+    @Override
+    InputStream decode( InputStream input ) throws IOException {
+      return new GzipCompressorInputStream( input, true );
+    }
+
+    @Override
+    OutputStream encode( OutputStream output, final int level, int bufferSize ) throws IOException {
+      return new GZIPOutputStream( output, bufferSize ) {
+        {
+          def.setLevel( level );
+        }
+      };
+    }
+  },
+
+  DEFLATE( "deflate" ) {
+    @Override
+    InputStream decode( InputStream input ) {
+      return new InflaterInputStream( input );
+    }
+
+    @Override
+    OutputStream encode( OutputStream output, int level, int bufferSize ) {
+      return new DeflaterOutputStream( output, new Deflater( level ), bufferSize ) {
+        @Override
+        public void close() throws IOException {
+          try {
+            super.close();
+          } finally {
+            def.end();
+          }
+        }
+      };
+    }
+  };
+
+  private final String[] names;
+
+  UrlRewriteContentEncoding( String... names ) {
+    this.names = names;
+  }
+
+  abstract InputStream decode( InputStream input ) throws IOException;
+
+  abstract OutputStream encode( OutputStream output, int level, int bufferSize ) throws IOException;
+
+  /**
+   * @param contentEncoding The value of a Content-Encoding header
+   * @return The matching coding, or null if there is no (supported) coding.
+   */
+  static UrlRewriteContentEncoding fromHeader( String contentEncoding ) {
+    if( contentEncoding != null ) {
+      String value = contentEncoding.trim().toLowerCase( Locale.ROOT );
+      for( UrlRewriteContentEncoding encoding : values() ) {
+        for( String name : encoding.names ) {
+          if( name.equals( value ) ) {
+            return encoding;
+          }
+        }
+      }
+    }
+    return null;
+  }
+
+  /**
+   * @param acceptEncoding The value of an Accept-Encoding request header
+   * @return true, if the header lists this coding (or *) without a zero quality value.
+   */
+  boolean isAcceptedBy( String acceptEncoding ) {
+    if( acceptEncoding == null ) {
+      return false;
+    }
+    boolean wildcard = false;
+    for( String element : acceptEncoding.split( "," ) ) {
+      String[] parts = element.split( ";" );
+      String coding = parts[ 0 ].trim().toLowerCase( Locale.ROOT );
+      boolean accepted = true;
+      for( int i = 1; i < parts.length; i++ ) {
+        String param = parts[ i ].trim();
+        if( param.startsWith( "q=" ) || param.startsWith( "Q=" ) ) {
+          try {
+            accepted = Float.parseFloat( param.substring( 2 ).trim() ) > 0;
+          } catch( NumberFormatException e ) {
+            accepted = false;
+          }
+        }
+      }
+      for( String name : names ) {
+        if( name.equals( coding ) ) {
+          return accepted;
+        }
+      }
+      if( "*".equals( coding ) ) {
+        wildcard = accepted;
+      }
+    }
+    return wildcard;
+  }
+}
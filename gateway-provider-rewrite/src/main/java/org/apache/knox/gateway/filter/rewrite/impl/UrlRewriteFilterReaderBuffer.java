@@ -0,0 +1,132 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.knox.gateway.filter.rewrite.impl;
+
+import java.io.IOException;
+import java.io.Writer;
+
+/**
+ * Stages the output of the rewrite filter readers until it is read back by their consumer.
+ * <p>
+ * Unlike a StringWriter this is not synchronized, and the staged chars are read out of the backing array in place.
+ * The readers only produce more output once the staged output has been consumed, so the backing array stays as large
+ * as the output of a single parser event, and the space of consumed chars is reused rather than grown.
+ * The backing array is recycled per thread once the buffer is closed.
+ */
+public class UrlRewriteFilterReaderBuffer extends Writer {
+
+  static final int INITIAL_CAPACITY = 8 * 1024;
+
+  // Larger arrays are left to the garbage collector rather than being retained by the pool
+  static final int MAX_POOLED_CAPACITY = 64 * 1024;
+
+  private static final ThreadLocal<char[]> POOL = new ThreadLocal<>();
+
+  private char[] chars;
+  private int start;
+  private int end;
+
+  public UrlRewriteFilterReaderBuffer() {
+    chars = POOL.get();
+    if( chars == null ) {
+      chars = new char[ INITIAL_CAPACITY ];
+    } else {
+      POOL.remove();
+    }
+  }
+
+  /**
+   * @return The number of chars which have been written but not yet read.
+   */
+  public int available() {
+    return end - start;
+  }
+
+  /**
+   * Read staged chars into the specified array.
+   *
+   * @return The number of chars read, which is zero if there are no staged chars.
+   */
+  public int read( char[] destBuffer, int destOffset, int destCount ) {
+    int count = Math.min( destCount, end - start );
+    if( count > 0 ) {
+      System.arraycopy( chars, start, destBuffer, destOffset, count );
+      start += count;
+      if( start == end ) {
+        start = 0;
+        end = 0;
+      }
+    }
+    return count;
+  }
+
+  @Override
+  public void write( int c ) throws IOException {
+    ensureCapacity( 1 );
+    chars[ end++ ] = (char)c;
+  }
+
+  @Override
+  public void write( char[] cbuf, int off, int len ) throws IOException {
+    ensureCapacity( len );
+    System.arraycopy( cbuf, off, chars, end, len );
+    end += len;
+  }
+
+  @Override
+  public void write( String str, int off, int len ) throws IOException {
+    ensureCapacity( len );
+    str.getChars( off, off + len, chars, end );
+    end += len;
+  }
+
+  @Override
+  public void flush() {
+  }
+
+  @Override
+  public void close() {
+    if( chars != null ) {
+      if( chars.length <= MAX_POOLED_CAPACITY ) {
+        POOL.set( chars );
+      }
+      chars = null;
+      start = 0;
+      end = 0;
+    }
+  }
+
+  private void ensureCapacity( int len ) throws IOException {
+    if( chars == null ) {
+      throw new IOException( "Buffer closed" );
+    }
+    if( chars.length - end < len ) {
+      int available = end - start;
+      if( chars.length - available < len ) {
+        char[] grown = new char[ Math.max( chars.length * 2, available + len ) ];
+        System.arraycopy( chars, start, grown, 0, available );
+        chars = grown;
+      } else {
+        // Reclaim the space of the chars which have already been read
+        System.arraycopy( chars, start, chars, 0, available );
+      }
+      start = 0;
+      end = available;
+    }
+  }
+}
@@ -17,8 +17,8 @@
  */
 package org.apache.knox.gateway.filter.rewrite.impl;
 
-import org.apache.commons.compress.compressors.gzip.GzipCompressorInputStream;
 import org.apache.commons.lang3.StringUtils;
+import org.apache.knox.gateway.config.GatewayConfig;
 import org.apache.knox.gateway.filter.GatewayResponseWrapper;
 import org.apache.knox.gateway.filter.ResponseStreamer;
 import org.apache.knox.gateway.filter.rewrite.api.UrlRewriteFilterContentDescriptor;
@@ -55,7 +55,7 @@ import java.util.Collections;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
-import java.util.zip.GZIPOutputStream;
+import java.util.zip.Deflater;
 
 import static org.apache.knox.gateway.filter.rewrite.impl.UrlRewriteUtil.getRewriteFilterConfig;
 import static org.apache.knox.gateway.filter.rewrite.impl.UrlRewriteUtil.pickFirstRuleWithEqualsIgnoreCasePathMatch;
@@ -74,6 +74,9 @@ public class UrlRewriteResponse extends GatewayResponseWrapper implements Params
     IGNORE_HEADER_NAMES.add( "Content-Length" );
   }
 
+  private static final String CONTENT_ENCODING = "Content-Encoding";
+  private static final String ACCEPT_ENCODING = "Accept-Encoding";
+
   private static final String REQUEST_PARAM_PREFIX = "request.";
   private static final String CLUSTER_PARAM_PREFIX = "cluster.";
   private static final String GATEWAY_PARAM_PREFIX = "gateway.";
@@ -90,6 +93,8 @@ public class UrlRewriteResponse extends GatewayResponseWrapper implements Params
   private String xForwardedHostname;
   private String xForwardedPort;
   private String xForwardedScheme;
+  private String contentEncoding;
+  private int compressionLevel;
 
   public UrlRewriteResponse( FilterConfig config, HttpServletRequest request, HttpServletResponse response ) {
     super( response );
@@ -102,6 +107,8 @@ public class UrlRewriteResponse extends GatewayResponseWrapper implements Params
     this.bodyFilterName = config.getInitParameter( UrlRewriteServletFilter.RESPONSE_BODY_FILTER_PARAM );
     this.headersFilterName = config.getInitParameter( UrlRewriteServletFilter.RESPONSE_HEADERS_FILTER_PARAM );
     this.headersFilterConfig = getRewriteFilterConfig( rewriter.getConfig(), headersFilterName, UrlRewriteServletFilter.HEADERS_MIME_TYPE );
+    GatewayConfig gatewayConfig = (GatewayConfig)config.getServletContext().getAttribute( GatewayConfig.GATEWAY_CONFIG_ATTRIBUTE );
+    this.compressionLevel = gatewayConfig != null ? gatewayConfig.getRewriteResponseCompressionLevel() : Deflater.DEFAULT_COMPRESSION;
   }
 
   protected boolean ignoreHeader( String name ) {
@@ -125,6 +132,9 @@ public class UrlRewriteResponse extends GatewayResponseWrapper implements Params
   @Override
   public void setHeader( String name, String value ) {
     if( !ignoreHeader( name) ) {
+      if( CONTENT_ENCODING.equalsIgnoreCase( name ) ) {
+        contentEncoding = value;
+      }
       value = rewriteValue( value, pickFirstRuleWithEqualsIgnoreCasePathMatch( headersFilterConfig, name ) );
       super.setHeader( name, value );
     }
@@ -134,6 +144,9 @@ public class UrlRewriteResponse extends GatewayResponseWrapper implements Params
   @Override
   public void addHeader( String name, String value ) {
     if( !ignoreHeader( name ) ) {
+      if( CONTENT_ENCODING.equalsIgnoreCase( name ) ) {
+        contentEncoding = value;
+      }
       String rule = pickFirstRuleWithEqualsIgnoreCasePathMatch( headersFilterConfig, name );
       value = rewriteValue( value, rule );
       super.addHeader( name, value );
@@ -161,28 +174,37 @@ public class UrlRewriteResponse extends GatewayResponseWrapper implements Params
 
     final InputStream inStream;
     final OutputStream outStream;
-    if( filter != null ) {
+    if( filter != null && !filter.isPassThrough( filterContentConfig ) ) {
       // Use this way to check whether the input stream is gzip compressed, in case
       // the content encoding header is unknown, as it could be unset in inbound response
-      boolean isGzip = false;
+      UrlRewriteContentEncoding encoding = null;
       final BufferedInputStream inBuffer = new BufferedInputStream(input, STREAM_BUFFER_SIZE);
       inBuffer.mark(2);
       byte [] signature = new byte[2];
       int len = inBuffer.read(signature);
       if( len == 2 && signature[ 0 ] == (byte) 0x1f && signature[ 1 ] == (byte) 0x8b ) {
-        isGzip = true;
+        encoding = UrlRewriteContentEncoding.GZIP;
+      } else if( len > 0 ) {
+        encoding = UrlRewriteContentEncoding.fromHeader( contentEncoding );
+        if( encoding == UrlRewriteContentEncoding.GZIP ) {
+          // Labelled as gzip, but not actually gzip compressed
+          encoding = null;
+        }
       }
       inBuffer.reset();
 
-      final InputStream unFilteredStream;
-      if(isGzip) {
-        unFilteredStream = new GzipCompressorInputStream(inBuffer, true);
-      } else {
-        unFilteredStream = inBuffer;
-      }
+      final InputStream unFilteredStream = (encoding != null) ? encoding.decode(inBuffer) : inBuffer;
       String charset = MimeTypes.getCharset( mimeType, StandardCharsets.UTF_8.name() );
       inStream = filter.filter( unFilteredStream, charset, rewriter, this, UrlRewriter.Direction.OUT, filterContentConfig );
-      outStream = (isGzip) ? new GZIPOutputStream(output, STREAM_BUFFER_SIZE) : output;
+      if( encoding == null ) {
+        outStream = output;
+      } else if( encoding.isAcceptedBy( request.getHeader( ACCEPT_ENCODING ) ) ) {
+        outStream = encoding.encode( output, compressionLevel, STREAM_BUFFER_SIZE );
+      } else {
+        // The client did not ask for compressed content, so there is no point in compressing the rewritten content again
+        response.setHeader( CONTENT_ENCODING, null );
+        outStream = output;
+      }
     } else {
       inStream = input;
       outStream = output;
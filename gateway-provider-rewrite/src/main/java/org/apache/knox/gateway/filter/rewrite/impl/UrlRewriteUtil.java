@@ -61,7 +61,7 @@ public class UrlRewriteUtil {
   public static String filterJavaScript( String inputValue, UrlRewriteFilterContentDescriptor config,
       UrlRewriteFilterReader filterReader, UrlRewriteFilterPathDescriptor.Compiler<Pattern> regexCompiler ) {
     StringBuilder tbuff = new StringBuilder();
-    StringBuffer sbuff = new StringBuffer();
+    StringBuilder sbuff = new StringBuilder();
     sbuff.append( inputValue );
     if( config != null && !config.getSelectors().isEmpty() ) {
       for( UrlRewriteFilterPathDescriptor selector : config.getSelectors() ) {
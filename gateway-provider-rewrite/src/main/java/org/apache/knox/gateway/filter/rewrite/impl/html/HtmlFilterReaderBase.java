@@ -29,6 +29,7 @@ import org.apache.knox.gateway.filter.rewrite.api.UrlRewriteFilterContentDescrip
 import org.apache.knox.gateway.filter.rewrite.api.UrlRewriteFilterPathDescriptor;
 import org.apache.knox.gateway.filter.rewrite.i18n.UrlRewriteMessages;
 import org.apache.knox.gateway.filter.rewrite.impl.UrlRewriteFilterReader;
+import org.apache.knox.gateway.filter.rewrite.impl.UrlRewriteFilterReaderBuffer;
 import org.apache.knox.gateway.filter.rewrite.impl.UrlRewriteUtil;
 import org.apache.knox.gateway.i18n.messages.MessagesFactory;
 
@@ -36,7 +37,6 @@ import javax.xml.namespace.QName;
 import javax.xml.parsers.ParserConfigurationException;
 import java.io.IOException;
 import java.io.Reader;
-import java.io.StringWriter;
 import java.util.Deque;
 import java.util.HashMap;
 import java.util.Iterator;
@@ -59,9 +59,7 @@ public abstract class HtmlFilterReaderBase extends Reader implements
   private StreamedSource parser;
   private Iterator<Segment> iterator;
   private int lastSegEnd;
-  private int offset;
-  private StringWriter writer;
-  private StringBuffer buffer;
+  private UrlRewriteFilterReaderBuffer writer;
   private UrlRewriteFilterContentDescriptor config;
 
   protected HtmlFilterReaderBase( Reader reader ) throws IOException {
@@ -69,9 +67,7 @@ public abstract class HtmlFilterReaderBase extends Reader implements
     stack = new ConcurrentLinkedDeque<>();
     parser = new StreamedSource( reader );
     iterator = parser.iterator();
-    writer = new StringWriter();
-    buffer = writer.getBuffer();
-    offset = 0;
+    writer = new UrlRewriteFilterReaderBuffer();
   }
 
   protected HtmlFilterReaderBase( Reader reader, UrlRewriteFilterContentDescriptor config ) throws IOException, ParserConfigurationException {
@@ -86,26 +82,20 @@ public abstract class HtmlFilterReaderBase extends Reader implements
   @Override
   public int read( char[] destBuffer, int destOffset, int destCount ) throws IOException {
     int count = 0;
-    int available = buffer.length() - offset;
+    int available = writer.available();
 
     if( available == 0 ) {
       if( iterator.hasNext() ) {
         iterator.next();
         processCurrentSegment();
-        available = buffer.length() - offset;
+        available = writer.available();
       } else {
         count = -1;
       }
     }
 
     if( available > 0 ) {
-      count = Math.min( destCount, available );
-      buffer.getChars( offset, offset + count, destBuffer, destOffset );
-      offset += count;
-      if( offset == buffer.length() ) {
-        offset = 0;
-        buffer.setLength( 0 );
-      }
+      count = writer.read( destBuffer, destOffset, destCount );
     }
 
     return count;
@@ -20,30 +20,37 @@ package org.apache.knox.gateway.filter.rewrite.impl.javascript;
 import org.apache.knox.gateway.filter.rewrite.api.UrlRewriteFilterContentDescriptor;
 import org.apache.knox.gateway.filter.rewrite.api.UrlRewriteFilterPathDescriptor;
 import org.apache.knox.gateway.filter.rewrite.impl.UrlRewriteFilterReader;
+import org.apache.knox.gateway.filter.rewrite.impl.UrlRewriteFilterReaderBuffer;
 import org.apache.knox.gateway.filter.rewrite.impl.UrlRewriteUtil;
 
-import java.io.BufferedReader;
 import java.io.IOException;
 import java.io.Reader;
-import java.io.StringWriter;
 import java.util.regex.Pattern;
 
 public abstract class JavaScriptFilterReader extends Reader implements UrlRewriteFilterReader {
 
   private static final UrlRewriteFilterPathDescriptor.Compiler<Pattern> REGEX_COMPILER = new RegexCompiler();
 
-  private BufferedReader reader;
-  private int offset;
-  private StringWriter writer;
-  private StringBuffer buffer;
+  // Lines longer than this (e.g. minified scripts) are filtered in segments ending at a statement or block boundary
+  // outside of any string, template or regex literal and comment, so that a URL is never split across segments
+  static final int MAX_SEGMENT_LENGTH = 64 * 1024;
+
+  private static final int READ_SIZE = 8 * 1024;
+
+  private Reader reader;
+  private char[] input;
+  private int inputStart;
+  private int inputEnd;
+  private boolean eof;
+  private boolean lineOpen;
+  private UrlRewriteFilterReaderBuffer writer;
   private UrlRewriteFilterContentDescriptor config;
 
   protected JavaScriptFilterReader( Reader reader, UrlRewriteFilterContentDescriptor config ) throws IOException {
-    this.reader = new BufferedReader( reader );
+    this.reader = reader;
     this.config = config;
-    writer = new StringWriter();
-    buffer = writer.getBuffer();
-    offset = 0;
+    input = new char[ READ_SIZE ];
+    writer = new UrlRewriteFilterReaderBuffer();
   }
 
   @Override
@@ -52,36 +59,203 @@ public abstract class JavaScriptFilterReader extends Reader implements UrlRewrit
   @Override
   public int read( char[] destBuffer, int destOffset, int destCount ) throws IOException {
     int count = 0;
-    int available = buffer.length() - offset;
-    String cbuff;
+    int available = writer.available();
     if( available == 0 ) {
-      cbuff = reader.readLine();
-      if( cbuff != null ) {
-        count = cbuff.length();
-        writer.write( UrlRewriteUtil.filterJavaScript( cbuff, config, this, REGEX_COMPILER ) );
-        writer.write( '\n' );
-        available = buffer.length() - offset;
+      if( filterNextSegment() ) {
+        available = writer.available();
       } else {
         count = -1;
       }
     }
 
     if( available > 0 ) {
-      count = Math.min( destCount, available );
-      buffer.getChars( offset, offset + count, destBuffer, destOffset );
-      offset += count;
-      if( offset == buffer.length() ) {
-        offset = 0;
-        buffer.setLength( 0 );
-      }
+      count = writer.read( destBuffer, destOffset, destCount );
     }
 
     return count;
   }
 
+  /**
+   * Filter the next line of input, or the next segment of a line exceeding MAX_SEGMENT_LENGTH, into the writer.
+   * As with BufferedReader.readLine(), any line terminator is written as a single newline.
+   *
+   * @return false, if the end of the input has been reached.
+   */
+  private boolean filterNextSegment() throws IOException {
+    int scanned = 0;
+    int lastBoundary = 0;
+    LiteralScanner scanner = new LiteralScanner();
+    while( true ) {
+      while( inputStart + scanned < inputEnd ) {
+        char c = input[ inputStart + scanned ];
+        if( c == '\n' || c == '\r' ) {
+          if( c == '\r' && inputStart + scanned + 1 == inputEnd && !eof ) {
+            break; // The next char is needed to tell whether this is a \r\n terminator
+          }
+          boolean crlf = c == '\r' && inputStart + scanned + 1 < inputEnd && input[ inputStart + scanned + 1 ] == '\n';
+          filterSegment( scanned, crlf ? 2 : 1, true );
+          return true;
+        }
+        scanned++;
+        if( scanner.isBoundary( c ) ) {
+          lastBoundary = scanned;
+        }
+      }
+
+      if( scanned >= MAX_SEGMENT_LENGTH && lastBoundary > 0 ) {
+        filterSegment( lastBoundary, 0, false );
+        return true;
+      }
+
+      if( eof ) {
+        if( inputEnd == inputStart ) {
+          if( lineOpen ) {
+            // The last segment of the input ended at a boundary
+            writer.write( '\n' );
+            lineOpen = false;
+            return true;
+          }
+          return false;
+        }
+        filterSegment( inputEnd - inputStart, 0, true );
+        return true;
+      }
+
+      fill();
+    }
+  }
+
+  private void filterSegment( int length, int terminatorLength, boolean newline ) throws IOException {
+    String segment = new String( input, inputStart, length );
+    inputStart += length + terminatorLength;
+    writer.write( UrlRewriteUtil.filterJavaScript( segment, config, this, REGEX_COMPILER ) );
+    if( newline ) {
+      writer.write( '\n' );
+    }
+    lineOpen = !newline;
+  }
+
+  private void fill() throws IOException {
+    int pending = inputEnd - inputStart;
+    if( inputStart > 0 ) {
+      System.arraycopy( input, inputStart, input, 0, pending );
+      inputStart = 0;
+      inputEnd = pending;
+    }
+    if( input.length - inputEnd < READ_SIZE ) {
+      char[] grown = new char[ input.length * 2 ];
+      System.arraycopy( input, 0, grown, 0, inputEnd );
+      input = grown;
+    }
+    int read = reader.read( input, inputEnd, input.length - inputEnd );
+    if( read < 0 ) {
+      eof = true;
+    } else {
+      inputEnd += read;
+    }
+  }
+
   @Override
   public void close() throws IOException {
     reader.close();
     writer.close();
   }
+
+  /**
+   * Tracks whether the characters of a line are code or part of a string, template or regex literal
+   * or a comment. Whether a slash starts a regex literal or is a division is told from the preceding code.
+   */
+  private static final class LiteralScanner {
+    private static final int CODE = 0;
+    private static final int SLASH = 1;
+    private static final int STRING = 2;
+    private static final int REGEX = 3;
+    private static final int LINE_COMMENT = 4;
+    private static final int BLOCK_COMMENT = 5;
+
+    private int state = CODE;
+    private char quote;
+    private boolean escaped;
+    private boolean inCharacterClass;
+    private boolean expressionEnded;
+    private char previous;
+
+    /**
+     * @return true if the character ends a statement or block outside of any literal or comment
+     */
+    boolean isBoundary( char c ) {
+      switch( state ) {
+        case SLASH:
+          if( c == '/' ) {
+            state = LINE_COMMENT;
+          } else if( c == '*' ) {
+            state = BLOCK_COMMENT;
+            previous = 0;
+          } else if( expressionEnded ) {
+            state = CODE;
+            expressionEnded = false;
+            return code( c );
+          } else {
+            state = REGEX;
+            inCharacterClass = false;
+            regex( c );
+          }
+          return false;
+        case STRING:
+          if( escaped ) {
+            escaped = false;
+          } else if( c == '\\' ) {
+            escaped = true;
+          } else if( c == quote ) {
+            state = CODE;
+            expressionEnded = true;
+          }
+          return false;
+        case REGEX:
+          regex( c );
+          return false;
+        case LINE_COMMENT:
+          return false;
+        case BLOCK_COMMENT:
+          if( c == '/' && previous == '*' ) {
+            state = CODE;
+          }
+          previous = c;
+          return false;
+        default:
+          return code( c );
+      }
+    }
+
+    private boolean code( char c ) {
+      if( c == '"' || c == '\'' || c == '`' ) {
+        state = STRING;
+        quote = c;
+        return false;
+      }
+      if( c == '/' ) {
+        state = SLASH;
+        return false;
+      }
+      if( !Character.isWhitespace( c ) ) {
+        expressionEnded = Character.isJavaIdentifierPart( c ) || c == ')' || c == ']';
+      }
+      return c == ';' || c == '}';
+    }
+
+    private void regex( char c ) {
+      if( escaped ) {
+        escaped = false;
+      } else if( c == '\\' ) {
+        escaped = true;
+      } else if( c == '[' ) {
+        inCharacterClass = true;
+      } else if( c == ']' ) {
+        inCharacterClass = false;
+      } else if( c == '/' && !inCharacterClass ) {
+        state = CODE;
+        expressionEnded = true;
+      }
+    }
+  }
 }
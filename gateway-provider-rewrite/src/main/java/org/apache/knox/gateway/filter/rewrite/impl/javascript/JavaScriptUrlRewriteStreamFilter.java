@@ -18,7 +18,9 @@
 package org.apache.knox.gateway.filter.rewrite.impl.javascript;
 
 import org.apache.commons.io.input.ReaderInputStream;
+import org.apache.knox.gateway.filter.rewrite.api.UrlRewriteFilterApplyDescriptor;
 import org.apache.knox.gateway.filter.rewrite.api.UrlRewriteFilterContentDescriptor;
+import org.apache.knox.gateway.filter.rewrite.api.UrlRewriteFilterPathDescriptor;
 import org.apache.knox.gateway.filter.rewrite.api.UrlRewriter;
 import org.apache.knox.gateway.filter.rewrite.spi.UrlRewriteStreamFilter;
 import org.apache.knox.gateway.util.urltemplate.Resolver;
@@ -62,4 +64,17 @@ public class JavaScriptUrlRewriteStreamFilter implements
       return stream;
     }
   }
+
+  @Override
+  public boolean isPassThrough( UrlRewriteFilterContentDescriptor config ) {
+    // Script content is only rewritten by explicit apply selectors
+    if( config != null ) {
+      for( UrlRewriteFilterPathDescriptor selector : config.getSelectors() ) {
+        if( selector instanceof UrlRewriteFilterApplyDescriptor ) {
+          return false;
+        }
+      }
+    }
+    return true;
+  }
 }
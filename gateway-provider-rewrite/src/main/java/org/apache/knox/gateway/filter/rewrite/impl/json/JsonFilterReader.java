@@ -33,12 +33,12 @@ import org.apache.knox.gateway.filter.rewrite.api.UrlRewriteFilterDetectDescript
 import org.apache.knox.gateway.filter.rewrite.api.UrlRewriteFilterGroupDescriptor;
 import org.apache.knox.gateway.filter.rewrite.api.UrlRewriteFilterPathDescriptor;
 import org.apache.knox.gateway.filter.rewrite.i18n.UrlRewriteMessages;
+import org.apache.knox.gateway.filter.rewrite.impl.UrlRewriteFilterReaderBuffer;
 import org.apache.knox.gateway.i18n.messages.MessagesFactory;
 import org.apache.knox.gateway.util.JsonPath;
 
 import java.io.IOException;
 import java.io.Reader;
-import java.io.StringWriter;
 import java.util.List;
 import java.util.Stack;
 import java.util.regex.Pattern;
@@ -56,9 +56,7 @@ class JsonFilterReader extends Reader {
   private ObjectMapper mapper;
 
   private Reader reader;
-  private int offset;
-  private StringWriter writer;
-  private StringBuffer buffer;
+  private UrlRewriteFilterReaderBuffer writer;
   private Stack<Level> stack;
   private Level bufferingLevel;
   private UrlRewriteFilterBufferDescriptor bufferingConfig;
@@ -69,9 +67,7 @@ class JsonFilterReader extends Reader {
     factory = new JsonFactory();
     mapper = new ObjectMapper();
     parser = factory.createParser( reader );
-    writer = new StringWriter();
-    buffer = writer.getBuffer();
-    offset = 0;
+    writer = new UrlRewriteFilterReaderBuffer();
     generator = factory.createGenerator( writer );
     stack = new Stack<>();
     bufferingLevel = null;
@@ -82,7 +78,7 @@ class JsonFilterReader extends Reader {
   @Override
   public int read( char[] destBuffer, int destOffset, int destCount ) throws IOException {
     int count = 0;
-    int available = buffer.length() - offset;
+    int available = writer.available();
 
     if( available == 0 ) {
       JsonToken token = parser.nextToken();
@@ -90,18 +86,12 @@ class JsonFilterReader extends Reader {
         count = -1;
       } else {
         processCurrentToken();
-        available = buffer.length() - offset;
+        available = writer.available();
       }
     }
 
     if( available > 0 ) {
-      count = Math.min( destCount, available );
-      buffer.getChars( offset, offset+count, destBuffer, destOffset );
-      offset += count;
-      if( offset == buffer.length() ) {
-        offset = 0;
-        buffer.setLength( 0 );
-      }
+      count = writer.read( destBuffer, destOffset, destCount );
     }
 
     return count;
@@ -26,6 +26,7 @@ import org.apache.knox.gateway.filter.rewrite.api.UrlRewriteFilterGroupDescripto
 import org.apache.knox.gateway.filter.rewrite.api.UrlRewriteFilterPathDescriptor;
 import org.apache.knox.gateway.filter.rewrite.api.UrlRewriteFilterScopeDescriptor;
 import org.apache.knox.gateway.filter.rewrite.i18n.UrlRewriteResources;
+import org.apache.knox.gateway.filter.rewrite.impl.UrlRewriteFilterReaderBuffer;
 import org.apache.knox.gateway.i18n.resources.ResourcesFactory;
 import org.apache.knox.gateway.util.XmlUtils;
 import org.w3c.dom.Attr;
@@ -60,7 +61,6 @@ import javax.xml.xpath.XPathFactory;
 import javax.xml.xpath.XPathFactoryConfigurationException;
 import java.io.IOException;
 import java.io.Reader;
-import java.io.StringWriter;
 import java.io.Writer;
 import java.util.Iterator;
 import java.util.Stack;
@@ -76,9 +76,7 @@ public abstract class XmlFilterReader extends Reader {
 
   private Reader reader;
   private UrlRewriteFilterContentDescriptor config;
-  private int offset;
-  private StringWriter writer;
-  private StringBuffer buffer;
+  private UrlRewriteFilterReaderBuffer writer;
   private XMLInputFactory factory;
   private XMLEventReader parser;
   private Document document;
@@ -88,9 +86,7 @@ public abstract class XmlFilterReader extends Reader {
   protected XmlFilterReader( Reader reader, UrlRewriteFilterContentDescriptor config ) throws IOException, XMLStreamException {
     this.reader = reader;
     this.config = config;
-    writer = new StringWriter();
-    buffer = writer.getBuffer();
-    offset = 0;
+    writer = new UrlRewriteFilterReaderBuffer();
     document = null;
     stack = new Stack<>();
     isEmptyElement = false;
@@ -115,7 +111,7 @@ public abstract class XmlFilterReader extends Reader {
   @Override
   public int read( char[] destBuffer, int destOffset, int destCount ) throws IOException {
     int count = 0;
-    int available = buffer.length() - offset;
+    int available = writer.available();
 
     if( available == 0 ) {
       if( parser.hasNext() ) {
@@ -127,20 +123,14 @@ public abstract class XmlFilterReader extends Reader {
         } catch ( Exception e ) {
           throw new RuntimeException( e );
         }
-        available = buffer.length() - offset;
+        available = writer.available();
       } else {
         count = -1;
       }
     }
 
     if( available > 0 ) {
-      count = Math.min( destCount, available );
-      buffer.getChars( offset, offset + count, destBuffer, destOffset );
-      offset += count;
-      if( offset == buffer.length() ) {
-        offset = 0;
-        buffer.setLength( 0 );
-      }
+      count = writer.read( destBuffer, destOffset, destCount );
     }
     return count;
   }
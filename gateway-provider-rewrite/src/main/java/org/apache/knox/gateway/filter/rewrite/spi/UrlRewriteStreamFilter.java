@@ -40,4 +40,13 @@ public interface UrlRewriteStreamFilter {
       UrlRewriteFilterContentDescriptor config )
           throws IOException;
 
+  /**
+   * @param config The filter configuration the content would be filtered with
+   * @return true, if filtering with the specified configuration cannot change the content, such that the content
+   *         (including any compressed content) can be streamed through as is.
+   */
+  default boolean isPassThrough( UrlRewriteFilterContentDescriptor config ) {
+    return false;
+  }
+
 }
@@ -0,0 +1,92 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.knox.gateway.filter.rewrite.impl;
+
+import org.junit.Test;
+
+import java.io.IOException;
+
+import static org.junit.Assert.assertEquals;
+
+public class UrlRewriteFilterReaderBufferTest {
+
+  @Test
+  public void testWriteAndRead() throws IOException {
+    UrlRewriteFilterReaderBuffer buffer = new UrlRewriteFilterReaderBuffer();
+    buffer.write( "hello" );
+    buffer.write( ' ' );
+    buffer.write( "world".toCharArray() );
+    assertEquals( 11, buffer.available() );
+
+    char[] dest = new char[ 8 ];
+    assertEquals( 8, buffer.read( dest, 0, dest.length ) );
+    assertEquals( "hello wo", new String( dest ) );
+    assertEquals( 3, buffer.available() );
+    assertEquals( 3, buffer.read( dest, 0, dest.length ) );
+    assertEquals( "rld", new String( dest, 0, 3 ) );
+    assertEquals( 0, buffer.available() );
+    assertEquals( 0, buffer.read( dest, 0, dest.length ) );
+    buffer.close();
+  }
+
+  @Test
+  public void testGrowAndReclaim() throws IOException {
+    UrlRewriteFilterReaderBuffer buffer = new UrlRewriteFilterReaderBuffer();
+    StringBuilder expected = new StringBuilder();
+    StringBuilder actual = new StringBuilder();
+    char[] dest = new char[ 1000 ];
+    for( int i = 0; i < 10000; i++ ) {
+      String value = "value-" + i + ";";
+      expected.append( value );
+      buffer.write( value );
+      // Partially drain the buffer, so that written chars must both reuse consumed space and grow the buffer
+      if( i % 3 == 0 ) {
+        int count = buffer.read( dest, 0, 20 );
+        actual.append( dest, 0, count );
+      }
+    }
+    int count;
+    while( ( count = buffer.read( dest, 0, dest.length ) ) > 0 ) {
+      actual.append( dest, 0, count );
+    }
+    assertEquals( expected.toString(), actual.toString() );
+    buffer.close();
+  }
+
+  @Test( expected = IOException.class )
+  public void testWriteAfterClose() throws IOException {
+    UrlRewriteFilterReaderBuffer buffer = new UrlRewriteFilterReaderBuffer();
+    buffer.close();
+    buffer.write( "closed" );
+  }
+
+  @Test
+  public void testRecycledBufferIsEmpty() throws IOException {
+    UrlRewriteFilterReaderBuffer buffer = new UrlRewriteFilterReaderBuffer();
+    buffer.write( "leftover" );
+    buffer.close();
+
+    UrlRewriteFilterReaderBuffer recycled = new UrlRewriteFilterReaderBuffer();
+    assertEquals( 0, recycled.available() );
+    recycled.write( "new" );
+    char[] dest = new char[ 8 ];
+    assertEquals( 3, recycled.read( dest, 0, dest.length ) );
+    assertEquals( "new", new String( dest, 0, 3 ) );
+    recycled.close();
+  }
+}
@@ -28,6 +28,8 @@ import javax.servlet.FilterConfig;
 import javax.servlet.ServletContext;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
@@ -35,12 +37,16 @@ import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.util.List;
+import java.util.zip.DeflaterOutputStream;
 import java.util.zip.GZIPInputStream;
 import java.util.zip.GZIPOutputStream;
+import java.util.zip.InflaterInputStream;
 
 import static org.hamcrest.CoreMatchers.is;
 import static org.hamcrest.MatcherAssert.assertThat;
 import static org.hamcrest.core.IsIterableContaining.hasItems;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
 
 public class UrlRewriteResponseTest {
 
@@ -151,6 +157,7 @@ public class UrlRewriteResponseTest {
     EasyMock.expect( config.getServletContext() ).andReturn( context ).anyTimes();
 
     HttpServletRequest request = EasyMock.createNiceMock( HttpServletRequest.class );
+    EasyMock.expect( request.getHeader( "Accept-Encoding" ) ).andReturn( "gzip, deflate" ).anyTimes();
     HttpServletResponse response = EasyMock.createNiceMock( HttpServletResponse.class );
 
     EasyMock.replay( rewriter, context, config, request, response );
@@ -162,6 +169,91 @@ public class UrlRewriteResponseTest {
     testStreamResponse(content, rewriteResponse, true);
   }
 
+  @Test
+  public void testStreamGzipResponseToClientNotAcceptingGzip() throws IOException {
+    UrlRewriteProcessor rewriter = EasyMock.createNiceMock(UrlRewriteProcessor.class);
+    EasyMock.expect(rewriter.getConfig()).andReturn(null).anyTimes();
+
+    ServletContext context = EasyMock.createNiceMock(ServletContext.class);
+    EasyMock.expect(context.getAttribute(UrlRewriteServletContextListener.PROCESSOR_ATTRIBUTE_NAME)).andReturn(rewriter).anyTimes();
+
+    FilterConfig config = EasyMock.createNiceMock(FilterConfig.class);
+    EasyMock.expect(config.getInitParameter(UrlRewriteServletFilter.RESPONSE_BODY_FILTER_PARAM)).andReturn("test-filter").anyTimes();
+    EasyMock.expect(config.getServletContext()).andReturn(context).anyTimes();
+
+    HttpServletRequest request = EasyMock.createNiceMock(HttpServletRequest.class);
+    HttpServletResponse response = EasyMock.createNiceMock(HttpServletResponse.class);
+    EasyMock.expect(response.getContentType()).andReturn("application/xml").anyTimes();
+    // The rewritten content is sent uncompressed, so the Content-Encoding header must be removed
+    response.setHeader("Content-Encoding", null);
+    EasyMock.expectLastCall().once();
+
+    EasyMock.replay(rewriter, context, config, request, response);
+
+    UrlRewriteResponse rewriteResponse = new UrlRewriteResponse(config, request, response);
+    String content = "<?xml version=\"1.0\" standalone=\"no\"?><data>abc</data>";
+
+    ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+    try (OutputStream outStream = new GZIPOutputStream(compressed)) {
+      outStream.write(content.getBytes(StandardCharsets.UTF_8));
+    }
+    ByteArrayOutputStream output = new ByteArrayOutputStream();
+    rewriteResponse.streamResponse(new ByteArrayInputStream(compressed.toByteArray()), output);
+
+    assertThat(new String(output.toByteArray(), StandardCharsets.UTF_8), is(content));
+    EasyMock.verify(response);
+  }
+
+  @Test
+  public void testStreamDeflateResponse() throws IOException {
+    UrlRewriteProcessor rewriter = EasyMock.createNiceMock(UrlRewriteProcessor.class);
+    EasyMock.expect(rewriter.getConfig()).andReturn(null).anyTimes();
+
+    ServletContext context = EasyMock.createNiceMock(ServletContext.class);
+    EasyMock.expect(context.getAttribute(UrlRewriteServletContextListener.PROCESSOR_ATTRIBUTE_NAME)).andReturn(rewriter).anyTimes();
+
+    FilterConfig config = EasyMock.createNiceMock(FilterConfig.class);
+    EasyMock.expect(config.getInitParameter(UrlRewriteServletFilter.RESPONSE_BODY_FILTER_PARAM)).andReturn("test-filter").anyTimes();
+    EasyMock.expect(config.getServletContext()).andReturn(context).anyTimes();
+
+    HttpServletRequest request = EasyMock.createNiceMock(HttpServletRequest.class);
+    EasyMock.expect(request.getHeader("Accept-Encoding")).andReturn("deflate").anyTimes();
+    HttpServletResponse response = EasyMock.createNiceMock(HttpServletResponse.class);
+    EasyMock.expect(response.getContentType()).andReturn("application/xml").anyTimes();
+
+    EasyMock.replay(rewriter, context, config, request, response);
+
+    UrlRewriteResponse rewriteResponse = new UrlRewriteResponse(config, request, response);
+    rewriteResponse.setHeader("Content-Encoding", "deflate");
+    String content = "<?xml version=\"1.0\" standalone=\"no\"?><data>abc</data>";
+
+    ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+    try (OutputStream outStream = new DeflaterOutputStream(compressed)) {
+      outStream.write(content.getBytes(StandardCharsets.UTF_8));
+    }
+    ByteArrayOutputStream output = new ByteArrayOutputStream();
+    rewriteResponse.streamResponse(new ByteArrayInputStream(compressed.toByteArray()), output);
+
+    try (InputStream inStream = new InflaterInputStream(new ByteArrayInputStream(output.toByteArray()))) {
+      assertThat(String.valueOf(IOUtils.toCharArray(inStream, StandardCharsets.UTF_8)), is(content));
+    }
+  }
+
+  @Test
+  public void testContentEncodingNegotiation() {
+    assertTrue(UrlRewriteContentEncoding.GZIP.isAcceptedBy("gzip"));
+    assertTrue(UrlRewriteContentEncoding.GZIP.isAcceptedBy("deflate, GZIP;q=0.8"));
+    assertTrue(UrlRewriteContentEncoding.GZIP.isAcceptedBy("br, *"));
+    assertFalse(UrlRewriteContentEncoding.GZIP.isAcceptedBy(null));
+    assertFalse(UrlRewriteContentEncoding.GZIP.isAcceptedBy("identity"));
+    assertFalse(UrlRewriteContentEncoding.GZIP.isAcceptedBy("gzip;q=0, *"));
+    assertFalse(UrlRewriteContentEncoding.DEFLATE.isAcceptedBy("gzip, *;q=0"));
+
+    assertThat(UrlRewriteContentEncoding.fromHeader("x-gzip"), is(UrlRewriteContentEncoding.GZIP));
+    assertThat(UrlRewriteContentEncoding.fromHeader(" Deflate "), is(UrlRewriteContentEncoding.DEFLATE));
+    assertThat(UrlRewriteContentEncoding.fromHeader("br"), is((UrlRewriteContentEncoding) null));
+  }
+
   private void testStreamResponse(String content, UrlRewriteResponse rewriteResponse, boolean isGzip) throws IOException {
     Path inputFile = Files.createTempFile("input", "test");
     Path outputFile = Files.createTempFile("output", "test");
@@ -115,4 +115,63 @@ public class JavaScriptFilterReaderTest {
         "}).error(network_error_handler(url));\n";
     assertThat( outputJs, is ( expectedOutputJs ) );
   }
+
+  @Test
+  public void testLineTerminatorsAreNormalized() throws IOException {
+    String inputJs = "var a = 1;\r\nvar b = 2;\rvar c = 3;\n\nvar d = 4;";
+    UrlRewriteFilterContentDescriptor config = new UrlRewriteFilterContentDescriptorImpl();
+    JavaScriptFilterReader filterReader = new NoopJsFilterReader( new StringReader( inputJs ), config );
+    String outputJs = new String( IOUtils.toCharArray( filterReader ) );
+    assertThat( outputJs, is ( "var a = 1;\nvar b = 2;\nvar c = 3;\n\nvar d = 4;\n" ) );
+  }
+
+  @Test
+  public void testMinifiedJsContent() throws IOException {
+    Map<String, Map<String, String>> rules = new HashMap<>();
+    Map<String, String> map = new HashMap<>();
+    map.put( "/webhdfs/v1", "https://knoxhost:8443/webhdfs/v1" );
+    rules.put( "test-rule", map );
+
+    // A single line spanning several segments
+    StringBuilder inputJs = new StringBuilder();
+    StringBuilder expectedOutputJs = new StringBuilder();
+    for( int i = 0; inputJs.length() < 3 * JavaScriptFilterReader.MAX_SEGMENT_LENGTH; i++ ) {
+      inputJs.append( "var u" ).append( i ).append( "='/webhdfs/v1/f" ).append( i ).append( "';" );
+      expectedOutputJs.append( "var u" ).append( i ).append( "='https://knoxhost:8443/webhdfs/v1/f" ).append( i ).append( "';" );
+    }
+    expectedOutputJs.append( '\n' );
+
+    UrlRewriteFilterContentDescriptor config = new UrlRewriteFilterContentDescriptorImpl();
+    config.addApply( "/webhdfs/v1", "test-rule" );
+    JavaScriptFilterReader filterReader = new MatchRuleJsFilterReader( new StringReader( inputJs.toString() ), rules, config );
+    String outputJs = new String( IOUtils.toCharArray( filterReader ) );
+    assertThat( outputJs, is ( expectedOutputJs.toString() ) );
+  }
+
+  @Test
+  public void testMinifiedJsContentIsNotSplitWithinLiterals() throws IOException {
+    Map<String, Map<String, String>> rules = new HashMap<>();
+    Map<String, String> map = new HashMap<>();
+    map.put( "/webhdfs/v1/f\\?[A-Z=;a-z]+", "https://knoxhost:8443/webhdfs/v1/f?op=OPEN" );
+    rules.put( "test-rule", map );
+
+    // Divisions, a regex literal and a comment containing boundaries followed by a URL crossing the segment length
+    StringBuilder prefix = new StringBuilder();
+    for( int i = 0; prefix.length() < JavaScriptFilterReader.MAX_SEGMENT_LENGTH / 2; i++ ) {
+      prefix.append( "var v" ).append( i ).append( '=' ).append( i ).append( "/2;" );
+    }
+    prefix.append( "var r=/[;}]/g;/* ; } */var u='" );
+    StringBuilder url = new StringBuilder( "/webhdfs/v1/f?" );
+    while( url.length() < 2 * JavaScriptFilterReader.MAX_SEGMENT_LENGTH ) {
+      url.append( "op=OPEN;" );
+    }
+    String inputJs = prefix + url.toString() + "';var w=1;";
+    String expectedOutputJs = prefix + "https://knoxhost:8443/webhdfs/v1/f?op=OPEN';var w=1;\n";
+
+    UrlRewriteFilterContentDescriptor config = new UrlRewriteFilterContentDescriptorImpl();
+    config.addApply( "/webhdfs/v1/f\\?[^']*", "test-rule" );
+    JavaScriptFilterReader filterReader = new MatchRuleJsFilterReader( new StringReader( inputJs ), rules, config );
+    String outputJs = new String( IOUtils.toCharArray( filterReader ) );
+    assertThat( outputJs, is ( expectedOutputJs ) );
+  }
 }
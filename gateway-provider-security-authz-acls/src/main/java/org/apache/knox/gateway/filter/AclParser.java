@@ -17,9 +17,9 @@
  */
 package org.apache.knox.gateway.filter;
 
-import java.util.ArrayList;
 import java.util.Collections;
-import java.util.List;
+import java.util.HashSet;
+import java.util.Set;
 
 import org.apache.knox.gateway.i18n.messages.MessagesFactory;
 import org.apache.knox.gateway.util.IpAddressValidator;
@@ -27,16 +27,16 @@ import org.apache.knox.gateway.util.IpAddressValidator;
 public class AclParser {
   private static AclsAuthorizationMessages log = MessagesFactory.get( AclsAuthorizationMessages.class );
 
-  public List<String> users;
-  public List<String> groups;
+  public Set<String> users;
+  public Set<String> groups;
   public boolean anyUser = true;
   public boolean anyGroup = true;
   public IpAddressValidator ipv;
 
 
   public AclParser() {
-    users = new ArrayList<>();
-    groups = new ArrayList<>();
+    users = new HashSet<>();
+    groups = new HashSet<>();
     ipv = new IpAddressValidator(null);
   }
 
@@ -40,10 +40,12 @@ import javax.servlet.http.HttpServletResponse;
 import java.io.IOException;
 import java.security.AccessController;
 import java.security.Principal;
-import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Collections;
-import java.util.List;
+import java.util.HashSet;
+import java.util.Iterator;
 import java.util.Locale;
+import java.util.Set;
 
 public class AclsAuthorizationFilter implements Filter {
   private static AclsAuthorizationMessages log = MessagesFactory.get( AclsAuthorizationMessages.class );
@@ -53,8 +55,18 @@ public class AclsAuthorizationFilter implements Filter {
   private String resourceRole;
   private String aclProcessingMode;
   private AclParser parser = new AclParser();
-  private List<String> adminGroups = new ArrayList<>();
-  private List<String> adminUsers = new ArrayList<>();
+  private Set<String> adminGroups = new HashSet<>();
+  private Set<String> adminUsers = new HashSet<>();
+
+  // Everything about the decision that only depends on the configuration, worked out once by init
+  private boolean unrestricted;
+  private boolean orMode;
+  private boolean andMode;
+  private boolean userAclExcluded;
+  private boolean groupAclExcluded;
+  private boolean ipAclExcluded;
+  private boolean knoxAdminUsersAllowed;
+  private boolean knoxAdminGroupsAllowed;
 
   @Override
   public void init(FilterConfig filterConfig) throws ServletException {
@@ -80,6 +92,18 @@ public class AclsAuthorizationFilter implements Filter {
     log.aclProcessingMode(aclProcessingMode);
     String acls = getInitParameter(filterConfig, resourceRole + ".acl");
     parser.parseAcls(resourceRole, acls);
+
+    unrestricted = parser.users.isEmpty() && parser.groups.isEmpty() && parser.ipv.getIPAddresses().isEmpty();
+    orMode = "OR".equals(aclProcessingMode);
+    andMode = "AND".equals(aclProcessingMode);
+    // need to interpret '*' as excluded for OR semantics
+    // to make sense and not grant access to everyone by mistake.
+    // exclusion in OR is equivalent to denied
+    userAclExcluded = orMode && parser.anyUser;
+    groupAclExcluded = orMode && parser.anyGroup;
+    ipAclExcluded = orMode && parser.ipv.allowsAnyIP();
+    knoxAdminUsersAllowed = parser.users.contains("KNOX_ADMIN_USERS");
+    knoxAdminGroupsAllowed = parser.groups.contains("KNOX_ADMIN_GROUPS");
   }
 
   private String getInitParameter(FilterConfig filterConfig, String paramName) {
@@ -120,29 +144,48 @@ public class AclsAuthorizationFilter implements Filter {
 
     // before enforcing acls check whether there are no acls defined
     // which would mean that there are no restrictions
-    if (parser.users.isEmpty() && parser.groups.isEmpty() && parser.ipv.getIPAddresses().isEmpty()) {
+    if (unrestricted) {
       return true;
     }
 
-    boolean userAccess;
-    boolean groupAccess = false;
-    boolean ipAddrAccess;
-
     Subject subject = Subject.getSubject(AccessController.getContext());
-    Principal primaryPrincipal = (Principal)subject.getPrincipals(PrimaryPrincipal.class).toArray()[0];
+    if (orMode) {
+      return hasUserAccess(subject) || hasGroupAccess(subject) || hasIpAddrAccess(req);
+    }
+    else if (andMode) {
+      return hasUserAccess(subject) && hasGroupAccess(subject) && hasIpAddrAccess(req);
+    }
+    return false;
+  }
+
+  private boolean hasUserAccess(Subject subject) {
+    if (userAclExcluded) {
+      return false;
+    }
+    boolean userAccess;
+    Principal primaryPrincipal = subject.getPrincipals(PrimaryPrincipal.class).iterator().next();
     log.primaryPrincipal(primaryPrincipal.getName());
-    Object[] impersonations = subject.getPrincipals(ImpersonatedPrincipal.class).toArray();
-    if (impersonations.length > 0) {
-      log.impersonatedPrincipal(((Principal)impersonations[0]).getName());
-      userAccess = checkUserAcls((Principal)impersonations[0]);
+    Iterator<ImpersonatedPrincipal> impersonations = subject.getPrincipals(ImpersonatedPrincipal.class).iterator();
+    if (impersonations.hasNext()) {
+      Principal impersonation = impersonations.next();
+      log.impersonatedPrincipal(impersonation.getName());
+      userAccess = checkUserAcls(impersonation);
       log.impersonatedPrincipalHasAccess(userAccess);
     }
     else {
       userAccess = checkUserAcls(primaryPrincipal);
       log.primaryPrincipalHasAccess(userAccess);
     }
-    Object[] groups = subject.getPrincipals(GroupPrincipal.class).toArray();
-    if (groups.length > 0) {
+    return userAccess;
+  }
+
+  private boolean hasGroupAccess(Subject subject) {
+    if (groupAclExcluded) {
+      return false;
+    }
+    boolean groupAccess = false;
+    Set<GroupPrincipal> groups = subject.getPrincipals(GroupPrincipal.class);
+    if (!groups.isEmpty()) {
       groupAccess = checkGroupAcls(groups);
       log.groupPrincipalHasAccess(groupAccess);
     }
@@ -151,35 +194,21 @@ public class AclsAuthorizationFilter implements Filter {
       // it true if there is an anyGroup acl
       // for AND mode and acls like *;*;127.0.0.* we need to
       // make it pass
-      if (parser.anyGroup && "AND".equals(aclProcessingMode)) {
+      if (parser.anyGroup && andMode) {
         groupAccess = true;
       }
     }
-    log.remoteIPAddress(req.getRemoteAddr());
-    ipAddrAccess = checkRemoteIpAcls(req.getRemoteAddr());
-    log.remoteIPAddressHasAccess(ipAddrAccess);
-
-    if ("OR".equals(aclProcessingMode)) {
-      // need to interpret '*' as excluded for OR semantics
-      // to make sense and not grant access to everyone by mistake.
-      // exclusion in OR is equivalent to denied
-      // so, let's set each one that contains '*' to false.
-      if (parser.anyUser) {
-        userAccess = false;
-      }
-      if (parser.anyGroup) {
-        groupAccess = false;
-      }
-      if (parser.ipv.allowsAnyIP()) {
-        ipAddrAccess = false;
-      }
+    return groupAccess;
+  }
 
-      return (userAccess || groupAccess || ipAddrAccess);
-    }
-    else if ("AND".equals(aclProcessingMode)) {
-      return (userAccess && groupAccess && ipAddrAccess);
+  private boolean hasIpAddrAccess(HttpServletRequest req) {
+    if (ipAclExcluded) {
+      return false;
     }
-    return false;
+    log.remoteIPAddress(req.getRemoteAddr());
+    boolean ipAddrAccess = checkRemoteIpAcls(req.getRemoteAddr());
+    log.remoteIPAddressHasAccess(ipAddrAccess);
+    return ipAddrAccess;
   }
 
   private boolean checkRemoteIpAcls(String remoteAddr) {
@@ -203,7 +232,7 @@ public class AclsAuthorizationFilter implements Filter {
       if (parser.users.contains(user.getName())) {
         allowed = true;
       }
-      else if (parser.users.contains("KNOX_ADMIN_USERS") &&
+      else if (knoxAdminUsersAllowed &&
           adminUsers.contains(user.getName())) {
         allowed = true;
       }
@@ -211,7 +240,7 @@ public class AclsAuthorizationFilter implements Filter {
     return allowed;
   }
 
-  boolean checkGroupAcls(Object[] userGroups) {
+  boolean checkGroupAcls(Collection<? extends Principal> userGroups) {
     boolean allowed;
     if (userGroups == null) {
       return false;
@@ -221,22 +250,20 @@ public class AclsAuthorizationFilter implements Filter {
     }
     else {
       allowed = hasAllowedPrincipal(parser.groups, userGroups);
-      if (!allowed && parser.groups.contains("KNOX_ADMIN_GROUPS")) {
+      if (!allowed && knoxAdminGroupsAllowed) {
         allowed = hasAllowedPrincipal(adminGroups, userGroups);
       }
     }
     return allowed;
   }
 
-  private boolean hasAllowedPrincipal(List<String> allowed, Object[] userGroups) {
-    boolean rc = false;
-    for (Object userGroup : userGroups) {
-      if (allowed.contains(((Principal) userGroup).getName())) {
-        rc = true;
-        break;
+  private boolean hasAllowedPrincipal(Set<String> allowed, Collection<? extends Principal> userGroups) {
+    for (Principal userGroup : userGroups) {
+      if (allowed.contains(userGroup.getName())) {
+        return true;
       }
     }
-    return rc;
+    return false;
   }
 
   private void sendForbidden(HttpServletResponse res) {
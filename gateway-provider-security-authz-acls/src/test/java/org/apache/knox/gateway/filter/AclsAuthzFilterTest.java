@@ -444,4 +444,57 @@ public class AclsAuthzFilterTest {
     }
     assertTrue(accessGranted);
   }
+
+  @Test
+  public void testManyGroupsAndCidrRange() throws ServletException, IOException {
+    FilterConfig config = EasyMock.createNiceMock( FilterConfig.class );
+    EasyMock.expect(config.getInitParameter("resource.role")).andReturn("KNOX");
+    EasyMock.expect(config.getInitParameter("knox.acl")).andReturn("*;analysts,group499;10.0.0.0/8");
+    EasyMock.replay( config );
+
+    final HttpServletRequest request = EasyMock.createNiceMock( HttpServletRequest.class );
+    EasyMock.expect(request.getRemoteAddr()).andReturn("10.20.30.40").anyTimes();
+    EasyMock.replay( request );
+
+    final HttpServletResponse response = EasyMock.createNiceMock( HttpServletResponse.class );
+    EasyMock.replay( response );
+
+    final FilterChain chain = new FilterChain() {
+      @Override
+      public void doFilter(ServletRequest request, ServletResponse response) {
+      }
+    };
+
+    filter.init(config);
+
+    Subject subject = new Subject();
+    subject.getPrincipals().add(new PrimaryPrincipal("larry"));
+    for (int i = 0; i < 500; i++) {
+      subject.getPrincipals().add(new GroupPrincipal("group" + i));
+    }
+    try {
+      Subject.doAs(
+        subject,
+        new PrivilegedExceptionAction<Object>() {
+          @Override
+          public Object run() throws Exception {
+            filter.doFilter(request, response, chain);
+            return null;
+          }
+        });
+    }
+    catch (PrivilegedActionException e) {
+      Throwable t = e.getCause();
+      if (t instanceof IOException) {
+        throw (IOException) t;
+      }
+      else if (t instanceof ServletException) {
+        throw (ServletException) t;
+      }
+      else {
+        throw new ServletException(t);
+      }
+    }
+    assertTrue(accessGranted);
+  }
 }
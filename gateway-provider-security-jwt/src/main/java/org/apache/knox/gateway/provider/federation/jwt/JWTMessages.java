@@ -61,4 +61,7 @@ public interface JWTMessages {
 
   @Message( level = MessageLevel.WARN, text = "Unable to vderive authentication provider url: {0}" )
   void failedToDeriveAuthenticationProviderUrl(@StackTrace( level = MessageLevel.ERROR) Exception e);
+
+  @Message( level = MessageLevel.WARN, text = "Ignoring invalid value {1} for verified token cache parameter {0}" )
+  void invalidVerifiedTokenCacheParameter(String name, String value);
 }
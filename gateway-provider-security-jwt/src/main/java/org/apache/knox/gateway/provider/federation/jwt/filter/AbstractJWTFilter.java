@@ -29,6 +29,7 @@ import java.util.HashSet;
 import java.util.List;
 import java.util.Locale;
 import java.util.Set;
+import java.util.concurrent.TimeUnit;
 
 import javax.security.auth.Subject;
 import javax.servlet.Filter;
@@ -49,17 +50,20 @@ import org.apache.knox.gateway.audit.api.AuditServiceFactory;
 import org.apache.knox.gateway.audit.api.Auditor;
 import org.apache.knox.gateway.audit.api.ResourceType;
 import org.apache.knox.gateway.audit.log4j.audit.AuditConstants;
+import org.apache.knox.gateway.config.GatewayConfig;
 import org.apache.knox.gateway.filter.AbstractGatewayFilter;
 import org.apache.knox.gateway.i18n.messages.MessagesFactory;
 import org.apache.knox.gateway.provider.federation.jwt.JWTMessages;
 import org.apache.knox.gateway.security.PrimaryPrincipal;
 import org.apache.knox.gateway.services.GatewayServices;
 import org.apache.knox.gateway.services.ServiceType;
+import org.apache.knox.gateway.services.metrics.MetricsService;
 import org.apache.knox.gateway.services.security.token.JWTokenAuthority;
 import org.apache.knox.gateway.services.security.token.TokenServiceException;
 import org.apache.knox.gateway.services.security.token.TokenStateService;
 import org.apache.knox.gateway.services.security.token.TokenUtils;
 import org.apache.knox.gateway.services.security.token.UnknownTokenException;
+import org.apache.knox.gateway.services.security.token.VerifiedTokenCache;
 import org.apache.knox.gateway.services.security.token.impl.JWT;
 import org.apache.knox.gateway.services.security.token.impl.JWTToken;
 
@@ -81,6 +85,20 @@ public abstract class AbstractJWTFilter implements Filter {
   public static final String JWT_EXPECTED_SIGALG = "jwt.expected.sigalg";
   public static final String JWT_DEFAULT_SIGALG = "RS256";
 
+  /**
+   * The maximum number of tokens whose verified signature is remembered, so that repeated
+   * requests bearing the same token skip the signature verification. Use 0 to disable caching.
+   */
+  public static final String JWT_VERIFIED_CACHE_MAX_SIZE = "jwt.verified.cache.max.size";
+  public static final long JWT_DEFAULT_VERIFIED_CACHE_MAX_SIZE = 10000L;
+
+  /**
+   * The maximum time, in milliseconds, a verified signature is remembered. Entries never outlive
+   * the expiration time of the token itself.
+   */
+  public static final String JWT_VERIFIED_CACHE_TTL = "jwt.verified.cache.ttl";
+  public static final long JWT_DEFAULT_VERIFIED_CACHE_TTL = TimeUnit.MINUTES.toMillis(5);
+
   static JWTMessages log = MessagesFactory.get( JWTMessages.class );
   private static AuditService auditService = AuditServiceFactory.getAuditService();
   private static Auditor auditor = auditService.getAuditor(
@@ -96,6 +114,8 @@ public abstract class AbstractJWTFilter implements Filter {
   protected String expectedJWKSUrl;
 
   private TokenStateService tokenStateService;
+  private GatewayServices services;
+  private VerifiedTokenCache verifiedTokenCache;
 
   @Override
   public abstract void doFilter(ServletRequest request, ServletResponse response, FilterChain chain)
@@ -112,7 +132,7 @@ public abstract class AbstractJWTFilter implements Filter {
   public void init( FilterConfig filterConfig ) throws ServletException {
     ServletContext context = filterConfig.getServletContext();
     if (context != null) {
-      GatewayServices services = (GatewayServices) context.getAttribute(GatewayServices.GATEWAY_SERVICES_ATTRIBUTE);
+      services = (GatewayServices) context.getAttribute(GatewayServices.GATEWAY_SERVICES_ATTRIBUTE);
       if (services != null) {
         authority = services.getService(ServiceType.TOKEN_SERVICE);
         if (TokenUtils.isServerManagedTokenStateEnabled(filterConfig)) {
@@ -132,6 +152,44 @@ public abstract class AbstractJWTFilter implements Filter {
     if (expectedSigAlg == null) {
       expectedSigAlg = JWT_DEFAULT_SIGALG;
     }
+
+    configureVerifiedTokenCache(filterConfig);
+  }
+
+  private void configureVerifiedTokenCache(FilterConfig filterConfig) {
+    long maxSize = getLongParameter(filterConfig, JWT_VERIFIED_CACHE_MAX_SIZE, JWT_DEFAULT_VERIFIED_CACHE_MAX_SIZE);
+    long ttl = getLongParameter(filterConfig, JWT_VERIFIED_CACHE_TTL, JWT_DEFAULT_VERIFIED_CACHE_TTL);
+    if (maxSize <= 0 || ttl <= 0) {
+      verifiedTokenCache = null;
+      return;
+    }
+
+    ServletContext context = filterConfig.getServletContext();
+    String topologyName = context == null ? null : (String) context.getAttribute(GatewayServices.GATEWAY_CLUSTER_ATTRIBUTE);
+    String cacheName = (topologyName == null ? "" : topologyName + ".") + getClass().getSimpleName();
+    verifiedTokenCache = new VerifiedTokenCache(cacheName, maxSize, ttl);
+
+    if (services != null) {
+      GatewayConfig config = context == null ? null : (GatewayConfig) context.getAttribute(GatewayConfig.GATEWAY_CONFIG_ATTRIBUTE);
+      if (config != null && config.isMetricsEnabled()) {
+        MetricsService metricsService = services.getService(ServiceType.METRICS_SERVICE);
+        if (metricsService != null) {
+          metricsService.getInstrumented(verifiedTokenCache);
+        }
+      }
+    }
+  }
+
+  private static long getLongParameter(FilterConfig filterConfig, String name, long defaultValue) {
+    String value = filterConfig.getInitParameter(name);
+    if (value != null) {
+      try {
+        return Long.parseLong(value.trim());
+      } catch (NumberFormatException e) {
+        log.invalidVerifiedTokenCacheParameter(name, value);
+      }
+    }
+    return defaultValue;
   }
 
   protected List<String> parseExpectedAudiences(String expectedAudiences) {
@@ -264,29 +322,11 @@ public abstract class AbstractJWTFilter implements Filter {
   protected boolean validateToken(HttpServletRequest request, HttpServletResponse response,
       FilterChain chain, JWT token)
       throws IOException, ServletException {
-    boolean verified = false;
-    try {
-      if (publicKey != null) {
-        verified = authority.verifyToken(token, publicKey);
-      } else if (expectedJWKSUrl != null) {
-        verified = authority.verifyToken(token, expectedJWKSUrl, expectedSigAlg);
-      } else {
-        verified = authority.verifyToken(token);
-      }
-    } catch (TokenServiceException e) {
-      log.unableToVerifyToken(e);
-    }
-
-    // Check received signature algorithm
-    if (verified) {
-      try {
-        String receivedSigAlg = JWSHeader.parse(token.getHeader()).getAlgorithm().getName();
-        if (!receivedSigAlg.equals(expectedSigAlg)) {
-          verified = false;
-        }
-      } catch (ParseException e) {
-        log.unableToVerifyToken(e);
-        verified = false;
+    boolean verified = verifiedTokenCache != null && verifiedTokenCache.isVerified(token);
+    if (!verified) {
+      verified = verifySignature(token);
+      if (verified && verifiedTokenCache != null) {
+        verifiedTokenCache.markVerified(token);
       }
     }
 
@@ -322,6 +362,10 @@ public abstract class AbstractJWTFilter implements Filter {
                                   "Bad request: token has expired");
           }
         } catch (UnknownTokenException e) {
+          // The token may have been revoked, so it must go through the full verification again
+          if (verifiedTokenCache != null) {
+            verifiedTokenCache.invalidate(token);
+          }
           log.unableToVerifyExpiration(e);
           handleValidationError(request, response, HttpServletResponse.SC_UNAUTHORIZED, e.getMessage());
         }
@@ -338,6 +382,35 @@ public abstract class AbstractJWTFilter implements Filter {
     return false;
   }
 
+  private boolean verifySignature(JWT token) {
+    boolean verified = false;
+    try {
+      if (publicKey != null) {
+        verified = authority.verifyToken(token, publicKey);
+      } else if (expectedJWKSUrl != null) {
+        verified = authority.verifyToken(token, expectedJWKSUrl, expectedSigAlg);
+      } else {
+        verified = authority.verifyToken(token);
+      }
+    } catch (TokenServiceException e) {
+      log.unableToVerifyToken(e);
+    }
+
+    // Check received signature algorithm
+    if (verified) {
+      try {
+        String receivedSigAlg = JWSHeader.parse(token.getHeader()).getAlgorithm().getName();
+        if (!receivedSigAlg.equals(expectedSigAlg)) {
+          verified = false;
+        }
+      } catch (ParseException e) {
+        log.unableToVerifyToken(e);
+        verified = false;
+      }
+    }
+    return verified;
+  }
+
   protected abstract void handleValidationError(HttpServletRequest request, HttpServletResponse response, int status,
                                                 String error) throws IOException;
 
@@ -25,6 +25,8 @@ import java.util.Map.Entry;
 
 public class ShiroConfig {
 
+  private static final String LOOKUP_CACHE_ENABLED_SUFFIX = ".lookupCacheEnabled";
+
   private Map<String, Map<String, String>> sections = new LinkedHashMap<>();
 
   public ShiroConfig(Provider provider, String clusterName) {
@@ -50,6 +52,11 @@ public class ShiroConfig {
         } else {
           addNameValueToSection(name, value, sectionName);
         }
+        if (name.endsWith(LOOKUP_CACHE_ENABLED_SUFFIX)) {
+          // the realm qualifies its lookup cache metrics with the topology name
+          String baseName = name.substring(0, name.length() - LOOKUP_CACHE_ENABLED_SUFFIX.length());
+          addNameValueToSection(baseName + ".topologyName", clusterName, sectionName);
+        }
       }
     }
   }
@@ -21,6 +21,7 @@ import java.io.IOException;
 import java.security.Principal;
 import java.security.PrivilegedExceptionAction;
 import java.util.HashSet;
+import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.Callable;
 
@@ -38,10 +39,12 @@ import org.apache.knox.gateway.audit.api.AuditServiceFactory;
 import org.apache.knox.gateway.audit.api.Auditor;
 import org.apache.knox.gateway.audit.api.ResourceType;
 import org.apache.knox.gateway.audit.log4j.audit.AuditConstants;
+import org.apache.knox.gateway.dispatch.AsyncDispatchSupport;
 import org.apache.knox.gateway.security.GroupPrincipal;
 import org.apache.knox.gateway.security.PrimaryPrincipal;
 import org.apache.shiro.SecurityUtils;
 import org.apache.shiro.subject.Subject;
+import org.apache.shiro.util.ThreadContext;
 
 public class ShiroSubjectIdentityAdapter implements Filter {
   private static final String SUBJECT_USER_GROUPS = "subject.userGroups";
@@ -71,6 +74,25 @@ public class ShiroSubjectIdentityAdapter implements Filter {
     SecurityUtils.getSubject().execute(callableChain);
   }
 
+  /**
+   * Binds the Shiro subject and security manager of the request to the thread
+   * an asynchronous dispatch runs on.
+   */
+  private static AsyncDispatchSupport.ThreadState captureShiroThreadState() {
+    final Map<Object, Object> resources = ThreadContext.getResources();
+    return () -> {
+      final Map<Object, Object> previous = ThreadContext.getResources();
+      ThreadContext.setResources(resources);
+      return () -> {
+        if (previous == null || previous.isEmpty()) {
+          ThreadContext.remove();
+        } else {
+          ThreadContext.setResources(previous);
+        }
+      };
+    };
+  }
+
   private static class CallableChain implements Callable<Void> {
     private FilterChain chain;
     ServletRequest request;
@@ -131,6 +153,8 @@ public class ShiroSubjectIdentityAdapter implements Filter {
       }
       auditor.audit( Action.AUTHENTICATION , sourceUri, ResourceType.URI, ActionOutcome.SUCCESS, "Groups: " + userGroups );
 
+      AsyncDispatchSupport.addThreadState( request, captureShiroThreadState() );
+
       // The newly constructed Sets check whether this Subject has been set read-only
       // before permitting subsequent modifications. The newly created Sets also prevent
       // illegal modifications by ensuring that callers have sufficient permissions.
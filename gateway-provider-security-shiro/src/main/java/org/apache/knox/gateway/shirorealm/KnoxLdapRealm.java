@@ -19,6 +19,7 @@
 
 package org.apache.knox.gateway.shirorealm;
 
+import com.codahale.metrics.MetricRegistry;
 import org.apache.knox.gateway.GatewayMessages;
 import org.apache.knox.gateway.audit.api.Action;
 import org.apache.knox.gateway.audit.api.ActionOutcome;
@@ -28,6 +29,7 @@ import org.apache.knox.gateway.audit.api.Auditor;
 import org.apache.knox.gateway.audit.api.ResourceType;
 import org.apache.knox.gateway.audit.log4j.audit.AuditConstants;
 import org.apache.knox.gateway.i18n.messages.MessagesFactory;
+import org.apache.knox.gateway.services.metrics.impl.DefaultMetricsService;
 import org.apache.knox.gateway.shirorealm.impl.i18n.KnoxShiroMessages;
 import org.apache.shiro.SecurityUtils;
 import org.apache.shiro.authc.AuthenticationInfo;
@@ -123,6 +125,13 @@ import java.util.regex.Pattern;
  *
  * securityManager.realms = $ldapRealm
  *
+ * # optional caching of user DN and group lookups, times are in milliseconds
+ * ldapRealm.lookupCacheEnabled=true
+ * ldapRealm.lookupCacheTtl=300000
+ * ldapRealm.lookupCacheNegativeTtl=30000
+ * ldapRealm.lookupCacheRefreshInterval=240000
+ * ldapRealm.lookupCacheMaxEntries=10000
+ *
  * </pre>
  */
 public class KnoxLdapRealm extends DefaultLdapRealm {
@@ -188,11 +197,44 @@ public class KnoxLdapRealm extends DefaultLdapRealm {
 
     private HashService hashService = new DefaultHashService();
 
+    private boolean lookupCacheEnabled;
+    private long lookupCacheTtl = 300000L;
+    private long lookupCacheNegativeTtl = 30000L;
+    private long lookupCacheRefreshInterval;
+    private long lookupCacheMaxEntries = 10000L;
+    private long lookupCacheMaxBytes;
+
+    private String topologyName;
+
+    private LdapLookupCache<String> userDnCache;
+    private LdapLookupCache<LdapGroups> groupCache;
+
     public KnoxLdapRealm() {
       HashedCredentialsMatcher credentialsMatcher = new HashedCredentialsMatcher(HASHING_ALGORITHM);
       setCredentialsMatcher(credentialsMatcher);
     }
 
+  @Override
+  protected void onInit() {
+    super.onInit();
+    if (lookupCacheEnabled) {
+      final MetricRegistry metrics = DefaultMetricsService.getMetricRegistry();
+      final String prefix = MetricRegistry.name("ldap", topologyName, getName());
+      userDnCache = new LdapLookupCache<>(MetricRegistry.name(prefix, "userdn"),
+          this::searchUserDn, dn -> 2 * dn.length(), dn -> true,
+          lookupCacheTtl, lookupCacheNegativeTtl, lookupCacheRefreshInterval,
+          lookupCacheMaxEntries, lookupCacheMaxBytes, metrics);
+      groupCache = new LdapLookupCache<>(MetricRegistry.name(prefix, "groups"),
+          userDn -> searchGroups(userDn, getContextFactory()), LdapGroups::size, groups -> groups.complete,
+          lookupCacheTtl, lookupCacheNegativeTtl, lookupCacheRefreshInterval,
+          lookupCacheMaxEntries, lookupCacheMaxBytes, metrics);
+      ShiroLog.ldapLookupCacheEnabled(getName(), lookupCacheTtl, lookupCacheNegativeTtl, lookupCacheRefreshInterval);
+    } else {
+      userDnCache = null;
+      groupCache = null;
+    }
+  }
+
   @Override
   //KNOX-534 overriding this method to be able to audit authentication exceptions
   protected AuthenticationInfo doGetAuthenticationInfo(AuthenticationToken token) throws org.apache.shiro.authc.AuthenticationException {
@@ -238,23 +280,16 @@ public class KnoxLdapRealm extends DefaultLdapRealm {
         final LdapContextFactory ldapContextFactory) throws NamingException {
         final String username = (String) getAvailablePrincipal(principals);
 
-        LdapContext systemLdapCtx = null;
         try {
-            systemLdapCtx = ldapContextFactory.getSystemLdapContext();
-            return rolesFor(principals, username, systemLdapCtx, ldapContextFactory);
+            return rolesFor(principals, username, ldapContextFactory);
         } catch (AuthenticationException e) {
           LOG.failedToGetSystemLdapConnection(e);
           return Collections.emptySet();
-        } finally {
-            LdapUtils.closeContext(systemLdapCtx);
         }
     }
 
-    private Set<String> rolesFor(PrincipalCollection principals, final String userName, final LdapContext ldapCtx,
+    private Set<String> rolesFor(PrincipalCollection principals, final String userName,
         final LdapContextFactory ldapContextFactory) throws NamingException {
-      final Set<String> roleNames = new HashSet<>();
-      final Set<String> groupNames = new HashSet<>();
-
       String userDn;
       if (userSearchAttributeName == null || userSearchAttributeName.isEmpty()) {
         // memberAttributeValuePrefix and memberAttributeValueSuffix were computed from memberAttributeValueTemplate
@@ -263,11 +298,34 @@ public class KnoxLdapRealm extends DefaultLdapRealm {
         userDn = getUserDn(userName);
       }
 
+      final LdapGroups groups = groupCache == null ? searchGroups(userDn, ldapContextFactory) : groupCache.get(userDn);
+      // copies, the cached sets are shared between subjects
+      final Set<String> roleNames = new HashSet<>(groups.roleNames);
+      final Set<String> groupNames = new HashSet<>(groups.groupNames);
+
+      // save role names and group names in session so that they can be easily looked up outside of this object
+      SecurityUtils.getSubject().getSession().setAttribute(SUBJECT_USER_ROLES, roleNames);
+      SecurityUtils.getSubject().getSession().setAttribute(SUBJECT_USER_GROUPS, groupNames);
+      if (!groupNames.isEmpty() && (principals instanceof MutablePrincipalCollection)) {
+        ((MutablePrincipalCollection)principals).addAll(groupNames, getName());
+      }
+      LOG.lookedUpUserRoles(roleNames, userName);
+
+      return roleNames;
+    }
+
+    private LdapGroups searchGroups(final String userDn, final LdapContextFactory ldapContextFactory) throws NamingException {
+      final Set<String> roleNames = new HashSet<>();
+      final Set<String> groupNames = new HashSet<>();
+
       // Activate paged results
       int pageSize = 100;
       int numResults = 0;
+      boolean complete = true;
       byte[] cookie = null;
+      LdapContext ldapCtx = null;
       try {
+        ldapCtx = ldapContextFactory.getSystemLdapContext();
         ldapCtx.addToEnvironment(Context.REFERRAL, "ignore");
 
         ldapCtx.setRequestControls(new Control[]{new PagedResultsControl(pageSize, Control.NONCRITICAL)});
@@ -312,19 +370,15 @@ public class KnoxLdapRealm extends DefaultLdapRealm {
         } while (cookie != null);
       } catch (SizeLimitExceededException e) {
         LOG.sizeLimitExceededOnlyRetrieved(numResults);
+        complete = false;
       } catch(IOException e) {
         LOG.unableToSetupPagedResults();
+        complete = false;
+      } finally {
+        LdapUtils.closeContext(ldapCtx);
       }
 
-      // save role names and group names in session so that they can be easily looked up outside of this object
-      SecurityUtils.getSubject().getSession().setAttribute(SUBJECT_USER_ROLES, roleNames);
-      SecurityUtils.getSubject().getSession().setAttribute(SUBJECT_USER_GROUPS, groupNames);
-      if (!groupNames.isEmpty() && (principals instanceof MutablePrincipalCollection)) {
-        ((MutablePrincipalCollection)principals).addAll(groupNames, getName());
-      }
-      LOG.lookedUpUserRoles(roleNames, userName);
-
-      return roleNames;
+      return new LdapGroups(roleNames, groupNames, complete);
     }
 
   private void addRoleIfMember(final String userDn, final SearchResult group,
@@ -512,6 +566,80 @@ public class KnoxLdapRealm extends DefaultLdapRealm {
         this.userObjectClass = userObjectClass;
     }
 
+    public String getTopologyName() {
+      return topologyName;
+    }
+
+    /**
+     * Names the topology this realm belongs to, which qualifies the names of the lookup cache metrics.
+     */
+    public void setTopologyName(String topologyName) {
+      this.topologyName = topologyName;
+    }
+
+    public boolean isLookupCacheEnabled() {
+      return lookupCacheEnabled;
+    }
+
+    public void setLookupCacheEnabled(boolean lookupCacheEnabled) {
+      this.lookupCacheEnabled = lookupCacheEnabled;
+    }
+
+    public long getLookupCacheTtl() {
+      return lookupCacheTtl;
+    }
+
+    public void setLookupCacheTtl(long lookupCacheTtl) {
+      this.lookupCacheTtl = lookupCacheTtl;
+    }
+
+    public long getLookupCacheNegativeTtl() {
+      return lookupCacheNegativeTtl;
+    }
+
+    public void setLookupCacheNegativeTtl(long lookupCacheNegativeTtl) {
+      this.lookupCacheNegativeTtl = lookupCacheNegativeTtl;
+    }
+
+    public long getLookupCacheRefreshInterval() {
+      return lookupCacheRefreshInterval;
+    }
+
+    public void setLookupCacheRefreshInterval(long lookupCacheRefreshInterval) {
+      this.lookupCacheRefreshInterval = lookupCacheRefreshInterval;
+    }
+
+    public long getLookupCacheMaxEntries() {
+      return lookupCacheMaxEntries;
+    }
+
+    public void setLookupCacheMaxEntries(long lookupCacheMaxEntries) {
+      this.lookupCacheMaxEntries = lookupCacheMaxEntries;
+    }
+
+    public long getLookupCacheMaxBytes() {
+      return lookupCacheMaxBytes;
+    }
+
+    /**
+     * Bounds the lookup cache by the approximate size of its entries instead of their number.
+     */
+    public void setLookupCacheMaxBytes(long lookupCacheMaxBytes) {
+      this.lookupCacheMaxBytes = lookupCacheMaxBytes;
+    }
+
+    /**
+     * Drops all cached user DN and group lookups, e.g. after group memberships changed in the directory.
+     */
+    public void clearLookupCache() {
+      if (userDnCache != null) {
+        userDnCache.invalidateAll();
+      }
+      if (groupCache != null) {
+        groupCache.invalidateAll();
+      }
+    }
+
     private Map<String, List<String>> parsePermissionByRoleString(String permissionsByRoleStr) {
       Map<String,List<String>> perms = new HashMap<>();
 
@@ -689,6 +817,28 @@ public class KnoxLdapRealm extends DefaultLdapRealm {
         return userDn;
       }
 
+      try {
+        userDn = userDnCache == null ? searchUserDn( principal ) : userDnCache.get( principal );
+      } catch (AuthenticationException e) {
+        LOG.failedToGetSystemLdapConnection(e);
+        throw new IllegalArgumentException("Illegal principal name: " + principal, e);
+      } catch (NamingException e) {
+        throw new IllegalArgumentException("Hit NamingException", e);
+      }
+      if ( userDn == null ) {
+        throw new IllegalArgumentException("Illegal principal name: " + principal);
+      }
+      return userDn;
+    }
+
+    /**
+     * Searches the directory for the DN of a principal.
+     *
+     * @return the DN, or <code>null</code> if no entry matches the principal
+     */
+    private String searchUserDn( final String principal ) throws NamingException {
+      Matcher matchedPrincipal = matchPrincipal( principal );
+
       // Create the searchBase and searchFilter from config.
       String searchBase = expandTemplate( getUserSearchBase(), matchedPrincipal );
       String searchFilter;
@@ -717,17 +867,12 @@ public class KnoxLdapRealm extends DefaultLdapRealm {
         // SearchResults contains all the entries in search scope
         if (searchResultEnum.hasMore()) {
           SearchResult searchResult = searchResultEnum.next();
-          userDn = searchResult.getNameInNamespace();
+          String userDn = searchResult.getNameInNamespace();
           LOG.searchedAndFoundUserDn(userDn, principal);
           return userDn;
         } else {
-          throw new IllegalArgumentException("Illegal principal name: " + principal);
+          return null;
         }
-      } catch (AuthenticationException e) {
-        LOG.failedToGetSystemLdapConnection(e);
-        throw new IllegalArgumentException("Illegal principal name: " + principal, e);
-      } catch (NamingException e) {
-        throw new IllegalArgumentException("Hit NamingException", e);
       } finally {
         try {
           if (searchResultEnum != null) {
@@ -749,6 +894,30 @@ public class KnoxLdapRealm extends DefaultLdapRealm {
       return new SimpleAuthenticationInfo(token.getPrincipal(), credentialsHash.toHex(), credentialsHash.getSalt(), getName());
     }
 
+  private static final class LdapGroups {
+    private final Set<String> roleNames;
+    private final Set<String> groupNames;
+    // false if the search was cut short, so the groups must not be cached
+    private final boolean complete;
+
+    LdapGroups( final Set<String> roleNames, final Set<String> groupNames, final boolean complete ) {
+      this.roleNames = roleNames;
+      this.groupNames = groupNames;
+      this.complete = complete;
+    }
+
+    int size() {
+      int size = 0;
+      for( String name : roleNames ) {
+        size += 48 + 2 * name.length();
+      }
+      for( String name : groupNames ) {
+        size += 48 + 2 * name.length();
+      }
+      return size;
+    }
+  }
+
   private static String expandTemplate( final String template, final Matcher input ) {
     String output = template;
     Matcher matcher = TEMPLATE_PATTERN.matcher( output );
@@ -0,0 +1,141 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.knox.gateway.shirorealm;
+
+import com.codahale.metrics.Counter;
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.Timer;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import com.github.benmanes.caffeine.cache.LoadingCache;
+import com.github.benmanes.caffeine.cache.Ticker;
+
+import javax.naming.NamingException;
+import java.util.Optional;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Predicate;
+import java.util.function.ToIntFunction;
+
+/**
+ * Caches the results of one kind of LDAP lookup made by {@link KnoxLdapRealm}.
+ *
+ * <p>
+ * Lookups that find nothing are cached as well, for their own (usually shorter) time, so that
+ * clients retrying an unknown principal do not reach the directory each time. Lookups that fail
+ * are never cached, nor are incomplete values such as a group search cut short by a size limit. With a refresh interval set, entries older than the interval are reloaded in
+ * the background on their next use while the old value keeps being served.
+ */
+class LdapLookupCache<V> {
+
+  @FunctionalInterface
+  interface Lookup<V> {
+    /**
+     * @return the value found in the directory, or <code>null</code> if there is none
+     */
+    V lookup( String key ) throws NamingException;
+  }
+
+  // Rough per entry overhead of the key, the value holder and the cache node
+  private static final int ENTRY_OVERHEAD = 96;
+
+  private final LoadingCache<String, Optional<V>> cache;
+  private final Counter hits;
+  private final Counter misses;
+  private final Timer loads;
+
+  LdapLookupCache( final String name, final Lookup<V> lookup, final ToIntFunction<V> sizeOf,
+                   final Predicate<V> complete, final long ttl, final long negativeTtl, final long refreshInterval,
+                   final long maxEntries, final long maxBytes, final MetricRegistry metrics ) {
+    this( name, lookup, sizeOf, complete, ttl, negativeTtl, refreshInterval, maxEntries, maxBytes, metrics, Ticker.systemTicker() );
+  }
+
+  LdapLookupCache( final String name, final Lookup<V> lookup, final ToIntFunction<V> sizeOf,
+                   final Predicate<V> complete, final long ttl, final long negativeTtl, final long refreshInterval,
+                   final long maxEntries, final long maxBytes, final MetricRegistry metrics, final Ticker ticker ) {
+    this.hits = metrics.counter( MetricRegistry.name( name, "hits" ) );
+    this.misses = metrics.counter( MetricRegistry.name( name, "misses" ) );
+    this.loads = metrics.timer( MetricRegistry.name( name, "loads" ) );
+
+    final Caffeine<Object, Object> builder = Caffeine.newBuilder().ticker( ticker );
+    if( maxBytes > 0 ) {
+      builder.maximumWeight( maxBytes ).<String, Optional<V>>weigher(
+          ( key, value ) -> ENTRY_OVERHEAD + 2 * key.length() + ( value.isPresent() ? sizeOf.applyAsInt( value.get() ) : 0 ) );
+    } else {
+      builder.maximumSize( maxEntries );
+    }
+    if( refreshInterval > 0 && refreshInterval < ttl ) {
+      builder.refreshAfterWrite( refreshInterval, TimeUnit.MILLISECONDS );
+    }
+    this.cache = builder.expireAfter( new Expiry<String, Optional<V>>() {
+      @Override
+      public long expireAfterCreate( String key, Optional<V> value, long currentTime ) {
+        if( !value.isPresent() ) {
+          return TimeUnit.MILLISECONDS.toNanos( negativeTtl );
+        }
+        // Incomplete values are handed to the caller that loaded them but expire right away
+        return complete.test( value.get() ) ? TimeUnit.MILLISECONDS.toNanos( ttl ) : 0L;
+      }
+
+      @Override
+      public long expireAfterUpdate( String key, Optional<V> value, long currentTime, long currentDuration ) {
+        return expireAfterCreate( key, value, currentTime );
+      }
+
+      @Override
+      public long expireAfterRead( String key, Optional<V> value, long currentTime, long currentDuration ) {
+        return currentDuration;
+      }
+    } ).build( key -> {
+      try( Timer.Context ignored = loads.time() ) {
+        return Optional.ofNullable( lookup.lookup( key ) );
+      }
+    } );
+  }
+
+  /**
+   * @return the cached or freshly looked up value, or <code>null</code> if the directory has none
+   * @throws NamingException if the value had to be looked up and the lookup failed
+   */
+  V get( final String key ) throws NamingException {
+    Optional<V> value = cache.getIfPresent( key );
+    if( value != null ) {
+      hits.inc();
+    } else {
+      misses.inc();
+      try {
+        value = cache.get( key );
+      } catch( CompletionException e ) {
+        if( e.getCause() instanceof NamingException ) {
+          throw (NamingException)e.getCause();
+        }
+        throw e;
+      }
+    }
+    return value.orElse( null );
+  }
+
+  void invalidateAll() {
+    cache.invalidateAll();
+  }
+
+  long size() {
+    cache.cleanUp();
+    return cache.estimatedSize();
+  }
+}
@@ -41,4 +41,7 @@ public interface KnoxShiroMessages {
   @Message(level = MessageLevel.INFO, text = "Successfully logged in: {0}, {1}")
   void successfulLoginAttempt(Subject subject, AuthenticationToken authToken);
 
+  @Message(level = MessageLevel.INFO, text = "LDAP lookup cache enabled for realm {0}: ttl={1}ms, negativeTtl={2}ms, refreshInterval={3}ms")
+  void ldapLookupCacheEnabled(String realmName, long ttl, long negativeTtl, long refreshInterval);
+
 }
@@ -0,0 +1,46 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.knox.gateway.deploy.impl;
+
+import org.apache.knox.gateway.topology.Provider;
+import org.junit.Test;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import static org.hamcrest.CoreMatchers.containsString;
+import static org.hamcrest.CoreMatchers.not;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+public class ShiroConfigTest {
+
+  @Test
+  public void testTopologyNameIsAddedToRealmsWithLookupCache() {
+    Map<String,String> params = new LinkedHashMap<>();
+    params.put( "main.ldapRealm", "org.apache.knox.gateway.shirorealm.KnoxLdapRealm" );
+    params.put( "main.ldapRealm.lookupCacheEnabled", "true" );
+    params.put( "main.otherRealm", "org.apache.knox.gateway.shirorealm.KnoxLdapRealm" );
+    Provider provider = new Provider();
+    provider.setParams( params );
+
+    String ini = new ShiroConfig( provider, "sandbox" ).toString();
+    assertThat( ini, containsString( "ldapRealm.lookupCacheEnabled=true\nldapRealm.topologyName=sandbox\n" ) );
+    assertThat( ini, not( containsString( "otherRealm.topologyName" ) ) );
+  }
+
+}
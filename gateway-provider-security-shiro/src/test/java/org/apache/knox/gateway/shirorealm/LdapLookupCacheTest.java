@@ -0,0 +1,117 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one
+ *  or more contributor license agreements.  See the NOTICE file
+ *  distributed with this work for additional information
+ *  regarding copyright ownership.  The ASF licenses this file
+ *  to you under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ */
+
+package org.apache.knox.gateway.shirorealm;
+
+import com.codahale.metrics.MetricRegistry;
+import org.junit.Test;
+
+import javax.naming.CommunicationException;
+import javax.naming.NamingException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.fail;
+
+public class LdapLookupCacheTest {
+
+  private final AtomicLong now = new AtomicLong();
+  private final AtomicInteger lookups = new AtomicInteger();
+  private final MetricRegistry metrics = new MetricRegistry();
+
+  private LdapLookupCache<String> newCache( LdapLookupCache.Lookup<String> lookup ) {
+    return new LdapLookupCache<>( "test", key -> {
+      lookups.incrementAndGet();
+      return lookup.lookup( key );
+    }, String::length, value -> !value.endsWith( "..." ), 1000L, 100L, 0L, 100L, 0L, metrics, now::get );
+  }
+
+  private void advance( long millis ) {
+    now.addAndGet( TimeUnit.MILLISECONDS.toNanos( millis ) );
+  }
+
+  @Test
+  public void testFoundValuesAreCachedUntilTheyExpire() throws Exception {
+    LdapLookupCache<String> cache = newCache( key -> "uid=" + key );
+    assertEquals( "uid=guest", cache.get( "guest" ) );
+    assertEquals( "uid=guest", cache.get( "guest" ) );
+    assertEquals( 1, lookups.get() );
+    assertEquals( 1, metrics.counter( "test.hits" ).getCount() );
+    assertEquals( 1, metrics.counter( "test.misses" ).getCount() );
+
+    advance( 999 );
+    assertEquals( "uid=guest", cache.get( "guest" ) );
+    assertEquals( 1, lookups.get() );
+
+    advance( 1 );
+    assertEquals( "uid=guest", cache.get( "guest" ) );
+    assertEquals( 2, lookups.get() );
+    assertEquals( 2, metrics.timer( "test.loads" ).getCount() );
+  }
+
+  @Test
+  public void testMissingValuesAreCachedForTheNegativeTtl() throws Exception {
+    LdapLookupCache<String> cache = newCache( key -> null );
+    assertNull( cache.get( "nobody" ) );
+    assertNull( cache.get( "nobody" ) );
+    assertEquals( 1, lookups.get() );
+
+    advance( 100 );
+    assertNull( cache.get( "nobody" ) );
+    assertEquals( 2, lookups.get() );
+  }
+
+  @Test
+  public void testFailedLookupsAreNotCached() throws Exception {
+    LdapLookupCache<String> cache = newCache( key -> {
+      throw new CommunicationException( "down" );
+    } );
+    for( int i = 0; i < 2; i++ ) {
+      try {
+        cache.get( "guest" );
+        fail( "Expected NamingException" );
+      } catch( NamingException e ) {
+        assertEquals( "down", e.getMessage() );
+      }
+    }
+    assertEquals( 2, lookups.get() );
+    assertEquals( 0, cache.size() );
+  }
+
+  @Test
+  public void testIncompleteValuesAreNotCached() throws Exception {
+    LdapLookupCache<String> cache = newCache( key -> "uid=" + key + "..." );
+    assertEquals( "uid=guest...", cache.get( "guest" ) );
+    assertEquals( "uid=guest...", cache.get( "guest" ) );
+    assertEquals( 2, lookups.get() );
+    assertEquals( 0, cache.size() );
+  }
+
+  @Test
+  public void testInvalidateAll() throws Exception {
+    LdapLookupCache<String> cache = newCache( key -> "uid=" + key );
+    cache.get( "guest" );
+    cache.invalidateAll();
+    cache.get( "guest" );
+    assertEquals( 2, lookups.get() );
+  }
+}
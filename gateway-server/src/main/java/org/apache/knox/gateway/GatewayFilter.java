@@ -50,23 +50,17 @@ import javax.servlet.http.HttpServletResponse;
 
 import java.io.IOException;
 import java.net.URISyntaxException;
-import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.Enumeration;
 import java.util.HashSet;
-import java.util.List;
+import java.util.LinkedHashSet;
 import java.util.Map;
 import java.util.Set;
 import java.util.UUID;
 
 public class GatewayFilter implements Filter {
 
-  private static final FilterChain EMPTY_CHAIN = new FilterChain() {
-    @Override
-    public void doFilter(ServletRequest servletRequest, ServletResponse servletResponse ) throws IOException, ServletException {
-    }
-  };
-
   private static final GatewayMessages LOG = MessagesFactory.get( GatewayMessages.class );
   private static final GatewayResources RES = ResourcesFactory.get( GatewayResources.class );
   private static AuditService auditService = AuditServiceFactory.getAuditService();
@@ -79,13 +73,23 @@ public class GatewayFilter implements Filter {
   private FilterConfig config;
 
   public GatewayFilter() {
-    holders = new HashSet<>();
+    // Filters are initialized and destroyed in the order they were added
+    holders = new LinkedHashSet<>();
     chains = new Matcher<>();
   }
 
   @Override
   public void init( FilterConfig filterConfig ) throws ServletException {
     this.config = filterConfig;
+    // Instantiate and initialize the filters at deployment time instead of on the first request.
+    for( Holder holder : holders ) {
+      try {
+        holder.getInstance();
+      } catch( ServletException e ) {
+        // Keep the previous behavior of failing the requests that reach this filter.
+        LOG.failedToInitializeFilter( holder.getFilterName(), e );
+      }
+    }
   }
 
   @Override
@@ -217,7 +221,7 @@ public class GatewayFilter implements Filter {
       chain.setResourceRole( holder.getResourceRole() );
       chains.add( holder.template, chain );
     }
-    chain.chainList.add( holder );
+    chain.add( holder );
   }
 
   public void addFilter( String path, String name, Filter filter, Map<String,String> params, String resourceRole ) throws URISyntaxException {
@@ -242,32 +246,31 @@ public class GatewayFilter implements Filter {
     }
   }
 
-  private class Chain implements FilterChain {
-    private List<Holder> chainList;
-    private String resourceRole;
-
-    Chain() {
-      this.chainList = new ArrayList<>();
-    }
+  /**
+   * The filters matched for a resource. The filters are linked when a filter is added at deployment
+   * time and never modified afterwards, so walking the chain allocates nothing per request.
+   */
+  private static class Chain {
+    private static final Holder[] NO_FILTERS = new Holder[0];
 
-    Chain( List<Holder> chainList) {
-      this.chainList = chainList;
-    }
+    private Holder[] filters = NO_FILTERS;
+    private volatile Link head;
+    private String resourceRole;
 
-    @Override
-    public void doFilter(ServletRequest servletRequest, ServletResponse servletResponse ) throws IOException, ServletException {
-      if( chainList != null && !chainList.isEmpty() ) {
-        final Filter filter = chainList.get( 0 );
-        final FilterChain chain = subChain();
-        filter.doFilter( servletRequest, servletResponse, chain );
+    private synchronized void add( Holder holder ) {
+      filters = Arrays.copyOf( filters, filters.length + 1 );
+      filters[ filters.length - 1 ] = holder;
+      Link next = null;
+      for( int i = filters.length - 1; i >= 0; i-- ) {
+        next = new Link( filters[ i ], next );
       }
+      head = next;
     }
 
-    private FilterChain subChain() {
-      if( chainList != null && chainList.size() > 1 ) {
-        return new Chain( chainList.subList( 1, chainList.size() ) );
-      } else {
-        return EMPTY_CHAIN;
+    public void doFilter( ServletRequest servletRequest, ServletResponse servletResponse ) throws IOException, ServletException {
+      final Link first = head;
+      if( first != null ) {
+        first.doFilter( servletRequest, servletResponse );
       }
     }
 
@@ -280,11 +283,33 @@ public class GatewayFilter implements Filter {
     }
   }
 
+  /**
+   * A fixed position within a {@link Chain}. The link handed to a filter as its {@link FilterChain}
+   * always continues with the next filter, so a filter may safely invoke it more than once, e.g. to
+   * retry or replay a request.
+   */
+  private static class Link implements FilterChain {
+    private static final FilterChain END = ( servletRequest, servletResponse ) -> { };
+
+    private final Holder filter;
+    private final FilterChain next;
+
+    Link( Holder filter, Link next ) {
+      this.filter = filter;
+      this.next = next == null ? END : next;
+    }
+
+    @Override
+    public void doFilter( ServletRequest servletRequest, ServletResponse servletResponse ) throws IOException, ServletException {
+      filter.doFilter( servletRequest, servletResponse, next );
+    }
+  }
+
   public class Holder implements Filter, FilterConfig {
     private Template template;
     private String name;
     private Map<String,String> params;
-    private Filter instance;
+    private volatile Filter instance;
     private Class<? extends Filter> clazz;
     private String type;
     private String resourceRole;
@@ -364,7 +389,7 @@ public class GatewayFilter implements Filter {
     }
 
     @Override
-    public void destroy() {
+    public synchronized void destroy() {
       if( instance != null ) {
         instance.destroy();
         instance = null;
@@ -384,19 +409,25 @@ public class GatewayFilter implements Filter {
     }
 
     private Filter getInstance() throws ServletException {
-      if( instance == null ) {
-        try {
-          if( clazz == null ) {
-            clazz = getClazz();
+      Filter f = instance;
+      if( f == null ) {
+        synchronized( this ) {
+          f = instance;
+          if( f == null ) {
+            try {
+              if( clazz == null ) {
+                clazz = getClazz();
+              }
+              f = clazz.newInstance();
+              f.init( this );
+              instance = f;
+            } catch( Exception e ) {
+              throw new ServletException( e );
+            }
           }
-          Filter f = clazz.newInstance();
-          f.init(this);
-          instance = f;
-        } catch( Exception e ) {
-          throw new ServletException( e );
         }
       }
-      return instance;
+      return f;
     }
 
     private String getResourceRole() {
@@ -93,6 +93,15 @@ public interface GatewayMessages {
   @Message( level = MessageLevel.INFO, text = "Activating topology {0} archive {1}" )
   void activatingTopologyArchive( String topology, String archive );
 
+  @Message( level = MessageLevel.INFO, text = "Deployed topology {0} in {1} ms (generate {2} ms, export {3} ms, activate {4} ms)" )
+  void topologyDeploymentTimings( String topology, long total, long generate, long export, long activate );
+
+  @Message( level = MessageLevel.DEBUG, text = "Skipping annotation scanning for topology {0} archive {1}" )
+  void skippingAnnotationScanning( String topology, String archive );
+
+  @Message( level = MessageLevel.ERROR, text = "Interrupted while deploying topologies" )
+  void interruptedDeployingTopologies();
+
   @Message( level = MessageLevel.INFO, text = "Deactivating topology {0}" )
   void deactivatingTopology( String name );
 
@@ -229,6 +238,9 @@ public interface GatewayMessages {
   @Message( level = MessageLevel.ERROR, text = "Gateway processing failed: {0}" )
   void failedToExecuteFilter( @StackTrace( level = MessageLevel.INFO ) Throwable t );
 
+  @Message( level = MessageLevel.ERROR, text = "Failed to initialize filter {0}: {1}" )
+  void failedToInitializeFilter( String filterName, @StackTrace( level = MessageLevel.DEBUG ) Exception e );
+
   @Message( level = MessageLevel.ERROR, text = "Failed to load topology {0}: {1}")
   void failedToLoadTopology( String fileName, @StackTrace( level = MessageLevel.DEBUG ) Exception e );
 
@@ -391,6 +403,9 @@ public interface GatewayMessages {
   @Message( level = MessageLevel.DEBUG, text = "Configured services directory is {0}" )
   void usingServicesDirectory(String path);
 
+  @Message( level = MessageLevel.DEBUG, text = "Service definitions in {0} are unchanged, reusing the loaded service contributors" )
+  void reusingServiceDefinitions(String path);
+
   @Message( level = MessageLevel.ERROR, text = "Failed to unmarshall service definition file {0} file : {1}" )
   void failedToLoadServiceDefinition(String fileName, @StackTrace( level = MessageLevel.DEBUG ) Exception e);
 
@@ -707,4 +722,10 @@ public interface GatewayMessages {
 
   @Message(level = MessageLevel.INFO, text = "Using {0} implementation for {1}")
   void usingServiceImplementation(String implementation, String serviceType);
+
+  @Message(level = MessageLevel.DEBUG, text = "Fetched JWKS key set with {1} keys from {0}")
+  void fetchedJwks(String url, int keyCount);
+
+  @Message(level = MessageLevel.WARN, text = "Failed to fetch JWKS key set from {0}: {1}")
+  void failedToFetchJwks(String url, String message, @StackTrace(level = MessageLevel.DEBUG) Exception e);
 }
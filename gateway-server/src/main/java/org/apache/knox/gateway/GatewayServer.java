@@ -21,6 +21,7 @@ import org.apache.commons.cli.CommandLine;
 import org.apache.commons.cli.ParseException;
 import org.apache.commons.io.FileUtils;
 import org.apache.commons.lang3.StringUtils;
+import org.apache.commons.lang3.concurrent.BasicThreadFactory;
 import org.apache.knox.gateway.audit.api.Action;
 import org.apache.knox.gateway.audit.api.ActionOutcome;
 import org.apache.knox.gateway.audit.api.AuditServiceFactory;
@@ -32,8 +33,12 @@ import org.apache.knox.gateway.config.GatewayConfigurationException;
 import org.apache.knox.gateway.config.impl.GatewayConfigImpl;
 import org.apache.knox.gateway.deploy.DeploymentException;
 import org.apache.knox.gateway.deploy.DeploymentFactory;
+import org.apache.knox.gateway.deploy.InMemoryDeployment;
+import org.apache.knox.gateway.dispatch.AsyncDispatchSupport;
+import org.apache.knox.gateway.dispatch.HttpClientConnectionPoolRegistry;
 import org.apache.knox.gateway.filter.CorrelationHandler;
 import org.apache.knox.gateway.filter.PortMappingHelperHandler;
+import org.apache.knox.gateway.services.metrics.impl.DefaultMetricsService;
 import org.apache.knox.gateway.i18n.messages.MessagesFactory;
 import org.apache.knox.gateway.i18n.resources.ResourcesFactory;
 import org.apache.knox.gateway.services.GatewayServices;
@@ -57,6 +62,7 @@ import org.apache.knox.gateway.util.Urls;
 import org.apache.knox.gateway.util.XmlUtils;
 import org.apache.knox.gateway.websockets.GatewayWebsocketHandler;
 import org.apache.log4j.PropertyConfigurator;
+import com.codahale.metrics.MetricRegistry;
 import org.eclipse.jetty.server.ConnectionFactory;
 import org.eclipse.jetty.server.Connector;
 import org.eclipse.jetty.server.Handler;
@@ -93,6 +99,7 @@ import java.io.InputStream;
 import java.io.OutputStream;
 import java.io.OutputStreamWriter;
 import java.io.Serializable;
+import java.io.UncheckedIOException;
 import java.net.InetSocketAddress;
 import java.net.ServerSocket;
 import java.net.Socket;
@@ -114,6 +121,7 @@ import java.util.Comparator;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
@@ -121,8 +129,15 @@ import java.util.Properties;
 import java.util.ServiceLoader;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.regex.Pattern;
+import java.util.stream.Stream;
 
 public class GatewayServer {
   private static final GatewayResources res = ResourcesFactory.get(GatewayResources.class);
@@ -132,6 +147,10 @@ public class GatewayServer {
 
   private static final String TOPOLOGY_EXTENSION = ".topo.";
 
+  private static final String ANNOTATION_CONFIGURATION = "org.eclipse.jetty.annotations.AnnotationConfiguration";
+
+  private static final String DEPLOYMENT_METRICS_PREFIX = "topology-deployment";
+
   static final String KNOXSESSIONCOOKIENAME = "KNOXSESSIONID";
 
   private static GatewayServer server;
@@ -147,6 +166,21 @@ public class GatewayServer {
   private Map<String, WebAppContext> deployments;
   private AtomicBoolean stopped = new AtomicBoolean(false);
 
+  // Deploys independent topologies in parallel, null when deploying sequentially.
+  private ExecutorService deploymentExecutor;
+
+  // Serializes the deployments of a topology while different topologies deploy in parallel.
+  private final Map<String, Object> topologyLocks = new ConcurrentHashMap<>();
+
+  // Topologies deployed without exporting them to the deployment directory.
+  private final Map<String, InMemoryDeployment> inMemoryDeployments = new ConcurrentHashMap<>();
+
+  // Guards the registration of deployed contexts.
+  private final Object contextsLock = new Object();
+
+  // Web application configurations used for archives that don't need annotation scanning.
+  private String[] configurationClassesWithoutAnnotations;
+
   public static void main( String[] args ) {
     try {
       configureLogging();
@@ -626,7 +660,16 @@ public class GatewayServer {
     Configuration.ClassList classlist = Configuration.ClassList.setServerDefault( jetty );
     classlist.addBefore(
         "org.eclipse.jetty.webapp.JettyWebXmlConfiguration",
-        "org.eclipse.jetty.annotations.AnnotationConfiguration" );
+        ANNOTATION_CONFIGURATION );
+    configurationClassesWithoutAnnotations = classlist.stream()
+        .filter( configuration -> !ANNOTATION_CONFIGURATION.equals( configuration ) )
+        .toArray( String[]::new );
+
+    int deploymentThreads = config.getGatewayDeploymentThreadPoolSize();
+    if( deploymentThreads > 1 ) {
+      deploymentExecutor = Executors.newFixedThreadPool( deploymentThreads,
+          new BasicThreadFactory.Builder().namingPattern( "TopologyDeployment-%d" ).daemon( true ).build() );
+    }
 
     // Load the current topologies.
     // Redeploy autodeploy topologies.
@@ -734,8 +777,13 @@ public class GatewayServer {
         log.stoppingGateway();
         services.stop();
         monitor.stopMonitor();
+        if (deploymentExecutor != null) {
+          deploymentExecutor.shutdownNow();
+        }
         jetty.stop();
         jetty.join();
+        AsyncDispatchSupport.shutdown();
+        HttpClientConnectionPoolRegistry.getInstance().shutdown();
         log.stoppedGateway();
         stopped.set(true);
       } catch (Exception e) {
@@ -801,25 +849,60 @@ public class GatewayServer {
   private WebAppContext createWebAppContext( Topology topology, File warFile, String warPath ) {
     String topoName = topology.getName();
     WebAppContext context = new WebAppContext();
+    configureWebAppContext( context, topoName, warPath );
+    context.setWar( warFile.getAbsolutePath() );
+    // Add support for JSPs.
+    context.setAttribute(
+        "org.eclipse.jetty.server.webapp.ContainerIncludeJarPattern",
+        ".*/[^/]*servlet-api-[^/]*\\.jar$|.*/javax.servlet.jsp.jstl-.*\\.jar$|.*/[^/]*taglibs.*\\.jar$" );
+    context.setTempDirectory( FileUtils.getFile( warFile, "META-INF", "temp" ) );
+    if( config.isGatewayDeploymentAnnotationScanSkipEnabled() && configurationClassesWithoutAnnotations != null
+        && !requiresAnnotationScanning( warFile ) ) {
+      log.skippingAnnotationScanning( topoName, warPath );
+      context.setConfigurationClasses( configurationClassesWithoutAnnotations );
+    }
+    return context;
+  }
+
+  private WebAppContext createInMemoryContext( Topology topology, InMemoryDeployment deployment ) {
+    WebAppContext context = new InMemoryWebAppContext( deployment );
+    configureWebAppContext( context, topology.getName(), "/" );
+    return context;
+  }
+
+  private void configureWebAppContext( WebAppContext context, String topoName, String warPath ) {
     String contextPath;
     contextPath = "/" + Urls.trimLeadingAndTrailingSlashJoin( config.getGatewayPath(), topoName, warPath );
     context.setContextPath( contextPath );
     SessionCookieConfig sessionCookieConfig = context.getServletContext().getSessionCookieConfig();
     sessionCookieConfig.setName(KNOXSESSIONCOOKIENAME);
-    context.setWar( warFile.getAbsolutePath() );
     context.setAttribute( GatewayServices.GATEWAY_CLUSTER_ATTRIBUTE, topoName );
     context.setAttribute( "org.apache.knox.gateway.frontend.uri", getFrontendUri( context, config ) );
     context.setAttribute( GatewayConfig.GATEWAY_CONFIG_ATTRIBUTE, config );
-    // Add support for JSPs.
-    context.setAttribute(
-        "org.eclipse.jetty.server.webapp.ContainerIncludeJarPattern",
-        ".*/[^/]*servlet-api-[^/]*\\.jar$|.*/javax.servlet.jsp.jstl-.*\\.jar$|.*/[^/]*taglibs.*\\.jar$" );
-    context.setTempDirectory( FileUtils.getFile( warFile, "META-INF", "temp" ) );
     context.setErrorHandler( createErrorHandler() );
     context.setInitParameter("org.eclipse.jetty.servlet.Default.dirAllowed", "false");
     ClassLoader jspClassLoader = new URLClassLoader(new URL[0], this.getClass().getClassLoader());
     context.setClassLoader(jspClassLoader);
-    return context;
+  }
+
+  /*
+   * Annotation scanning looks for annotated classes in the archive and for servlet container
+   * initializers in the container, such as the one setting up JSP support. Archives generated
+   * for topologies have neither classes nor JSPs, applications usually have both.
+   */
+  static boolean requiresAnnotationScanning( File warDir ) {
+    File webInfDir = new File( warDir, "WEB-INF" );
+    if( new File( webInfDir, "classes" ).exists() || new File( webInfDir, "lib" ).exists() ) {
+      return true;
+    }
+    try( Stream<Path> paths = Files.walk( warDir.toPath() ) ) {
+      return paths.anyMatch( path -> {
+        String name = path.getFileName().toString().toLowerCase( Locale.ROOT );
+        return name.endsWith( ".jsp" ) || name.endsWith( ".jspx" ) || name.endsWith( ".tld" ) || name.endsWith( ".tag" );
+      } );
+    } catch( IOException | UncheckedIOException e ) {
+      return true;
+    }
   }
 
   private static void explodeWar( File source, File target ) throws IOException {
@@ -864,7 +947,7 @@ public class GatewayServer {
     }
   }
 
-  private synchronized void internalDeployApplications( Topology topology, File topoDir ) throws IOException, ParserConfigurationException, TransformerException, SAXException {
+  private void internalDeployApplications( Topology topology, File topoDir ) throws IOException, ParserConfigurationException, TransformerException, SAXException {
     if( topology != null ) {
       Collection<Application> applications = topology.getApplications();
       if( applications != null ) {
@@ -882,7 +965,7 @@ public class GatewayServer {
     }
   }
 
-  private synchronized void internalDeployApplication( File topoDir, Application application, String url ) throws IOException, TransformerException, SAXException, ParserConfigurationException {
+  private void internalDeployApplication( File topoDir, Application application, String url ) throws IOException, TransformerException, SAXException, ParserConfigurationException {
     File appsDir = new File( config.getGatewayApplicationsDir() );
     File appDir = new File( appsDir, application.getName() );
     File[] implFiles = appDir.listFiles( new RegexFilenameFilter( "app|app\\..*" ) );
@@ -897,7 +980,7 @@ public class GatewayServer {
     createArchiveTempDir( warDir );
   }
 
-  private synchronized void internalActivateTopology( Topology topology, File topoDir ) {
+  private void internalActivateTopology( Topology topology, File topoDir ) {
     log.activatingTopology( topology.getName() );
     File[] files = topoDir.listFiles( new RegexFilenameFilter( "%.*" ) );
     if( files != null ) {
@@ -907,30 +990,43 @@ public class GatewayServer {
     }
   }
 
-  private synchronized void internalActivateArchive( Topology topology, File warDir ) {
+  private void internalActivateArchive( Topology topology, File warDir ) {
     log.activatingTopologyArchive( topology.getName(), warDir.getName() );
     try {
-      WebAppContext newContext = createWebAppContext( topology, warDir, Urls.decode( warDir.getName() ) );
-      WebAppContext oldContext = deployments.get( newContext.getContextPath() );
-      deployments.put( newContext.getContextPath(), newContext );
+      internalActivateContext( createWebAppContext( topology, warDir, Urls.decode( warDir.getName() ) ) );
+    } catch( Throwable e ) {
+      auditor.audit( Action.DEPLOY, topology.getName(), ResourceType.TOPOLOGY, ActionOutcome.FAILURE );
+      log.failedToDeployTopology( topology.getName(), e );
+    }
+  }
+
+  private void internalActivateInMemoryDeployment( Topology topology, InMemoryDeployment deployment ) {
+    log.activatingTopology( topology.getName() );
+    try {
+      internalActivateContext( createInMemoryContext( topology, deployment ) );
+    } catch( Throwable e ) {
+      auditor.audit( Action.DEPLOY, topology.getName(), ResourceType.TOPOLOGY, ActionOutcome.FAILURE );
+      log.failedToDeployTopology( topology.getName(), e );
+    }
+  }
+
+  private void internalActivateContext( WebAppContext newContext ) throws Throwable {
+    synchronized( contextsLock ) {
+      WebAppContext oldContext = deployments.put( newContext.getContextPath(), newContext );
       if( oldContext != null ) {
         contexts.removeHandler( oldContext );
       }
       contexts.addHandler( newContext );
-      if( contexts.isRunning() && !newContext.isRunning() ) {
-        newContext.start();
-        if(!newContext.isAvailable()) {
-          throw newContext.getUnavailableException();
-        }
+    }
+    if( contexts.isRunning() && !newContext.isRunning() ) {
+      newContext.start();
+      if(!newContext.isAvailable()) {
+        throw newContext.getUnavailableException();
       }
-
-    } catch( Throwable e ) {
-      auditor.audit( Action.DEPLOY, topology.getName(), ResourceType.TOPOLOGY, ActionOutcome.FAILURE );
-      log.failedToDeployTopology( topology.getName(), e );
     }
   }
 
-  private synchronized void internalDeactivateTopology( Topology topology ) {
+  private void internalDeactivateTopology( Topology topology ) {
 
     log.deactivatingTopology( topology.getName() );
 
@@ -946,18 +1042,21 @@ public class GatewayServer {
     // Find all the deployed contexts we need to deactivate.
     if( deployments != null ) {
       List<WebAppContext> deactivate = new ArrayList<>();
-      for( WebAppContext app : deployments.values() ) {
-        String appPath = app.getContextPath();
-        if( appPath.equals( topoPath ) || appPath.startsWith( topoPathSlash ) ) {
-          deactivate.add( app );
+      synchronized( contextsLock ) {
+        for( WebAppContext app : deployments.values() ) {
+          String appPath = app.getContextPath();
+          if( appPath.equals( topoPath ) || appPath.startsWith( topoPathSlash ) ) {
+            deactivate.add( app );
+          }
+        }
+        for( WebAppContext context : deactivate ) {
+          deployments.remove( context.getContextPath() );
+          contexts.removeHandler( context );
         }
       }
 
       // Deactivate the required deployed contexts.
       for( WebAppContext context : deactivate ) {
-        String contextPath = context.getContextPath();
-        deployments.remove( contextPath );
-        contexts.removeHandler( context );
         try {
           context.stop();
         } catch( Exception e ) {
@@ -974,7 +1073,43 @@ public class GatewayServer {
 
     @Override
     public void handleTopologyEvent( List<TopologyEvent> events ) {
-      synchronized ( GatewayServer.this ) {
+      // Events of the same topology are handled in order, different topologies in parallel.
+      Map<String, List<TopologyEvent>> eventsByTopology = new LinkedHashMap<>();
+      for( TopologyEvent event : events ) {
+        eventsByTopology.computeIfAbsent( event.getTopology().getName(), name -> new ArrayList<>() ).add( event );
+      }
+      ExecutorService executor = deploymentExecutor;
+      if( executor == null || eventsByTopology.size() < 2 ) {
+        eventsByTopology.values().forEach( this::handleTopologyEvents );
+        return;
+      }
+      List<Future<?>> pending = new ArrayList<>( eventsByTopology.size() );
+      for( List<TopologyEvent> topologyEvents : eventsByTopology.values() ) {
+        try {
+          pending.add( executor.submit( () -> handleTopologyEvents( topologyEvents ) ) );
+        } catch( RejectedExecutionException e ) {
+          handleTopologyEvents( topologyEvents );
+        }
+      }
+      for( Future<?> deployment : pending ) {
+        try {
+          deployment.get();
+        } catch( InterruptedException e ) {
+          Thread.currentThread().interrupt();
+          log.interruptedDeployingTopologies();
+          for( Future<?> other : pending ) {
+            other.cancel( true );
+          }
+          return;
+        } catch( ExecutionException e ) {
+          // Failures are already audited and logged by the deployment itself.
+        }
+      }
+    }
+
+    private void handleTopologyEvents( List<TopologyEvent> events ) {
+      String topologyName = events.get( 0 ).getTopology().getName();
+      synchronized( topologyLocks.computeIfAbsent( topologyName, name -> new Object() ) ) {
         for( TopologyEvent event : events ) {
           Topology topology = event.getTopology();
           File deployDir = calculateAbsoluteDeploymentsDir();
@@ -989,6 +1124,11 @@ public class GatewayServer {
 
     private void handleDeleteDeployment(Topology topology, File deployDir) {
       log.deletingTopology( topology.getName() );
+      if( inMemoryDeployments.remove( topology.getName() ) != null ) {
+        auditor.audit(Action.UNDEPLOY, topology.getName(), ResourceType.TOPOLOGY,
+          ActionOutcome.UNAVAILABLE);
+        internalDeactivateTopology( topology );
+      }
       File[] files = deployDir.listFiles( new RegexFilenameFilter( topology.getName() + "\\.(war|topo)\\.[0-9A-Fa-f]+" ) );
       if( files != null ) {
         auditor.audit(Action.UNDEPLOY, topology.getName(), ResourceType.TOPOLOGY,
@@ -1002,6 +1142,11 @@ public class GatewayServer {
     }
 
     private void handleCreateDeployment(Topology topology, File deployDir) {
+      if( isInMemoryDeployment( topology ) ) {
+        handleInMemoryDeployment( topology );
+        return;
+      }
+      inMemoryDeployments.remove( topology.getName() );
       try {
         File topoDir = calculateDeploymentDir( topology );
         if( !topoDir.exists() ) {
@@ -1014,9 +1159,11 @@ public class GatewayServer {
           }
 
           log.deployingTopology( topology.getName(), topoDir.getAbsolutePath() );
+          long started = System.nanoTime();
           internalDeactivateTopology( topology ); // KNOX-152
 
           EnterpriseArchive ear = DeploymentFactory.createDeployment( config, topology );
+          long generated = System.nanoTime();
           if( !deployDir.exists() && !deployDir.mkdirs() ) {
             throw new DeploymentException( "Failed to create topology deployment temporary directory: " + deployDir.getAbsolutePath() );
           }
@@ -1026,12 +1173,16 @@ public class GatewayServer {
             throw new DeploymentException( "Failed to create topology deployment directory: " + topoDir.getAbsolutePath() );
           }
           internalDeployApplications( topology, topoDir );
+          long exported = System.nanoTime();
           internalActivateTopology( topology, topoDir );
+          recordDeploymentTimings( topology.getName(), started, generated, exported, System.nanoTime() );
           log.deployedTopology( topology.getName());
         } else {
           auditor.audit( Action.REDEPLOY, topology.getName(), ResourceType.TOPOLOGY, ActionOutcome.UNAVAILABLE );
           log.redeployingTopology( topology.getName(), topoDir.getAbsolutePath() );
+          long started = System.nanoTime();
           internalActivateTopology( topology, topoDir );
+          recordDeploymentTimings( topology.getName(), started, started, started, System.nanoTime() );
           log.redeployedTopology( topology.getName() );
         }
         cleanupTopologyDeployments( deployDir, topology );
@@ -1040,6 +1191,66 @@ public class GatewayServer {
         log.failedToDeployTopology( topology.getName(), e );
       }
     }
+
+    // Applications are deployed from their directories so only topologies without them are kept in memory.
+    private boolean isInMemoryDeployment( Topology topology ) {
+      Collection<Application> applications = topology.getApplications();
+      return config.isGatewayDeploymentInMemoryEnabled() && ( applications == null || applications.isEmpty() );
+    }
+
+    private void handleInMemoryDeployment( Topology topology ) {
+      try {
+        String deploymentName = calculateDeploymentName( topology );
+        InMemoryDeployment deployment = inMemoryDeployments.get( topology.getName() );
+        if( deployment == null || !deploymentName.equals( calculateDeploymentName( deployment.getTopology() ) ) ) {
+          auditor.audit( Action.DEPLOY, topology.getName(), ResourceType.TOPOLOGY, ActionOutcome.UNAVAILABLE );
+          if(topology.getProviders().isEmpty()) {
+            throw new DeploymentException("No providers found inside topology.");
+          }
+          log.deployingTopology( topology.getName(), deploymentName );
+          long started = System.nanoTime();
+          internalDeactivateTopology( topology );
+          inMemoryDeployments.remove( topology.getName() );
+          deployment = DeploymentFactory.createInMemoryDeployment( config, topology );
+          long generated = System.nanoTime();
+          if( deployment != null ) {
+            inMemoryDeployments.put( topology.getName(), deployment );
+            internalActivateInMemoryDeployment( topology, deployment );
+          }
+          recordDeploymentTimings( topology.getName(), started, generated, generated, System.nanoTime() );
+          log.deployedTopology( topology.getName() );
+        } else {
+          auditor.audit( Action.REDEPLOY, topology.getName(), ResourceType.TOPOLOGY, ActionOutcome.UNAVAILABLE );
+          log.redeployingTopology( topology.getName(), deploymentName );
+          long started = System.nanoTime();
+          internalActivateInMemoryDeployment( topology, deployment );
+          recordDeploymentTimings( topology.getName(), started, started, started, System.nanoTime() );
+          log.redeployedTopology( topology.getName() );
+        }
+      } catch( Throwable e ) {
+        auditor.audit( Action.DEPLOY, topology.getName(), ResourceType.TOPOLOGY, ActionOutcome.FAILURE );
+        log.failedToDeployTopology( topology.getName(), e );
+      }
+    }
+  }
+
+  /*
+   * Records how long generating the deployment, exporting it to disk together with the applications
+   * and activating it took. Redeployments of an existing deployment only activate it.
+   */
+  private static void recordDeploymentTimings( String topologyName, long started, long generated, long exported, long activated ) {
+    MetricRegistry registry = DefaultMetricsService.getMetricRegistry();
+    if( generated > started ) {
+      registry.timer( MetricRegistry.name( DEPLOYMENT_METRICS_PREFIX, "generate" ) ).update( generated - started, TimeUnit.NANOSECONDS );
+      registry.timer( MetricRegistry.name( DEPLOYMENT_METRICS_PREFIX, "export" ) ).update( exported - generated, TimeUnit.NANOSECONDS );
+    }
+    registry.timer( MetricRegistry.name( DEPLOYMENT_METRICS_PREFIX, "activate" ) ).update( activated - exported, TimeUnit.NANOSECONDS );
+    registry.timer( MetricRegistry.name( DEPLOYMENT_METRICS_PREFIX, "total" ) ).update( activated - started, TimeUnit.NANOSECONDS );
+    log.topologyDeploymentTimings( topologyName,
+        TimeUnit.NANOSECONDS.toMillis( activated - started ),
+        TimeUnit.NANOSECONDS.toMillis( generated - started ),
+        TimeUnit.NANOSECONDS.toMillis( exported - generated ),
+        TimeUnit.NANOSECONDS.toMillis( activated - exported ) );
   }
 
   private File createArchiveTempDir( File warDir ) {
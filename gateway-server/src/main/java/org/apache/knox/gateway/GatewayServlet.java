@@ -19,6 +19,7 @@ package org.apache.knox.gateway;
 
 import org.apache.knox.gateway.audit.api.Action;
 import org.apache.knox.gateway.audit.api.ActionOutcome;
+import org.apache.knox.gateway.audit.api.AuditContext;
 import org.apache.knox.gateway.audit.api.AuditService;
 import org.apache.knox.gateway.audit.api.AuditServiceFactory;
 import org.apache.knox.gateway.audit.api.Auditor;
@@ -27,6 +28,7 @@ import org.apache.knox.gateway.audit.log4j.audit.AuditConstants;
 import org.apache.knox.gateway.config.GatewayConfig;
 import org.apache.knox.gateway.descriptor.GatewayDescriptor;
 import org.apache.knox.gateway.descriptor.GatewayDescriptorFactory;
+import org.apache.knox.gateway.dispatch.AsyncDispatchSupport;
 import org.apache.knox.gateway.filter.AbstractGatewayFilter;
 import org.apache.knox.gateway.i18n.messages.MessagesFactory;
 import org.apache.knox.gateway.i18n.resources.ResourcesFactory;
@@ -35,6 +37,8 @@ import org.apache.knox.gateway.services.GatewayServices;
 import org.apache.knox.gateway.services.metrics.MetricsService;
 import org.apache.knox.gateway.util.ServletRequestUtils;
 
+import javax.servlet.AsyncEvent;
+import javax.servlet.AsyncListener;
 import javax.servlet.Filter;
 import javax.servlet.FilterChain;
 import javax.servlet.FilterConfig;
@@ -51,10 +55,13 @@ import java.io.InputStreamReader;
 import java.net.URISyntaxException;
 import java.nio.charset.StandardCharsets;
 import java.util.Enumeration;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 public class GatewayServlet implements Servlet, Filter {
   public static final String GATEWAY_DESCRIPTOR_LOCATION_DEFAULT = "gateway.xml";
   public static final String GATEWAY_DESCRIPTOR_LOCATION_PARAM = "gatewayDescriptorLocation";
+  // Servlet context attribute holding the descriptor of topologies deployed in memory.
+  public static final String GATEWAY_DESCRIPTOR_ATTRIBUTE = GatewayDescriptor.class.getName();
 
   private static final GatewayResources res = ResourcesFactory.get( GatewayResources.class );
   private static final GatewayMessages LOG = MessagesFactory.get( GatewayMessages.class );
@@ -140,7 +147,12 @@ public class GatewayServlet implements Servlet, Filter {
       } else {
         ((HttpServletResponse)servletResponse).setStatus( HttpServletResponse.SC_SERVICE_UNAVAILABLE );
       }
-      auditLog(servletRequest, servletResponse);
+      if( servletRequest.isAsyncStarted() ) {
+        // The dispatch is still in flight, audit the access once the response is complete.
+        servletRequest.getAsyncContext().addListener( new AsyncAuditListener( auditService.getContext() ) );
+      } else {
+        auditLog(servletRequest, servletResponse);
+      }
     } finally {
       auditService.detachContext();
     }
@@ -187,6 +199,71 @@ public class GatewayServlet implements Servlet, Filter {
     auditor.audit(Action.ACCESS, requestUri, ResourceType.URI, actionOutcome, res.responseStatus(status));
   }
 
+  private void auditFailure(ServletRequest servletRequest, ServletResponse servletResponse) {
+    final int status = ((HttpServletResponse) servletResponse).getStatus();
+    auditor.audit(Action.ACCESS, ServletRequestUtils.getContextPathWithQuery(servletRequest), ResourceType.URI,
+        ActionOutcome.FAILURE, res.responseStatus(status));
+  }
+
+  private class AsyncAuditListener implements AsyncListener {
+    private final AuditContext auditContext;
+    private final AtomicBoolean audited = new AtomicBoolean();
+
+    AsyncAuditListener( AuditContext auditContext ) {
+      this.auditContext = auditContext;
+    }
+
+    @Override
+    public void onComplete( AsyncEvent event ) {
+      if( audited.compareAndSet( false, true ) ) {
+        auditService.attachContext( auditContext );
+        try {
+          if( AsyncDispatchSupport.isFailed( event.getSuppliedRequest() ) ) {
+            auditFailure( event.getSuppliedRequest(), event.getSuppliedResponse() );
+          } else {
+            auditLog( event.getSuppliedRequest(), event.getSuppliedResponse() );
+          }
+        } finally {
+          auditService.detachContext();
+        }
+      }
+    }
+
+    @Override
+    public void onTimeout( AsyncEvent event ) {
+      fail( event );
+    }
+
+    @Override
+    public void onError( AsyncEvent event ) {
+      if( event.getThrowable() != null ) {
+        LOG.failedToExecuteFilter( event.getThrowable() );
+      }
+      fail( event );
+    }
+
+    @Override
+    public void onStartAsync( AsyncEvent event ) {
+    }
+
+    private void fail( AsyncEvent event ) {
+      if( audited.compareAndSet( false, true ) ) {
+        auditService.attachContext( auditContext );
+        try {
+          auditFailure( event.getSuppliedRequest(), event.getSuppliedResponse() );
+        } finally {
+          auditService.detachContext();
+        }
+      }
+      // Make sure the request does not outlive a timeout or an error the dispatch did not handle
+      try {
+        event.getAsyncContext().complete();
+      } catch( IllegalStateException e ) {
+        // Already completed
+      }
+    }
+  }
+
   @Override
   public String getServletInfo() {
     return res.gatewayServletInfo();
@@ -201,15 +278,22 @@ public class GatewayServlet implements Servlet, Filter {
   }
 
   private static GatewayFilter createFilter( InputStream stream, ServletContext servletContext ) throws ServletException {
+    GatewayDescriptor descriptor = null;
+    if( stream != null ) {
+      try (InputStreamReader reader = new InputStreamReader(stream, StandardCharsets.UTF_8)){
+        descriptor = GatewayDescriptorFactory.load("xml", reader);
+      } catch( IOException e ) {
+        throw new ServletException( e );
+      }
+    }
+    return createFilter( descriptor, servletContext );
+  }
+
+  private static GatewayFilter createFilter( GatewayDescriptor descriptor, ServletContext servletContext ) throws ServletException {
     try {
       GatewayFilter filter = null;
-      if( stream != null ) {
-        try (InputStreamReader reader = new InputStreamReader(stream, StandardCharsets.UTF_8)){
-          GatewayDescriptor descriptor = GatewayDescriptorFactory.load("xml", reader);
-          filter = GatewayFactory.create( descriptor );
-        } finally {
-          stream.close();
-        }
+      if( descriptor != null ) {
+        filter = GatewayFactory.create( descriptor );
       }
       GatewayConfig gatewayConfig = (GatewayConfig) servletContext.getAttribute(GatewayConfig.GATEWAY_CONFIG_ATTRIBUTE);
       if (gatewayConfig.isMetricsEnabled()) {
@@ -223,12 +307,16 @@ public class GatewayServlet implements Servlet, Filter {
         }
       }
       return filter;
-    } catch( IOException | URISyntaxException e ) {
+    } catch( URISyntaxException e ) {
       throw new ServletException( e );
     }
   }
 
   private static GatewayFilter createFilter( FilterConfig filterConfig ) throws ServletException {
+    Object descriptor = filterConfig.getServletContext().getAttribute( GATEWAY_DESCRIPTOR_ATTRIBUTE );
+    if( descriptor instanceof GatewayDescriptor ) {
+      return createFilter( (GatewayDescriptor)descriptor, filterConfig.getServletContext() );
+    }
     GatewayFilter filter;
     InputStream stream;
     String location = filterConfig.getInitParameter( GATEWAY_DESCRIPTOR_LOCATION_PARAM );
@@ -245,6 +333,10 @@ public class GatewayServlet implements Servlet, Filter {
   }
 
   private static GatewayFilter createFilter( ServletConfig servletConfig ) throws ServletException {
+    Object descriptor = servletConfig.getServletContext().getAttribute( GATEWAY_DESCRIPTOR_ATTRIBUTE );
+    if( descriptor instanceof GatewayDescriptor ) {
+      return createFilter( (GatewayDescriptor)descriptor, servletConfig.getServletContext() );
+    }
     GatewayFilter filter;
     InputStream stream;
     String location = servletConfig.getInitParameter( GATEWAY_DESCRIPTOR_LOCATION_PARAM );
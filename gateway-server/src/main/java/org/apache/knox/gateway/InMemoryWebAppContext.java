@@ -0,0 +1,233 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.knox.gateway;
+
+import org.apache.knox.gateway.deploy.DeploymentException;
+import org.apache.knox.gateway.deploy.InMemoryDeployment;
+import org.eclipse.jetty.servlet.FilterHolder;
+import org.eclipse.jetty.servlet.FilterMapping;
+import org.eclipse.jetty.servlet.ServletHolder;
+import org.eclipse.jetty.servlet.ServletMapping;
+import org.eclipse.jetty.webapp.AbstractConfiguration;
+import org.eclipse.jetty.webapp.Configuration;
+import org.eclipse.jetty.webapp.WebAppContext;
+import org.jboss.shrinkwrap.api.Node;
+import org.jboss.shrinkwrap.api.spec.WebArchive;
+import org.jboss.shrinkwrap.descriptor.api.javaee6.ParamValueType;
+import org.jboss.shrinkwrap.descriptor.api.webapp30.WebAppDescriptor;
+import org.jboss.shrinkwrap.descriptor.api.webcommon30.FilterMappingType;
+import org.jboss.shrinkwrap.descriptor.api.webcommon30.FilterType;
+import org.jboss.shrinkwrap.descriptor.api.webcommon30.ListenerType;
+import org.jboss.shrinkwrap.descriptor.api.webcommon30.ServletMappingType;
+import org.jboss.shrinkwrap.descriptor.api.webcommon30.ServletType;
+import org.jboss.shrinkwrap.descriptor.api.webcommon30.SessionConfigType;
+
+import javax.servlet.DispatcherType;
+import javax.servlet.SessionCookieConfig;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.net.URLConnection;
+import java.net.URLStreamHandler;
+import java.util.EnumSet;
+import java.util.EventListener;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Web application context of a topology deployed from an {@link InMemoryDeployment}.
+ * <p>
+ * The web application descriptor is applied programmatically instead of being
+ * parsed from web.xml, the gateway descriptor is handed to the {@link GatewayServlet}
+ * as a context attribute and the resources contributed to the web archive are served
+ * to the servlet context from memory. None of the web application configurations run,
+ * so nothing is scanned or unpacked.
+ *
+ * @since 1.6.0
+ */
+class InMemoryWebAppContext extends WebAppContext {
+
+  private static final String RESOURCE_PROTOCOL = "knox-deployment";
+
+  private final WebArchive archive;
+
+  private final URLStreamHandler resourceHandler = new URLStreamHandler() {
+    @Override
+    protected URLConnection openConnection( URL url ) {
+      return new URLConnection( url ) {
+        @Override
+        public void connect() {
+          connected = true;
+        }
+
+        @Override
+        public InputStream getInputStream() throws IOException {
+          InputStream stream = openResource( url.getFile() );
+          if( stream == null ) {
+            throw new FileNotFoundException( url.toString() );
+          }
+          return stream;
+        }
+      };
+    }
+  };
+
+  InMemoryWebAppContext( InMemoryDeployment deployment ) {
+    this.archive = deployment.getWebArchive();
+    _scontext = new ArchiveContext();
+    // An empty list of configurations makes Jetty fall back to the server defaults, which scan annotations
+    setConfigurations( new Configuration[] { new NoOpConfiguration() } );
+    setAttribute( GatewayServlet.GATEWAY_DESCRIPTOR_ATTRIBUTE, deployment.getGatewayDescriptor() );
+    applyDescriptor( deployment.getWebAppDescriptor() );
+  }
+
+  private void applyDescriptor( WebAppDescriptor descriptor ) {
+    for( ParamValueType<WebAppDescriptor> param : descriptor.getAllContextParam() ) {
+      setInitParameter( param.getParamName(), param.getParamValue() );
+    }
+    for( ListenerType<WebAppDescriptor> listener : descriptor.getAllListener() ) {
+      addEventListener( createListener( listener.getListenerClass() ) );
+    }
+    for( ServletType<WebAppDescriptor> servlet : descriptor.getAllServlet() ) {
+      ServletHolder holder = new ServletHolder();
+      holder.setName( servlet.getServletName() );
+      holder.setClassName( servlet.getServletClass() );
+      holder.setAsyncSupported( Boolean.TRUE.equals( servlet.isAsyncSupported() ) );
+      for( ParamValueType<ServletType<WebAppDescriptor>> param : servlet.getAllInitParam() ) {
+        holder.setInitParameter( param.getParamName(), param.getParamValue() );
+      }
+      getServletHandler().addServlet( holder );
+    }
+    for( ServletMappingType<WebAppDescriptor> mapping : descriptor.getAllServletMapping() ) {
+      ServletMapping servletMapping = new ServletMapping();
+      servletMapping.setServletName( mapping.getServletName() );
+      servletMapping.setPathSpecs( toArray( mapping.getAllUrlPattern() ) );
+      getServletHandler().addServletMapping( servletMapping );
+    }
+    for( FilterType<WebAppDescriptor> filter : descriptor.getAllFilter() ) {
+      FilterHolder holder = new FilterHolder();
+      holder.setName( filter.getFilterName() );
+      holder.setClassName( filter.getFilterClass() );
+      holder.setAsyncSupported( Boolean.TRUE.equals( filter.isAsyncSupported() ) );
+      for( ParamValueType<FilterType<WebAppDescriptor>> param : filter.getAllInitParam() ) {
+        holder.setInitParameter( param.getParamName(), param.getParamValue() );
+      }
+      getServletHandler().addFilter( holder );
+    }
+    for( FilterMappingType<WebAppDescriptor> mapping : descriptor.getAllFilterMapping() ) {
+      FilterMapping filterMapping = new FilterMapping();
+      filterMapping.setFilterName( mapping.getFilterName() );
+      filterMapping.setPathSpecs( toArray( mapping.getAllUrlPattern() ) );
+      filterMapping.setDispatcherTypes( EnumSet.of( DispatcherType.REQUEST ) );
+      getServletHandler().addFilterMapping( filterMapping );
+    }
+    for( SessionConfigType<WebAppDescriptor> sessionConfig : descriptor.getAllSessionConfig() ) {
+      Integer timeout = sessionConfig.getSessionTimeout();
+      if( timeout != null ) {
+        getSessionHandler().setMaxInactiveInterval( timeout * 60 );
+      }
+      SessionCookieConfig cookieConfig = getSessionHandler().getSessionCookieConfig();
+      Boolean httpOnly = sessionConfig.getOrCreateCookieConfig().isHttpOnly();
+      if( httpOnly != null ) {
+        cookieConfig.setHttpOnly( httpOnly );
+      }
+      Boolean secure = sessionConfig.getOrCreateCookieConfig().isSecure();
+      if( secure != null ) {
+        cookieConfig.setSecure( secure );
+      }
+    }
+  }
+
+  private static EventListener createListener( String className ) {
+    try {
+      Class<?> listenerClass = Class.forName( className, true, InMemoryWebAppContext.class.getClassLoader() );
+      return (EventListener)listenerClass.getDeclaredConstructor().newInstance();
+    } catch( ReflectiveOperationException | ClassCastException e ) {
+      throw new DeploymentException( "Failed to create listener " + className, e );
+    }
+  }
+
+  private static String[] toArray( List<String> values ) {
+    return values.toArray( new String[0] );
+  }
+
+  private Node findResource( String path ) {
+    if( path == null || !path.startsWith( "/" ) ) {
+      return null;
+    }
+    return archive.get( path );
+  }
+
+  private InputStream openResource( String path ) {
+    Node node = findResource( path );
+    if( node == null || node.getAsset() == null ) {
+      return null;
+    }
+    return node.getAsset().openStream();
+  }
+
+  /*
+   * Stands in for the web application configurations, which would parse descriptors
+   * and scan the web archive the programmatically configured context does not have.
+   */
+  private static class NoOpConfiguration extends AbstractConfiguration {
+  }
+
+  /*
+   * Serves the servlet context resources from the web archive, e.g. the provider
+   * configuration read by listeners through getResource or getResourceAsStream.
+   */
+  private class ArchiveContext extends Context {
+
+    @Override
+    public URL getResource( String path ) throws MalformedURLException {
+      Node node = findResource( path );
+      if( node == null ) {
+        return null;
+      }
+      return new URL( RESOURCE_PROTOCOL, null, -1, node.getPath().get(), resourceHandler );
+    }
+
+    @Override
+    public InputStream getResourceAsStream( String path ) {
+      return openResource( path );
+    }
+
+    @Override
+    public Set<String> getResourcePaths( String path ) {
+      Node node = findResource( path );
+      if( node == null || node.getAsset() != null ) {
+        return null;
+      }
+      Set<String> paths = new HashSet<>();
+      for( Node child : node.getChildren() ) {
+        String childPath = child.getPath().get();
+        paths.add( child.getAsset() == null ? childPath + "/" : childPath );
+      }
+      return paths;
+    }
+
+    @Override
+    public String getRealPath( String path ) {
+      return null;
+    }
+  }
+}
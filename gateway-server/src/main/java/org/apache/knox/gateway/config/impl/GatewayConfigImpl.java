@@ -49,6 +49,7 @@ import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.TimeUnit;
+import java.util.zip.Deflater;
 
 /**
  * The configuration for the Gateway.
@@ -268,6 +269,65 @@ public class GatewayConfigImpl extends Configuration implements GatewayConfig {
   private static final String KNOX_HOMEPAGE_LOGOUT_ENABLED =  "knox.homepage.logout.enabled";
   private static final String KNOX_INCOMING_XFORWARDED_ENABLED = "gateway.incoming.xforwarded.enabled";
 
+  private static final String ASYNC_DISPATCH_THREAD_POOL_SIZE = GATEWAY_CONFIG_FILE_PREFIX + ".dispatch.async.threadpool.size";
+  private static final String ASYNC_DISPATCH_QUEUE_SIZE = GATEWAY_CONFIG_FILE_PREFIX + ".dispatch.async.queue.size";
+  private static final String ASYNC_DISPATCH_TIMEOUT = GATEWAY_CONFIG_FILE_PREFIX + ".dispatch.async.timeout";
+
+  private static final String HTTP_CLIENT_CONNECTION_POOL_SHARED = GATEWAY_CONFIG_FILE_PREFIX + ".httpclient.connectionPool.shared";
+  private static final boolean DEFAULT_HTTP_CLIENT_CONNECTION_POOL_SHARED = false;
+  private static final String HTTP_CLIENT_CONNECTION_POOL_MAX_TOTAL = GATEWAY_CONFIG_FILE_PREFIX + ".httpclient.connectionPool.maxTotal";
+  private static final int DEFAULT_HTTP_CLIENT_CONNECTION_POOL_MAX_TOTAL = 2048;
+  private static final String HTTP_CLIENT_CONNECTION_POOL_IDLE_TIMEOUT = GATEWAY_CONFIG_FILE_PREFIX + ".httpclient.connectionPool.idleTimeout";
+  private static final long DEFAULT_HTTP_CLIENT_CONNECTION_POOL_IDLE_TIMEOUT = TimeUnit.SECONDS.toMillis(60);
+  private static final String HTTP_CLIENT_CONNECTION_POOL_VALIDATE_AFTER_INACTIVITY = GATEWAY_CONFIG_FILE_PREFIX + ".httpclient.connectionPool.validateAfterInactivity";
+  private static final int DEFAULT_HTTP_CLIENT_CONNECTION_POOL_VALIDATE_AFTER_INACTIVITY = 2000;
+  private static final String HTTP_CLIENT_CONNECTION_POOL_TIME_TO_LIVE = GATEWAY_CONFIG_FILE_PREFIX + ".httpclient.connectionPool.timeToLive";
+  private static final long DEFAULT_HTTP_CLIENT_CONNECTION_POOL_TIME_TO_LIVE = -1L;
+
+  private static final String JWKS_CACHE_REFRESH_INTERVAL = GATEWAY_CONFIG_FILE_PREFIX + ".jwks.cache.refreshInterval";
+  private static final long DEFAULT_JWKS_CACHE_REFRESH_INTERVAL = TimeUnit.MINUTES.toMillis(5);
+  private static final String JWKS_CACHE_TIME_TO_LIVE = GATEWAY_CONFIG_FILE_PREFIX + ".jwks.cache.timeToLive";
+  private static final long DEFAULT_JWKS_CACHE_TIME_TO_LIVE = TimeUnit.MINUTES.toMillis(15);
+  private static final String JWKS_REFETCH_RATE_LIMIT = GATEWAY_CONFIG_FILE_PREFIX + ".jwks.refetch.rateLimit";
+  private static final long DEFAULT_JWKS_REFETCH_RATE_LIMIT = TimeUnit.SECONDS.toMillis(30);
+
+  private static final String KNOX_TOKEN_ALIAS_PERSISTENCE_LOG_ENABLED = GATEWAY_CONFIG_FILE_PREFIX + ".knox.token.state.alias.persistence.log.enabled";
+  private static final String KNOX_TOKEN_ALIAS_PERSISTENCE_LOG_COMPACTION_THRESHOLD = GATEWAY_CONFIG_FILE_PREFIX + ".knox.token.state.alias.persistence.log.compaction.threshold";
+  private static final int KNOX_TOKEN_ALIAS_PERSISTENCE_LOG_COMPACTION_THRESHOLD_DEFAULT = 100000;
+
+  private static final String REWRITE_RESPONSE_COMPRESSION_LEVEL = GATEWAY_CONFIG_FILE_PREFIX + ".rewrite.response.compression.level";
+  private static final int REWRITE_RESPONSE_COMPRESSION_LEVEL_DEFAULT = Deflater.DEFAULT_COMPRESSION;
+
+  private static final String CRYPTO_SALT_REUSE_ENABLED = GATEWAY_CONFIG_FILE_PREFIX + ".crypto.salt.reuse.enabled";
+
+  private static final String DISPATCH_REPLAY_ENABLED = GATEWAY_CONFIG_FILE_PREFIX + ".dispatch.replay.enabled";
+  private static final boolean DEFAULT_DISPATCH_REPLAY_ENABLED = false;
+  private static final String DISPATCH_REPLAY_HEAP_BUFFER_SIZE = GATEWAY_CONFIG_FILE_PREFIX + ".dispatch.replay.heap.buffer.size";
+  private static final int DEFAULT_DISPATCH_REPLAY_HEAP_BUFFER_SIZE = 64 * 1024;
+  private static final String DISPATCH_REPLAY_HEAP_QUOTA = GATEWAY_CONFIG_FILE_PREFIX + ".dispatch.replay.heap.quota";
+  private static final long DEFAULT_DISPATCH_REPLAY_HEAP_QUOTA = 64L * 1024 * 1024;
+  private static final String DISPATCH_REPLAY_DISK_QUOTA = GATEWAY_CONFIG_FILE_PREFIX + ".dispatch.replay.disk.quota";
+  private static final long DEFAULT_DISPATCH_REPLAY_DISK_QUOTA = 1024L * 1024 * 1024;
+
+  public static final String WEBSOCKET_THREAD_POOL_SIZE = GATEWAY_CONFIG_FILE_PREFIX + ".websocket.thread.pool.size";
+  public static final int DEFAULT_WEBSOCKET_THREAD_POOL_SIZE = 20;
+
+  private static final String DEPLOYMENT_THREAD_POOL_SIZE = GATEWAY_CONFIG_FILE_PREFIX + ".deployment.thread.pool.size";
+  private static final int DEFAULT_DEPLOYMENT_THREAD_POOL_SIZE = 4;
+  private static final String DEPLOYMENT_ANNOTATION_SCAN_SKIP_ENABLED = GATEWAY_CONFIG_FILE_PREFIX + ".deployment.annotation.scan.skip.enabled";
+  private static final boolean DEFAULT_DEPLOYMENT_ANNOTATION_SCAN_SKIP_ENABLED = false;
+
+  private static final String DEPLOYMENT_IN_MEMORY_ENABLED = GATEWAY_CONFIG_FILE_PREFIX + ".deployment.in.memory.enabled";
+  private static final boolean DEFAULT_DEPLOYMENT_IN_MEMORY_ENABLED = false;
+
+  private static final String CLOUDERA_MANAGER_SERVICE_DISCOVERY_THREAD_POOL_SIZE = GATEWAY_CONFIG_FILE_PREFIX + ".cloudera.manager.service.discovery.thread.pool.size";
+  private static final int DEFAULT_CLOUDERA_MANAGER_SERVICE_DISCOVERY_THREAD_POOL_SIZE = 8;
+
+  private static final String KNOX_TOKEN_STATE_JOURNAL_LOG_ENABLED = GATEWAY_CONFIG_FILE_PREFIX + ".knox.token.state.journal.log.enabled";
+  private static final boolean KNOX_TOKEN_STATE_JOURNAL_LOG_ENABLED_DEFAULT = false;
+  private static final String KNOX_TOKEN_STATE_JOURNAL_LOG_SYNC_INTERVAL = GATEWAY_CONFIG_FILE_PREFIX + ".knox.token.state.journal.log.sync.interval";
+  private static final long KNOX_TOKEN_STATE_JOURNAL_LOG_SYNC_INTERVAL_DEFAULT = 1000L;
+
   public GatewayConfigImpl() {
     init();
   }
@@ -1209,4 +1269,135 @@ public class GatewayConfigImpl extends Configuration implements GatewayConfig {
   public boolean isGatewayServerIncomingXForwardedSupportEnabled() {
     return getBoolean(KNOX_INCOMING_XFORWARDED_ENABLED, true);
   }
+
+  @Override
+  public int getAsyncDispatchThreadPoolSize() {
+    return getInt(ASYNC_DISPATCH_THREAD_POOL_SIZE, DEFAULT_ASYNC_DISPATCH_THREAD_POOL_SIZE);
+  }
+
+  @Override
+  public int getAsyncDispatchQueueSize() {
+    return getInt(ASYNC_DISPATCH_QUEUE_SIZE, DEFAULT_ASYNC_DISPATCH_QUEUE_SIZE);
+  }
+
+  @Override
+  public long getAsyncDispatchTimeout() {
+    return getLong(ASYNC_DISPATCH_TIMEOUT, DEFAULT_ASYNC_DISPATCH_TIMEOUT);
+  }
+
+  @Override
+  public boolean isHttpClientConnectionPoolShared() {
+    return getBoolean(HTTP_CLIENT_CONNECTION_POOL_SHARED, DEFAULT_HTTP_CLIENT_CONNECTION_POOL_SHARED);
+  }
+
+  @Override
+  public int getHttpClientConnectionPoolMaxTotal() {
+    return getInt(HTTP_CLIENT_CONNECTION_POOL_MAX_TOTAL, DEFAULT_HTTP_CLIENT_CONNECTION_POOL_MAX_TOTAL);
+  }
+
+  @Override
+  public long getHttpClientConnectionPoolIdleTimeout() {
+    return getLong(HTTP_CLIENT_CONNECTION_POOL_IDLE_TIMEOUT, DEFAULT_HTTP_CLIENT_CONNECTION_POOL_IDLE_TIMEOUT);
+  }
+
+  @Override
+  public int getHttpClientConnectionPoolValidateAfterInactivity() {
+    return getInt(HTTP_CLIENT_CONNECTION_POOL_VALIDATE_AFTER_INACTIVITY, DEFAULT_HTTP_CLIENT_CONNECTION_POOL_VALIDATE_AFTER_INACTIVITY);
+  }
+
+  @Override
+  public long getHttpClientConnectionPoolTimeToLive() {
+    return getLong(HTTP_CLIENT_CONNECTION_POOL_TIME_TO_LIVE, DEFAULT_HTTP_CLIENT_CONNECTION_POOL_TIME_TO_LIVE);
+  }
+
+  @Override
+  public long getJwksCacheRefreshInterval() {
+    return getLong(JWKS_CACHE_REFRESH_INTERVAL, DEFAULT_JWKS_CACHE_REFRESH_INTERVAL);
+  }
+
+  @Override
+  public long getJwksCacheTimeToLive() {
+    return getLong(JWKS_CACHE_TIME_TO_LIVE, DEFAULT_JWKS_CACHE_TIME_TO_LIVE);
+  }
+
+  @Override
+  public long getJwksRefetchRateLimit() {
+    return getLong(JWKS_REFETCH_RATE_LIMIT, DEFAULT_JWKS_REFETCH_RATE_LIMIT);
+  }
+
+  @Override
+  public boolean isKnoxTokenStateAliasPersistenceLogEnabled() {
+    return getBoolean(KNOX_TOKEN_ALIAS_PERSISTENCE_LOG_ENABLED, false);
+  }
+
+  @Override
+  public int getKnoxTokenStateAliasPersistenceLogCompactionThreshold() {
+    return getInt(KNOX_TOKEN_ALIAS_PERSISTENCE_LOG_COMPACTION_THRESHOLD, KNOX_TOKEN_ALIAS_PERSISTENCE_LOG_COMPACTION_THRESHOLD_DEFAULT);
+  }
+
+  @Override
+  public int getRewriteResponseCompressionLevel() {
+    final int level = getInt(REWRITE_RESPONSE_COMPRESSION_LEVEL, REWRITE_RESPONSE_COMPRESSION_LEVEL_DEFAULT);
+    return (level < Deflater.DEFAULT_COMPRESSION || level > Deflater.BEST_COMPRESSION) ? REWRITE_RESPONSE_COMPRESSION_LEVEL_DEFAULT : level;
+  }
+
+  @Override
+  public boolean isCryptoSaltReuseEnabled() {
+    return getBoolean(CRYPTO_SALT_REUSE_ENABLED, false);
+  }
+
+  @Override
+  public boolean isDispatchReplayEnabled() {
+    return getBoolean(DISPATCH_REPLAY_ENABLED, DEFAULT_DISPATCH_REPLAY_ENABLED);
+  }
+
+  @Override
+  public int getDispatchReplayHeapBufferSize() {
+    return getInt(DISPATCH_REPLAY_HEAP_BUFFER_SIZE, DEFAULT_DISPATCH_REPLAY_HEAP_BUFFER_SIZE);
+  }
+
+  @Override
+  public long getDispatchReplayHeapQuota() {
+    return getLong(DISPATCH_REPLAY_HEAP_QUOTA, DEFAULT_DISPATCH_REPLAY_HEAP_QUOTA);
+  }
+
+  @Override
+  public long getDispatchReplayDiskQuota() {
+    return getLong(DISPATCH_REPLAY_DISK_QUOTA, DEFAULT_DISPATCH_REPLAY_DISK_QUOTA);
+  }
+
+  @Override
+  public int getWebsocketThreadPoolSize() {
+    return getInt(WEBSOCKET_THREAD_POOL_SIZE, DEFAULT_WEBSOCKET_THREAD_POOL_SIZE);
+  }
+
+  @Override
+  public int getGatewayDeploymentThreadPoolSize() {
+    return getInt(DEPLOYMENT_THREAD_POOL_SIZE, DEFAULT_DEPLOYMENT_THREAD_POOL_SIZE);
+  }
+
+  @Override
+  public boolean isGatewayDeploymentAnnotationScanSkipEnabled() {
+    return getBoolean(DEPLOYMENT_ANNOTATION_SCAN_SKIP_ENABLED, DEFAULT_DEPLOYMENT_ANNOTATION_SCAN_SKIP_ENABLED);
+  }
+
+  @Override
+  public boolean isGatewayDeploymentInMemoryEnabled() {
+    return getBoolean(DEPLOYMENT_IN_MEMORY_ENABLED, DEFAULT_DEPLOYMENT_IN_MEMORY_ENABLED);
+  }
+
+  @Override
+  public int getClouderaManagerServiceDiscoveryThreadPoolSize() {
+    return getInt(CLOUDERA_MANAGER_SERVICE_DISCOVERY_THREAD_POOL_SIZE, DEFAULT_CLOUDERA_MANAGER_SERVICE_DISCOVERY_THREAD_POOL_SIZE);
+  }
+
+  @Override
+  public boolean isKnoxTokenStateJournalLogEnabled() {
+    return getBoolean(KNOX_TOKEN_STATE_JOURNAL_LOG_ENABLED, KNOX_TOKEN_STATE_JOURNAL_LOG_ENABLED_DEFAULT);
+  }
+
+  @Override
+  public long getKnoxTokenStateJournalLogSyncInterval() {
+    return getLong(KNOX_TOKEN_STATE_JOURNAL_LOG_SYNC_INTERVAL, KNOX_TOKEN_STATE_JOURNAL_LOG_SYNC_INTERVAL_DEFAULT);
+  }
 }
@@ -126,6 +126,13 @@ public class DeploymentContextImpl implements DeploymentContext {
     }
   }
 
+  /**
+   * @return the descriptors contributed to this context for deployment without the filesystem
+   */
+  public InMemoryDeployment createInMemoryDeployment() {
+    return new InMemoryDeployment( topology, gatewayDescriptor, webAppDescriptor, webArchive );
+  }
+
   @Override
   public void addDescriptor( String name, Object descriptor ) {
     descriptors.put( name, descriptor );
@@ -17,6 +17,9 @@
  */
 package org.apache.knox.gateway.deploy;
 
+import org.apache.commons.codec.binary.Hex;
+import org.apache.commons.codec.digest.DigestUtils;
+import org.apache.commons.io.FileUtils;
 import org.apache.knox.gateway.GatewayMessages;
 import org.apache.knox.gateway.GatewayServlet;
 import org.apache.knox.gateway.config.GatewayConfig;
@@ -26,6 +29,7 @@ import org.apache.knox.gateway.descriptor.GatewayDescriptorFactory;
 import org.apache.knox.gateway.i18n.messages.MessagesFactory;
 import org.apache.knox.gateway.services.ServiceType;
 import org.apache.knox.gateway.services.GatewayServices;
+import org.apache.knox.gateway.services.metrics.impl.DefaultMetricsService;
 import org.apache.knox.gateway.services.registry.ServiceRegistry;
 import org.apache.knox.gateway.topology.Application;
 import org.apache.knox.gateway.topology.Provider;
@@ -51,6 +55,9 @@ import java.beans.Statement;
 import java.io.File;
 import java.io.IOException;
 import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.security.MessageDigest;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashMap;
@@ -61,9 +68,13 @@ import java.util.List;
 import java.util.Locale;
 import java.util.Map;
 import java.util.Map.Entry;
+import java.util.NavigableMap;
 import java.util.ServiceLoader;
 import java.util.Set;
-import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
 
 public abstract class DeploymentFactory {
   private static final JAXBContext jaxbContext = getJAXBContext();
@@ -74,6 +85,18 @@ public abstract class DeploymentFactory {
   private static GatewayServices gatewayServices;
 
   private static Map<String,Map<String,Map<Version, ServiceDeploymentContributor>>> SERVICE_CONTRIBUTOR_MAP;
+  /* Content hash of the services directory the stack contributors were last loaded from */
+  private static String loadedStacksHash;
+  /*
+   * The provider and service contributors are shared by all deployments. They are not written
+   * to be thread safe and some update shared services while contributing, e.g. by generating
+   * aliases, so topologies deployed in parallel only generate their descriptors one at a time.
+   * Exporting and activating the archives, usually the larger part of a deployment, still
+   * happens in parallel. The time spent waiting for the lock is recorded in the
+   * topology-deployment.generate.wait timer to show what this serialization costs.
+   */
+  private static final ReentrantLock CONTRIBUTION_LOCK = new ReentrantLock();
+  private static final String CONTRIBUTION_WAIT_METRIC = "topology-deployment.generate.wait";
   static {
     loadServiceContributors();
   }
@@ -187,16 +210,49 @@ public abstract class DeploymentFactory {
     return ear;
   }
 
+  /**
+   * Creates the deployment of the services of a topology without exporting it, applications
+   * are only deployed from the deployment directory.
+   *
+   * @param config the gateway configuration
+   * @param topology a topology without applications
+   * @return the in memory deployment or null if the topology has no services to deploy
+   */
+  public static InMemoryDeployment createInMemoryDeployment( GatewayConfig config, Topology topology ) {
+    validateTopology( topology );
+    loadStacksServiceContributors( config );
+    Map<String,List<ProviderDeploymentContributor>> providers = selectContextProviders( topology );
+    Map<String,List<ServiceDeploymentContributor>> services = selectContextServices( topology );
+    if( services.isEmpty() ) {
+      return null;
+    }
+    lockContributions();
+    try {
+      DeploymentContextImpl context = createDeploymentContext( config, "/", topology, providers );
+      initialize( context, providers, services, null );
+      contribute( context, providers, services, null );
+      finish( context, providers, services, null, true );
+      return context.createInMemoryDeployment();
+    } finally {
+      CONTRIBUTION_LOCK.unlock();
+    }
+  }
+
   private static WebArchive createServicesDeployment(
       GatewayConfig config,
       Topology topology,
       Map<String,List<ProviderDeploymentContributor>> providers,
       Map<String,List<ServiceDeploymentContributor>> services ) {
-    DeploymentContext context = createDeploymentContext( config, "/", topology, providers );
-    initialize( context, providers, services, null );
-    contribute( context, providers, services, null );
-    finish( context, providers, services, null );
-    return context.getWebArchive();
+    lockContributions();
+    try {
+      DeploymentContext context = createDeploymentContext( config, "/", topology, providers );
+      initialize( context, providers, services, null );
+      contribute( context, providers, services, null );
+      finish( context, providers, services, null, false );
+      return context.getWebArchive();
+    } finally {
+      CONTRIBUTION_LOCK.unlock();
+    }
   }
 
   public static WebArchive createApplicationDeployment(
@@ -205,11 +261,23 @@ public abstract class DeploymentFactory {
       Map<String,List<ProviderDeploymentContributor>> providers,
       Map.Entry<String,ServiceDeploymentContributor> application ) {
     String appPath = "/" + Urls.trimLeadingAndTrailingSlash( application.getKey() );
-    DeploymentContext context = createDeploymentContext( config, appPath, topology, providers );
-    initialize( context, providers, null, application );
-    contribute( context, providers, null, application );
-    finish( context, providers, null, application );
-    return context.getWebArchive();
+    lockContributions();
+    try {
+      DeploymentContext context = createDeploymentContext( config, appPath, topology, providers );
+      initialize( context, providers, null, application );
+      contribute( context, providers, null, application );
+      finish( context, providers, null, application, false );
+      return context.getWebArchive();
+    } finally {
+      CONTRIBUTION_LOCK.unlock();
+    }
+  }
+
+  private static void lockContributions() {
+    long started = System.nanoTime();
+    CONTRIBUTION_LOCK.lock();
+    DefaultMetricsService.getMetricRegistry().timer( CONTRIBUTION_WAIT_METRIC )
+        .update( System.nanoTime() - started, TimeUnit.NANOSECONDS );
   }
 
   private static Asset toStringAsset( Topology topology ) {
@@ -226,7 +294,7 @@ public abstract class DeploymentFactory {
     return new StringAsset( xml );
   }
 
-  private static DeploymentContext createDeploymentContext(
+  private static DeploymentContextImpl createDeploymentContext(
       GatewayConfig config,
       String archivePath,
       Topology topology,
@@ -369,7 +437,7 @@ public abstract class DeploymentFactory {
     String topoName = context.getTopology().getName();
     if( applications == null ) {
       String servletName = topoName + SERVLET_NAME_SUFFIX;
-      wad.createServlet().servletName( servletName ).servletClass( GatewayServlet.class.getName() );
+      wad.createServlet().servletName( servletName ).servletClass( GatewayServlet.class.getName() ).asyncSupported( true );
       wad.createServletMapping().servletName( servletName ).urlPattern( "/*" );
     } else {
       String filterName = topoName + FILTER_NAME_SUFFIX;
@@ -553,7 +621,7 @@ public abstract class DeploymentFactory {
       }
       if ( versionMap != null && !versionMap.isEmpty()) {
         if( version == null ) {
-          contributor = ((TreeMap<Version, ServiceDeploymentContributor>) versionMap).lastEntry().getValue();
+          contributor = ((NavigableMap<Version, ServiceDeploymentContributor>) versionMap).lastEntry().getValue();
         } else {
           contributor = versionMap.get( version );
         }
@@ -566,38 +634,12 @@ public abstract class DeploymentFactory {
       DeploymentContext context,
       Map<String,List<ProviderDeploymentContributor>> providers,
       Map<String,List<ServiceDeploymentContributor>> services,
-      Map.Entry<String,ServiceDeploymentContributor> application ) {
+      Map.Entry<String,ServiceDeploymentContributor> application,
+      boolean inMemory ) {
     try {
-      // Write the gateway descriptor (gateway.xml) into the war.
-      StringWriter writer = new StringWriter();
-      GatewayDescriptorFactory.store( context.getGatewayDescriptor(), "xml", writer );
-      context.getWebArchive().addAsWebInfResource(
-          new StringAsset( writer.toString() ),
-          GatewayServlet.GATEWAY_DESCRIPTOR_LOCATION_DEFAULT );
-
-      // Set the location of the gateway descriptor as a servlet init param.
-      if( application == null ) {
-        String servletName = context.getTopology().getName() + SERVLET_NAME_SUFFIX;
-        ServletType<WebAppDescriptor> servlet = findServlet( context, servletName );
-        // Coverity CID 1352314
-        if( servlet == null ) {
-          throw new DeploymentException( "Missing servlet " + servletName );
-        } else {
-          servlet.createInitParam()
-              .paramName( GatewayServlet.GATEWAY_DESCRIPTOR_LOCATION_PARAM )
-              .paramValue( "/WEB-INF/" + GatewayServlet.GATEWAY_DESCRIPTOR_LOCATION_DEFAULT );
-        }
-      } else {
-        String servletName = context.getTopology().getName() + FILTER_NAME_SUFFIX;
-        FilterType<WebAppDescriptor> filter = findFilter( context, servletName );
-        // Coverity CID 1352313
-        if( filter == null ) {
-          throw new DeploymentException( "Missing filter " + servletName );
-        } else {
-          filter.createInitParam()
-              .paramName( GatewayServlet.GATEWAY_DESCRIPTOR_LOCATION_PARAM )
-              .paramValue( "/WEB-INF/" + GatewayServlet.GATEWAY_DESCRIPTOR_LOCATION_DEFAULT );
-        }
+      // In memory deployments hand both descriptors over as they are.
+      if( !inMemory ) {
+        writeGatewayDescriptor( context, application );
       }
       if (gatewayServices != null) {
         gatewayServices.finalizeContribution(context);
@@ -605,12 +647,50 @@ public abstract class DeploymentFactory {
       finalizeProviders( context, providers );
       finalizeServices( context, services );
       finalizeApplications( context, application );
-      writeDeploymentDescriptor( context, application != null );
+      if( !inMemory ) {
+        writeDeploymentDescriptor( context, application != null );
+      }
     } catch ( IOException e ) {
       throw new RuntimeException( e );
     }
   }
 
+  private static void writeGatewayDescriptor(
+      DeploymentContext context,
+      Map.Entry<String,ServiceDeploymentContributor> application ) throws IOException {
+    // Write the gateway descriptor (gateway.xml) into the war.
+    StringWriter writer = new StringWriter();
+    GatewayDescriptorFactory.store( context.getGatewayDescriptor(), "xml", writer );
+    context.getWebArchive().addAsWebInfResource(
+        new StringAsset( writer.toString() ),
+        GatewayServlet.GATEWAY_DESCRIPTOR_LOCATION_DEFAULT );
+
+    // Set the location of the gateway descriptor as a servlet init param.
+    if( application == null ) {
+      String servletName = context.getTopology().getName() + SERVLET_NAME_SUFFIX;
+      ServletType<WebAppDescriptor> servlet = findServlet( context, servletName );
+      // Coverity CID 1352314
+      if( servlet == null ) {
+        throw new DeploymentException( "Missing servlet " + servletName );
+      } else {
+        servlet.createInitParam()
+            .paramName( GatewayServlet.GATEWAY_DESCRIPTOR_LOCATION_PARAM )
+            .paramValue( "/WEB-INF/" + GatewayServlet.GATEWAY_DESCRIPTOR_LOCATION_DEFAULT );
+      }
+    } else {
+      String servletName = context.getTopology().getName() + FILTER_NAME_SUFFIX;
+      FilterType<WebAppDescriptor> filter = findFilter( context, servletName );
+      // Coverity CID 1352313
+      if( filter == null ) {
+        throw new DeploymentException( "Missing filter " + servletName );
+      } else {
+        filter.createInitParam()
+            .paramName( GatewayServlet.GATEWAY_DESCRIPTOR_LOCATION_PARAM )
+            .paramValue( "/WEB-INF/" + GatewayServlet.GATEWAY_DESCRIPTOR_LOCATION_DEFAULT );
+      }
+    }
+  }
+
   private static void finalizeProviders( DeploymentContext context, Map<String, List<ProviderDeploymentContributor>> providers ) {
     if( providers != null ) {
       for( Entry<String, List<ProviderDeploymentContributor>> entry : providers.entrySet() ) {
@@ -690,16 +770,50 @@ public abstract class DeploymentFactory {
     return null;
   }
 
-  private static void loadStacksServiceContributors( GatewayConfig config ) {
+  /*
+   * Topologies are deployed in parallel and each deployment asks for the
+   * stack contributors, so the service definitions are only parsed again
+   * when the content of the services directory has changed.
+   */
+  private static synchronized void loadStacksServiceContributors( GatewayConfig config ) {
     String stacks = config.getGatewayServicesDir();
     log.usingServicesDirectory(stacks);
     File stacksDir = new File(stacks);
+    String stacksHash = hashDirectory(stacksDir);
+    if (stacksHash != null && stacksHash.equals(loadedStacksHash)) {
+      log.reusingServiceDefinitions(stacks);
+      return;
+    }
     Set<ServiceDeploymentContributor> deploymentContributors = ServiceDefinitionsLoader.loadServiceDefinitionDeploymentContributors(stacksDir);
     addServiceDeploymentContributors(deploymentContributors.iterator());
+    loadedStacksHash = stacksHash;
+  }
+
+  /**
+   * @return a SHA-256 hash over the relative paths and content of all files
+   * in the directory, or null if it can't be read
+   */
+  private static String hashDirectory( File dir ) {
+    if (dir == null || !dir.isDirectory()) {
+      return null;
+    }
+    try {
+      MessageDigest digest = DigestUtils.getSha256Digest();
+      List<File> files = new ArrayList<>(FileUtils.listFiles(dir, null, true));
+      files.sort(null);
+      for (File file : files) {
+        digest.update(dir.toPath().relativize(file.toPath()).toString().getBytes(StandardCharsets.UTF_8));
+        digest.update((byte) 0);
+        digest.update(Files.readAllBytes(file.toPath()));
+      }
+      return Hex.encodeHexString(digest.digest());
+    } catch (IOException | RuntimeException e) {
+      return null;
+    }
   }
 
   private static void loadServiceContributors() {
-    SERVICE_CONTRIBUTOR_MAP = new HashMap<>();
+    SERVICE_CONTRIBUTOR_MAP = new ConcurrentHashMap<>();
     ServiceLoader<ServiceDeploymentContributor> loader = ServiceLoader.load( ServiceDeploymentContributor.class );
     Iterator<ServiceDeploymentContributor> contributors = loader.iterator();
     addServiceDeploymentContributors(contributors);
@@ -720,16 +834,10 @@ public abstract class DeploymentFactory {
           log.ignoringServiceContributorWithMissingVersion(contributor.getClass().getName());
           continue;
         }
-        Map<String,Map<Version, ServiceDeploymentContributor>> nameMap = SERVICE_CONTRIBUTOR_MAP.get( contributor.getRole() );
-        if( nameMap == null ) {
-          nameMap = new HashMap<>();
-          SERVICE_CONTRIBUTOR_MAP.put( contributor.getRole(), nameMap );
-        }
-        Map<Version, ServiceDeploymentContributor> versionMap = nameMap.get(contributor.getName());
-        if (versionMap == null) {
-          versionMap = new TreeMap<>();
-          nameMap.put(contributor.getName(), versionMap);
-        }
+        Map<String,Map<Version, ServiceDeploymentContributor>> nameMap =
+            SERVICE_CONTRIBUTOR_MAP.computeIfAbsent( contributor.getRole(), role -> new ConcurrentHashMap<>() );
+        Map<Version, ServiceDeploymentContributor> versionMap =
+            nameMap.computeIfAbsent( contributor.getName(), name -> new ConcurrentSkipListMap<>() );
         versionMap.put( contributor.getVersion(), contributor );
       }
    }
@@ -0,0 +1,69 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.knox.gateway.deploy;
+
+import org.apache.knox.gateway.descriptor.GatewayDescriptor;
+import org.apache.knox.gateway.topology.Topology;
+import org.jboss.shrinkwrap.api.spec.WebArchive;
+import org.jboss.shrinkwrap.descriptor.api.webapp30.WebAppDescriptor;
+
+/**
+ * The descriptors of a topology deployment as contributed to the
+ * {@link DeploymentContext}, kept in memory instead of being written to
+ * gateway.xml and web.xml and exported to the deployment directory.
+ * <p>
+ * The web archive only carries the resources contributed by providers and
+ * services, for example rewrite.xml or shiro.ini, which are served to the
+ * servlet context from memory.
+ *
+ * @since 1.6.0
+ */
+public class InMemoryDeployment {
+
+  private final Topology topology;
+  private final GatewayDescriptor gatewayDescriptor;
+  private final WebAppDescriptor webAppDescriptor;
+  private final WebArchive webArchive;
+
+  public InMemoryDeployment(
+      Topology topology,
+      GatewayDescriptor gatewayDescriptor,
+      WebAppDescriptor webAppDescriptor,
+      WebArchive webArchive ) {
+    this.topology = topology;
+    this.gatewayDescriptor = gatewayDescriptor;
+    this.webAppDescriptor = webAppDescriptor;
+    this.webArchive = webArchive;
+  }
+
+  public Topology getTopology() {
+    return topology;
+  }
+
+  public GatewayDescriptor getGatewayDescriptor() {
+    return gatewayDescriptor;
+  }
+
+  public WebAppDescriptor getWebAppDescriptor() {
+    return webAppDescriptor;
+  }
+
+  public WebArchive getWebArchive() {
+    return webArchive;
+  }
+}
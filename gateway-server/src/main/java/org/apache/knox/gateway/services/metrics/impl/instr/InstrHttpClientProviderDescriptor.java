@@ -17,8 +17,10 @@
  */
 package org.apache.knox.gateway.services.metrics.impl.instr;
 
+import org.apache.knox.gateway.dispatch.SharedHttpClientConnectionManager;
 import org.apache.knox.gateway.services.metrics.InstrumentationProvider;
 import org.apache.knox.gateway.services.metrics.InstrumentationProviderDescriptor;
+import org.apache.knox.gateway.services.security.token.VerifiedTokenCache;
 import org.apache.http.impl.client.HttpClientBuilder;
 
 import java.util.HashMap;
@@ -32,6 +34,8 @@ public class InstrHttpClientProviderDescriptor implements
   public InstrHttpClientProviderDescriptor() {
     providers = new HashMap<>();
     providers.put(HttpClientBuilder.class, new InstrHttpClientBuilderProvider());
+    providers.put(SharedHttpClientConnectionManager.class, new InstrSharedConnectionManagerProvider());
+    providers.put(VerifiedTokenCache.class, new InstrVerifiedTokenCacheProvider());
   }
 
   @Override
@@ -0,0 +1,64 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.knox.gateway.services.metrics.impl.instr;
+
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.MetricRegistry;
+import org.apache.knox.gateway.dispatch.HttpClientConnectionPoolRegistry;
+import org.apache.knox.gateway.dispatch.SharedHttpClientConnectionManager;
+import org.apache.knox.gateway.services.metrics.InstrumentationProvider;
+import org.apache.knox.gateway.services.metrics.MetricsContext;
+import org.apache.knox.gateway.services.metrics.impl.DefaultMetricsService;
+
+import java.util.function.ToIntFunction;
+
+/**
+ * Publishes leased, available and pending connection gauges for a shared HTTP client
+ * connection pool. Instrumenting the same pool more than once is a no-op.
+ * <p>
+ * The gauges look the pool up by name, so they keep reporting the current pool once
+ * a pool has been replaced because of changed TLS material.
+ */
+public class InstrSharedConnectionManagerProvider implements
+    InstrumentationProvider<SharedHttpClientConnectionManager> {
+
+  @Override
+  public SharedHttpClientConnectionManager getInstrumented(MetricsContext metricsContext) {
+    throw new UnsupportedOperationException();
+  }
+
+  @Override
+  public SharedHttpClientConnectionManager getInstrumented(SharedHttpClientConnectionManager connectionManager,
+                                                           MetricsContext metricsContext) {
+    MetricRegistry registry = (MetricRegistry) metricsContext.getProperty(DefaultMetricsService.METRICS_REGISTRY);
+    String name = connectionManager.getName();
+    registerGauge(registry, name, "leased-connections", SharedHttpClientConnectionManager::getLeased);
+    registerGauge(registry, name, "available-connections", SharedHttpClientConnectionManager::getAvailable);
+    registerGauge(registry, name, "pending-connections", SharedHttpClientConnectionManager::getPending);
+    registerGauge(registry, name, "max-connections", SharedHttpClientConnectionManager::getMaxTotal);
+    return connectionManager;
+  }
+
+  private static void registerGauge(MetricRegistry registry, String poolName, String metricName,
+                                    ToIntFunction<SharedHttpClientConnectionManager> value) {
+    registry.gauge(MetricRegistry.name("http-client-pool", poolName, metricName), () -> (Gauge<Integer>) () -> {
+      SharedHttpClientConnectionManager current = HttpClientConnectionPoolRegistry.getInstance().getConnectionManager(poolName);
+      return current == null ? 0 : value.applyAsInt(current);
+    });
+  }
+}
@@ -0,0 +1,50 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.knox.gateway.services.metrics.impl.instr;
+
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.MetricRegistry;
+import org.apache.knox.gateway.services.metrics.InstrumentationProvider;
+import org.apache.knox.gateway.services.metrics.MetricsContext;
+import org.apache.knox.gateway.services.metrics.impl.DefaultMetricsService;
+import org.apache.knox.gateway.services.security.token.VerifiedTokenCache;
+
+/**
+ * Publishes hit, miss and size gauges for a verified token cache.
+ */
+public class InstrVerifiedTokenCacheProvider implements InstrumentationProvider<VerifiedTokenCache> {
+
+  @Override
+  public VerifiedTokenCache getInstrumented(MetricsContext metricsContext) {
+    throw new UnsupportedOperationException();
+  }
+
+  @Override
+  public VerifiedTokenCache getInstrumented(VerifiedTokenCache cache, MetricsContext metricsContext) {
+    MetricRegistry registry = (MetricRegistry) metricsContext.getProperty(DefaultMetricsService.METRICS_REGISTRY);
+    String name = cache.getName();
+    // Gauges are keyed by name, so a redeployed topology replaces the gauges of its previous cache
+    registry.remove(MetricRegistry.name("verified-token-cache", name, "hits"));
+    registry.remove(MetricRegistry.name("verified-token-cache", name, "misses"));
+    registry.remove(MetricRegistry.name("verified-token-cache", name, "size"));
+    registry.register(MetricRegistry.name("verified-token-cache", name, "hits"), (Gauge<Long>) cache::getHits);
+    registry.register(MetricRegistry.name("verified-token-cache", name, "misses"), (Gauge<Long>) cache::getMisses);
+    registry.register(MetricRegistry.name("verified-token-cache", name, "size"), (Gauge<Long>) cache::getSize);
+    return cache;
+  }
+}
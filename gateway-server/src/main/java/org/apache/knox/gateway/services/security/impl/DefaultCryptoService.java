@@ -24,8 +24,8 @@ import java.security.NoSuchAlgorithmException;
 import java.security.PrivateKey;
 import java.security.Signature;
 import java.security.SignatureException;
-import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 import org.apache.knox.gateway.GatewayMessages;
 import org.apache.knox.gateway.config.GatewayConfig;
@@ -41,7 +41,7 @@ import org.apache.knox.gateway.services.ServiceLifecycleException;
 public class DefaultCryptoService implements CryptoService {
   private static final GatewayMessages LOG = MessagesFactory.get( GatewayMessages.class );
 
-  private static final Map<String,ConfigurableEncryptor> ENCRYPTOR_CACHE = new HashMap<>();
+  private static final Map<String,ConfigurableEncryptor> ENCRYPTOR_CACHE = new ConcurrentHashMap<>();
 
   private AliasService aliasService;
   private KeystoreService keystoreService;
@@ -160,18 +160,18 @@ public class DefaultCryptoService implements CryptoService {
     return null;
   }
 
-  // The assumption here is that lock contention will be less of a performance issue than the cost of object creation.
   // We have seen via profiling that AESEncryptor instantiation is very expensive.
+  // Each encryptor also keeps the keys it derived, so it must be reused for every request of a cluster.
   private ConfigurableEncryptor getEncryptor( final String clusterName, final char[] password ) {
-    synchronized(ENCRYPTOR_CACHE) {
-      ConfigurableEncryptor encryptor = ENCRYPTOR_CACHE.get( clusterName );
-      if( encryptor == null ) {
-        encryptor = new ConfigurableEncryptor( String.valueOf( password ) );
-        encryptor.init(config);
-        ENCRYPTOR_CACHE.put( clusterName, encryptor );
-      }
-      return encryptor;
+    ConfigurableEncryptor encryptor = ENCRYPTOR_CACHE.get( clusterName );
+    if( encryptor == null ) {
+      encryptor = ENCRYPTOR_CACHE.computeIfAbsent( clusterName, name -> {
+        ConfigurableEncryptor created = new ConfigurableEncryptor( String.valueOf( password ) );
+        created.init(config);
+        return created;
+      } );
     }
+    return encryptor;
   }
 
 }
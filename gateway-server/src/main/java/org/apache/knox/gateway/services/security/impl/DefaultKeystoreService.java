@@ -19,6 +19,7 @@ package org.apache.knox.gateway.services.security.impl;
 
 import static org.apache.knox.gateway.services.security.AliasService.NO_CLUSTER_NAME;
 
+import org.apache.commons.codec.digest.DigestUtils;
 import org.apache.commons.io.FilenameUtils;
 import org.apache.commons.io.filefilter.PrefixFileFilter;
 import org.apache.commons.lang3.builder.EqualsBuilder;
@@ -29,11 +30,15 @@ import org.apache.knox.gateway.config.GatewayConfig;
 import org.apache.knox.gateway.i18n.messages.MessagesFactory;
 import org.apache.knox.gateway.i18n.resources.ResourcesFactory;
 import org.apache.knox.gateway.services.ServiceLifecycleException;
+import org.apache.knox.gateway.services.metrics.impl.DefaultMetricsService;
 import org.apache.knox.gateway.services.security.KeystoreService;
 import org.apache.knox.gateway.services.security.KeystoreServiceException;
 import org.apache.knox.gateway.services.security.MasterService;
 import org.apache.knox.gateway.util.X509CertificateUtil;
 
+import com.codahale.metrics.Counter;
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.Timer;
 import com.github.benmanes.caffeine.cache.Cache;
 import com.github.benmanes.caffeine.cache.Caffeine;
 
@@ -62,12 +67,16 @@ import java.security.cert.Certificate;
 import java.security.cert.CertificateException;
 import java.security.cert.X509Certificate;
 import java.text.MessageFormat;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashSet;
 import java.util.Locale;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
 
 import javax.crypto.spec.SecretKeySpec;
 
@@ -80,8 +89,30 @@ public class DefaultKeystoreService implements KeystoreService {
   private static GatewayMessages LOG = MessagesFactory.get(GatewayMessages.class);
   private static GatewayResources RES = ResourcesFactory.get(GatewayResources.class);
 
+  static final String LOAD_COUNTER_NAME = MetricRegistry.name("keystore", "loads");
+  static final String SNAPSHOT_HIT_COUNTER_NAME = MetricRegistry.name("keystore", "snapshot", "hits");
+  static final String LOCK_CONTENTION_COUNTER_NAME = MetricRegistry.name("keystore", "lock", "contended");
+  static final String LOCK_WAIT_TIMER_NAME = MetricRegistry.name("keystore", "lock", "wait");
+
   Cache<CacheKey, String> cache;
 
+  /*
+   * Loaded keystores keyed by their normalized path. A snapshot is never modified once it has been
+   * handed out; updates always work on a freshly loaded copy and drop the snapshot once written.
+   */
+  private Map<Path, KeystoreSnapshot> snapshots;
+
+  /*
+   * Readers of keystore files share the read lock; anything that writes a keystore file (or reads
+   * one in order to modify it) holds the write lock.
+   */
+  private ReentrantReadWriteLock keystoreLock;
+
+  private Counter loadCounter;
+  private Counter snapshotHitCounter;
+  private Counter lockContentionCounter;
+  private Timer lockWaitTimer;
+
   private GatewayConfig config;
 
   private MasterService masterService;
@@ -114,12 +145,29 @@ public class DefaultKeystoreService implements KeystoreService {
     if (this.cache == null) {
       this.cache = Caffeine.newBuilder().expireAfterAccess(config.getKeystoreCacheEntryTimeToLiveInMinutes(), TimeUnit.MINUTES).maximumSize(config.getKeystoreCacheSizeLimit()).build();
     }
+    initKeystoreSnapshots();
 
     this.credentialStoreAlgorithm = config.getCredentialStoreAlgorithm();
     this.credentialStoreType = config.getCredentialStoreType();
     this.credentialsSuffix = CREDENTIALS_SUFFIX + this.credentialStoreType.toLowerCase(Locale.ROOT);
   }
 
+  private void initKeystoreSnapshots() {
+    if (this.snapshots == null) {
+      this.snapshots = new ConcurrentHashMap<>();
+    }
+    if (this.keystoreLock == null) {
+      this.keystoreLock = new ReentrantReadWriteLock();
+    }
+    if (this.loadCounter == null) {
+      final MetricRegistry metrics = DefaultMetricsService.getMetricRegistry();
+      this.loadCounter = metrics.counter(LOAD_COUNTER_NAME);
+      this.snapshotHitCounter = metrics.counter(SNAPSHOT_HIT_COUNTER_NAME);
+      this.lockContentionCounter = metrics.counter(LOCK_CONTENTION_COUNTER_NAME);
+      this.lockWaitTimer = metrics.timer(LOCK_WAIT_TIMER_NAME);
+    }
+  }
+
   @Override
   public void start() throws ServiceLifecycleException {
   }
@@ -182,9 +230,10 @@ public class DefaultKeystoreService implements KeystoreService {
     addCertForGateway(alias, passphrase, hostname);
   }
 
-  private synchronized void addCertForGateway(String alias, char[] passphrase, String hostname)
+  private void addCertForGateway(String alias, char[] passphrase, String hostname)
       throws KeystoreServiceException {
     KeyPairGenerator keyPairGenerator;
+    final Lock writeLock = lock(keystoreLock.writeLock());
     try {
       keyPairGenerator = KeyPairGenerator.getInstance("RSA");
       keyPairGenerator.initialize(2048);
@@ -202,7 +251,8 @@ public class DefaultKeystoreService implements KeystoreService {
         cert = X509CertificateUtil.generateCertificate(dn, KPair, 365, "SHA1withRSA");
       }
 
-      KeyStore privateKS = getKeystoreForGateway();
+      KeyStore privateKS = loadKeystoreForUpdate(Paths.get(config.getIdentityKeystorePath()),
+          config.getIdentityKeystoreType(), config.getIdentityKeystorePasswordAlias(), true);
       privateKS.setKeyEntry(alias, KPair.getPrivate(),
           passphrase,
           new java.security.cert.Certificate[]{cert});
@@ -212,6 +262,8 @@ public class DefaultKeystoreService implements KeystoreService {
     } catch (GeneralSecurityException | IOException e) {
       LOG.failedToAddSeflSignedCertForGateway( alias, e );
       throw new KeystoreServiceException(e);
+    } finally {
+      writeLock.unlock();
     }
   }
 
@@ -320,9 +372,10 @@ public class DefaultKeystoreService implements KeystoreService {
   public void addCredentialsForCluster(String clusterName, Map<String, String> credentials)
       throws KeystoreServiceException {
     // Needed to prevent read then write synchronization issue where alias is not added
-    synchronized (this) {
+    final Lock writeLock = lock(keystoreLock.writeLock());
+    try {
       removeFromCache(clusterName, credentials.keySet());
-      KeyStore ks = getCredentialStoreForCluster(clusterName);
+      KeyStore ks = loadCredentialStoreForUpdate(clusterName);
       if (ks != null) {
         try {
           // Add all the credential keys to the keystore
@@ -339,6 +392,8 @@ public class DefaultKeystoreService implements KeystoreService {
           LOG.failedToAddCredentialForCluster(clusterName, e);
         }
       }
+    } finally {
+      writeLock.unlock();
     }
   }
 
@@ -347,7 +402,8 @@ public class DefaultKeystoreService implements KeystoreService {
       throws KeystoreServiceException {
     char[] credential;
 
-    synchronized (this) {
+    final Lock readLock = lock(keystoreLock.readLock());
+    try {
       credential = checkCache(clusterName, alias);
       if (credential == null) {
         KeyStore ks = getCredentialStoreForCluster(clusterName);
@@ -359,6 +415,8 @@ public class DefaultKeystoreService implements KeystoreService {
           }
         }
       }
+    } finally {
+      readLock.unlock();
     }
 
     return credential;
@@ -391,8 +449,9 @@ public class DefaultKeystoreService implements KeystoreService {
   @Override
   public void removeCredentialsForCluster(String clusterName, Set<String> aliases) throws KeystoreServiceException {
     // Needed to prevent read then write synchronization issue where alias is not removed
-    synchronized (this) {
-      KeyStore ks = getCredentialStoreForCluster(clusterName);
+    final Lock writeLock = lock(keystoreLock.writeLock());
+    try {
+      KeyStore ks = loadCredentialStoreForUpdate(clusterName);
       if (ks != null) {
         try {
           // Delete all the entries
@@ -410,6 +469,8 @@ public class DefaultKeystoreService implements KeystoreService {
           LOG.failedToRemoveCredentialForCluster(clusterName, e);
         }
       }
+    } finally {
+      writeLock.unlock();
     }
   }
 
@@ -454,26 +515,81 @@ public class DefaultKeystoreService implements KeystoreService {
   }
 
   /**
-   * Loads a keystore file.
+   * Returns a snapshot of a keystore file, loading the file if it has not been loaded yet or if it
+   * has changed since it was last loaded.
    * <p>
    * if <code>failIfNotAccessible</code> is <code>true</code>, then the path to the keystore file
    * (keystorePath) is validated such that it exists, is a file and can be read by the process. If
    * any of these checks fail, a {@link KeystoreServiceException} is thrown in dictating the exact
    * reason.
    * <p>
-   * Before the keystore file is loaded, the service's read lock is locked to prevent concurrent
-   * reads on the file.
+   * Snapshots are shared by all callers, so the returned {@link KeyStore} is read-only and rejects
+   * any modification with a {@link KeyStoreException}. A snapshot is replaced when the SHA-256
+   * digest of the keystore file content changes, when the keystore type or password changes, or
+   * when the keystore file is written by this service. A keystore file that does not exist is never
+   * cached.
    *
    * @param keystorePath        the path to the keystore file
    * @param keystoreType        the type of keystore file
    * @param alias               the alias for the password to the keystore file (see {@link #getKeyStorePassword(String)})
    * @param failIfNotAccessible <code>true</code> to ensure the keystore file exists and is readable; <code>false</code> to not check
-   * @return a {@link KeyStore}, or <code>null</code> if the requested keystore cannot be created
+   * @return a read-only {@link KeyStore}, or <code>null</code> if the requested keystore cannot be created
    * @throws KeystoreServiceException if an error occurs loading the keystore file
    */
-  private synchronized KeyStore getKeystore(Path keystorePath, String keystoreType, String alias,
-                                            boolean failIfNotAccessible)
+  private KeyStore getKeystore(Path keystorePath, String keystoreType, String alias,
+                               boolean failIfNotAccessible)
       throws KeystoreServiceException {
+    final Lock readLock = lock(keystoreLock.readLock());
+    try {
+      validateKeystoreFile(keystorePath, failIfNotAccessible);
+
+      final char[] password = getKeyStorePassword(alias);
+      final Path snapshotKey = getSnapshotKey(keystorePath);
+      // Digest the content before loading so a concurrent external change is picked up next time
+      final String digest = digestKeystoreFile(keystorePath);
+
+      final KeystoreSnapshot snapshot = snapshots.get(snapshotKey);
+      if (snapshot != null && snapshot.isCurrent(keystoreType, password, digest)) {
+        snapshotHitCounter.inc();
+        return snapshot.keyStore;
+      }
+
+      final KeyStore keyStore = loadKeyStore(keystorePath, keystoreType, password);
+      if (keyStore == null) {
+        snapshots.remove(snapshotKey);
+        return null;
+      }
+
+      final KeyStore readOnlyKeyStore = ReadOnlyKeyStore.of(keyStore);
+      if (digest != null) {
+        snapshots.put(snapshotKey, new KeystoreSnapshot(readOnlyKeyStore, keystoreType, password, digest));
+      } else {
+        snapshots.remove(snapshotKey);
+      }
+      return readOnlyKeyStore;
+    } finally {
+      readLock.unlock();
+    }
+  }
+
+  /**
+   * Loads a private copy of a keystore file that the caller intends to modify and write back.
+   * <p>
+   * Must be called while holding the write lock.
+   */
+  private KeyStore loadKeystoreForUpdate(Path keystorePath, String keystoreType, String alias,
+                                         boolean failIfNotAccessible)
+      throws KeystoreServiceException {
+    validateKeystoreFile(keystorePath, failIfNotAccessible);
+    return loadKeyStore(keystorePath, keystoreType, getKeyStorePassword(alias));
+  }
+
+  private KeyStore loadCredentialStoreForUpdate(String clusterName) throws KeystoreServiceException {
+    // See getCredentialStoreForCluster for why a missing file is not an error
+    return loadKeystoreForUpdate(keyStoreDirPath.resolve(clusterName + this.credentialsSuffix), this.credentialStoreType, null, false);
+  }
+
+  private void validateKeystoreFile(Path keystorePath, boolean failIfNotAccessible) throws KeystoreServiceException {
     if (failIfNotAccessible) {
       if (Files.notExists(keystorePath)) {
         LOG.keystoreFileDoesNotExist(keystorePath.toString());
@@ -486,66 +602,75 @@ public class DefaultKeystoreService implements KeystoreService {
         throw new KeystoreServiceException("The keystore file cannot be read: " + keystorePath.toString());
       }
     }
-
-    return loadKeyStore(keystorePath, keystoreType, getKeyStorePassword(alias));
   }
 
-  private synchronized boolean isKeyStoreAvailable(final Path keyStoreFilePath, String storeType,
-                                                   char[] password)
+  private boolean isKeyStoreAvailable(final Path keyStoreFilePath, String storeType,
+                                      char[] password)
       throws KeyStoreException, IOException {
-    if (Files.exists(keyStoreFilePath) &&
-            Files.isRegularFile(keyStoreFilePath) &&
-            Files.isReadable(keyStoreFilePath)) {
-      try (InputStream input = Files.newInputStream(keyStoreFilePath)) {
-        final KeyStore keyStore = KeyStore.getInstance(storeType);
-        keyStore.load(input, password);
-        return true;
-      } catch (NoSuchAlgorithmException | CertificateException e) {
-        LOG.failedToLoadKeystore(keyStoreFilePath.toString(), storeType, e);
-      } catch (IOException | KeyStoreException e) {
-        LOG.failedToLoadKeystore(keyStoreFilePath.toString(), storeType, e);
-        throw e;
+    final Lock readLock = lock(keystoreLock.readLock());
+    try {
+      if (Files.exists(keyStoreFilePath) &&
+              Files.isRegularFile(keyStoreFilePath) &&
+              Files.isReadable(keyStoreFilePath)) {
+        try (InputStream input = Files.newInputStream(keyStoreFilePath)) {
+          final KeyStore keyStore = KeyStore.getInstance(storeType);
+          keyStore.load(input, password);
+          return true;
+        } catch (NoSuchAlgorithmException | CertificateException e) {
+          LOG.failedToLoadKeystore(keyStoreFilePath.toString(), storeType, e);
+        } catch (IOException | KeyStoreException e) {
+          LOG.failedToLoadKeystore(keyStoreFilePath.toString(), storeType, e);
+          throw e;
+        }
       }
+      return false;
+    } finally {
+      readLock.unlock();
     }
-    return false;
   }
 
   // Package private for unit test access
-  // We need this to be synchronized to prevent multiple threads from using at once
-  synchronized KeyStore createKeyStore(Path keystoreFilePath, String keystoreType, char[] password) throws KeystoreServiceException {
-    // Ensure the parent directory exists...
-    // This is symlink safe.
-    Path parentPath = keystoreFilePath.getParent();
-    if (parentPath != null && !Files.isDirectory(parentPath)) {
-      try{
-        // This will attempt to create all missing directories.  No failures will occur if the
-        // directories already exist.
-        Files.createDirectories(parentPath);
-      } catch (IOException e) {
+  // This holds the write lock to prevent multiple threads from using at once
+  KeyStore createKeyStore(Path keystoreFilePath, String keystoreType, char[] password) throws KeystoreServiceException {
+    final Lock writeLock = lock(keystoreLock.writeLock());
+    try {
+      // Ensure the parent directory exists...
+      // This is symlink safe.
+      Path parentPath = keystoreFilePath.getParent();
+      if (parentPath != null && !Files.isDirectory(parentPath)) {
+        try{
+          // This will attempt to create all missing directories.  No failures will occur if the
+          // directories already exist.
+          Files.createDirectories(parentPath);
+        } catch (IOException e) {
+          LOG.failedToCreateKeystore(keystoreFilePath.toString(), keystoreType, e);
+          throw new KeystoreServiceException(e);
+        }
+      }
+
+      try {
+        KeyStore ks = KeyStore.getInstance(keystoreType);
+        ks.load(null, null);
+        writeKeyStoreToFile(ks, keystoreFilePath, password);
+        return ks;
+      } catch (NoSuchAlgorithmException | CertificateException | KeyStoreException | IOException e) {
         LOG.failedToCreateKeystore(keystoreFilePath.toString(), keystoreType, e);
         throw new KeystoreServiceException(e);
       }
-    }
-
-    try {
-      KeyStore ks = KeyStore.getInstance(keystoreType);
-      ks.load(null, null);
-      writeKeyStoreToFile(ks, keystoreFilePath, password);
-      return ks;
-    } catch (NoSuchAlgorithmException | CertificateException | KeyStoreException | IOException e) {
-      LOG.failedToCreateKeystore(keystoreFilePath.toString(), keystoreType, e);
-      throw new KeystoreServiceException(e);
+    } finally {
+      writeLock.unlock();
     }
   }
 
   // Package private for unit test access
-  synchronized KeyStore loadKeyStore(final Path keyStoreFilePath, final String storeType,
-                                     final char[] password) throws KeystoreServiceException {
+  KeyStore loadKeyStore(final Path keyStoreFilePath, final String storeType,
+                        final char[] password) throws KeystoreServiceException {
     try {
       final KeyStore keyStore = KeyStore.getInstance(storeType);
 
       // If the file does not exist, create an empty keystore
       if (Files.exists(keyStoreFilePath)) {
+        loadCounter.inc();
         try (FileChannel fileChannel = FileChannel.open(keyStoreFilePath, StandardOpenOption.READ)) {
           fileChannel.lock(0L, Long.MAX_VALUE, true);
           try (InputStream input = Channels.newInputStream(fileChannel)) {
@@ -563,15 +688,54 @@ public class DefaultKeystoreService implements KeystoreService {
   }
 
   // Package private for unit test access
-  synchronized void writeKeyStoreToFile(final KeyStore keyStore, final Path path, char[] password)
+  void writeKeyStoreToFile(final KeyStore keyStore, final Path path, char[] password)
       throws KeyStoreException, IOException, NoSuchAlgorithmException, CertificateException {
-    // TODO: backup the keystore on disk before attempting a write and restore on failure
-    try (FileChannel fileChannel = FileChannel.open(path, StandardOpenOption.WRITE,
-        StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING)) {
-      fileChannel.lock();
-      try (OutputStream out = Channels.newOutputStream(fileChannel)) {
-        keyStore.store(out, password);
+    final Lock writeLock = lock(keystoreLock.writeLock());
+    try {
+      // TODO: backup the keystore on disk before attempting a write and restore on failure
+      try (FileChannel fileChannel = FileChannel.open(path, StandardOpenOption.WRITE,
+          StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING)) {
+        fileChannel.lock();
+        try (OutputStream out = Channels.newOutputStream(fileChannel)) {
+          keyStore.store(out, password);
+        }
+      } finally {
+        snapshots.remove(getSnapshotKey(path));
+      }
+    } finally {
+      writeLock.unlock();
+    }
+  }
+
+  /**
+   * Acquires the given lock, recording whether the caller had to wait for it and for how long.
+   */
+  private Lock lock(Lock lock) {
+    if (!lock.tryLock()) {
+      lockContentionCounter.inc();
+      final long start = System.nanoTime();
+      lock.lock();
+      lockWaitTimer.update(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+    }
+    return lock;
+  }
+
+  private static Path getSnapshotKey(Path keystorePath) {
+    return keystorePath.toAbsolutePath().normalize();
+  }
+
+  private static String digestKeystoreFile(Path keystorePath) {
+    if (!Files.exists(keystorePath)) {
+      return null;
+    }
+    try (FileChannel fileChannel = FileChannel.open(keystorePath, StandardOpenOption.READ)) {
+      fileChannel.lock(0L, Long.MAX_VALUE, true);
+      try (InputStream input = Channels.newInputStream(fileChannel)) {
+        return DigestUtils.sha256Hex(input);
       }
+    } catch (IOException e) {
+      // The file cannot be read, so there is nothing to compare a snapshot to
+      return null;
     }
   }
 
@@ -583,6 +747,27 @@ public class DefaultKeystoreService implements KeystoreService {
     return (password == null) ? masterService.getMasterSecret() : password;
   }
 
+  private static class KeystoreSnapshot {
+    private final KeyStore keyStore;
+    private final String type;
+    private final char[] password;
+    private final String digest;
+
+    private KeystoreSnapshot(KeyStore keyStore, String type, char[] password, String digest) {
+      this.keyStore = keyStore;
+      this.type = type;
+      this.password = password == null ? null : password.clone();
+      this.digest = digest;
+    }
+
+    private boolean isCurrent(String type, char[] password, String digest) {
+      return digest != null
+          && this.type.equalsIgnoreCase(type)
+          && Arrays.equals(this.password, password)
+          && this.digest.equals(digest);
+    }
+  }
+
   private static class CacheKey {
     private final String clusterName;
     private final String alias;
@@ -0,0 +1,217 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.knox.gateway.services.security.impl;
+
+import org.apache.knox.gateway.services.security.KeystoreServiceException;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.security.Key;
+import java.security.KeyStore;
+import java.security.KeyStoreException;
+import java.security.KeyStoreSpi;
+import java.security.NoSuchAlgorithmException;
+import java.security.UnrecoverableEntryException;
+import java.security.UnrecoverableKeyException;
+import java.security.cert.Certificate;
+import java.security.cert.CertificateException;
+import java.util.Date;
+import java.util.Enumeration;
+
+/**
+ * A {@link KeyStore} view of a loaded keystore that rejects any modification, so that keystores
+ * shared by all callers of {@link DefaultKeystoreService} cannot be changed by one of them.
+ */
+final class ReadOnlyKeyStore extends KeyStore {
+
+  private ReadOnlyKeyStore(KeyStore keyStore) {
+    super(new ReadOnlySpi(keyStore), keyStore.getProvider(), keyStore.getType());
+  }
+
+  static KeyStore of(KeyStore keyStore) throws KeystoreServiceException {
+    final KeyStore readOnly = new ReadOnlyKeyStore(keyStore);
+    try {
+      // Marks the view as initialized, the keystore it delegates to is loaded already
+      readOnly.load(null, null);
+    } catch (IOException | NoSuchAlgorithmException | CertificateException e) {
+      throw new KeystoreServiceException(e);
+    }
+    return readOnly;
+  }
+
+  private static final class ReadOnlySpi extends KeyStoreSpi {
+    private final KeyStore keyStore;
+
+    private ReadOnlySpi(KeyStore keyStore) {
+      this.keyStore = keyStore;
+    }
+
+    @Override
+    public Key engineGetKey(String alias, char[] password) throws NoSuchAlgorithmException, UnrecoverableKeyException {
+      try {
+        return keyStore.getKey(alias, password);
+      } catch (KeyStoreException e) {
+        throw new IllegalStateException(e);
+      }
+    }
+
+    @Override
+    public Certificate[] engineGetCertificateChain(String alias) {
+      try {
+        return keyStore.getCertificateChain(alias);
+      } catch (KeyStoreException e) {
+        throw new IllegalStateException(e);
+      }
+    }
+
+    @Override
+    public Certificate engineGetCertificate(String alias) {
+      try {
+        return keyStore.getCertificate(alias);
+      } catch (KeyStoreException e) {
+        throw new IllegalStateException(e);
+      }
+    }
+
+    @Override
+    public Date engineGetCreationDate(String alias) {
+      try {
+        return keyStore.getCreationDate(alias);
+      } catch (KeyStoreException e) {
+        throw new IllegalStateException(e);
+      }
+    }
+
+    @Override
+    public Enumeration<String> engineAliases() {
+      try {
+        return keyStore.aliases();
+      } catch (KeyStoreException e) {
+        throw new IllegalStateException(e);
+      }
+    }
+
+    @Override
+    public boolean engineContainsAlias(String alias) {
+      try {
+        return keyStore.containsAlias(alias);
+      } catch (KeyStoreException e) {
+        throw new IllegalStateException(e);
+      }
+    }
+
+    @Override
+    public int engineSize() {
+      try {
+        return keyStore.size();
+      } catch (KeyStoreException e) {
+        throw new IllegalStateException(e);
+      }
+    }
+
+    @Override
+    public boolean engineIsKeyEntry(String alias) {
+      try {
+        return keyStore.isKeyEntry(alias);
+      } catch (KeyStoreException e) {
+        throw new IllegalStateException(e);
+      }
+    }
+
+    @Override
+    public boolean engineIsCertificateEntry(String alias) {
+      try {
+        return keyStore.isCertificateEntry(alias);
+      } catch (KeyStoreException e) {
+        throw new IllegalStateException(e);
+      }
+    }
+
+    @Override
+    public String engineGetCertificateAlias(Certificate cert) {
+      try {
+        return keyStore.getCertificateAlias(cert);
+      } catch (KeyStoreException e) {
+        throw new IllegalStateException(e);
+      }
+    }
+
+    @Override
+    public KeyStore.Entry engineGetEntry(String alias, KeyStore.ProtectionParameter protParam)
+        throws KeyStoreException, NoSuchAlgorithmException, UnrecoverableEntryException {
+      return keyStore.getEntry(alias, protParam);
+    }
+
+    @Override
+    public boolean engineEntryInstanceOf(String alias, Class<? extends KeyStore.Entry> entryClass) {
+      try {
+        return keyStore.entryInstanceOf(alias, entryClass);
+      } catch (KeyStoreException e) {
+        throw new IllegalStateException(e);
+      }
+    }
+
+    @Override
+    public void engineStore(OutputStream stream, char[] password)
+        throws IOException, NoSuchAlgorithmException, CertificateException {
+      try {
+        keyStore.store(stream, password);
+      } catch (KeyStoreException e) {
+        throw new IOException(e);
+      }
+    }
+
+    @Override
+    public void engineLoad(InputStream stream, char[] password) throws IOException {
+      if (stream != null) {
+        throw new IOException("The keystore is read-only");
+      }
+    }
+
+    @Override
+    public void engineSetKeyEntry(String alias, Key key, char[] password, Certificate[] chain) throws KeyStoreException {
+      throw readOnly();
+    }
+
+    @Override
+    public void engineSetKeyEntry(String alias, byte[] key, Certificate[] chain) throws KeyStoreException {
+      throw readOnly();
+    }
+
+    @Override
+    public void engineSetCertificateEntry(String alias, Certificate cert) throws KeyStoreException {
+      throw readOnly();
+    }
+
+    @Override
+    public void engineDeleteEntry(String alias) throws KeyStoreException {
+      throw readOnly();
+    }
+
+    @Override
+    public void engineSetEntry(String alias, KeyStore.Entry entry, KeyStore.ProtectionParameter protParam)
+        throws KeyStoreException {
+      throw readOnly();
+    }
+
+    private static KeyStoreException readOnly() {
+      return new KeyStoreException("The keystore is read-only");
+    }
+  }
+}
@@ -44,6 +44,7 @@ import org.apache.knox.gateway.services.security.AliasServiceException;
 import org.apache.knox.gateway.services.security.impl.DefaultKeystoreService;
 import org.apache.knox.gateway.services.security.token.UnknownTokenException;
 import org.apache.knox.gateway.services.token.TokenStateServiceStatistics;
+import org.apache.knox.gateway.services.token.impl.state.LogTokenStateJournal;
 import org.apache.knox.gateway.services.token.impl.state.TokenStateJournalFactory;
 import org.apache.knox.gateway.services.token.state.JournalEntry;
 import org.apache.knox.gateway.services.token.state.TokenStateJournal;
@@ -67,6 +68,9 @@ public class AliasBasedTokenStateService extends DefaultTokenStateService {
 
   private TokenStateJournal journal;
 
+  // When configured, token state is persisted in this log rather than in the gateway credential store
+  private LogTokenStateJournal tokenStateLog;
+
   private Path gatewayCredentialsFilePath;
 
   public void setAliasService(AliasService aliasService) {
@@ -82,7 +86,13 @@ public class AliasBasedTokenStateService extends DefaultTokenStateService {
 
     try {
       // Initialize the token state journal
-      journal = TokenStateJournalFactory.create(config);
+      if (config.isKnoxTokenStateAliasPersistenceLogEnabled()) {
+        tokenStateLog = TokenStateJournalFactory.createLog(config);
+        journal = tokenStateLog;
+        migrateJournalEntries(TokenStateJournalFactory.create(config));
+      } else {
+        journal = TokenStateJournalFactory.create(config);
+      }
 
       // Load any persisted journal entries, and add them to the unpersisted state collection
       List<JournalEntry> entries = journal.get();
@@ -96,10 +106,12 @@ public class AliasBasedTokenStateService extends DefaultTokenStateService {
           // Add the token state to memory
           super.addToken(id, issueTime, expiration, maxLifetime);
 
-          synchronized (unpersistedState) {
-            // The max lifetime entry is added by way of the call to super.addToken(),
-            // so only need to add the expiration entry here.
-            unpersistedState.add(new TokenExpiration(id, expiration));
+          if (tokenStateLog == null) {
+            synchronized (unpersistedState) {
+              // The max lifetime entry is added by way of the call to super.addToken(),
+              // so only need to add the expiration entry here.
+              unpersistedState.add(new TokenExpiration(id, expiration));
+            }
           }
         } catch (Exception e) {
           log.failedToLoadJournalEntry(id, e);
@@ -120,6 +132,16 @@ public class AliasBasedTokenStateService extends DefaultTokenStateService {
     }
   }
 
+  /**
+   * Move any state left in the specified journal by a previous run without the token state log into the log.
+   */
+  private void migrateJournalEntries(TokenStateJournal previousJournal) throws IOException {
+    int migrated = tokenStateLog.migrate(previousJournal);
+    if (migrated > 0) {
+      log.migratedTokenStateToLog(migrated);
+    }
+  }
+
   @Override
   public void start() throws ServiceLifecycleException {
     super.start();
@@ -143,6 +165,7 @@ public class AliasBasedTokenStateService extends DefaultTokenStateService {
       log.loadingGatewayCredentialsOnStartup();
       final long start = System.currentTimeMillis();
       final Map<String, char[]> passwordAliasMap = aliasService.getPasswordsForGateway();
+      final Set<String> migratedAliases = new HashSet<>();
       String alias, tokenId;
       long expiration, maxLifeTime;
       int count = 0;
@@ -157,14 +180,37 @@ public class AliasBasedTokenStateService extends DefaultTokenStateService {
           // implementation -> facing error(s) when trying to parse the expiration/maxLifeTime values and irrelevant data would be loaded in the
           // in-memory collections in the parent class
           tokenId = alias.substring(0, alias.indexOf(TOKEN_MAX_LIFETIME_POSTFIX));
+          if (tokenStateLog != null && tokenStateLog.contains(tokenId)) {
+            // The token state log holds more recent state for this token; the aliases are obsolete
+            migratedAliases.add(tokenId);
+            migratedAliases.add(alias);
+            continue;
+          }
           expiration = convertCharArrayToLong(passwordAliasMap.get(tokenId));
           maxLifeTime = convertCharArrayToLong(passwordAliasMapEntry.getValue());
           super.updateExpiration(tokenId, expiration);
           super.setMaxLifetime(tokenId, maxLifeTime);
           count++;
+          if (tokenStateLog != null) {
+            // Move the token state from the credential store into the token state log; the max lifetime alias value
+            // is absolute, so the issue time is recorded as zero
+            try {
+              tokenStateLog.add(tokenId, 0L, expiration, maxLifeTime);
+              migratedAliases.add(tokenId);
+              migratedAliases.add(alias);
+            } catch (IOException e) {
+              log.failedToAddJournalEntry(tokenId, e);
+            }
+          }
         }
       }
       log.loadedGatewayCredentialsOnStartup(count * 2, System.currentTimeMillis() - start);  //count is multiplied by two: tokenId + tokenId--max
+
+      if (!migratedAliases.isEmpty()) {
+        // Remove the migrated aliases in a single batch, so subsequent starts need not load them again
+        aliasService.removeAliasesForCluster(AliasService.NO_CLUSTER_NAME, migratedAliases);
+        log.migratedTokenStateToLog(migratedAliases.size() / 2);
+      }
     } catch (AliasServiceException e) {
       log.errorWhileLoadingGatewayCredentialsOnStartup(e.getMessage(), e);
     } finally {
@@ -186,9 +232,30 @@ public class AliasBasedTokenStateService extends DefaultTokenStateService {
 
     // Make an attempt to persist any unpersisted token state before shutting down
     persistTokenState();
+
+    if (tokenStateLog != null) {
+      try {
+        tokenStateLog.close();
+      } catch (IOException e) {
+        log.failedToCloseTokenStateLog(e);
+      }
+    }
   }
 
   protected void persistTokenState() {
+    if (tokenStateLog != null) {
+      // Every change has already been appended to the log; only flush it, and compact it when it has grown enough
+      tokenStateLog.sync();
+      if (tokenStateLog.needsCompaction()) {
+        try {
+          tokenStateLog.compact();
+        } catch (IOException e) {
+          log.failedToCompactTokenStateLog(e);
+        }
+      }
+      return;
+    }
+
     Set<String> tokenIds = new HashSet<>(); // Collect the tokenIds for logging
 
     List<TokenState> processing;
@@ -244,8 +311,10 @@ public class AliasBasedTokenStateService extends DefaultTokenStateService {
                              long   maxLifetimeDuration) {
     super.addToken(tokenId, issueTime, expiration, maxLifetimeDuration);
 
-    synchronized (unpersistedState) {
-      unpersistedState.add(new TokenExpiration(tokenId, expiration));
+    if (tokenStateLog == null) {
+      synchronized (unpersistedState) {
+        unpersistedState.add(new TokenExpiration(tokenId, expiration));
+      }
     }
 
     try {
@@ -258,8 +327,11 @@ public class AliasBasedTokenStateService extends DefaultTokenStateService {
   @Override
   protected void setMaxLifetime(final String tokenId, long issueTime, long maxLifetimeDuration) {
     super.setMaxLifetime(tokenId, issueTime, maxLifetimeDuration);
-    synchronized (unpersistedState) {
-      unpersistedState.add(new TokenMaxLifetime(tokenId, issueTime, maxLifetimeDuration));
+    // The token state log records the max lifetime along with the rest of the token state in addToken()
+    if (tokenStateLog == null) {
+      synchronized (unpersistedState) {
+        unpersistedState.add(new TokenMaxLifetime(tokenId, issueTime, maxLifetimeDuration));
+      }
     }
   }
 
@@ -349,6 +421,15 @@ public class AliasBasedTokenStateService extends DefaultTokenStateService {
 
   @Override
   protected void removeTokens(Set<String> tokenIds) throws UnknownTokenException {
+    if (tokenStateLog != null) {
+      try {
+        tokenStateLog.remove(tokenIds);
+      } catch (IOException e) {
+        log.failedToRemoveJournalEntries(e);
+      }
+      super.removeTokens(tokenIds);
+      return;
+    }
 
     // If any of the token IDs is represented among the unpersisted state, remove the associated state
     synchronized (unpersistedState) {
@@ -389,6 +470,17 @@ public class AliasBasedTokenStateService extends DefaultTokenStateService {
     //Update in-memory
     super.updateExpiration(tokenId, expiration);
 
+    if (tokenStateLog != null) {
+      try {
+        if (!tokenStateLog.updateExpiration(tokenId, expiration)) {
+          tokenStateLog.add(tokenId, 0L, expiration, super.getMaxLifetime(tokenId));
+        }
+      } catch (IOException e) {
+        log.failedToAddJournalEntry(tokenId, e);
+      }
+      return;
+    }
+
     //Update the in-memory representation of unpersisted states that will be processed by the state persistence thread
     synchronized (unpersistedState) {
       final Optional<TokenState> tokenStateToRemove = unpersistedState.stream().filter(tokenState -> tokenState.getTokenId().equals(tokenId)).findFirst();
@@ -35,6 +35,8 @@ import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 import javax.security.auth.Subject;
 
@@ -43,6 +45,7 @@ import org.apache.knox.gateway.config.GatewayConfig;
 import org.apache.knox.gateway.i18n.resources.ResourcesFactory;
 import org.apache.knox.gateway.services.Service;
 import org.apache.knox.gateway.services.ServiceLifecycleException;
+import org.apache.knox.gateway.services.metrics.impl.DefaultMetricsService;
 import org.apache.knox.gateway.services.security.AliasService;
 import org.apache.knox.gateway.services.security.AliasServiceException;
 import org.apache.knox.gateway.services.security.KeystoreService;
@@ -59,7 +62,6 @@ import com.nimbusds.jose.JWSVerifier;
 import com.nimbusds.jose.crypto.RSASSASigner;
 import com.nimbusds.jose.crypto.RSASSAVerifier;
 import com.nimbusds.jose.jwk.source.JWKSource;
-import com.nimbusds.jose.jwk.source.RemoteJWKSet;
 import com.nimbusds.jose.proc.BadJOSEException;
 import com.nimbusds.jose.proc.JWSKeySelector;
 import com.nimbusds.jose.proc.JWSVerificationKeySelector;
@@ -79,6 +81,12 @@ public class DefaultTokenAuthorityService implements JWTokenAuthority, Service {
 
   private char[] cachedSigningKeyPassphrase;
   private RSAPrivateKey signingKey;
+  // The verifier for the gateway signing key is created once, like the signing key itself
+  private JWSVerifier signingKeyVerifier;
+
+  private JWKSourceRegistry jwkSourceRegistry;
+  // JWT processors are thread-safe once configured, so one is kept per JWKS URL and algorithm
+  private final ConcurrentMap<String, ConfigurableJWTProcessor<SecurityContext>> jwtProcessors = new ConcurrentHashMap<>();
 
   static {
       // Only standard RSA signature algorithms are accepted
@@ -214,15 +222,16 @@ public class DefaultTokenAuthorityService implements JWTokenAuthority, Service {
   public boolean verifyToken(JWT token, RSAPublicKey publicKey)
       throws TokenServiceException {
     boolean rc;
-    PublicKey key;
+    JWSVerifier verifier;
     try {
-      if (publicKey == null) {
-        key = keystoreService.getSigningKeystore().getCertificate(getSigningKeyAlias()).getPublicKey();
-      }
-      else {
-        key = publicKey;
+      if (publicKey != null) {
+        verifier = new RSASSAVerifier(publicKey);
+      } else if (signingKeyVerifier != null) {
+        verifier = signingKeyVerifier;
+      } else {
+        PublicKey key = keystoreService.getSigningKeystore().getCertificate(getSigningKeyAlias()).getPublicKey();
+        verifier = new RSASSAVerifier((RSAPublicKey) key);
       }
-      JWSVerifier verifier = new RSASSAVerifier((RSAPublicKey) key);
       // TODO: interrogate the token for issuer claim in order to determine the public key to use for verification
       // consider jwk for specifying the key too
       rc = token.verify(verifier);
@@ -237,15 +246,7 @@ public class DefaultTokenAuthorityService implements JWTokenAuthority, Service {
     boolean verified = false;
     try {
       if (algorithm != null && jwksurl != null) {
-        JWSAlgorithm expectedJWSAlg = JWSAlgorithm.parse(algorithm);
-        JWKSource<SecurityContext> keySource = new RemoteJWKSet<>(new URL(jwksurl));
-        JWSKeySelector<SecurityContext> keySelector = new JWSVerificationKeySelector<>(expectedJWSAlg, keySource);
-
-        // Create a JWT processor for the access tokens
-        ConfigurableJWTProcessor<SecurityContext> jwtProcessor = new DefaultJWTProcessor<>();
-        jwtProcessor.setJWSKeySelector(keySelector);
-        JWTClaimsSetVerifier<SecurityContext> claimsVerifier = new DefaultJWTClaimsVerifier<>();
-        jwtProcessor.setJWTClaimsSetVerifier(claimsVerifier);
+        ConfigurableJWTProcessor<SecurityContext> jwtProcessor = getJWTProcessor(jwksurl, algorithm);
 
         // Process the token
         SecurityContext ctx = null; // optional context parameter, not required here
@@ -258,6 +259,29 @@ public class DefaultTokenAuthorityService implements JWTokenAuthority, Service {
     return verified;
   }
 
+  private ConfigurableJWTProcessor<SecurityContext> getJWTProcessor(String jwksurl, String algorithm)
+      throws MalformedURLException {
+    final String key = algorithm + ' ' + jwksurl;
+    ConfigurableJWTProcessor<SecurityContext> jwtProcessor = jwtProcessors.get(key);
+    if (jwtProcessor == null) {
+      JWSAlgorithm expectedJWSAlg = JWSAlgorithm.parse(algorithm);
+      JWKSource<SecurityContext> keySource = jwkSourceRegistry.getKeySource(new URL(jwksurl));
+      JWSKeySelector<SecurityContext> keySelector = new JWSVerificationKeySelector<>(expectedJWSAlg, keySource);
+
+      // Create a JWT processor for the access tokens
+      jwtProcessor = new DefaultJWTProcessor<>();
+      jwtProcessor.setJWSKeySelector(keySelector);
+      JWTClaimsSetVerifier<SecurityContext> claimsVerifier = new DefaultJWTClaimsVerifier<>();
+      jwtProcessor.setJWTClaimsSetVerifier(claimsVerifier);
+
+      ConfigurableJWTProcessor<SecurityContext> existing = jwtProcessors.putIfAbsent(key, jwtProcessor);
+      if (existing != null) {
+        jwtProcessor = existing;
+      }
+    }
+    return jwtProcessor;
+  }
+
   @Override
   public void init(GatewayConfig config, Map<String, String> options)
       throws ServiceLifecycleException {
@@ -265,6 +289,10 @@ public class DefaultTokenAuthorityService implements JWTokenAuthority, Service {
       throw new ServiceLifecycleException("Alias or Keystore service is not set");
     }
     this.config = config;
+    jwkSourceRegistry = new JWKSourceRegistry(config.getJwksCacheRefreshInterval(),
+                                              config.getJwksCacheTimeToLive(),
+                                              config.getJwksRefetchRateLimit(),
+                                              config.isMetricsEnabled() ? DefaultMetricsService.getMetricRegistry() : null);
   }
 
   @Override
@@ -305,6 +333,7 @@ public class DefaultTokenAuthorityService implements JWTokenAuthority, Service {
       else if (! (publicKey instanceof  RSAPublicKey)) {
         throw new ServiceLifecycleException(RESOURCES.publicSigningKeyWrongType(signingKeyAlias));
       }
+      signingKeyVerifier = new RSASSAVerifier((RSAPublicKey) publicKey);
     } catch (KeyStoreException e) {
       throw new ServiceLifecycleException(RESOURCES.publicSigningKeyNotFound(signingKeyAlias), e);
     }
@@ -326,5 +355,9 @@ public class DefaultTokenAuthorityService implements JWTokenAuthority, Service {
 
   @Override
   public void stop() throws ServiceLifecycleException {
+    jwtProcessors.clear();
+    if (jwkSourceRegistry != null) {
+      jwkSourceRegistry.shutdown();
+    }
   }
 }
@@ -20,14 +20,11 @@ import java.lang.management.ManagementFactory;
 import java.time.Instant;
 import java.util.Collections;
 import java.util.HashSet;
-import java.util.List;
 import java.util.Map;
 import java.util.Set;
-import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.Executors;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
-import java.util.stream.Collectors;
 
 import javax.management.InstanceAlreadyExistsException;
 import javax.management.MBeanRegistrationException;
@@ -58,9 +55,7 @@ public class DefaultTokenStateService implements TokenStateService {
 
   protected static final TokenStateServiceMessages log = MessagesFactory.get(TokenStateServiceMessages.class);
 
-  private final Map<String, Long> tokenExpirations = new ConcurrentHashMap<>();
-
-  private final Map<String, Long> maxTokenLifetimes = new ConcurrentHashMap<>();
+  private final TokenStateTable tokenStates = new TokenStateTable();
 
   // Token eviction interval (in seconds)
   private long tokenEvictionInterval;
@@ -135,7 +130,7 @@ public class DefaultTokenStateService implements TokenStateService {
                              long   expiration,
                              long   maxLifetimeDuration) {
     validateTokenIdentifier(tokenId);
-    tokenExpirations.put(tokenId, expiration);
+    tokenStates.setExpiration(tokenId, expiration);
     setMaxLifetime(tokenId, issueTime, maxLifetimeDuration);
     log.addedToken(tokenId, getTimestampDisplay(expiration));
     if (tokenStateServiceStatistics != null) {
@@ -177,11 +172,11 @@ public class DefaultTokenStateService implements TokenStateService {
       validateToken(tokenId);
     }
 
-    final Long expiration = tokenExpirations.get(tokenId);
-    if (expiration == null) {
+    final long expiration = tokenStates.getExpiration(tokenId);
+    if (expiration == TokenStateTable.ABSENT) {
       throw new UnknownTokenException(tokenId);
     }
-    return expiration.longValue();
+    return expiration;
   }
 
   @Override
@@ -246,11 +241,11 @@ public class DefaultTokenStateService implements TokenStateService {
   }
 
   protected void setMaxLifetime(final String token, long parsedMaxLifeTime) {
-    maxTokenLifetimes.put(token, parsedMaxLifeTime);
+    tokenStates.setMaxLifetime(token, parsedMaxLifeTime);
   }
 
   protected void setMaxLifetime(final String token, long issueTime, long maxLifetimeDuration) {
-    maxTokenLifetimes.put(token, issueTime + maxLifetimeDuration);
+    tokenStates.setMaxLifetime(token, issueTime + maxLifetimeDuration);
   }
 
   /**
@@ -258,11 +253,11 @@ public class DefaultTokenStateService implements TokenStateService {
    * @return false, if the service has previously stored the specified token; Otherwise, true.
    */
   protected boolean isUnknown(final String token) {
-    return !tokenExpirations.containsKey(token);
+    return tokenStates.getExpiration(token) == TokenStateTable.ABSENT;
   }
 
   protected void updateExpiration(final String tokenId, long expiration) {
-    tokenExpirations.put(tokenId, expiration);
+    tokenStates.setExpiration(tokenId, expiration);
   }
 
   protected void removeToken(final String tokenId) throws UnknownTokenException {
@@ -282,8 +277,7 @@ public class DefaultTokenStateService implements TokenStateService {
   }
 
   private void removeTokenState(final Set<String> tokenIds) {
-    tokenExpirations.keySet().removeAll(tokenIds);
-    maxTokenLifetimes.keySet().removeAll(tokenIds);
+    tokenStates.removeAll(tokenIds);
     log.removedTokenState(String.join(", ", tokenIds));
   }
 
@@ -293,7 +287,8 @@ public class DefaultTokenStateService implements TokenStateService {
   }
 
   protected long getMaxLifetime(final String tokenId) {
-    return maxTokenLifetimes.getOrDefault(tokenId, 0L);
+    final long maxLifetime = tokenStates.getMaxLifetime(tokenId);
+    return maxLifetime == TokenStateTable.ABSENT ? 0L : maxLifetime;
   }
 
   private void validateTokenIdentifier(final String tokenId) {
@@ -326,18 +321,23 @@ public class DefaultTokenStateService implements TokenStateService {
 
   /**
    * Method that deletes expired tokens based on the token timestamp.
+   * Only the tokens which the expiry index reports as expired are evaluated.
    */
   protected void evictExpiredTokens() {
     if (readyForEviction()) {
       final Set<String> tokensToEvict = new HashSet<>();
 
-      for (final String tokenId : getTokenIds()) {
+      final long cutoff = System.currentTimeMillis() - TimeUnit.SECONDS.toMillis(tokenEvictionGracePeriod);
+      for (final String tokenId : tokenStates.pollExpired(cutoff)) {
         try {
           if (needsEviction(tokenId)) {
             log.evictToken(tokenId);
             tokensToEvict.add(tokenId); // Add the token to the set of tokens to evict
+          } else {
+            tokenStates.reindex(tokenId);
           }
         } catch (final Exception e) {
+          tokenStates.reindex(tokenId);
           log.failedExpiredTokenEviction(tokenId, e);
         }
       }
@@ -372,13 +372,4 @@ public class DefaultTokenStateService implements TokenStateService {
     return (expirationWithGrace <= System.currentTimeMillis());
   }
 
-  /**
-   * Get a list of tokens
-   *
-   * @return
-   */
-  private List<String> getTokenIds() {
-    return tokenExpirations.keySet().stream().collect(Collectors.toList());
-  }
-
 }
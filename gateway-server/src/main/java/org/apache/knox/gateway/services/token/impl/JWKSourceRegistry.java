@@ -0,0 +1,221 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.knox.gateway.services.token.impl;
+
+import com.codahale.metrics.Counter;
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.Timer;
+import com.nimbusds.jose.KeySourceException;
+import com.nimbusds.jose.jwk.JWK;
+import com.nimbusds.jose.jwk.JWKSelector;
+import com.nimbusds.jose.jwk.JWKSet;
+import com.nimbusds.jose.jwk.source.JWKSource;
+import com.nimbusds.jose.jwk.source.RemoteJWKSet;
+import com.nimbusds.jose.proc.SecurityContext;
+import com.nimbusds.jose.util.DefaultResourceRetriever;
+import com.nimbusds.jose.util.ResourceRetriever;
+import org.apache.commons.lang3.concurrent.BasicThreadFactory;
+import org.apache.knox.gateway.GatewayMessages;
+import org.apache.knox.gateway.i18n.messages.MessagesFactory;
+
+import java.io.IOException;
+import java.net.URL;
+import java.text.ParseException;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Keeps a single cached JWKS key set per JWKS URL.
+ * <p>
+ * A cached key set is used as is until it is older than the refresh interval. From then on it is
+ * still served while a refresh runs in the background, until it is older than the time-to-live,
+ * at which point it must be fetched again before it can be used. When a token refers to a key
+ * that is not in the cached key set, the key set is fetched again immediately, as the keys may
+ * have been rotated; such fetches are rate limited so that tokens with bogus key ids cannot make
+ * the gateway hammer the JWKS endpoint.
+ */
+public class JWKSourceRegistry {
+
+  private static final GatewayMessages LOG = MessagesFactory.get(GatewayMessages.class);
+
+  static final String FETCH_TIMER_NAME = MetricRegistry.name("jwks", "fetch");
+  static final String FETCH_FAILURES_NAME = MetricRegistry.name("jwks", "fetch", "failures");
+
+  private final ConcurrentMap<String, CachingJWKSource> sources = new ConcurrentHashMap<>();
+  private final ResourceRetriever resourceRetriever;
+  private final long refreshInterval;
+  private final long timeToLive;
+  private final long refetchRateLimit;
+  private final Timer fetchTimer;
+  private final Counter fetchFailures;
+  private final ExecutorService refreshExecutor;
+
+  /**
+   * @param refreshInterval  the age, in milliseconds, after which a key set is refreshed in the background
+   * @param timeToLive       the age, in milliseconds, after which a key set is no longer used
+   * @param refetchRateLimit the minimum time, in milliseconds, between two fetches of the same key set
+   *                         that were not triggered by the background refresh
+   * @param metrics          the registry for the fetch metrics, may be null
+   */
+  public JWKSourceRegistry(long refreshInterval, long timeToLive, long refetchRateLimit, MetricRegistry metrics) {
+    this(refreshInterval, timeToLive, refetchRateLimit, metrics,
+        new DefaultResourceRetriever(RemoteJWKSet.DEFAULT_HTTP_CONNECT_TIMEOUT,
+                                     RemoteJWKSet.DEFAULT_HTTP_READ_TIMEOUT,
+                                     RemoteJWKSet.DEFAULT_HTTP_SIZE_LIMIT));
+  }
+
+  JWKSourceRegistry(long refreshInterval, long timeToLive, long refetchRateLimit, MetricRegistry metrics,
+                    ResourceRetriever resourceRetriever) {
+    this.refreshInterval = refreshInterval;
+    this.timeToLive = Math.max(timeToLive, refreshInterval);
+    this.refetchRateLimit = refetchRateLimit;
+    this.resourceRetriever = resourceRetriever;
+    this.fetchTimer = metrics == null ? new Timer() : metrics.timer(FETCH_TIMER_NAME);
+    this.fetchFailures = metrics == null ? new Counter() : metrics.counter(FETCH_FAILURES_NAME);
+    this.refreshExecutor = Executors.newSingleThreadExecutor(
+        new BasicThreadFactory.Builder().namingPattern("JWKSRefresh-%d").daemon(true).build());
+  }
+
+  /**
+   * @param url the JWKS URL
+   * @return the shared, cached key source for the URL
+   */
+  public JWKSource<SecurityContext> getKeySource(URL url) {
+    return sources.computeIfAbsent(url.toExternalForm(), key -> new CachingJWKSource(url));
+  }
+
+  Timer getFetchTimer() {
+    return fetchTimer;
+  }
+
+  Counter getFetchFailures() {
+    return fetchFailures;
+  }
+
+  public void shutdown() {
+    refreshExecutor.shutdownNow();
+    sources.clear();
+  }
+
+  private static final class CachedJWKSet {
+    final JWKSet jwkSet;
+    final long fetched;
+
+    CachedJWKSet(JWKSet jwkSet, long fetched) {
+      this.jwkSet = jwkSet;
+      this.fetched = fetched;
+    }
+  }
+
+  class CachingJWKSource implements JWKSource<SecurityContext> {
+    private final URL url;
+    private final AtomicBoolean refreshing = new AtomicBoolean();
+    private volatile CachedJWKSet cached;
+    private volatile long lastFetch;
+
+    CachingJWKSource(URL url) {
+      this.url = url;
+    }
+
+    @Override
+    public List<JWK> get(JWKSelector jwkSelector, SecurityContext context) throws KeySourceException {
+      long now = System.currentTimeMillis();
+      CachedJWKSet current = cached;
+      if (current == null || now - current.fetched >= timeToLive) {
+        current = fetch(current, true);
+      } else if (now - current.fetched >= refreshInterval) {
+        refreshInBackground();
+      }
+
+      List<JWK> matches = jwkSelector.select(current.jwkSet);
+      if (matches.isEmpty()) {
+        // The key may have been rotated since the key set was fetched
+        try {
+          matches = jwkSelector.select(fetch(current, false).jwkSet);
+        } catch (KeySourceException e) {
+          // Keep the cached key set; the token simply cannot be verified
+        }
+      }
+      return matches;
+    }
+
+    /**
+     * Fetches the key set unless another thread already replaced the given one.
+     *
+     * @param seen the key set the caller based its decision on
+     * @param required whether the caller has no usable key set without a successful fetch
+     */
+    private synchronized CachedJWKSet fetch(CachedJWKSet seen, boolean required) throws KeySourceException {
+      CachedJWKSet current = cached;
+      if (current != seen) {
+        return current;
+      }
+      if (System.currentTimeMillis() - lastFetch < refetchRateLimit) {
+        if (required) {
+          throw new KeySourceException("JWKS key set from " + url + " is unavailable");
+        }
+        return current;
+      }
+      return doFetch();
+    }
+
+    private void refreshInBackground() {
+      if (refreshing.compareAndSet(false, true)) {
+        try {
+          refreshExecutor.execute(() -> {
+            try {
+              synchronized (this) {
+                doFetch();
+              }
+            } catch (KeySourceException e) {
+              // Already logged; keep serving the cached key set until it expires
+            } finally {
+              refreshing.set(false);
+            }
+          });
+        } catch (RejectedExecutionException e) {
+          refreshing.set(false);
+        }
+      }
+    }
+
+    private CachedJWKSet doFetch() throws KeySourceException {
+      lastFetch = System.currentTimeMillis();
+      long start = System.nanoTime();
+      try {
+        JWKSet jwkSet = JWKSet.parse(resourceRetriever.retrieveResource(url).getContent());
+        CachedJWKSet fetched = new CachedJWKSet(jwkSet, System.currentTimeMillis());
+        cached = fetched;
+        LOG.fetchedJwks(url.toExternalForm(), jwkSet.getKeys().size());
+        return fetched;
+      } catch (IOException | ParseException e) {
+        fetchFailures.inc();
+        LOG.failedToFetchJwks(url.toExternalForm(), e.getMessage(), e);
+        throw new KeySourceException("Couldn't retrieve JWKS key set from " + url + ": " + e.getMessage(), e);
+      } finally {
+        fetchTimer.update(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+      }
+    }
+  }
+}
@@ -18,9 +18,11 @@
  */
 package org.apache.knox.gateway.services.token.impl;
 
+import org.apache.commons.lang3.concurrent.BasicThreadFactory;
 import org.apache.knox.gateway.config.GatewayConfig;
 import org.apache.knox.gateway.services.ServiceLifecycleException;
 import org.apache.knox.gateway.services.security.token.UnknownTokenException;
+import org.apache.knox.gateway.services.token.impl.state.LogTokenStateJournal;
 import org.apache.knox.gateway.services.token.impl.state.TokenStateJournalFactory;
 import org.apache.knox.gateway.services.token.state.JournalEntry;
 import org.apache.knox.gateway.services.token.state.TokenStateJournal;
@@ -29,18 +31,49 @@ import java.io.IOException;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
 
 public class JournalBasedTokenStateService extends DefaultTokenStateService {
 
+    private static final long DEFAULT_LOG_SYNC_INTERVAL = 1000L;
+
     private TokenStateJournal journal;
 
+    // The append-only token state log, if it is enabled instead of the file-per-token journal
+    private LogTokenStateJournal tokenStateLog;
+
+    // Forces the appended log records to the storage device in batches, and compacts the log in the background
+    private ScheduledExecutorService logSyncScheduler;
+
+    private long logSyncInterval;
+
     @Override
     public void init(final GatewayConfig config, final Map<String, String> options) throws ServiceLifecycleException {
         super.init(config, options);
 
         try {
             // Initialize the token state journal
-            journal = TokenStateJournalFactory.create(config);
+            if (config.isKnoxTokenStateJournalLogEnabled()) {
+                tokenStateLog = TokenStateJournalFactory.createLog(config);
+                journal = tokenStateLog;
+
+                // Move the state left in the file-per-token journal by a previous run into the log
+                int migrated = tokenStateLog.migrate(TokenStateJournalFactory.create(config));
+                if (migrated > 0) {
+                    log.migratedTokenStateToLog(migrated);
+                }
+
+                logSyncInterval = config.getKnoxTokenStateJournalLogSyncInterval();
+                if (logSyncInterval <= 0) {
+                    logSyncInterval = DEFAULT_LOG_SYNC_INTERVAL;
+                }
+                logSyncScheduler = Executors.newSingleThreadScheduledExecutor(
+                    new BasicThreadFactory.Builder().namingPattern("TokenStateLogSync").daemon(true).build());
+            } else {
+                journal = TokenStateJournalFactory.create(config);
+            }
 
             // Load any persisted journal entries, and add them to the in-memory collection
             List<JournalEntry> entries = journal.get();
@@ -63,6 +96,49 @@ public class JournalBasedTokenStateService extends DefaultTokenStateService {
         }
     }
 
+    @Override
+    public void start() throws ServiceLifecycleException {
+        super.start();
+        if (logSyncScheduler != null) {
+            logSyncScheduler.scheduleWithFixedDelay(this::syncTokenStateLog,
+                                                    logSyncInterval,
+                                                    logSyncInterval,
+                                                    TimeUnit.MILLISECONDS);
+        }
+    }
+
+    @Override
+    public void stop() throws ServiceLifecycleException {
+        super.stop();
+        if (logSyncScheduler != null) {
+            logSyncScheduler.shutdown();
+        }
+
+        if (tokenStateLog != null) {
+            syncTokenStateLog();
+            try {
+                tokenStateLog.close();
+            } catch (IOException e) {
+                log.failedToCloseTokenStateLog(e);
+            }
+        }
+    }
+
+    /**
+     * Force the records appended since the previous run to the storage device, and compact the log once it has grown
+     * enough.
+     */
+    private void syncTokenStateLog() {
+        tokenStateLog.sync();
+        if (tokenStateLog.needsCompaction()) {
+            try {
+                tokenStateLog.compact();
+            } catch (IOException e) {
+                log.failedToCompactTokenStateLog(e);
+            }
+        }
+    }
+
     @Override
     public void addToken(final String tokenId, long issueTime, long expiration, long maxLifetimeDuration) {
         super.addToken(tokenId, issueTime, expiration, maxLifetimeDuration);
@@ -143,6 +219,13 @@ public class JournalBasedTokenStateService extends DefaultTokenStateService {
     protected void updateExpiration(final String tokenId, long expiration) {
         super.updateExpiration(tokenId, expiration);
         try {
+            if (tokenStateLog != null) {
+                if (!tokenStateLog.updateExpiration(tokenId, expiration)) {
+                    log.journalEntryNotFound(tokenId);
+                }
+                return;
+            }
+
             JournalEntry entry = journal.get(tokenId);
             if (entry == null) {
                 log.journalEntryNotFound(tokenId);
@@ -160,6 +243,11 @@ public class JournalBasedTokenStateService extends DefaultTokenStateService {
 
     @Override
     protected boolean isUnknown(final String tokenId) {
+        if (tokenStateLog != null) {
+            // Answered from the log's in-memory index, without any file access
+            return !tokenStateLog.contains(tokenId);
+        }
+
         JournalEntry entry = null;
         try {
             entry = journal.get(tokenId);
@@ -139,6 +139,27 @@ public interface TokenStateServiceMessages {
   @Message(level = MessageLevel.ERROR, text = "Failed to remove the token state journal entries : {0}")
   void failedToRemoveJournalEntries(@StackTrace(level = MessageLevel.DEBUG) Exception e);
 
+  @Message(level = MessageLevel.INFO, text = "Loaded {0} token state entries ({1} log records replayed) in {2} milliseconds")
+  void loadedTokenStateLog(int count, long replayedRecords, long duration);
+
+  @Message(level = MessageLevel.INFO, text = "Compacted the token state log into a snapshot of {0} entries in {1} milliseconds")
+  void compactedTokenStateLog(int count, long duration);
+
+  @Message(level = MessageLevel.ERROR, text = "Failed to compact the token state log : {0}")
+  void failedToCompactTokenStateLog(@StackTrace(level = MessageLevel.DEBUG) Exception e);
+
+  @Message(level = MessageLevel.ERROR, text = "The token state snapshot {0} is invalid, and will be ignored")
+  void invalidTokenStateSnapshot(String snapshotFile);
+
+  @Message(level = MessageLevel.WARN, text = "The token state log {0} is incomplete or corrupt at offset {1}; discarding the remainder of the log")
+  void invalidTokenStateLog(String logFile, int offset);
+
+  @Message(level = MessageLevel.INFO, text = "Migrated {0} token state entries to the token state log")
+  void migratedTokenStateToLog(int count);
+
+  @Message(level = MessageLevel.ERROR, text = "Failed to close the token state log : {0}")
+  void failedToCloseTokenStateLog(@StackTrace(level = MessageLevel.DEBUG) Exception e);
+
   @Message(level = MessageLevel.INFO, text = "Loading Gateway credentials on startup...")
   void loadingGatewayCredentialsOnStartup();
 
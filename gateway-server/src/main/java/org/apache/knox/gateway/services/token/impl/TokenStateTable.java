@@ -0,0 +1,568 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.knox.gateway.services.token.impl;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Compact in-memory store for the expiration and maximum lifetime of tokens.
+ * <p>
+ * Both values of a token live in a single open-addressing (linear probing) table, in primitive
+ * arrays indexed by the slot of the token identifier, so the identifier is stored once and the
+ * values are never boxed. An expiry-ordered binary heap indexes the expiration times, which allows
+ * eviction to visit only the tokens that have actually expired. Heap entries made obsolete by a
+ * renewal or a removal are skipped when they reach the top, and the heap is rebuilt when they
+ * start to outnumber the live entries.
+ */
+final class TokenStateTable {
+
+  static final long ABSENT = Long.MIN_VALUE;
+
+  private static final int MIN_CAPACITY = 16;
+
+  private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+  private String[] tokenIds = new String[MIN_CAPACITY];
+  private long[] expirations = newValues(MIN_CAPACITY);
+  private long[] maxLifetimes = newValues(MIN_CAPACITY);
+  private int entryCount;
+  private int expirationCount;
+  private int maxLifetimeCount;
+
+  private long[] heapExpirations = new long[MIN_CAPACITY];
+  private String[] heapTokenIds = new String[MIN_CAPACITY];
+  private int heapSize;
+
+  long getExpiration(String tokenId) {
+    return get(tokenId, true);
+  }
+
+  long getMaxLifetime(String tokenId) {
+    return get(tokenId, false);
+  }
+
+  void setExpiration(String tokenId, long expiration) {
+    set(tokenId, expiration, true);
+  }
+
+  void setMaxLifetime(String tokenId, long maxLifetime) {
+    set(tokenId, maxLifetime, false);
+  }
+
+  long removeExpiration(String tokenId) {
+    return remove(tokenId, true);
+  }
+
+  long removeMaxLifetime(String tokenId) {
+    return remove(tokenId, false);
+  }
+
+  /**
+   * Removes all state of the specified tokens.
+   */
+  void removeAll(Collection<String> tokens) {
+    final Lock writeLock = lock.writeLock();
+    writeLock.lock();
+    try {
+      for (String tokenId : tokens) {
+        int slot = find(tokenId);
+        if (slot >= 0) {
+          if (expirations[slot] != ABSENT) {
+            expirationCount--;
+          }
+          if (maxLifetimes[slot] != ABSENT) {
+            maxLifetimeCount--;
+          }
+          deleteSlot(slot);
+        }
+      }
+    } finally {
+      writeLock.unlock();
+    }
+  }
+
+  int getExpirationCount() {
+    final Lock readLock = lock.readLock();
+    readLock.lock();
+    try {
+      return expirationCount;
+    } finally {
+      readLock.unlock();
+    }
+  }
+
+  int getMaxLifetimeCount() {
+    final Lock readLock = lock.readLock();
+    readLock.lock();
+    try {
+      return maxLifetimeCount;
+    } finally {
+      readLock.unlock();
+    }
+  }
+
+  /**
+   * @return a snapshot of the identifiers of the tokens with a known expiration
+   */
+  List<String> getTokenIds() {
+    return getTokenIds(true);
+  }
+
+  /**
+   * Removes the tokens whose expiration is at or before the specified time from the expiry index.
+   * The token state itself is kept; tokens which are not evicted must be handed back to
+   * {@link #reindex(String)}.
+   *
+   * @param cutoff the latest expiration time to return
+   * @return the identifiers of the expired tokens, in expiration order
+   */
+  Set<String> pollExpired(long cutoff) {
+    final Set<String> expired = new LinkedHashSet<>();
+    final Lock writeLock = lock.writeLock();
+    writeLock.lock();
+    try {
+      while (heapSize > 0 && heapExpirations[0] <= cutoff) {
+        long expiration = heapExpirations[0];
+        String tokenId = heapTokenIds[0];
+        heapRemoveTop();
+        int slot = find(tokenId);
+        // Entries for renewed or removed tokens are obsolete
+        if (slot >= 0 && expirations[slot] == expiration) {
+          expired.add(tokenId);
+        }
+      }
+    } finally {
+      writeLock.unlock();
+    }
+    return expired;
+  }
+
+  /**
+   * Puts a token returned by {@link #pollExpired(long)} back into the expiry index.
+   */
+  void reindex(String tokenId) {
+    final Lock writeLock = lock.writeLock();
+    writeLock.lock();
+    try {
+      int slot = find(tokenId);
+      if (slot >= 0 && expirations[slot] != ABSENT) {
+        heapAdd(expirations[slot], tokenIds[slot]);
+      }
+    } finally {
+      writeLock.unlock();
+    }
+  }
+
+  /**
+   * @return a live map view of the token expirations
+   */
+  Map<String, Long> expirations() {
+    return new ValueView(true);
+  }
+
+  /**
+   * @return a live map view of the token maximum lifetimes
+   */
+  Map<String, Long> maxLifetimes() {
+    return new ValueView(false);
+  }
+
+  private long get(String tokenId, boolean expiration) {
+    final Lock readLock = lock.readLock();
+    readLock.lock();
+    try {
+      int slot = find(tokenId);
+      if (slot < 0) {
+        return ABSENT;
+      }
+      return expiration ? expirations[slot] : maxLifetimes[slot];
+    } finally {
+      readLock.unlock();
+    }
+  }
+
+  private void set(String tokenId, long value, boolean expiration) {
+    if (value == ABSENT) {
+      throw new IllegalArgumentException("Invalid token state value " + value);
+    }
+    final Lock writeLock = lock.writeLock();
+    writeLock.lock();
+    try {
+      int slot = find(tokenId);
+      if (slot < 0) {
+        slot = insert(tokenId);
+      }
+      if (expiration) {
+        if (expirations[slot] == ABSENT) {
+          expirationCount++;
+        }
+        if (expirations[slot] != value) {
+          expirations[slot] = value;
+          heapAdd(value, tokenIds[slot]);
+        }
+      } else {
+        if (maxLifetimes[slot] == ABSENT) {
+          maxLifetimeCount++;
+        }
+        maxLifetimes[slot] = value;
+      }
+    } finally {
+      writeLock.unlock();
+    }
+  }
+
+  private long remove(String tokenId, boolean expiration) {
+    final Lock writeLock = lock.writeLock();
+    writeLock.lock();
+    try {
+      int slot = find(tokenId);
+      if (slot < 0) {
+        return ABSENT;
+      }
+      long previous;
+      if (expiration) {
+        previous = expirations[slot];
+        if (previous != ABSENT) {
+          expirations[slot] = ABSENT;
+          expirationCount--;
+        }
+      } else {
+        previous = maxLifetimes[slot];
+        if (previous != ABSENT) {
+          maxLifetimes[slot] = ABSENT;
+          maxLifetimeCount--;
+        }
+      }
+      if (expirations[slot] == ABSENT && maxLifetimes[slot] == ABSENT) {
+        deleteSlot(slot);
+      }
+      return previous;
+    } finally {
+      writeLock.unlock();
+    }
+  }
+
+  private List<String> getTokenIds(boolean expiration) {
+    final Lock readLock = lock.readLock();
+    readLock.lock();
+    try {
+      final long[] values = expiration ? expirations : maxLifetimes;
+      final List<String> result = new ArrayList<>(expiration ? expirationCount : maxLifetimeCount);
+      for (int slot = 0; slot < tokenIds.length; slot++) {
+        if (tokenIds[slot] != null && values[slot] != ABSENT) {
+          result.add(tokenIds[slot]);
+        }
+      }
+      return result;
+    } finally {
+      readLock.unlock();
+    }
+  }
+
+  /*
+   * Hash table; callers must hold the lock
+   */
+
+  private static long[] newValues(int capacity) {
+    final long[] values = new long[capacity];
+    Arrays.fill(values, ABSENT);
+    return values;
+  }
+
+  private static int indexFor(Object tokenId, int mask) {
+    final int h = tokenId.hashCode();
+    return (h ^ (h >>> 16)) & mask;
+  }
+
+  private int find(Object tokenId) {
+    if (tokenId == null) {
+      return -1;
+    }
+    final int mask = tokenIds.length - 1;
+    int slot = indexFor(tokenId, mask);
+    String candidate;
+    while ((candidate = tokenIds[slot]) != null) {
+      if (candidate.equals(tokenId)) {
+        return slot;
+      }
+      slot = (slot + 1) & mask;
+    }
+    return -1;
+  }
+
+  private int insert(String tokenId) {
+    if ((entryCount + 1) * 4L > tokenIds.length * 3L) {
+      resize(tokenIds.length * 2);
+    }
+    final int mask = tokenIds.length - 1;
+    int slot = indexFor(tokenId, mask);
+    while (tokenIds[slot] != null) {
+      slot = (slot + 1) & mask;
+    }
+    tokenIds[slot] = tokenId;
+    entryCount++;
+    return slot;
+  }
+
+  private void resize(int capacity) {
+    final String[] oldTokenIds = tokenIds;
+    final long[] oldExpirations = expirations;
+    final long[] oldMaxLifetimes = maxLifetimes;
+    tokenIds = new String[capacity];
+    expirations = newValues(capacity);
+    maxLifetimes = newValues(capacity);
+    final int mask = capacity - 1;
+    for (int i = 0; i < oldTokenIds.length; i++) {
+      if (oldTokenIds[i] != null) {
+        int slot = indexFor(oldTokenIds[i], mask);
+        while (tokenIds[slot] != null) {
+          slot = (slot + 1) & mask;
+        }
+        tokenIds[slot] = oldTokenIds[i];
+        expirations[slot] = oldExpirations[i];
+        maxLifetimes[slot] = oldMaxLifetimes[i];
+      }
+    }
+  }
+
+  /*
+   * Backward shift deletion, which keeps probe sequences intact without tombstones.
+   */
+  private void deleteSlot(int slot) {
+    final int mask = tokenIds.length - 1;
+    int hole = slot;
+    int i = slot;
+    while (true) {
+      i = (i + 1) & mask;
+      final String tokenId = tokenIds[i];
+      if (tokenId == null) {
+        break;
+      }
+      final int ideal = indexFor(tokenId, mask);
+      // The entry may fill the hole if the hole lies on its probe sequence
+      if (((i - hole) & mask) <= ((i - ideal) & mask)) {
+        tokenIds[hole] = tokenId;
+        expirations[hole] = expirations[i];
+        maxLifetimes[hole] = maxLifetimes[i];
+        hole = i;
+      }
+    }
+    tokenIds[hole] = null;
+    expirations[hole] = ABSENT;
+    maxLifetimes[hole] = ABSENT;
+    entryCount--;
+    if (tokenIds.length > MIN_CAPACITY && entryCount * 8L < tokenIds.length) {
+      resize(tokenIds.length / 2);
+    }
+  }
+
+  /*
+   * Expiry index; callers must hold the write lock
+   */
+
+  private void heapAdd(long expiration, String tokenId) {
+    if (heapSize > 2 * expirationCount + MIN_CAPACITY) {
+      rebuildHeap();
+    }
+    if (heapSize == heapExpirations.length) {
+      heapExpirations = Arrays.copyOf(heapExpirations, heapSize * 2);
+      heapTokenIds = Arrays.copyOf(heapTokenIds, heapSize * 2);
+    }
+    int i = heapSize++;
+    while (i > 0) {
+      int parent = (i - 1) >>> 1;
+      if (heapExpirations[parent] <= expiration) {
+        break;
+      }
+      heapExpirations[i] = heapExpirations[parent];
+      heapTokenIds[i] = heapTokenIds[parent];
+      i = parent;
+    }
+    heapExpirations[i] = expiration;
+    heapTokenIds[i] = tokenId;
+  }
+
+  private void heapRemoveTop() {
+    heapSize--;
+    final long expiration = heapExpirations[heapSize];
+    final String tokenId = heapTokenIds[heapSize];
+    heapTokenIds[heapSize] = null;
+    if (heapSize > 0) {
+      siftDown(0, expiration, tokenId);
+    }
+  }
+
+  private void siftDown(int i, long expiration, String tokenId) {
+    final int half = heapSize >>> 1;
+    while (i < half) {
+      int child = 2 * i + 1;
+      int right = child + 1;
+      if (right < heapSize && heapExpirations[right] < heapExpirations[child]) {
+        child = right;
+      }
+      if (expiration <= heapExpirations[child]) {
+        break;
+      }
+      heapExpirations[i] = heapExpirations[child];
+      heapTokenIds[i] = heapTokenIds[child];
+      i = child;
+    }
+    heapExpirations[i] = expiration;
+    heapTokenIds[i] = tokenId;
+  }
+
+  private void rebuildHeap() {
+    final int capacity = Math.max(MIN_CAPACITY, expirationCount * 2);
+    heapExpirations = new long[capacity];
+    heapTokenIds = new String[capacity];
+    heapSize = 0;
+    for (int slot = 0; slot < tokenIds.length; slot++) {
+      if (tokenIds[slot] != null && expirations[slot] != ABSENT) {
+        heapExpirations[heapSize] = expirations[slot];
+        heapTokenIds[heapSize] = tokenIds[slot];
+        heapSize++;
+      }
+    }
+    for (int i = (heapSize >>> 1) - 1; i >= 0; i--) {
+      siftDown(i, heapExpirations[i], heapTokenIds[i]);
+    }
+  }
+
+  /**
+   * Map view of one of the token state values, for code which expects the token state as maps.
+   */
+  private final class ValueView extends AbstractMap<String, Long> {
+    private final boolean expiration;
+
+    ValueView(boolean expiration) {
+      this.expiration = expiration;
+    }
+
+    @Override
+    public int size() {
+      return expiration ? getExpirationCount() : getMaxLifetimeCount();
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+      return key instanceof String && TokenStateTable.this.get((String) key, expiration) != ABSENT;
+    }
+
+    @Override
+    public Long get(Object key) {
+      if (!(key instanceof String)) {
+        return null;
+      }
+      long value = TokenStateTable.this.get((String) key, expiration);
+      return value == ABSENT ? null : value;
+    }
+
+    @Override
+    public Long put(String key, Long value) {
+      Long previous = get(key);
+      TokenStateTable.this.set(key, value, expiration);
+      return previous;
+    }
+
+    @Override
+    public Long remove(Object key) {
+      if (!(key instanceof String)) {
+        return null;
+      }
+      long previous = TokenStateTable.this.remove((String) key, expiration);
+      return previous == ABSENT ? null : previous;
+    }
+
+    @Override
+    public Set<Entry<String, Long>> entrySet() {
+      return new AbstractSet<Entry<String, Long>>() {
+        @Override
+        public int size() {
+          return ValueView.this.size();
+        }
+
+        @Override
+        public Iterator<Entry<String, Long>> iterator() {
+          final Iterator<String> ids = getTokenIds(expiration).iterator();
+          return new Iterator<Entry<String, Long>>() {
+            private String current;
+
+            @Override
+            public boolean hasNext() {
+              return ids.hasNext();
+            }
+
+            @Override
+            public Entry<String, Long> next() {
+              if (!ids.hasNext()) {
+                throw new NoSuchElementException();
+              }
+              current = ids.next();
+              return new ValueEntry(current);
+            }
+
+            @Override
+            public void remove() {
+              if (current == null) {
+                throw new IllegalStateException();
+              }
+              ValueView.this.remove(current);
+              current = null;
+            }
+          };
+        }
+      };
+    }
+
+    private final class ValueEntry implements Entry<String, Long> {
+      private final String tokenId;
+
+      ValueEntry(String tokenId) {
+        this.tokenId = tokenId;
+      }
+
+      @Override
+      public String getKey() {
+        return tokenId;
+      }
+
+      @Override
+      public Long getValue() {
+        return ValueView.this.get(tokenId);
+      }
+
+      @Override
+      public Long setValue(Long value) {
+        return put(tokenId, value);
+      }
+    }
+  }
+}
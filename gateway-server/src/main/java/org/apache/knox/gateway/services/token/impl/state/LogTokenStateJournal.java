@@ -0,0 +1,494 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.knox.gateway.services.token.impl.state;
+
+import org.apache.knox.gateway.config.GatewayConfig;
+import org.apache.knox.gateway.services.token.state.JournalEntry;
+import org.apache.knox.gateway.services.token.state.TokenStateJournal;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedOutputStream;
+
+/**
+ * A TokenStateJournal implementation designed for large volumes of token state.
+ * <p>
+ * Every change is appended as a CRC-protected record to a memory-mapped log file, so persisting a change costs
+ * O(1) regardless of how many tokens are being tracked. The log is periodically compacted into a snapshot file,
+ * which holds the complete live state followed by a CRC of its content, after which the log is truncated.
+ * <p>
+ * Loading reads the snapshot (if its CRC is valid) and replays the log on top of it, stopping at the first
+ * incomplete or corrupt record, such that a crash during an append only ever loses that last record.
+ * <p>
+ * The live state is also held in memory, so lookups never touch the file system.
+ */
+public class LogTokenStateJournal extends FileTokenStateJournal {
+
+    static final String LOG_FILE_NAME = "token-state.log";
+
+    static final String SNAPSHOT_FILE_NAME = "token-state.snapshot";
+
+    // File format identifiers
+    private static final int LOG_MAGIC      = 0x4B54534C; // KTSL
+    private static final int SNAPSHOT_MAGIC = 0x4B545353; // KTSS
+    private static final int FORMAT_VERSION = 1;
+
+    private static final int LOG_HEADER_SIZE = 8;
+
+    // Log record types; a zero type marks the end of the written portion of the log
+    private static final byte RECORD_END    = 0;
+    private static final byte RECORD_PUT    = 1;
+    private static final byte RECORD_REMOVE = 2;
+
+    // type + payload length + CRC
+    private static final int RECORD_OVERHEAD = 1 + 4 + 4;
+
+    // Used for the absent (null) values of a JournalEntry
+    private static final long NO_VALUE = Long.MIN_VALUE;
+
+    // The log file is mapped (and grown) in regions of this size
+    static final int LOG_REGION_SIZE = 4 * 1024 * 1024;
+
+    private final Path logFile;
+
+    private final Path snapshotFile;
+
+    private final int compactionThreshold;
+
+    private final Map<String, Entry> entries = new HashMap<>();
+
+    private FileChannel logChannel;
+
+    private MappedByteBuffer logBuffer;
+
+    // The number of records appended to the log since the last compaction
+    private long logRecordCount;
+
+    private final CRC32 crc = new CRC32();
+
+    public LogTokenStateJournal(GatewayConfig config) throws IOException {
+        this(config, config.getKnoxTokenStateAliasPersistenceLogCompactionThreshold());
+    }
+
+    LogTokenStateJournal(GatewayConfig config, int compactionThreshold) throws IOException {
+        super(config);
+        this.compactionThreshold = compactionThreshold;
+        logFile = journalDir.resolve(LOG_FILE_NAME);
+        snapshotFile = journalDir.resolve(SNAPSHOT_FILE_NAME);
+        load();
+    }
+
+    @Override
+    public synchronized void add(final String tokenId, long issueTime, long expiration, long maxLifetime) throws IOException {
+        put(tokenId, new Entry(issueTime, expiration, maxLifetime));
+    }
+
+    @Override
+    public synchronized void add(final List<JournalEntry> journalEntries) throws IOException {
+        for (JournalEntry entry : journalEntries) {
+            put(entry.getTokenId(), new Entry(toLong(entry.getIssueTime()),
+                                              toLong(entry.getExpiration()),
+                                              toLong(entry.getMaxLifetime())));
+        }
+    }
+
+    /**
+     * Update the expiration of the journaled state for the specified token.
+     *
+     * @param tokenId    The unique token identifier
+     * @param expiration The new expiration time
+     *
+     * @return true, if there is journaled state for the token; Otherwise, false.
+     *
+     * @throws IOException if the update could not be appended to the log.
+     */
+    public synchronized boolean updateExpiration(final String tokenId, long expiration) throws IOException {
+        final Entry entry = entries.get(tokenId);
+        if (entry == null) {
+            return false;
+        }
+        put(tokenId, new Entry(entry.issueTime, expiration, entry.maxLifetime));
+        return true;
+    }
+
+    public synchronized boolean contains(final String tokenId) {
+        return entries.containsKey(tokenId);
+    }
+
+    @Override
+    public synchronized JournalEntry get(final String tokenId) throws IOException {
+        Entry entry = entries.get(tokenId);
+        if (entry == null) {
+            log.journalEntryNotFound(tokenId);
+            return null;
+        }
+        return entry.toJournalEntry(tokenId);
+    }
+
+    @Override
+    public synchronized void remove(final Collection<String> tokenIds) throws IOException {
+        for (String tokenId : tokenIds) {
+            if (entries.remove(tokenId) != null) {
+                append(RECORD_REMOVE, tokenId, null);
+                log.removedJournalEntry(tokenId);
+            }
+        }
+    }
+
+    @Override
+    protected synchronized List<JournalEntry> loadJournal() throws IOException {
+        List<JournalEntry> result = new ArrayList<>(entries.size());
+        for (Map.Entry<String, Entry> entry : entries.entrySet()) {
+            result.add(entry.getValue().toJournalEntry(entry.getKey()));
+        }
+        return result;
+    }
+
+    /**
+     * Move the state held by the specified journal, e.g. one written by a previous run without this log, into the log.
+     *
+     * @param previousJournal The journal from which the state is moved
+     *
+     * @return The number of migrated journal entries.
+     *
+     * @throws IOException if the state could not be read, appended to the log, or removed from the previous journal.
+     */
+    public int migrate(final TokenStateJournal previousJournal) throws IOException {
+        List<JournalEntry> migrated = previousJournal.get();
+        if (!migrated.isEmpty()) {
+            add(migrated);
+            List<String> tokenIds = new ArrayList<>(migrated.size());
+            for (JournalEntry entry : migrated) {
+                tokenIds.add(entry.getTokenId());
+            }
+            previousJournal.remove(tokenIds);
+        }
+        return migrated.size();
+    }
+
+    /**
+     * @return The number of tokens for which state is currently journaled.
+     */
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    /**
+     * @return true, if enough records have been appended to the log since the last compaction to warrant another one.
+     */
+    public synchronized boolean needsCompaction() {
+        return logRecordCount >= Math.max(compactionThreshold, entries.size());
+    }
+
+    /**
+     * Write the live state to a new snapshot, and truncate the log.
+     *
+     * @throws IOException if the snapshot could not be written, in which case the log remains intact.
+     */
+    public synchronized void compact() throws IOException {
+        if (logChannel == null) {
+            throw new IOException("The token state log has been closed");
+        }
+        final long start = System.currentTimeMillis();
+        writeSnapshot();
+        resetLog(LOG_HEADER_SIZE);
+        logRecordCount = 0;
+        log.compactedTokenStateLog(entries.size(), System.currentTimeMillis() - start);
+    }
+
+    /**
+     * Force any appended records to the storage device.
+     */
+    public synchronized void sync() {
+        if (logBuffer != null) {
+            logBuffer.force();
+        }
+    }
+
+    /**
+     * Flush and release the log file.
+     *
+     * @throws IOException if the log file could not be closed.
+     */
+    public synchronized void close() throws IOException {
+        if (logChannel != null) {
+            sync();
+            // Drop the unused, zero-filled portion of the mapped region
+            logChannel.truncate(logBuffer.position());
+            logChannel.close();
+            logChannel = null;
+            logBuffer = null;
+        }
+    }
+
+    private void put(final String tokenId, final Entry entry) throws IOException {
+        entries.put(tokenId, entry);
+        append(RECORD_PUT, tokenId, entry);
+        log.addedJournalEntry(tokenId);
+    }
+
+    private void append(byte type, final String tokenId, final Entry entry) throws IOException {
+        if (logChannel == null) {
+            throw new IOException("The token state log has been closed");
+        }
+
+        final byte[] id = tokenId.getBytes(StandardCharsets.UTF_8);
+        final int payloadLength = 2 + id.length + (entry != null ? 24 : 0);
+        final int recordLength = RECORD_OVERHEAD + payloadLength;
+
+        // Leave room for the terminating end marker
+        if (logBuffer.remaining() < recordLength + 1) {
+            remapLog(logBuffer.position(), logBuffer.capacity() + Math.max(LOG_REGION_SIZE, recordLength + 1));
+        }
+
+        final int recordStart = logBuffer.position();
+        logBuffer.position(recordStart + 1);
+        logBuffer.putInt(payloadLength);
+        logBuffer.putShort((short) id.length);
+        logBuffer.put(id);
+        if (entry != null) {
+            logBuffer.putLong(entry.issueTime);
+            logBuffer.putLong(entry.expiration);
+            logBuffer.putLong(entry.maxLifetime);
+        }
+        logBuffer.putInt(recordCrc(type, recordStart + 1, 4 + payloadLength));
+
+        // Publish the record type last, so a partially written record is never mistaken for a complete one
+        logBuffer.put(recordStart, type);
+        logRecordCount++;
+    }
+
+    private int recordCrc(byte type, int offset, int length) {
+        crc.reset();
+        crc.update(type);
+        ByteBuffer view = logBuffer.duplicate();
+        view.position(offset).limit(offset + length);
+        crc.update(view);
+        return (int) crc.getValue();
+    }
+
+    private void load() throws IOException {
+        final long start = System.currentTimeMillis();
+        log.loadingPersistedJournalEntries();
+
+        if (Files.exists(snapshotFile)) {
+            loadSnapshot();
+        }
+
+        long validLength = LOG_HEADER_SIZE;
+        if (Files.exists(logFile) && Files.size(logFile) >= LOG_HEADER_SIZE) {
+            validLength = replayLog();
+        }
+
+        // Discard anything after the last valid record, and prepare for appending
+        resetLog(validLength);
+        log.loadedTokenStateLog(entries.size(), logRecordCount, System.currentTimeMillis() - start);
+    }
+
+    private void loadSnapshot() throws IOException {
+        try (FileChannel channel = FileChannel.open(snapshotFile, StandardOpenOption.READ)) {
+            final long size = channel.size();
+            if (size < 20 || size > Integer.MAX_VALUE) {
+                log.invalidTokenStateSnapshot(snapshotFile.toString());
+                return;
+            }
+
+            final MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+
+            // Verify the whole snapshot before applying any of it
+            ByteBuffer content = buffer.duplicate();
+            content.limit((int) size - 8);
+            CRC32 snapshotCrc = new CRC32();
+            snapshotCrc.update(content);
+            if (buffer.getInt() != SNAPSHOT_MAGIC || buffer.getInt() != FORMAT_VERSION
+                    || buffer.getLong((int) size - 8) != snapshotCrc.getValue()) {
+                log.invalidTokenStateSnapshot(snapshotFile.toString());
+                return;
+            }
+
+            final int count = buffer.getInt();
+            for (int i = 0; i < count; i++) {
+                String tokenId = readTokenId(buffer);
+                entries.put(tokenId, new Entry(buffer.getLong(), buffer.getLong(), buffer.getLong()));
+            }
+        }
+    }
+
+    /**
+     * Apply the valid records of the log to the loaded state.
+     *
+     * @return The length of the valid portion of the log.
+     */
+    private long replayLog() throws IOException {
+        try (FileChannel channel = FileChannel.open(logFile, StandardOpenOption.READ)) {
+            final long size = Math.min(channel.size(), Integer.MAX_VALUE);
+            final MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+            if (buffer.getInt() != LOG_MAGIC || buffer.getInt() != FORMAT_VERSION) {
+                log.invalidTokenStateLog(logFile.toString(), 0);
+                return LOG_HEADER_SIZE;
+            }
+
+            CRC32 recordCrc = new CRC32();
+            while (buffer.remaining() > RECORD_OVERHEAD) {
+                final int recordStart = buffer.position();
+                final byte type = buffer.get();
+                if (type == RECORD_END) {
+                    return recordStart;
+                }
+
+                try {
+                    final int payloadLength = buffer.getInt();
+                    if ((type != RECORD_PUT && type != RECORD_REMOVE)
+                            || payloadLength < 2 || payloadLength > buffer.remaining() - 4) {
+                        log.invalidTokenStateLog(logFile.toString(), recordStart);
+                        return recordStart;
+                    }
+
+                    ByteBuffer checked = buffer.duplicate();
+                    checked.position(recordStart + 1).limit(recordStart + 5 + payloadLength);
+                    recordCrc.reset();
+                    recordCrc.update(type);
+                    recordCrc.update(checked);
+                    if (buffer.getInt(recordStart + 5 + payloadLength) != (int) recordCrc.getValue()) {
+                        log.invalidTokenStateLog(logFile.toString(), recordStart);
+                        return recordStart;
+                    }
+
+                    final String tokenId = readTokenId(buffer);
+                    if (type == RECORD_PUT) {
+                        entries.put(tokenId, new Entry(buffer.getLong(), buffer.getLong(), buffer.getLong()));
+                    } else {
+                        entries.remove(tokenId);
+                    }
+                    buffer.position(recordStart + RECORD_OVERHEAD + payloadLength);
+                    logRecordCount++;
+                } catch (BufferUnderflowException | IllegalArgumentException e) {
+                    log.invalidTokenStateLog(logFile.toString(), recordStart);
+                    return recordStart;
+                }
+            }
+            return buffer.position();
+        }
+    }
+
+    private static String readTokenId(final ByteBuffer buffer) {
+        final byte[] id = new byte[buffer.getShort() & 0xFFFF];
+        buffer.get(id);
+        return new String(id, StandardCharsets.UTF_8);
+    }
+
+    private void writeSnapshot() throws IOException {
+        final Path tmpFile = journalDir.resolve(SNAPSHOT_FILE_NAME + ".tmp");
+        try (FileChannel channel = FileChannel.open(tmpFile, StandardOpenOption.WRITE, StandardOpenOption.CREATE,
+                                                    StandardOpenOption.TRUNCATE_EXISTING)) {
+            OutputStream fileOut = Channels.newOutputStream(channel);
+            CheckedOutputStream checked = new CheckedOutputStream(new BufferedOutputStream(fileOut, 64 * 1024), new CRC32());
+            DataOutputStream out = new DataOutputStream(checked);
+            out.writeInt(SNAPSHOT_MAGIC);
+            out.writeInt(FORMAT_VERSION);
+            out.writeInt(entries.size());
+            for (Map.Entry<String, Entry> entry : entries.entrySet()) {
+                byte[] id = entry.getKey().getBytes(StandardCharsets.UTF_8);
+                out.writeShort(id.length);
+                out.write(id);
+                out.writeLong(entry.getValue().issueTime);
+                out.writeLong(entry.getValue().expiration);
+                out.writeLong(entry.getValue().maxLifetime);
+            }
+            out.flush();
+            out.writeLong(checked.getChecksum().getValue());
+            out.flush();
+            channel.force(true);
+        }
+
+        // Only replace the previous snapshot once the new one is completely written
+        Files.move(tmpFile, snapshotFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Truncate the log to the specified length, and map it for appending from that point on.
+     */
+    private void resetLog(long length) throws IOException {
+        if (logChannel == null) {
+            logChannel = FileChannel.open(logFile, StandardOpenOption.READ, StandardOpenOption.WRITE,
+                                          StandardOpenOption.CREATE);
+        } else {
+            logBuffer.force();
+            logBuffer = null;
+        }
+        // Truncating discards any stale records, and the remapped region past the new end is zero-filled
+        logChannel.truncate(length);
+        remapLog(length, length + LOG_REGION_SIZE);
+        if (length == LOG_HEADER_SIZE) {
+            logBuffer.putInt(0, LOG_MAGIC);
+            logBuffer.putInt(4, FORMAT_VERSION);
+        }
+    }
+
+    private void remapLog(long position, long capacity) throws IOException {
+        if (logBuffer != null) {
+            logBuffer.force();
+        }
+        logBuffer = logChannel.map(FileChannel.MapMode.READ_WRITE, 0, capacity);
+        logBuffer.position((int) position);
+    }
+
+    private static long toLong(final String value) {
+        return value != null ? Long.parseLong(value) : NO_VALUE;
+    }
+
+    private static String toString(long value) {
+        return value != NO_VALUE ? String.valueOf(value) : null;
+    }
+
+    private static final class Entry {
+        private final long issueTime;
+        private final long expiration;
+        private final long maxLifetime;
+
+        Entry(long issueTime, long expiration, long maxLifetime) {
+            this.issueTime = issueTime;
+            this.expiration = expiration;
+            this.maxLifetime = maxLifetime;
+        }
+
+        JournalEntry toJournalEntry(final String tokenId) {
+            return new FileJournalEntry(tokenId, LogTokenStateJournal.toString(issueTime),
+                                        LogTokenStateJournal.toString(expiration),
+                                        LogTokenStateJournal.toString(maxLifetime));
+        }
+    }
+}
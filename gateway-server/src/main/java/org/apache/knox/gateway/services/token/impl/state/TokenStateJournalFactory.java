@@ -29,4 +29,8 @@ public class TokenStateJournalFactory {
         return new MultiFileTokenStateJournal(config);
     }
 
+    public static LogTokenStateJournal createLog(GatewayConfig config) throws IOException {
+        return new LogTokenStateJournal(config);
+    }
+
 }
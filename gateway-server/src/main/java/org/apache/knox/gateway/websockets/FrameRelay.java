@@ -0,0 +1,335 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.knox.gateway.websockets;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+import java.util.Locale;
+import java.util.concurrent.Executor;
+
+import org.apache.knox.gateway.i18n.messages.MessagesFactory;
+
+/**
+ * Bounded, ordered queue of frames travelling in one direction of a proxied
+ * websocket connection.
+ * <p>
+ * Frames are offered by the thread reading from one peer and written to the
+ * other peer from the shared executor, one at a time and in order. Once
+ * {@code capacity} frames are pending the reading side is suspended through
+ * {@link FlowControl} and resumed when the queue has drained to half of it.
+ * A queue that grows to twice its capacity means the reading side could not
+ * be suspended, and further offers are refused.
+ *
+ * @since 1.6.0
+ */
+class FrameRelay {
+  private static final WebsocketLogMessages LOG = MessagesFactory.get(WebsocketLogMessages.class);
+
+  /**
+   * Writes frames to the receiving peer.
+   */
+  interface Sink {
+    /**
+     * Send a text frame, completing {@code callback} when the frame is
+     * written, either synchronously or asynchronously.
+     * @param text frame payload
+     * @param last whether this is the final frame of the message
+     * @param whole whether the frame carries a complete message
+     * @param callback completion callback
+     * @throws IOException on a synchronous write failure
+     */
+    void sendText(String text, boolean last, boolean whole, Callback callback) throws IOException;
+
+    /**
+     * Send a binary frame, completing {@code callback} when the frame is
+     * written, either synchronously or asynchronously.
+     * @param data frame payload
+     * @param last whether this is the final frame of the message
+     * @param whole whether the frame carries a complete message
+     * @param callback completion callback
+     * @throws IOException on a synchronous write failure
+     */
+    void sendBinary(ByteBuffer data, boolean last, boolean whole, Callback callback) throws IOException;
+
+    /**
+     * Send a ping control frame, completing {@code callback} when the frame
+     * is written, either synchronously or asynchronously.
+     * @param data application data
+     * @param callback completion callback
+     * @throws IOException on a synchronous write failure
+     */
+    void sendPing(ByteBuffer data, Callback callback) throws IOException;
+  }
+
+  /**
+   * Suspends and resumes reading from the peer that produces the frames.
+   */
+  interface FlowControl {
+    void suspend();
+
+    void resume();
+  }
+
+  /**
+   * Completion of a single frame write.
+   */
+  interface Callback {
+    void succeeded();
+
+    void failed(Throwable cause);
+  }
+
+  private enum Type { TEXT, BINARY, PING }
+
+  private static final class Frame {
+    final Type type;
+    final String text;
+    final ByteBuffer data;
+    final boolean last;
+    final boolean whole;
+
+    Frame(final Type type, final String text, final ByteBuffer data, final boolean last, final boolean whole) {
+      this.type = type;
+      this.text = text;
+      this.data = data;
+      this.last = last;
+      this.whole = whole;
+    }
+
+    int size() {
+      return text != null ? text.length() : data.remaining();
+    }
+  }
+
+  private final String name;
+  private final Executor executor;
+  private final int capacity;
+  private final WebsocketMetrics.Direction metrics;
+
+  private final ArrayDeque<Frame> queue = new ArrayDeque<>();
+  private Sink sink;
+  private FlowControl flowControl;
+  private boolean sending;
+  private boolean suspended;
+  private boolean closed;
+
+  /* Only touched by the reading thread */
+  private boolean fragmented;
+
+  FrameRelay(final String name, final Executor executor, final int capacity,
+      final WebsocketMetrics.Direction metrics) {
+    this.name = name;
+    this.executor = executor;
+    this.capacity = Math.max(capacity, 1);
+    this.metrics = metrics;
+  }
+
+  /**
+   * Start writing frames to the given sink, including any frames queued
+   * before it became available.
+   * @param sink receiving peer
+   */
+  void setSink(final Sink sink) {
+    final boolean drain;
+    synchronized (this) {
+      this.sink = sink;
+      drain = startSending();
+    }
+    if (drain) {
+      executor.execute(this::drain);
+    }
+  }
+
+  synchronized void setFlowControl(final FlowControl flowControl) {
+    this.flowControl = flowControl;
+  }
+
+  /**
+   * Queue a text frame.
+   * @param text payload
+   * @param last whether this is the final frame of the message
+   * @return false if the queue is full or closed
+   */
+  boolean offerText(final String text, final boolean last) {
+    return offer(new Frame(Type.TEXT, text, null, last, whole(last)));
+  }
+
+  /**
+   * Queue a binary frame. The buffer is copied, callers may reuse it.
+   * @param data payload
+   * @param last whether this is the final frame of the message
+   * @return false if the queue is full or closed
+   */
+  boolean offerBinary(final ByteBuffer data, final boolean last) {
+    final ByteBuffer copy = ByteBuffer.allocate(data.remaining());
+    copy.put(data.duplicate()).flip();
+    return offer(new Frame(Type.BINARY, null, copy, last, whole(last)));
+  }
+
+  /**
+   * Queue a ping control frame.
+   * @param data application data
+   * @return false if the queue is full or closed
+   */
+  boolean offerPing(final ByteBuffer data) {
+    final ByteBuffer copy = ByteBuffer.allocate(data.remaining());
+    copy.put(data.duplicate()).flip();
+    return offer(new Frame(Type.PING, null, copy, true, true));
+  }
+
+  synchronized int size() {
+    return queue.size();
+  }
+
+  synchronized boolean isSuspended() {
+    return suspended;
+  }
+
+  /**
+   * Drop pending frames and resume the reading side if it was suspended.
+   */
+  void close() {
+    final FlowControl resume;
+    synchronized (this) {
+      closed = true;
+      metrics.dropped(queue.size());
+      queue.clear();
+      resume = suspended ? flowControl : null;
+      suspended = false;
+    }
+    if (resume != null) {
+      resume.resume();
+    }
+  }
+
+  private boolean whole(final boolean last) {
+    final boolean whole = last && !fragmented;
+    fragmented = !last;
+    return whole;
+  }
+
+  private boolean offer(final Frame frame) {
+    final FlowControl suspend;
+    final boolean drain;
+    synchronized (this) {
+      if (closed) {
+        return false;
+      }
+      if (queue.size() >= 2 * capacity) {
+        LOG.relayQueueFull(name, queue.size());
+        return false;
+      }
+      queue.add(frame);
+      metrics.queued();
+      if (!suspended && flowControl != null && queue.size() >= capacity) {
+        suspended = true;
+        suspend = flowControl;
+      } else {
+        suspend = null;
+      }
+      drain = startSending();
+    }
+    if (suspend != null) {
+      LOG.debugLog(String.format(Locale.ROOT, "Suspending reads for %s with %d frames pending", name, capacity));
+      metrics.suspended();
+      suspend.suspend();
+    }
+    if (drain) {
+      executor.execute(this::drain);
+    }
+    return true;
+  }
+
+  /* Must be called with the monitor held */
+  private boolean startSending() {
+    if (sending || sink == null || queue.isEmpty()) {
+      return false;
+    }
+    sending = true;
+    return true;
+  }
+
+  private void drain() {
+    final Frame frame;
+    final Sink target;
+    final FlowControl resume;
+    synchronized (this) {
+      frame = queue.poll();
+      if (frame == null) {
+        sending = false;
+        return;
+      }
+      target = sink;
+      if (suspended && queue.size() <= capacity / 2) {
+        suspended = false;
+        resume = flowControl;
+      } else {
+        resume = null;
+      }
+    }
+    if (resume != null) {
+      LOG.debugLog("Resuming reads for " + name);
+      resume.resume();
+    }
+
+    final Callback callback = new Callback() {
+      @Override
+      public void succeeded() {
+        metrics.sent(frame.size());
+        next();
+      }
+
+      @Override
+      public void failed(final Throwable cause) {
+        metrics.dropped(1);
+        LOG.relayFailed(name, cause.toString());
+        next();
+      }
+    };
+
+    try {
+      switch (frame.type) {
+        case TEXT:
+          target.sendText(frame.text, frame.last, frame.whole, callback);
+          break;
+        case BINARY:
+          target.sendBinary(frame.data, frame.last, frame.whole, callback);
+          break;
+        default:
+          target.sendPing(frame.data, callback);
+          break;
+      }
+    } catch (final IOException | RuntimeException e) {
+      callback.failed(e);
+    }
+  }
+
+  private void next() {
+    final boolean more;
+    synchronized (this) {
+      more = !queue.isEmpty();
+      if (!more) {
+        sending = false;
+      }
+    }
+    if (more) {
+      executor.execute(this::drain);
+    }
+  }
+}
@@ -18,7 +18,9 @@
 package org.apache.knox.gateway.websockets;
 
 import org.apache.commons.lang3.StringUtils;
+import org.apache.commons.lang3.concurrent.BasicThreadFactory;
 import org.apache.knox.gateway.config.GatewayConfig;
+import org.apache.knox.gateway.config.impl.GatewayConfigImpl;
 import org.apache.knox.gateway.i18n.messages.MessagesFactory;
 import org.apache.knox.gateway.services.GatewayServices;
 import org.apache.knox.gateway.services.ServiceType;
@@ -26,7 +28,10 @@ import org.apache.knox.gateway.services.registry.ServiceDefEntry;
 import org.apache.knox.gateway.services.registry.ServiceDefinitionRegistry;
 import org.apache.knox.gateway.services.registry.ServiceRegistry;
 import org.apache.knox.gateway.services.security.KeystoreService;
+import org.apache.knox.gateway.services.metrics.impl.DefaultMetricsService;
 import org.apache.knox.gateway.services.security.KeystoreServiceException;
+import org.apache.knox.gateway.util.TruststoreSSLContextUtils;
+import org.eclipse.jetty.util.component.LifeCycle;
 import org.eclipse.jetty.websocket.server.WebSocketHandler;
 import org.eclipse.jetty.websocket.servlet.ServletUpgradeRequest;
 import org.eclipse.jetty.websocket.servlet.ServletUpgradeResponse;
@@ -34,17 +39,22 @@ import org.eclipse.jetty.websocket.servlet.WebSocketCreator;
 import org.eclipse.jetty.websocket.servlet.WebSocketServletFactory;
 
 import javax.websocket.ClientEndpointConfig;
+import javax.websocket.WebSocketContainer;
 import java.net.MalformedURLException;
 import java.net.URI;
 import java.net.URISyntaxException;
 import java.net.URL;
+import java.security.GeneralSecurityException;
 import java.security.KeyStore;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
 import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 
 /**
  * Websocket handler that will handle websocket connection request. This class
@@ -67,13 +77,28 @@ public class GatewayWebsocketHandler extends WebSocketHandler
 
   static final String REGEX_SPLIT_SERVICE_PATH = "^((?:[^/]*/){3}[^/]*)";
 
-  private static final int POOL_SIZE = 10;
-
   /**
-   * Manage the threads that are spawned
+   * Manage the threads that are spawned, shared by all connections to relay
+   * frames and clean up closed sessions. Idle threads are released. The pool
+   * is shut down when this handler stops and recreated when it starts again.
    * @since 0.13
    */
-  private final ExecutorService pool;
+  private volatile ExecutorService pool;
+
+  /**
+   * Client container used for all connections to websocket backends,
+   * created with the first connection and stopped with this handler.
+   * @since 1.6.0
+   */
+  private WebSocketContainer container;
+
+  /* Digest of the truststore the container was created with */
+  private String containerTruststoreDigest;
+
+  /* Containers created with a previous truststore, still used by open connections */
+  private final List<WebSocketContainer> retiredContainers = new ArrayList<>();
+
+  private final WebsocketMetrics metrics;
 
   final GatewayConfig config;
   final GatewayServices services;
@@ -84,7 +109,21 @@ public class GatewayWebsocketHandler extends WebSocketHandler
 
     this.config = config;
     this.services = services;
-    pool = Executors.newFixedThreadPool(POOL_SIZE);
+
+    pool = createPool();
+    metrics = new WebsocketMetrics(DefaultMetricsService.getMetricRegistry());
+  }
+
+  private ExecutorService createPool() {
+    int poolSize = config.getWebsocketThreadPoolSize();
+    if (poolSize <= 0) {
+      poolSize = GatewayConfigImpl.DEFAULT_WEBSOCKET_THREAD_POOL_SIZE;
+    }
+    final ThreadPoolExecutor executor = new ThreadPoolExecutor(poolSize, poolSize, 60L, TimeUnit.SECONDS,
+        new LinkedBlockingQueue<>(),
+        new BasicThreadFactory.Builder().namingPattern("WebsocketRelay-%d").daemon(true).build());
+    executor.allowCoreThreadTimeOut(true);
+    return executor;
   }
 
   @Override
@@ -122,14 +161,71 @@ public class GatewayWebsocketHandler extends WebSocketHandler
 
       /* Upgrade happens here */
       final ClientEndpointConfig clientConfig = getClientEndpointConfig(req);
-      clientConfig.getUserProperties().put("org.apache.knox.gateway.websockets.truststore", getTruststore());
-      return new ProxyWebSocketAdapter(URI.create(backendURL), pool, clientConfig, config);
+      return new ProxyWebSocketAdapter(URI.create(backendURL), pool, clientConfig, config,
+          getContainer(), metrics);
     } catch (final Exception e) {
       LOG.failedCreatingWebSocket(e);
       throw new RuntimeException(e);
     }
   }
 
+  /*
+   * The truststore is checked for every connection, a container created with
+   * a previous truststore keeps serving the connections opened through it.
+   */
+  private synchronized WebSocketContainer getContainer() throws KeystoreServiceException, GeneralSecurityException {
+    final KeyStore truststore = getTruststore();
+    final String truststoreDigest = TruststoreSSLContextUtils.getCertificatesDigest(truststore);
+    if (container != null && !truststoreDigest.equals(containerTruststoreDigest)) {
+      LOG.debugLog("Truststore changed, creating a new websocket client container");
+      retiredContainers.add(container);
+      container = null;
+    }
+    if (container == null) {
+      container = ProxyWebSocketAdapter.createClientContainer(
+          config.getWebsocketMaxTextMessageBufferSize(),
+          config.getWebsocketMaxBinaryMessageBufferSize(),
+          config.getWebsocketAsyncWriteTimeout(),
+          config.getWebsocketIdleTimeout(),
+          truststore);
+      containerTruststoreDigest = truststoreDigest;
+    }
+    return container;
+  }
+
+  @Override
+  protected void doStart() throws Exception {
+    synchronized (this) {
+      if (pool.isShutdown()) {
+        pool = createPool();
+      }
+    }
+    super.doStart();
+  }
+
+  @Override
+  protected void doStop() throws Exception {
+    super.doStop();
+    synchronized (this) {
+      if (container != null) {
+        retiredContainers.add(container);
+      }
+      for (final WebSocketContainer stopping : retiredContainers) {
+        if (stopping instanceof LifeCycle) {
+          try {
+            ((LifeCycle) stopping).stop();
+          } catch (final Exception e) {
+            LOG.failedToStopContainer(e);
+          }
+        }
+      }
+      retiredContainers.clear();
+      container = null;
+      containerTruststoreDigest = null;
+      pool.shutdown();
+    }
+  }
+
 
   private KeyStore getTruststore() throws KeystoreServiceException {
     final KeystoreService ks = this.services
@@ -57,6 +57,26 @@ public interface MessageEventCallback {
    */
   void onMessageText(String message, Object session);
 
+  /**
+   * Callback when a text frame is received, only used when
+   * {@link #isPartialMessageSupported()} is true.
+   * @param message message fragment
+   * @param last whether this is the final fragment of the message
+   * @param session session
+   */
+  default void onMessageText(String message, boolean last, Object session) {
+    onMessageText(message, session);
+  }
+
+  /**
+   * Whether messages should be delivered frame by frame as they arrive
+   * instead of being aggregated into whole messages first.
+   * @return true to receive partial messages
+   */
+  default boolean isPartialMessageSupported() {
+    return false;
+  }
+
   /**
    * Callback when a binary message is received.
    * @param message message
@@ -56,6 +56,31 @@ public class ProxyInboundClient extends Endpoint {
     this.session = backendSession;
     this.config = config;
 
+    if (callback.isPartialMessageSupported()) {
+      addPartialMessageHandlers();
+    } else {
+      addWholeMessageHandlers();
+    }
+
+    /* Add message handler for Pong Control Message */
+    session.addMessageHandler(new MessageHandler.Whole<PongMessage>() {
+
+      /**
+       * Called when a ping message has been received.
+       *
+       * @param message the message data.
+       */
+      @Override
+      public void onMessage(final PongMessage pongMessage) {
+        callback.onMessagePong(pongMessage, session);
+      }
+
+    });
+
+    callback.onConnectionOpen(backendSession);
+  }
+
+  private void addWholeMessageHandlers() {
     /* Add message handler for binary data */
     session.addMessageHandler(new MessageHandler.Whole<byte[]>() {
 
@@ -85,23 +110,30 @@ public class ProxyInboundClient extends Endpoint {
       }
 
     });
+  }
 
-    /* Add message handler for Pong Control Message */
-    session.addMessageHandler(new MessageHandler.Whole<PongMessage>() {
+  /*
+   * Frames are handed over as they arrive so fragmented messages can be
+   * relayed without aggregating them in memory first.
+   */
+  private void addPartialMessageHandlers() {
+    session.addMessageHandler(new MessageHandler.Partial<byte[]>() {
 
-      /**
-       * Called when a ping message has been received.
-       *
-       * @param message the message data.
-       */
       @Override
-      public void onMessage(final PongMessage pongMessage) {
-        callback.onMessagePong(pongMessage, session);
+      public void onMessage(final byte[] partialMessage, final boolean last) {
+        callback.onMessageBinary(partialMessage, last, session);
       }
 
     });
 
-    callback.onConnectionOpen(backendSession);
+    session.addMessageHandler(new MessageHandler.Partial<String>() {
+
+      @Override
+      public void onMessage(final String partialMessage, final boolean last) {
+        callback.onMessageText(partialMessage, last, session);
+      }
+
+    });
   }
 
   @Override
@@ -19,18 +19,21 @@ package org.apache.knox.gateway.websockets;
 
 import java.io.IOException;
 import java.net.URI;
-import java.util.List;
-import java.util.ArrayList;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
 import java.util.concurrent.ExecutorService;
-import java.util.concurrent.locks.Lock;
-import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 import javax.websocket.ClientEndpointConfig;
 import javax.websocket.CloseReason;
 import javax.websocket.ContainerProvider;
 import javax.websocket.DeploymentException;
+import javax.websocket.SendHandler;
 import javax.websocket.WebSocketContainer;
 
+import com.codahale.metrics.MetricRegistry;
+import org.apache.knox.gateway.config.impl.GatewayConfigImpl;
 import org.apache.knox.gateway.i18n.messages.MessagesFactory;
 import org.apache.knox.gateway.config.GatewayConfig;
 import org.eclipse.jetty.io.RuntimeIOException;
@@ -39,36 +42,61 @@ import org.eclipse.jetty.websocket.api.BatchMode;
 import org.eclipse.jetty.websocket.api.RemoteEndpoint;
 import org.eclipse.jetty.websocket.api.Session;
 import org.eclipse.jetty.websocket.api.StatusCode;
-import org.eclipse.jetty.websocket.api.WebSocketAdapter;
+import org.eclipse.jetty.websocket.api.SuspendToken;
+import org.eclipse.jetty.websocket.api.WebSocketPartialListener;
+import org.eclipse.jetty.websocket.api.WriteCallback;
+import org.eclipse.jetty.websocket.common.WebSocketFrame;
+import org.eclipse.jetty.websocket.common.WebSocketRemoteEndpoint;
+import org.eclipse.jetty.websocket.common.frames.BinaryFrame;
+import org.eclipse.jetty.websocket.common.frames.ContinuationFrame;
+import org.eclipse.jetty.websocket.common.frames.PingFrame;
+import org.eclipse.jetty.websocket.common.frames.TextFrame;
 import java.security.KeyStore;
 /**
  * Handles outbound/inbound Websocket connections and sessions.
+ * <p>
+ * Text and binary frames are relayed in both directions as they arrive,
+ * so fragmented messages pass through without being aggregated. Each
+ * direction has a bounded {@link FrameRelay}, writes are started from the
+ * shared pool without blocking it and reading from a peer is suspended
+ * while the other peer is not keeping up.
  *
  * @since 0.10
  */
-public class ProxyWebSocketAdapter extends WebSocketAdapter {
+public class ProxyWebSocketAdapter implements WebSocketPartialListener {
   private static final WebsocketLogMessages LOG = MessagesFactory.get(WebsocketLogMessages.class);
 
+  static final String TRUSTSTORE_PROPERTY = "org.apache.knox.gateway.websockets.truststore";
+
   /* URI for the backend */
   private final URI backend;
 
   /* Session between the frontend (browser) and Knox */
-  private Session frontendSession;
+  private volatile Session frontendSession;
 
   /* Session between the backend (outbound) and Knox */
-  private javax.websocket.Session backendSession;
+  private volatile javax.websocket.Session backendSession;
 
   private WebSocketContainer container;
 
-  private ExecutorService pool;
+  /* Whether the container was created for this connection and has to be stopped with it */
+  private boolean ownsContainer;
 
-  /* Message buffer for holding data frames temporarily in memory till connection is setup.
-   Keeping the max size of the buffer as 100 messages for now. */
-  private List<String> messageBuffer = new ArrayList<>();
-  private Lock remoteLock = new ReentrantLock();
+  private ExecutorService pool;
 
   private final GatewayConfig config;
 
+  private final WebsocketMetrics metrics;
+
+  /* Frames from the frontend waiting to be written to the backend */
+  private final FrameRelay toBackend;
+
+  /* Frames from the backend waiting to be written to the frontend, including
+   the ones received before the frontend connection is set up */
+  private final FrameRelay toFrontend;
+
+  private final AtomicBoolean open = new AtomicBoolean();
+
   /**
    * Used to transmit headers from browser to backend server.
    * @since 0.14
@@ -81,11 +109,33 @@ public class ProxyWebSocketAdapter extends WebSocketAdapter {
 
   public ProxyWebSocketAdapter(final URI backend, final ExecutorService pool, final ClientEndpointConfig clientConfig,
                                GatewayConfig config) {
+    this(backend, pool, clientConfig, config, null, null);
+  }
+
+  /**
+   * @param container client container shared by the gateway, when null a
+   *                  container is created for this connection only
+   * @param metrics metrics shared by the gateway, when null the connection
+   *                is measured on its own
+   * @since 1.6.0
+   */
+  ProxyWebSocketAdapter(final URI backend, final ExecutorService pool, final ClientEndpointConfig clientConfig,
+                        final GatewayConfig config, final WebSocketContainer container,
+                        final WebsocketMetrics metrics) {
     super();
     this.backend = backend;
     this.pool = pool;
     this.clientConfig = clientConfig;
     this.config = config;
+    this.container = container;
+    this.metrics = metrics != null ? metrics : new WebsocketMetrics(new MetricRegistry());
+
+    int capacity = config.getWebsocketMaxWaitBufferCount();
+    if (capacity <= 0) {
+      capacity = GatewayConfigImpl.DEFAULT_WEBSOCKET_MAX_WAIT_BUFFER_COUNT;
+    }
+    toBackend = new FrameRelay("[From Frontend --->] " + backend, pool, capacity, this.metrics.inbound());
+    toFrontend = new FrameRelay("[From Backend <---] " + backend, pool, capacity, this.metrics.outbound());
   }
 
   @Override
@@ -94,33 +144,20 @@ public class ProxyWebSocketAdapter extends WebSocketAdapter {
      * Let's connect to the backend, this is where the Backend-to-frontend
      * plumbing takes place
      */
-    container = ContainerProvider.getWebSocketContainer();
-    container.setDefaultMaxTextMessageBufferSize(frontEndSession.getPolicy().getMaxTextMessageBufferSize());
-    container.setDefaultMaxBinaryMessageBufferSize(frontEndSession.getPolicy().getMaxBinaryMessageBufferSize());
-    container.setAsyncSendTimeout(frontEndSession.getPolicy().getAsyncWriteTimeout());
-    container.setDefaultMaxSessionIdleTimeout(frontEndSession.getPolicy().getIdleTimeout());
-
-    KeyStore ks = null;
-    if(clientConfig != null) {
-      ks = (KeyStore) clientConfig.getUserProperties().get("org.apache.knox.gateway.websockets.truststore");
-    }
-
-    /*
-       Currently javax.websocket API has no provisions to configure SSL
-       https://github.com/eclipse-ee4j/websocket-api/issues/210
-       Until that gets fixed we'll have to resort to this.
-    */
-    if(container instanceof org.eclipse.jetty.websocket.jsr356.ClientContainer &&
-        ((org.eclipse.jetty.websocket.jsr356.ClientContainer)container).getClient() != null &&
-        ((org.eclipse.jetty.websocket.jsr356.ClientContainer)container).getClient().getSslContextFactory() != null ) {
-      ((org.eclipse.jetty.websocket.jsr356.ClientContainer)container).getClient().getHttpClient().getSslContextFactory().setTrustStore(ks);
-      LOG.logMessage("Truststore for websocket setup");
+    if (container == null) {
+      KeyStore ks = null;
+      if(clientConfig != null) {
+        ks = (KeyStore) clientConfig.getUserProperties().get(TRUSTSTORE_PROPERTY);
+      }
+      container = createClientContainer(frontEndSession.getPolicy().getMaxTextMessageBufferSize(),
+          frontEndSession.getPolicy().getMaxBinaryMessageBufferSize(),
+          frontEndSession.getPolicy().getAsyncWriteTimeout(),
+          frontEndSession.getPolicy().getIdleTimeout(), ks);
+      ownsContainer = true;
     }
 
     final ProxyInboundClient backendSocket = new ProxyInboundClient(getMessageCallback());
 
-    /* build the configuration */
-
     /* Attempt Connect */
     try {
       backendSession = container.connectToServer(backendSocket, clientConfig, backend);
@@ -129,67 +166,55 @@ public class ProxyWebSocketAdapter extends WebSocketAdapter {
 
     } catch (DeploymentException e) {
       LOG.connectionFailed(e);
+      metrics.connectionFailed();
       throw new RuntimeException(e);
     } catch (IOException e) {
       LOG.connectionFailed(e);
+      metrics.connectionFailed();
       throw new RuntimeIOException(e);
     }
 
-    remoteLock.lock();
-    super.onWebSocketConnect(frontEndSession);
     this.frontendSession = frontEndSession;
+    if (open.compareAndSet(false, true)) {
+      metrics.connectionOpened();
+    }
 
-    final RemoteEndpoint remote = frontEndSession.getRemote();
-    try {
-      if (!messageBuffer.isEmpty()) {
-        flushBufferedMessages(remote);
+    toFrontend.setFlowControl(SessionFlowControl.of(backendSession));
+    toBackend.setFlowControl(SessionFlowControl.of(frontEndSession));
+    toBackend.setSink(new BackendSink(backendSession));
 
-        if (remote.getBatchMode() == BatchMode.ON) {
-          remote.flush();
-        }
-      } else {
-        LOG.debugLog("Message buffer is empty");
-      }
-    } catch (IOException e) {
-      LOG.connectionFailed(e);
-      throw new RuntimeIOException(e);
-    }
-    finally
-    {
-      remoteLock.unlock();
-    }
+    /* Flushes the messages buffered while the frontend was not ready */
+    toFrontend.setSink(new FrontendSink(frontEndSession.getRemote()));
   }
 
   @Override
-  public void onWebSocketBinary(final byte[] payload, final int offset, final int length) {
+  public void onWebSocketPartialBinary(final ByteBuffer payload, final boolean fin) {
     if (isNotConnected()) {
       return;
     }
 
-    throw new UnsupportedOperationException(
-        "Websocket support for binary messages is not supported at this time.");
+    /* Proxy frame to backend, the payload is only valid during this call and gets copied */
+    if (!toBackend.offerBinary(payload, fin)) {
+      throw new RuntimeIOException("Backend is not keeping up and the message buffer is full. Cannot buffer anymore");
+    }
   }
 
   @Override
-  public void onWebSocketText(final String message) {
+  public void onWebSocketPartialText(final String payload, final boolean fin) {
     if (isNotConnected()) {
       return;
     }
 
-    LOG.logMessage("[From Frontend --->]" + message);
-
-    /* Proxy message to backend */
-    try {
-      backendSession.getBasicRemote().sendText(message);
+    LOG.relayedMessage("[From Frontend --->]", payload);
 
-    } catch (IOException e) {
-      LOG.connectionFailed(e);
+    /* Proxy frame to backend */
+    if (!toBackend.offerText(payload, fin)) {
+      throw new RuntimeIOException("Backend is not keeping up and the message buffer is full. Cannot buffer anymore");
     }
   }
 
   @Override
   public void onWebSocketClose(int statusCode, String reason) {
-    super.onWebSocketClose(statusCode, reason);
     cleanup();
     LOG.onConnectionClose(backend.toString());
   }
@@ -199,6 +224,50 @@ public class ProxyWebSocketAdapter extends WebSocketAdapter {
     cleanupOnError(t);
   }
 
+  public Session getSession() {
+    return frontendSession;
+  }
+
+  public RemoteEndpoint getRemote() {
+    final Session session = frontendSession;
+    return session == null ? null : session.getRemote();
+  }
+
+  public boolean isConnected() {
+    final Session session = frontendSession;
+    return session != null && session.isOpen();
+  }
+
+  public boolean isNotConnected() {
+    return !isConnected();
+  }
+
+  /**
+   * Create a client container used to connect to websocket backends.
+   */
+  static WebSocketContainer createClientContainer(final int maxTextMessageBufferSize,
+      final int maxBinaryMessageBufferSize, final long asyncSendTimeout, final long idleTimeout,
+      final KeyStore truststore) {
+    final WebSocketContainer container = ContainerProvider.getWebSocketContainer();
+    container.setDefaultMaxTextMessageBufferSize(maxTextMessageBufferSize);
+    container.setDefaultMaxBinaryMessageBufferSize(maxBinaryMessageBufferSize);
+    container.setAsyncSendTimeout(asyncSendTimeout);
+    container.setDefaultMaxSessionIdleTimeout(idleTimeout);
+
+    /*
+       Currently javax.websocket API has no provisions to configure SSL
+       https://github.com/eclipse-ee4j/websocket-api/issues/210
+       Until that gets fixed we'll have to resort to this.
+    */
+    if(container instanceof org.eclipse.jetty.websocket.jsr356.ClientContainer &&
+        ((org.eclipse.jetty.websocket.jsr356.ClientContainer)container).getClient() != null &&
+        ((org.eclipse.jetty.websocket.jsr356.ClientContainer)container).getClient().getSslContextFactory() != null ) {
+      ((org.eclipse.jetty.websocket.jsr356.ClientContainer)container).getClient().getHttpClient().getSslContextFactory().setTrustStore(truststore);
+      LOG.logMessage("Truststore for websocket setup");
+    }
+    return container;
+  }
+
   /**
    * Cleanup sessions
    */
@@ -235,8 +304,10 @@ public class ProxyWebSocketAdapter extends WebSocketAdapter {
       @Override
       public void onConnectionClose(final CloseReason reason) {
         try {
-          frontendSession.close(reason.getCloseCode().getCode(),
-              reason.getReasonPhrase());
+          if (frontendSession != null) {
+            frontendSession.close(reason.getCloseCode().getCode(),
+                reason.getReasonPhrase());
+          }
         } finally {
           cleanup();
         }
@@ -248,73 +319,37 @@ public class ProxyWebSocketAdapter extends WebSocketAdapter {
       }
 
       @Override
-      public void onMessageText(String message, Object session) {
-        LOG.logMessage("[From Backend <---]" + message);
-        remoteLock.lock();
-        final RemoteEndpoint remote = getRemote();
-        try {
-          if (remote == null) {
-            LOG.debugLog("Remote endpoint is null");
-            if (messageBuffer.size() >= config.getWebsocketMaxWaitBufferCount()) {
-              throw new RuntimeIOException("Remote is null and message buffer is full. Cannot buffer anymore ");
-            }
-            LOG.debugLog("Buffering message: " + message);
-            messageBuffer.add(message);
-            return;
-          }
+      public boolean isPartialMessageSupported() {
+        return true;
+      }
 
-          /* Proxy message to frontend */
-          flushBufferedMessages(remote);
+      @Override
+      public void onMessageText(String message, Object session) {
+        onMessageText(message, true, session);
+      }
 
-          LOG.debugLog("Sending current message [From Backend <---]: " + message);
-          remote.sendString(message);
-          if (remote.getBatchMode() == BatchMode.ON) {
-            remote.flush();
-          }
-        } catch (IOException e) {
-          LOG.connectionFailed(e);
-          throw new RuntimeIOException(e);
-        }
-        finally
-        {
-          remoteLock.unlock();
+      @Override
+      public void onMessageText(String message, boolean last, Object session) {
+        LOG.relayedMessage("[From Backend <---]", message);
+        if (!toFrontend.offerText(message, last)) {
+          throw new RuntimeIOException("Frontend is not keeping up and the message buffer is full. Cannot buffer anymore");
         }
       }
 
       @Override
       public void onMessageBinary(byte[] message, boolean last,
           Object session) {
-        throw new UnsupportedOperationException(
-            "Websocket support for binary messages is not supported at this time.");
-
+        if (!toFrontend.offerBinary(ByteBuffer.wrap(message), last)) {
+          throw new RuntimeIOException("Frontend is not keeping up and the message buffer is full. Cannot buffer anymore");
+        }
       }
 
       @Override
       public void onMessagePong(javax.websocket.PongMessage message, Object session) {
         LOG.logMessage("[From Backend <---]: PING");
-        remoteLock.lock();
-        final RemoteEndpoint remote = getRemote();
-        try {
-          if (remote == null) {
-            LOG.debugLog("Remote endpoint is null");
-            return;
-          }
-
-          /* Proxy Ping message to frontend */
-          flushBufferedMessages(remote);
-
-          LOG.logMessage("Sending current PING [From Backend <---]: ");
-          remote.sendPing(message.getApplicationData());
-          if (remote.getBatchMode() == BatchMode.ON) {
-            remote.flush();
-          }
-        } catch (IOException e) {
-          LOG.connectionFailed(e);
-          throw new RuntimeIOException(e);
-        }
-        finally
-        {
-          remoteLock.unlock();
+        /* Proxy Ping message to frontend, after the frames received before it */
+        if (!toFrontend.offerPing(message.getApplicationData())) {
+          LOG.debugLog("Dropping PING, message buffer is full or closed");
         }
       }
 
@@ -324,25 +359,32 @@ public class ProxyWebSocketAdapter extends WebSocketAdapter {
 
   @SuppressWarnings("PMD.DoNotUseThreads")
   private void cleanup() {
+    toBackend.close();
+    toFrontend.close();
+    if (open.compareAndSet(true, false)) {
+      metrics.connectionClosed();
+    }
+
     /* do the cleaning business in separate thread so we don't block */
-    pool.execute(new Runnable() {
-      @Override
-      public void run() {
-        closeQuietly();
-      }
-    });
+    try {
+      pool.execute(this::closeQuietly);
+    } catch (RejectedExecutionException e) {
+      /* the gateway is shutting down */
+      closeQuietly();
+    }
   }
 
   private void closeQuietly() {
+    /* the client container is shared, so sessions have to be closed explicitly */
     try {
-      if(backendSession != null && !backendSession.isOpen()) {
+      if(backendSession != null && backendSession.isOpen()) {
         backendSession.close();
       }
     } catch (IOException e) {
       LOG.connectionFailed(e);
     }
 
-    if (container instanceof LifeCycle) {
+    if (ownsContainer && container instanceof LifeCycle) {
       try {
         ((LifeCycle) container).stop();
       } catch (Exception e) {
@@ -350,20 +392,256 @@ public class ProxyWebSocketAdapter extends WebSocketAdapter {
       }
     }
 
-    if(frontendSession != null && !frontendSession.isOpen()) {
+    if(frontendSession != null && frontendSession.isOpen()) {
       frontendSession.close();
     }
   }
 
-  /*
-   * Function to flush buffered messages. Should be called with remoteLock held
+  /**
+   * Writes frames to the browser. Whole messages are sent through the
+   * asynchronous message API, fragments and pings as raw frames.
    */
-  private void flushBufferedMessages(final RemoteEndpoint remote) throws IOException {
-    LOG.debugLog("Flushing old buffered messages");
-    for(String obj:messageBuffer) {
-      LOG.debugLog("Sending old buffered message [From Backend <---]: " + obj);
-      remote.sendString(obj);
+  private static final class FrontendSink implements FrameRelay.Sink {
+    private final RemoteEndpoint remote;
+    private final FrameWriter frames;
+
+    FrontendSink(final RemoteEndpoint remote) {
+      this.remote = remote;
+      this.frames = new FrameWriter(remote);
+    }
+
+    @Override
+    public void sendText(final String text, final boolean last, final boolean whole,
+        final FrameRelay.Callback callback) throws IOException {
+      if (whole) {
+        remote.sendString(text, writeCallback(callback));
+        flushBatch();
+      } else {
+        frames.sendPartialText(text, last, callback);
+      }
+    }
+
+    @Override
+    public void sendBinary(final ByteBuffer data, final boolean last, final boolean whole,
+        final FrameRelay.Callback callback) throws IOException {
+      if (whole) {
+        remote.sendBytes(data, writeCallback(callback));
+        flushBatch();
+      } else {
+        frames.sendPartialBinary(data, last, callback);
+      }
+    }
+
+    @Override
+    public void sendPing(final ByteBuffer data, final FrameRelay.Callback callback) throws IOException {
+      frames.sendPing(data, callback);
+    }
+
+    private void flushBatch() throws IOException {
+      if (remote.getBatchMode() == BatchMode.ON) {
+        remote.flush();
+      }
+    }
+  }
+
+  /**
+   * Writes frames to the backend. Whole messages are sent through the
+   * asynchronous javax.websocket API, fragments and pings as raw frames
+   * through the Jetty API the backend session implements too.
+   */
+  private static final class BackendSink implements FrameRelay.Sink {
+    private final javax.websocket.Session session;
+    private final FrameWriter frames;
+
+    BackendSink(final javax.websocket.Session session) {
+      this.session = session;
+      this.frames = session instanceof Session ? new FrameWriter(((Session) session).getRemote()) : null;
+    }
+
+    @Override
+    public void sendText(final String text, final boolean last, final boolean whole,
+        final FrameRelay.Callback callback) throws IOException {
+      if (whole) {
+        session.getAsyncRemote().sendText(text, sendHandler(callback));
+      } else if (frames != null) {
+        frames.sendPartialText(text, last, callback);
+      } else {
+        session.getBasicRemote().sendText(text, last);
+        callback.succeeded();
+      }
+    }
+
+    @Override
+    public void sendBinary(final ByteBuffer data, final boolean last, final boolean whole,
+        final FrameRelay.Callback callback) throws IOException {
+      if (whole) {
+        session.getAsyncRemote().sendBinary(data, sendHandler(callback));
+      } else if (frames != null) {
+        frames.sendPartialBinary(data, last, callback);
+      } else {
+        session.getBasicRemote().sendBinary(data, last);
+        callback.succeeded();
+      }
+    }
+
+    @Override
+    public void sendPing(final ByteBuffer data, final FrameRelay.Callback callback) throws IOException {
+      if (frames != null) {
+        frames.sendPing(data, callback);
+      } else {
+        session.getBasicRemote().sendPing(data);
+        callback.succeeded();
+      }
+    }
+
+    private static SendHandler sendHandler(final FrameRelay.Callback callback) {
+      return result -> {
+        if (result.isOK()) {
+          callback.succeeded();
+        } else {
+          callback.failed(result.getException());
+        }
+      };
+    }
+  }
+
+  /**
+   * Writes fragments and pings through a Jetty remote endpoint without
+   * blocking a relay thread. The message API of the endpoint only offers
+   * blocking writes for them, so they are sent as raw frames, which is safe
+   * because the relay writes one frame at a time. Endpoints that batch
+   * frames, or are not the Jetty implementation, are written to blocking.
+   */
+  private static final class FrameWriter {
+    private final RemoteEndpoint remote;
+
+    /* Whether the next data frame continues a fragmented message */
+    private boolean continuation;
+
+    FrameWriter(final RemoteEndpoint remote) {
+      this.remote = remote;
+    }
+
+    void sendPartialText(final String text, final boolean last, final FrameRelay.Callback callback)
+        throws IOException {
+      if (isAsync()) {
+        final WebSocketFrame frame = continuation ? new ContinuationFrame() : new TextFrame();
+        frame.setPayload(ByteBuffer.wrap(text.getBytes(StandardCharsets.UTF_8)));
+        sendDataFrame(frame, last, callback);
+      } else {
+        remote.sendPartialString(text, last);
+        flushBatch();
+        callback.succeeded();
+      }
+    }
+
+    void sendPartialBinary(final ByteBuffer data, final boolean last, final FrameRelay.Callback callback)
+        throws IOException {
+      if (isAsync()) {
+        final WebSocketFrame frame = continuation ? new ContinuationFrame() : new BinaryFrame();
+        frame.setPayload(data);
+        sendDataFrame(frame, last, callback);
+      } else {
+        remote.sendPartialBytes(data, last);
+        flushBatch();
+        callback.succeeded();
+      }
+    }
+
+    void sendPing(final ByteBuffer data, final FrameRelay.Callback callback) throws IOException {
+      if (isAsync()) {
+        final PingFrame frame = new PingFrame();
+        frame.setPayload(data);
+        ((WebSocketRemoteEndpoint) remote).uncheckedSendFrame(frame, writeCallback(callback));
+      } else {
+        remote.sendPing(data);
+        flushBatch();
+        callback.succeeded();
+      }
+    }
+
+    private void sendDataFrame(final WebSocketFrame frame, final boolean last, final FrameRelay.Callback callback) {
+      frame.setFin(last);
+      continuation = !last;
+      ((WebSocketRemoteEndpoint) remote).uncheckedSendFrame(frame, writeCallback(callback));
+    }
+
+    private boolean isAsync() {
+      return remote instanceof WebSocketRemoteEndpoint && remote.getBatchMode() != BatchMode.ON;
+    }
+
+    private void flushBatch() throws IOException {
+      if (remote.getBatchMode() == BatchMode.ON) {
+        remote.flush();
+      }
+    }
+  }
+
+  private static WriteCallback writeCallback(final FrameRelay.Callback callback) {
+    return new WriteCallback() {
+      @Override
+      public void writeFailed(final Throwable x) {
+        callback.failed(x);
+      }
+
+      @Override
+      public void writeSuccess() {
+        callback.succeeded();
+      }
+    };
+  }
+
+  /**
+   * Suspends reading from a Jetty websocket session. The backend sessions
+   * created by the Jetty javax.websocket client implement the Jetty API too.
+   * A resume that overtakes the suspend it belongs to is applied as soon as
+   * the suspend completes.
+   */
+  private static final class SessionFlowControl implements FrameRelay.FlowControl {
+    private final Session session;
+    private SuspendToken token;
+    private boolean resumeRequested;
+
+    private SessionFlowControl(final Session session) {
+      this.session = session;
+    }
+
+    static FrameRelay.FlowControl of(final Object session) {
+      return session instanceof Session ? new SessionFlowControl((Session) session) : null;
+    }
+
+    @Override
+    public void suspend() {
+      final SuspendToken resume;
+      synchronized (this) {
+        try {
+          token = session.suspend();
+        } catch (IllegalStateException e) {
+          /* the session is closing */
+          token = null;
+        }
+        resume = resumeRequested ? token : null;
+        if (resumeRequested) {
+          resumeRequested = false;
+          token = null;
+        }
+      }
+      if (resume != null) {
+        resume.resume();
+      }
+    }
+
+    @Override
+    public void resume() {
+      final SuspendToken resume;
+      synchronized (this) {
+        resume = token;
+        token = null;
+        resumeRequested = resume == null;
+      }
+      if (resume != null) {
+        resume.resume();
+      }
     }
-    messageBuffer.clear();
   }
 }
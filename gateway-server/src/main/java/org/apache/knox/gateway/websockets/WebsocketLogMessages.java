@@ -52,6 +52,9 @@ public interface WebsocketLogMessages {
   @Message(level = MessageLevel.DEBUG, text = "Message: {0}")
   void logMessage(String message);
 
+  @Message(level = MessageLevel.DEBUG, text = "Message: {0}{1}")
+  void relayedMessage(String direction, String payload);
+
   @Message(level = MessageLevel.DEBUG,
       text = "Websocket connection to backend server {0} closed")
   void onConnectionClose(String backend);
@@ -60,4 +63,16 @@ public interface WebsocketLogMessages {
       text = "{0}")
   void debugLog(String message);
 
+  @Message(level = MessageLevel.WARN,
+      text = "Websocket relay for {0} has {1} frames pending and the sending peer could not be suspended, closing the connection")
+  void relayQueueFull(String relay, int pending);
+
+  @Message(level = MessageLevel.DEBUG,
+      text = "Failed to relay websocket frame for {0}: {1}")
+  void relayFailed(String relay, String cause);
+
+  @Message(level = MessageLevel.ERROR,
+      text = "Failed to stop the websocket client container: {0}")
+  void failedToStopContainer(@StackTrace(level = MessageLevel.DEBUG) Exception e);
+
 }
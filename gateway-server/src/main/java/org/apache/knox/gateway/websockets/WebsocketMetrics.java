@@ -0,0 +1,117 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.knox.gateway.websockets;
+
+import com.codahale.metrics.Counter;
+import com.codahale.metrics.Meter;
+import com.codahale.metrics.MetricRegistry;
+
+/**
+ * Connection, frame and payload metrics for proxied websocket connections.
+ * <p>
+ * Frames from the browser to the backend are counted as {@code inbound},
+ * frames from the backend to the browser as {@code outbound}. Payload is
+ * measured in bytes for binary frames and characters for text frames.
+ *
+ * @since 1.6.0
+ */
+class WebsocketMetrics {
+  static final String PREFIX = "websocket";
+
+  private final Counter activeConnections;
+  private final Meter openedConnections;
+  private final Meter failedConnections;
+  private final Direction inbound;
+  private final Direction outbound;
+
+  WebsocketMetrics(final MetricRegistry registry) {
+    activeConnections = registry.counter(MetricRegistry.name(PREFIX, "connections", "active"));
+    openedConnections = registry.meter(MetricRegistry.name(PREFIX, "connections", "opened"));
+    failedConnections = registry.meter(MetricRegistry.name(PREFIX, "connections", "failed"));
+    inbound = new Direction(registry, "inbound");
+    outbound = new Direction(registry, "outbound");
+  }
+
+  void connectionOpened() {
+    openedConnections.mark();
+    activeConnections.inc();
+  }
+
+  void connectionClosed() {
+    activeConnections.dec();
+  }
+
+  void connectionFailed() {
+    failedConnections.mark();
+  }
+
+  Direction inbound() {
+    return inbound;
+  }
+
+  Direction outbound() {
+    return outbound;
+  }
+
+  long getActiveConnections() {
+    return activeConnections.getCount();
+  }
+
+  /**
+   * Metrics for frames relayed in one direction.
+   */
+  static class Direction {
+    private final Meter frames;
+    private final Meter payload;
+    private final Counter pending;
+    private final Meter suspensions;
+
+    Direction(final MetricRegistry registry, final String direction) {
+      frames = registry.meter(MetricRegistry.name(PREFIX, direction, "frames"));
+      payload = registry.meter(MetricRegistry.name(PREFIX, direction, "payload"));
+      pending = registry.counter(MetricRegistry.name(PREFIX, direction, "pending-frames"));
+      suspensions = registry.meter(MetricRegistry.name(PREFIX, direction, "suspensions"));
+    }
+
+    void queued() {
+      pending.inc();
+    }
+
+    void sent(final int size) {
+      pending.dec();
+      frames.mark();
+      payload.mark(size);
+    }
+
+    void dropped(final int count) {
+      pending.dec(count);
+    }
+
+    void suspended() {
+      suspensions.mark();
+    }
+
+    long getFrames() {
+      return frames.getCount();
+    }
+
+    long getPayload() {
+      return payload.getCount();
+    }
+  }
+}
@@ -34,10 +34,15 @@ import javax.servlet.FilterChain;
 import javax.servlet.FilterConfig;
 import javax.servlet.ServletContext;
 import javax.servlet.ServletException;
+import javax.servlet.ServletRequest;
+import javax.servlet.ServletResponse;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 import java.io.IOException;
 import java.net.URISyntaxException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
 
 import static org.hamcrest.CoreMatchers.is;
 import static org.hamcrest.MatcherAssert.assertThat;
@@ -218,4 +223,127 @@ public class GatewayFilterTest {
     assertThat(filter.url, is("http://host:8443/gateway/sandbox/test-role/test-path/test-resource"));
 
   }
+
+  public static class TestOrderFilter implements Filter {
+    static final List<String> INITIALIZATIONS = new ArrayList<>();
+    static final List<String> INVOCATIONS = new ArrayList<>();
+    static int initCount;
+
+    private String name;
+
+    @Override
+    public void init( FilterConfig filterConfig ) {
+      initCount++;
+      name = filterConfig.getFilterName();
+      INITIALIZATIONS.add( name );
+    }
+
+    @Override
+    public void doFilter( ServletRequest request, ServletResponse response, FilterChain chain ) throws IOException, ServletException {
+      INVOCATIONS.add( name );
+      chain.doFilter( request, response );
+    }
+
+    @Override
+    public void destroy() {
+    }
+  }
+
+  @Test
+  public void testFiltersInitializedAtDeploymentAndInvokedInOrder() throws Exception {
+
+    FilterConfig config = EasyMock.createNiceMock( FilterConfig.class );
+    EasyMock.replay( config );
+
+    HttpServletRequest request = EasyMock.createNiceMock( HttpServletRequest.class );
+    ServletContext context = EasyMock.createNiceMock( ServletContext.class );
+    GatewayConfig gatewayConfig = EasyMock.createNiceMock( GatewayConfig.class );
+    EasyMock.expect( request.getPathInfo() ).andReturn( "test-path/test-resource" ).anyTimes();
+    EasyMock.expect( request.getServletContext() ).andReturn( context ).anyTimes();
+    EasyMock.expect( context.getAttribute(
+        GatewayConfig.GATEWAY_CONFIG_ATTRIBUTE)).andReturn(gatewayConfig).anyTimes();
+    EasyMock.expect(gatewayConfig.getHeaderNameForRemoteAddress()).andReturn(
+        "Custom-Forwarded-For").anyTimes();
+    EasyMock.replay( request, context, gatewayConfig );
+
+    HttpServletResponse response = EasyMock.createNiceMock( HttpServletResponse.class );
+    EasyMock.replay( response );
+
+    TestOrderFilter.INITIALIZATIONS.clear();
+    TestOrderFilter.INVOCATIONS.clear();
+    TestOrderFilter.initCount = 0;
+
+    GatewayFilter gateway = new GatewayFilter();
+    gateway.addFilter( "test-path/**", "first", TestOrderFilter.class.getName(), null, "test-role" );
+    gateway.addFilter( "test-path/**", "second", TestOrderFilter.class.getName(), null, "test-role" );
+    gateway.addFilter( "test-path/**", "third", TestOrderFilter.class.getName(), null, "test-role" );
+    gateway.init( config );
+
+    assertThat( TestOrderFilter.initCount, is( 3 ) );
+    assertThat( TestOrderFilter.INITIALIZATIONS, is( Arrays.asList( "first", "second", "third" ) ) );
+
+    gateway.doFilter( request, response );
+    gateway.doFilter( request, response );
+    gateway.destroy();
+
+    assertThat( TestOrderFilter.initCount, is( 3 ) );
+    assertThat( TestOrderFilter.INVOCATIONS, is( Arrays.asList( "first", "second", "third", "first", "second", "third" ) ) );
+  }
+
+  public static class TestRetryFilter implements Filter {
+    @Override
+    public void init( FilterConfig filterConfig ) {
+    }
+
+    @Override
+    public void doFilter( ServletRequest request, ServletResponse response, FilterChain chain ) throws IOException, ServletException {
+      TestOrderFilter.INVOCATIONS.add( "retry" );
+      chain.doFilter( request, response );
+      chain.doFilter( request, response );
+    }
+
+    @Override
+    public void destroy() {
+    }
+  }
+
+  @Test
+  public void testFilterCanInvokeTheRestOfTheChainTwice() throws Exception {
+
+    FilterConfig config = EasyMock.createNiceMock( FilterConfig.class );
+    EasyMock.replay( config );
+
+    HttpServletRequest request = EasyMock.createNiceMock( HttpServletRequest.class );
+    ServletContext context = EasyMock.createNiceMock( ServletContext.class );
+    GatewayConfig gatewayConfig = EasyMock.createNiceMock( GatewayConfig.class );
+    EasyMock.expect( request.getPathInfo() ).andReturn( "test-path/test-resource" ).anyTimes();
+    EasyMock.expect( request.getServletContext() ).andReturn( context ).anyTimes();
+    EasyMock.expect( context.getAttribute(
+        GatewayConfig.GATEWAY_CONFIG_ATTRIBUTE)).andReturn(gatewayConfig).anyTimes();
+    EasyMock.expect(gatewayConfig.getHeaderNameForRemoteAddress()).andReturn(
+        "Custom-Forwarded-For").anyTimes();
+    EasyMock.replay( request, context, gatewayConfig );
+
+    HttpServletResponse response = EasyMock.createNiceMock( HttpServletResponse.class );
+    EasyMock.replay( response );
+
+    TestOrderFilter.INVOCATIONS.clear();
+
+    GatewayFilter gateway = new GatewayFilter();
+    gateway.addFilter( "test-path/**", "first", TestOrderFilter.class.getName(), null, "test-role" );
+    gateway.addFilter( "test-path/**", "retry", TestRetryFilter.class.getName(), null, "test-role" );
+    gateway.addFilter( "test-path/**", "second", TestOrderFilter.class.getName(), null, "test-role" );
+    gateway.addFilter( "test-path/**", "third", TestOrderFilter.class.getName(), null, "test-role" );
+    gateway.init( config );
+
+    gateway.doFilter( request, response );
+    gateway.doFilter( request, response );
+    gateway.destroy();
+
+    // Every request runs the filters after the retrying one twice
+    List<String> invocations = Arrays.asList( "first", "retry", "second", "third", "second", "third" );
+    List<String> expected = new ArrayList<>( invocations );
+    expected.addAll( invocations );
+    assertThat( TestOrderFilter.INVOCATIONS, is( expected ) );
+  }
 }
@@ -0,0 +1,72 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.knox.gateway;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class GatewayServerTest {
+  @Rule
+  public final TemporaryFolder tempDir = new TemporaryFolder();
+
+  @Test
+  public void testTopologyArchiveDoesNotRequireAnnotationScanning() throws IOException {
+    File warDir = createTopologyArchive();
+    assertFalse(GatewayServer.requiresAnnotationScanning(warDir));
+  }
+
+  @Test
+  public void testArchiveWithClassesOrJspsRequiresAnnotationScanning() throws IOException {
+    File warDir = createTopologyArchive();
+    assertTrue(new File(warDir, "WEB-INF/classes").mkdirs());
+    assertTrue(GatewayServer.requiresAnnotationScanning(warDir));
+
+    warDir = createTopologyArchive();
+    assertTrue(new File(warDir, "WEB-INF/lib").mkdirs());
+    assertTrue(GatewayServer.requiresAnnotationScanning(warDir));
+
+    warDir = createTopologyArchive();
+    Files.write(new File(warDir, "app/index.JSP").toPath(), "<html/>".getBytes(StandardCharsets.UTF_8));
+    assertTrue(GatewayServer.requiresAnnotationScanning(warDir));
+  }
+
+  @Test
+  public void testUnreadableArchiveRequiresAnnotationScanning() {
+    assertTrue(GatewayServer.requiresAnnotationScanning(new File(tempDir.getRoot(), "missing")));
+  }
+
+  private File createTopologyArchive() throws IOException {
+    File warDir = tempDir.newFolder();
+    File webInfDir = new File(warDir, "WEB-INF");
+    assertTrue(webInfDir.mkdirs());
+    assertTrue(new File(warDir, "app").mkdirs());
+    for (String name : new String[] {"gateway.xml", "rewrite.xml", "shiro.ini", "web.xml"}) {
+      Files.write(new File(webInfDir, name).toPath(), "<xml/>".getBytes(StandardCharsets.UTF_8));
+    }
+    return warDir;
+  }
+}
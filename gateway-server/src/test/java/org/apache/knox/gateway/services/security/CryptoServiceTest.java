@@ -30,12 +30,15 @@ import org.junit.experimental.categories.Category;
 
 import java.nio.charset.StandardCharsets;
 import java.security.cert.Certificate;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
 
+import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 
 @Category( { ManualTests.class, MediumTests.class } )
 public class CryptoServiceTest {
@@ -226,6 +229,31 @@ public class CryptoServiceTest {
     assertEquals(new String(decrypted, StandardCharsets.UTF_8), "larry");
   }
 
+  @Test
+  public void testConfigurableEncryptorSaltReuse() throws Exception {
+    GatewayConfig config = EasyMock.createNiceMock( GatewayConfig.class );
+    EasyMock.expect(config.getSaltSize()).andReturn("16");
+    EasyMock.expect(config.isCryptoSaltReuseEnabled()).andReturn(true);
+    EasyMock.replay(config);
+
+    ConfigurableEncryptor aes = new ConfigurableEncryptor("Test");
+    aes.init(config);
+    EncryptionResult result = aes.encrypt("larry".getBytes(StandardCharsets.UTF_8));
+    EncryptionResult result2 = aes.encrypt("larry".getBytes(StandardCharsets.UTF_8));
+
+    // New values share the salt, and so the derived key, but never the IV
+    assertArrayEquals(result.salt, result2.salt);
+    assertFalse(Arrays.equals(result.iv, result2.iv));
+    assertFalse(Arrays.equals(result.cipher, result2.cipher));
+
+    assertEquals("larry", new String(aes.decrypt(result.salt, result.iv, result.cipher), StandardCharsets.UTF_8));
+    assertEquals("larry", new String(aes.decrypt(result2.salt, result2.iv, result2.cipher), StandardCharsets.UTF_8));
+
+    // Values encrypted with a reused salt can be decrypted by an encryptor that does not reuse salts
+    ConfigurableEncryptor aes2 = new ConfigurableEncryptor("Test");
+    assertEquals("larry", new String(aes2.decrypt(result2.salt, result2.iv, result2.cipher), StandardCharsets.UTF_8));
+  }
+
   @Test
   //@Ignore
   public void testEncryptionOfQueryStrings() throws Exception {
@@ -36,8 +36,10 @@ import static org.hamcrest.CoreMatchers.is;
 import static org.hamcrest.MatcherAssert.assertThat;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 
@@ -55,11 +57,13 @@ import org.junit.Test;
 import org.junit.rules.TemporaryFolder;
 
 import java.io.IOException;
+import java.io.OutputStream;
 import java.net.InetAddress;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.nio.file.attribute.FileTime;
 import java.security.Key;
 import java.security.KeyPair;
 import java.security.KeyPairGenerator;
@@ -79,6 +83,7 @@ import java.util.Set;
 import java.util.concurrent.Callable;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.concurrent.TimeUnit;
 
 public class DefaultKeystoreServiceTest {
@@ -711,6 +716,116 @@ public class DefaultKeystoreServiceTest {
     verify(masterService);
   }
 
+  @Test
+  public void testKeystoreSnapshotIsReloadedWhenFileChanges() throws Exception {
+    char[] masterPassword = "master_password".toCharArray();
+
+    MasterService masterService = createMock(MasterService.class);
+    expect(masterService.getMasterSecret()).andReturn(masterPassword).anyTimes();
+    replay(masterService);
+
+    Path baseDir = testFolder.newFolder().toPath();
+    GatewayConfigImpl config = createGatewayConfig(baseDir);
+
+    CountingDefaultKeystoreService keystoreService = new CountingDefaultKeystoreService();
+    keystoreService.setMasterService(masterService);
+    keystoreService.init(config, Collections.emptyMap());
+
+    Path signingKeystoreFile = Paths.get(config.getSigningKeystorePath());
+    createKeystore(keystoreService, signingKeystoreFile, "alias1", masterPassword);
+    keystoreService.createCredentialStoreForCluster(AliasService.NO_CLUSTER_NAME);
+    keystoreService.clearCounts();
+
+    // The first request loads the keystore and the credential store holding its password,
+    // subsequent requests share the snapshots
+    KeyStore snapshot = keystoreService.getSigningKeystore();
+    assertSame(snapshot, keystoreService.getSigningKeystore());
+    assertNotNull(keystoreService.getSigningKey("alias1", masterPassword));
+    assertEquals(2, keystoreService.loadCount);
+
+    // The shared snapshot cannot be modified by its callers
+    try {
+      snapshot.deleteEntry("alias1");
+      fail("Expected the shared keystore to be read-only");
+    } catch (KeyStoreException e) {
+      assertTrue(snapshot.containsAlias("alias1"));
+    }
+
+    // A write through the service drops the snapshot
+    KeyStore updated = keystoreService.loadKeyStore(signingKeystoreFile, "JKS", masterPassword);
+    updated.deleteEntry("alias1");
+    keystoreService.writeKeyStoreToFile(updated, signingKeystoreFile, masterPassword);
+    keystoreService.clearCounts();
+
+    KeyStore reloaded = keystoreService.getSigningKeystore();
+    assertNotSame(snapshot, reloaded);
+    assertEquals(0, reloaded.size());
+    assertEquals(1, snapshot.size());
+    assertEquals(1, keystoreService.loadCount);
+
+    // A change made outside of the service is picked up by comparing the file content, even if
+    // the last modified time of the file is left unchanged
+    FileTime lastModifiedTime = Files.getLastModifiedTime(signingKeystoreFile);
+    KeyStore external = KeyStore.getInstance("JKS");
+    external.load(null, null);
+    external.setCertificateEntry("alias2", snapshot.getCertificate("alias1"));
+    try (OutputStream out = Files.newOutputStream(signingKeystoreFile)) {
+      external.store(out, masterPassword);
+    }
+    Files.setLastModifiedTime(signingKeystoreFile, lastModifiedTime);
+
+    KeyStore changed = keystoreService.getSigningKeystore();
+    assertNotSame(reloaded, changed);
+    assertTrue(changed.containsAlias("alias2"));
+    assertEquals(2, keystoreService.loadCount);
+
+    verify(masterService);
+  }
+
+  @Test
+  public void testConcurrentKeystoreReadsShareOneLoad() throws Exception {
+    char[] masterPassword = "master_password".toCharArray();
+
+    MasterService masterService = createMock(MasterService.class);
+    expect(masterService.getMasterSecret()).andReturn(masterPassword).anyTimes();
+    replay(masterService);
+
+    Path baseDir = testFolder.newFolder().toPath();
+    GatewayConfigImpl config = createGatewayConfig(baseDir);
+
+    CountingDefaultKeystoreService keystoreService = new CountingDefaultKeystoreService();
+    keystoreService.setMasterService(masterService);
+    keystoreService.init(config, Collections.emptyMap());
+
+    createKeystore(keystoreService, Paths.get(config.getSigningKeystorePath()), "alias1", masterPassword);
+    keystoreService.createCredentialStoreForCluster(AliasService.NO_CLUSTER_NAME);
+    keystoreService.getSigningKeystore();
+    keystoreService.clearCounts();
+
+    int numberOfThreads = 8;
+    int requestsPerThread = 100;
+    Set<Callable<Void>> readers = new HashSet<>(numberOfThreads);
+    for (int i = 0; i < numberOfThreads; i++) {
+      readers.add(() -> {
+        for (int j = 0; j < requestsPerThread; j++) {
+          assertNotNull(keystoreService.getSigningKey("alias1", masterPassword));
+        }
+        return null;
+      });
+    }
+
+    ExecutorService executor = Executors.newFixedThreadPool(numberOfThreads);
+    for (Future<Void> result : executor.invokeAll(readers)) {
+      result.get();
+    }
+    executor.shutdown();
+    assertTrue(executor.awaitTermination(5, TimeUnit.SECONDS));
+
+    assertEquals("Expected all reads to be served from the snapshot.", 0, keystoreService.loadCount);
+
+    verify(masterService);
+  }
+
   private void testAddSelfSignedCertForGateway(String hostname) throws Exception {
     char[] masterPassword = "master_password".toCharArray();
 
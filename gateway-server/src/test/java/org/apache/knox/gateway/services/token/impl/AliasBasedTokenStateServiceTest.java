@@ -777,9 +777,9 @@ public class AliasBasedTokenStateServiceTest extends DefaultTokenStateServiceTes
   }
   private static Map<String, Long> getTokenExpirationsField(TokenStateService tss, boolean fromGrandParent) throws Exception {
     final Class<TokenStateService> clazz = (Class<TokenStateService>) (fromGrandParent ? tss.getClass().getSuperclass().getSuperclass() : tss.getClass().getSuperclass());
-    final Field tokenExpirationsField = clazz.getDeclaredField("tokenExpirations");
-    tokenExpirationsField.setAccessible(true);
-    return (Map<String, Long>) tokenExpirationsField.get(tss);
+    final Field tokenStatesField = clazz.getDeclaredField("tokenStates");
+    tokenStatesField.setAccessible(true);
+    return ((TokenStateTable) tokenStatesField.get(tss)).expirations();
   }
 
   private static Map<String, Long> getMaxTokenLifetimesField(TokenStateService tss) throws Exception {
@@ -788,9 +788,9 @@ public class AliasBasedTokenStateServiceTest extends DefaultTokenStateServiceTes
 
   private static Map<String, Long> getMaxTokenLifetimesField(TokenStateService tss, boolean fromGrandParent) throws Exception {
     final Class<TokenStateService> clazz = (Class<TokenStateService>) (fromGrandParent ? tss.getClass().getSuperclass().getSuperclass() : tss.getClass().getSuperclass());
-    Field maxTokenLifetimesField = clazz.getDeclaredField("maxTokenLifetimes");
-    maxTokenLifetimesField.setAccessible(true);
-    return (Map<String, Long>) maxTokenLifetimesField.get(tss);
+    Field tokenStatesField = clazz.getDeclaredField("tokenStates");
+    tokenStatesField.setAccessible(true);
+    return ((TokenStateTable) tokenStatesField.get(tss)).maxLifetimes();
   }
 
   private static List<AliasBasedTokenStateService.TokenState> getUnpersistedStateField(TokenStateService tss)
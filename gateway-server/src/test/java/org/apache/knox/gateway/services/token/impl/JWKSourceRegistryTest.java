@@ -0,0 +1,160 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.knox.gateway.services.token.impl;
+
+import com.nimbusds.jose.KeySourceException;
+import com.nimbusds.jose.jwk.JWKMatcher;
+import com.nimbusds.jose.jwk.JWKSelector;
+import com.nimbusds.jose.jwk.JWKSet;
+import com.nimbusds.jose.jwk.RSAKey;
+import com.nimbusds.jose.jwk.source.JWKSource;
+import com.nimbusds.jose.proc.SecurityContext;
+import com.nimbusds.jose.util.Resource;
+import com.nimbusds.jose.util.ResourceRetriever;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.net.URL;
+import java.security.KeyPairGenerator;
+import java.security.interfaces.RSAPublicKey;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class JWKSourceRegistryTest {
+
+  private static RSAPublicKey publicKey;
+
+  @BeforeClass
+  public static void setUpBeforeClass() throws Exception {
+    KeyPairGenerator kpg = KeyPairGenerator.getInstance("RSA");
+    kpg.initialize(2048);
+    publicKey = (RSAPublicKey) kpg.genKeyPair().getPublic();
+  }
+
+  @Test
+  public void testKeySetIsFetchedOncePerUrl() throws Exception {
+    TestResourceRetriever retriever = new TestResourceRetriever();
+    JWKSourceRegistry registry = new JWKSourceRegistry(60000, 60000, 60000, null, retriever);
+    try {
+      URL url = new URL("https://localhost:8443/jwks.json");
+      JWKSource<SecurityContext> source = registry.getKeySource(url);
+      assertSame(source, registry.getKeySource(new URL("https://localhost:8443/jwks.json")));
+
+      for (int i = 0; i < 10; i++) {
+        assertEquals(1, source.get(selectKey("k1"), null).size());
+      }
+      assertEquals(1, retriever.fetches.get());
+      assertEquals(1, registry.getFetchTimer().getCount());
+    } finally {
+      registry.shutdown();
+    }
+  }
+
+  @Test
+  public void testUnknownKeyIdRefetchIsRateLimited() throws Exception {
+    TestResourceRetriever retriever = new TestResourceRetriever();
+    JWKSourceRegistry registry = new JWKSourceRegistry(60000, 60000, 200, null, retriever);
+    try {
+      JWKSource<SecurityContext> source = registry.getKeySource(new URL("https://localhost:8443/jwks.json"));
+      assertEquals(1, source.get(selectKey("k1"), null).size());
+
+      // Within the rate limit the cached key set is used as is
+      assertTrue(source.get(selectKey("k2"), null).isEmpty());
+      assertEquals(1, retriever.fetches.get());
+
+      // After a rotation the new key is picked up once the rate limit allows another fetch
+      retriever.keyId = "k2";
+      Thread.sleep(300);
+      assertEquals(1, source.get(selectKey("k2"), null).size());
+      assertEquals(2, retriever.fetches.get());
+    } finally {
+      registry.shutdown();
+    }
+  }
+
+  @Test
+  public void testStaleKeySetIsRefreshedInBackground() throws Exception {
+    TestResourceRetriever retriever = new TestResourceRetriever();
+    JWKSourceRegistry registry = new JWKSourceRegistry(100, 60000, 60000, null, retriever);
+    try {
+      JWKSource<SecurityContext> source = registry.getKeySource(new URL("https://localhost:8443/jwks.json"));
+      assertEquals(1, source.get(selectKey("k1"), null).size());
+
+      Thread.sleep(200);
+      retriever.keyId = "k2";
+      // The stale key set is still served while it is being refreshed
+      assertEquals(1, source.get(selectKey("k1"), null).size());
+
+      long deadline = System.currentTimeMillis() + 5000;
+      while (retriever.fetches.get() < 2 && System.currentTimeMillis() < deadline) {
+        Thread.sleep(10);
+      }
+      assertEquals(2, retriever.fetches.get());
+    } finally {
+      registry.shutdown();
+    }
+  }
+
+  @Test
+  public void testFailedFetch() throws Exception {
+    TestResourceRetriever retriever = new TestResourceRetriever();
+    retriever.fail = true;
+    JWKSourceRegistry registry = new JWKSourceRegistry(60000, 60000, 60000, null, retriever);
+    try {
+      JWKSource<SecurityContext> source = registry.getKeySource(new URL("https://localhost:8443/jwks.json"));
+      for (int i = 0; i < 2; i++) {
+        try {
+          source.get(selectKey("k1"), null);
+          fail("Expected the key source to fail");
+        } catch (KeySourceException e) {
+          // expected
+        }
+      }
+      // The second attempt is rate limited and does not reach the JWKS endpoint
+      assertEquals(1, retriever.fetches.get());
+      assertEquals(1, registry.getFetchFailures().getCount());
+    } finally {
+      registry.shutdown();
+    }
+  }
+
+  private static JWKSelector selectKey(String keyId) {
+    return new JWKSelector(new JWKMatcher.Builder().keyID(keyId).build());
+  }
+
+  private static class TestResourceRetriever implements ResourceRetriever {
+    final AtomicInteger fetches = new AtomicInteger();
+    volatile String keyId = "k1";
+    volatile boolean fail;
+
+    @Override
+    public Resource retrieveResource(URL url) throws IOException {
+      fetches.incrementAndGet();
+      if (fail) {
+        throw new IOException("Connection refused");
+      }
+      RSAKey key = new RSAKey.Builder(publicKey).keyID(keyId).build();
+      return new Resource(new JWKSet(key).toString(), "application/json");
+    }
+  }
+}
@@ -18,13 +18,17 @@
  */
 package org.apache.knox.gateway.services.token.impl;
 
+import org.apache.knox.gateway.config.GatewayConfig;
 import org.apache.knox.gateway.services.security.token.TokenStateService;
 import org.apache.knox.gateway.services.security.token.impl.JWTToken;
+import org.apache.knox.gateway.services.token.impl.state.LogTokenStateJournal;
 import org.apache.knox.gateway.services.token.impl.state.TokenStateJournalFactory;
 import org.apache.knox.gateway.services.token.state.TokenStateJournal;
+import org.easymock.EasyMock;
 import org.junit.Test;
 
 import java.lang.reflect.Field;
+import java.util.Collections;
 import java.util.HashSet;
 import java.util.Map;
 import java.util.Set;
@@ -310,6 +314,60 @@ public class JournalBasedTokenStateServiceTest extends DefaultTokenStateServiceT
         }
     }
 
+    @Test
+    public void testTokenStateLog() throws Exception {
+        final long maxTokenLifetime = TimeUnit.HOURS.toMillis(1);
+
+        // Add a journal entry to the file-per-token journal prior to enabling the log
+        final JWTToken migratedToken = createMockToken(System.currentTimeMillis() + TimeUnit.SECONDS.toMillis(60));
+        final String migratedTokenId = migratedToken.getClaim(JWTToken.KNOX_ID_CLAIM);
+        TokenStateJournalFactory.create(createMockGatewayConfig(false))
+                                .add(migratedTokenId,
+                                     System.currentTimeMillis(),
+                                     migratedToken.getExpiresDate().getTime(),
+                                     maxTokenLifetime);
+
+        final JWTToken token = createMockToken(System.currentTimeMillis() + TimeUnit.SECONDS.toMillis(60));
+        final String tokenId = token.getClaim(JWTToken.KNOX_ID_CLAIM);
+        final long updatedExpiration = System.currentTimeMillis() + TimeUnit.MINUTES.toMillis(10);
+
+        TokenStateService tss = new JournalBasedTokenStateService();
+        tss.init(createLogEnabledGatewayConfig(), Collections.emptyMap());
+        assertTrue("Expected the journal to be the token state log.",
+                   getJournalField(tss) instanceof LogTokenStateJournal);
+        assertEquals("Expected the file-per-token journal entry to have been migrated to the log.",
+                     migratedToken.getExpiresDate().getTime(),
+                     tss.getTokenExpiration(migratedTokenId));
+        assertTrue("Expected the migrated entry to have been removed from the file-per-token journal.",
+                   TokenStateJournalFactory.create(createMockGatewayConfig(false)).get().isEmpty());
+
+        try {
+            tss.start();
+            tss.addToken(tokenId, System.currentTimeMillis(), token.getExpiresDate().getTime(), maxTokenLifetime);
+            tss.renewToken(token, TimeUnit.MINUTES.toMillis(10));
+        } finally {
+            tss.stop();
+        }
+
+        // The state is loaded from the log by the next instance
+        tss = new JournalBasedTokenStateService();
+        tss.init(createLogEnabledGatewayConfig(), Collections.emptyMap());
+        assertEquals(2, getJournalField(tss).get().size());
+        assertTrue(tss.getTokenExpiration(tokenId) >= updatedExpiration);
+        assertEquals(migratedToken.getExpiresDate().getTime(), tss.getTokenExpiration(migratedTokenId));
+        ((LogTokenStateJournal) getJournalField(tss)).close();
+    }
+
+    private GatewayConfig createLogEnabledGatewayConfig() throws Exception {
+        GatewayConfig config = EasyMock.createNiceMock(GatewayConfig.class);
+        EasyMock.expect(config.getKnoxTokenEvictionInterval()).andReturn(2L).anyTimes();
+        EasyMock.expect(config.getGatewaySecurityDir()).andReturn(getGatewaySecurityDir()).anyTimes();
+        EasyMock.expect(config.isKnoxTokenStateJournalLogEnabled()).andReturn(true).anyTimes();
+        EasyMock.expect(config.getKnoxTokenStateJournalLogSyncInterval()).andReturn(100L).anyTimes();
+        EasyMock.replay(config);
+        return config;
+    }
+
     private static TokenStateJournal getJournalField(TokenStateService tss) throws Exception {
         Field journalField = JournalBasedTokenStateService.class.getDeclaredField("journal");
         journalField.setAccessible(true);
@@ -317,14 +375,14 @@ public class JournalBasedTokenStateServiceTest extends DefaultTokenStateServiceT
     }
 
     private static Map<String, Long> getTokenExpirationsField(TokenStateService tss) throws Exception {
-        Field tokenExpirationsField = tss.getClass().getSuperclass().getDeclaredField("tokenExpirations");
-        tokenExpirationsField.setAccessible(true);
-        return (Map<String, Long>) tokenExpirationsField.get(tss);
+        Field tokenStatesField = tss.getClass().getSuperclass().getDeclaredField("tokenStates");
+        tokenStatesField.setAccessible(true);
+        return ((TokenStateTable) tokenStatesField.get(tss)).expirations();
     }
 
     private static Map<String, Long> getMaxTokenLifetimesField(TokenStateService tss) throws Exception {
-        Field maxTokenLifetimesField = tss.getClass().getSuperclass().getDeclaredField("maxTokenLifetimes");
-        maxTokenLifetimesField.setAccessible(true);
-        return (Map<String, Long>) maxTokenLifetimesField.get(tss);
+        Field tokenStatesField = tss.getClass().getSuperclass().getDeclaredField("tokenStates");
+        tokenStatesField.setAccessible(true);
+        return ((TokenStateTable) tokenStatesField.get(tss)).maxLifetimes();
     }
 }
@@ -0,0 +1,128 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.knox.gateway.services.token.impl;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class TokenStateTableTest {
+
+  @Test
+  public void testMatchesMapsUnderRandomOperations() {
+    final TokenStateTable table = new TokenStateTable();
+    final Map<String, Long> expirations = new HashMap<>();
+    final Map<String, Long> maxLifetimes = new HashMap<>();
+    final Random random = new Random(42);
+
+    for (int i = 0; i < 100000; i++) {
+      final String tokenId = "token-" + random.nextInt(2000);
+      final long value = random.nextInt(1000000);
+      switch (random.nextInt(5)) {
+        case 0:
+        case 1:
+          table.setExpiration(tokenId, value);
+          expirations.put(tokenId, value);
+          break;
+        case 2:
+          table.setMaxLifetime(tokenId, value);
+          maxLifetimes.put(tokenId, value);
+          break;
+        case 3:
+          table.removeAll(Collections.singleton(tokenId));
+          expirations.remove(tokenId);
+          maxLifetimes.remove(tokenId);
+          break;
+        default:
+          table.removeExpiration(tokenId);
+          expirations.remove(tokenId);
+          break;
+      }
+    }
+
+    assertEquals(expirations, new HashMap<>(table.expirations()));
+    assertEquals(maxLifetimes, new HashMap<>(table.maxLifetimes()));
+    assertEquals(expirations.size(), table.getExpirationCount());
+    assertEquals(maxLifetimes.size(), table.getMaxLifetimeCount());
+    for (int i = 0; i < 2000; i++) {
+      final String tokenId = "token-" + i;
+      final Long expiration = expirations.get(tokenId);
+      assertEquals(expiration == null ? TokenStateTable.ABSENT : expiration, table.getExpiration(tokenId));
+    }
+  }
+
+  @Test
+  public void testPollExpiredOnlyReturnsCurrentlyExpiredTokens() {
+    final TokenStateTable table = new TokenStateTable();
+    for (int i = 0; i < 100; i++) {
+      table.setExpiration("token-" + i, i * 10L);
+    }
+    // Renewed tokens must not be reported by their previous expiration
+    table.setExpiration("token-1", 5000L);
+    // Removed tokens must not be reported at all
+    table.removeAll(Arrays.asList("token-2", "token-3"));
+
+    final Set<String> expired = table.pollExpired(49L);
+    assertEquals(new HashSet<>(Arrays.asList("token-0", "token-4")), expired);
+
+    // Polled tokens are no longer indexed unless they are handed back
+    assertTrue(table.pollExpired(49L).isEmpty());
+    table.reindex("token-4");
+    assertEquals(Collections.singleton("token-4"), table.pollExpired(49L));
+
+    final List<String> remaining = new ArrayList<>(table.pollExpired(Long.MAX_VALUE - 1));
+    assertEquals(96, remaining.size());
+    assertEquals("token-5", remaining.get(0));
+    assertEquals("token-1", remaining.get(remaining.size() - 1));
+  }
+
+  @Test
+  public void testMapViews() {
+    final TokenStateTable table = new TokenStateTable();
+    final Map<String, Long> expirations = table.expirations();
+    final Map<String, Long> maxLifetimes = table.maxLifetimes();
+
+    expirations.put("token", 10L);
+    maxLifetimes.put("token", 20L);
+    assertEquals(Long.valueOf(10L), expirations.get("token"));
+
+    for (Map.Entry<String, Long> entry : maxLifetimes.entrySet()) {
+      entry.setValue(30L);
+    }
+    assertEquals(30L, table.getMaxLifetime("token"));
+
+    expirations.keySet().removeAll(Collections.singleton("token"));
+    assertNull(expirations.get("token"));
+    assertEquals(1, maxLifetimes.size());
+    maxLifetimes.remove("token");
+    assertTrue(maxLifetimes.isEmpty());
+    assertEquals(TokenStateTable.ABSENT, table.getMaxLifetime("token"));
+  }
+}
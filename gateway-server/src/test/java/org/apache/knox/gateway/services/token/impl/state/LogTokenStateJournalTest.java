@@ -0,0 +1,177 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.knox.gateway.services.token.impl.state;
+
+import org.apache.knox.gateway.config.GatewayConfig;
+import org.apache.knox.gateway.services.token.state.JournalEntry;
+import org.apache.knox.gateway.services.token.state.TokenStateJournal;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class LogTokenStateJournalTest extends AbstractFileTokenStateJournalTest {
+
+    @Override
+    TokenStateJournal createTokenStateJournal(GatewayConfig config) throws IOException {
+        return new LogTokenStateJournal(config);
+    }
+
+    @Test
+    public void testReloadFromLog() throws Exception {
+        GatewayConfig config = getGatewayConfig();
+
+        LogTokenStateJournal journal = new LogTokenStateJournal(config);
+        for (int i = 0; i < 100; i++) {
+            journal.add("token-" + i, i, 1000L + i, 2000L + i);
+        }
+        journal.remove(Arrays.asList("token-10", "token-20"));
+        assertTrue(journal.updateExpiration("token-30", 5000L));
+        assertFalse(journal.updateExpiration("token-10", 5000L));
+        journal.close();
+
+        journal = new LogTokenStateJournal(config);
+        assertEquals(98, journal.size());
+        assertNull(journal.get("token-10"));
+        assertNull(journal.get("token-20"));
+        assertEntry(journal.get("token-30"), "token-30", 30L, 5000L, 2030L);
+        assertEntry(journal.get("token-99"), "token-99", 99L, 1099L, 2099L);
+        journal.close();
+    }
+
+    @Test
+    public void testCompaction() throws Exception {
+        GatewayConfig config = getGatewayConfig();
+
+        LogTokenStateJournal journal = new LogTokenStateJournal(config, 50);
+        for (int i = 0; i < 60; i++) {
+            journal.add("token-" + i, i, 1000L + i, 2000L + i);
+        }
+        assertTrue(journal.needsCompaction());
+        journal.compact();
+        assertFalse(journal.needsCompaction());
+
+        // Changes after the compaction are appended to the truncated log, and applied on top of the snapshot
+        journal.remove("token-0");
+        journal.add("token-60", 60L, 1060L, 2060L);
+        journal.close();
+
+        journal = new LogTokenStateJournal(config, 50);
+        assertEquals(60, journal.size());
+        assertNull(journal.get("token-0"));
+        assertEntry(journal.get("token-1"), "token-1", 1L, 1001L, 2001L);
+        assertEntry(journal.get("token-60"), "token-60", 60L, 1060L, 2060L);
+        journal.close();
+    }
+
+    @Test
+    public void testCorruptLogTail() throws Exception {
+        GatewayConfig config = getGatewayConfig();
+
+        LogTokenStateJournal journal = new LogTokenStateJournal(config);
+        journal.add("token-1", 1L, 1001L, 2001L);
+        journal.add("token-2", 2L, 1002L, 2002L);
+        journal.close();
+
+        // Corrupt the last byte of the last record, which is part of its CRC
+        Path logFile = getJournalDir(config).resolve(LogTokenStateJournal.LOG_FILE_NAME);
+        try (RandomAccessFile file = new RandomAccessFile(logFile.toFile(), "rw")) {
+            file.seek(file.length() - 1);
+            int last = file.read();
+            file.seek(file.length() - 1);
+            file.write(last ^ 0xFF);
+        }
+
+        journal = new LogTokenStateJournal(config);
+        assertEquals(1, journal.size());
+        assertNotNull(journal.get("token-1"));
+        assertNull(journal.get("token-2"));
+
+        // The corrupt record has been discarded, so subsequent appends are replayed as expected
+        journal.add("token-3", 3L, 1003L, 2003L);
+        journal.close();
+
+        journal = new LogTokenStateJournal(config);
+        assertEquals(2, journal.size());
+        assertEntry(journal.get("token-3"), "token-3", 3L, 1003L, 2003L);
+        journal.close();
+    }
+
+    @Test
+    public void testCorruptSnapshotIsIgnored() throws Exception {
+        GatewayConfig config = getGatewayConfig();
+
+        LogTokenStateJournal journal = new LogTokenStateJournal(config);
+        journal.add("token-1", 1L, 1001L, 2001L);
+        journal.compact();
+        journal.add("token-2", 2L, 1002L, 2002L);
+        journal.close();
+
+        Path snapshotFile = getJournalDir(config).resolve(LogTokenStateJournal.SNAPSHOT_FILE_NAME);
+        byte[] snapshot = Files.readAllBytes(snapshotFile);
+        snapshot[14] ^= 0xFF;
+        Files.write(snapshotFile, snapshot);
+
+        journal = new LogTokenStateJournal(config);
+        assertNull(journal.get("token-1"));
+        assertEntry(journal.get("token-2"), "token-2", 2L, 1002L, 2002L);
+        journal.close();
+    }
+
+    private static Path getJournalDir(GatewayConfig config) {
+        return Paths.get(config.getGatewaySecurityDir(), FileTokenStateJournal.JOURNAL_DIR_NAME);
+    }
+
+    @Test
+    public void testMigrate() throws Exception {
+        GatewayConfig config = getGatewayConfig();
+
+        TokenStateJournal previous = new MultiFileTokenStateJournal(config);
+        for (int i = 0; i < 10; i++) {
+            previous.add("token-" + i, i, 1000L + i, 2000L + i);
+        }
+
+        LogTokenStateJournal journal = new LogTokenStateJournal(config);
+        assertEquals(10, journal.migrate(previous));
+        assertTrue(previous.get().isEmpty());
+        assertEquals(10, journal.size());
+        assertEntry(journal.get("token-5"), "token-5", 5L, 1005L, 2005L);
+
+        // Nothing is left to migrate
+        assertEquals(0, journal.migrate(previous));
+        journal.close();
+    }
+
+    private static void assertEntry(JournalEntry entry, String tokenId, long issueTime, long expiration, long maxLifetime) {
+        assertNotNull(entry);
+        assertEquals(tokenId, entry.getTokenId());
+        assertEquals(issueTime, Long.parseLong(entry.getIssueTime()));
+        assertEquals(expiration, Long.parseLong(entry.getExpiration()));
+        assertEquals(maxLifetime, Long.parseLong(entry.getMaxLifetime()));
+    }
+}
@@ -0,0 +1,208 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.knox.gateway.websockets;
+
+import com.codahale.metrics.MetricRegistry;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class FrameRelayTest {
+  private static final int CAPACITY = 4;
+
+  private WebsocketMetrics metrics;
+  private RecordingSink sink;
+  private RecordingFlowControl flowControl;
+  private FrameRelay relay;
+
+  @Before
+  public void setUp() {
+    metrics = new WebsocketMetrics(new MetricRegistry());
+    sink = new RecordingSink();
+    flowControl = new RecordingFlowControl();
+    relay = new FrameRelay("test", Runnable::run, CAPACITY, metrics.outbound());
+    relay.setFlowControl(flowControl);
+  }
+
+  @Test
+  public void testFramesQueuedBeforeSinkAreDeliveredInOrder() {
+    assertTrue(relay.offerText("one", true));
+    assertTrue(relay.offerBinary(ByteBuffer.wrap("two".getBytes(StandardCharsets.UTF_8)), true));
+    assertTrue(sink.frames.isEmpty());
+
+    relay.setSink(sink);
+    assertTrue(relay.offerText("three", true));
+
+    assertEquals(Arrays.asList("text:one:last:whole", "binary:two:last:whole", "text:three:last:whole"),
+        sink.frames);
+    assertEquals(3, metrics.outbound().getFrames());
+    assertEquals(11, metrics.outbound().getPayload());
+  }
+
+  @Test
+  public void testFragmentsArePassedThrough() {
+    relay.setSink(sink);
+    relay.offerText("He", false);
+    relay.offerPing(ByteBuffer.wrap("ping".getBytes(StandardCharsets.UTF_8)));
+    relay.offerText("llo", true);
+    relay.offerBinary(ByteBuffer.wrap("ab".getBytes(StandardCharsets.UTF_8)), false);
+    relay.offerBinary(ByteBuffer.wrap("c".getBytes(StandardCharsets.UTF_8)), true);
+    relay.offerText("whole", true);
+
+    assertEquals(Arrays.asList("text:He:partial", "ping:ping", "text:llo:last:partial",
+        "binary:ab:partial", "binary:c:last:partial", "text:whole:last:whole"), sink.frames);
+  }
+
+  @Test
+  public void testBinaryPayloadIsCopied() {
+    final ByteBuffer buffer = ByteBuffer.wrap("abc".getBytes(StandardCharsets.UTF_8));
+    relay.offerBinary(buffer, true);
+    buffer.put(0, (byte) 'x');
+    relay.setSink(sink);
+
+    assertEquals(Arrays.asList("binary:abc:last:whole"), sink.frames);
+  }
+
+  @Test
+  public void testSlowPeerSuspendsAndResumesReading() {
+    relay.setSink(sink);
+    sink.async = true;
+
+    /* one frame in flight, the rest pending */
+    for (int i = 0; i <= CAPACITY; i++) {
+      assertTrue(relay.offerText("m" + i, true));
+    }
+    assertEquals(CAPACITY, relay.size());
+    assertTrue(relay.isSuspended());
+    assertEquals(1, flowControl.suspended);
+    assertEquals(0, flowControl.resumed);
+
+    /* frames still arriving after the suspension are accepted up to twice the capacity */
+    for (int i = CAPACITY + 1; i <= 2 * CAPACITY; i++) {
+      assertTrue(relay.offerText("m" + i, true));
+    }
+    assertFalse(relay.offerText("overflow", true));
+
+    sink.completeAll();
+    assertFalse(relay.isSuspended());
+    assertEquals(1, flowControl.suspended);
+    assertEquals(1, flowControl.resumed);
+    assertEquals(2 * CAPACITY + 1, sink.frames.size());
+    assertEquals("text:m0:last:whole", sink.frames.get(0));
+    assertEquals("text:m8:last:whole", sink.frames.get(2 * CAPACITY));
+  }
+
+  @Test
+  public void testCloseDropsPendingFramesAndResumes() {
+    relay.setSink(sink);
+    sink.async = true;
+    for (int i = 0; i <= CAPACITY; i++) {
+      relay.offerText("m" + i, true);
+    }
+    assertTrue(relay.isSuspended());
+
+    relay.close();
+    assertEquals(0, relay.size());
+    assertEquals(1, flowControl.resumed);
+    assertFalse(relay.offerText("late", true));
+
+    sink.completeAll();
+    assertEquals(1, sink.frames.size());
+  }
+
+  @Test
+  public void testFailedWriteDoesNotStallTheQueue() {
+    relay.setSink(sink);
+    sink.fail = true;
+    relay.offerText("one", true);
+    sink.fail = false;
+    relay.offerText("two", true);
+
+    assertEquals(Arrays.asList("text:two:last:whole"), sink.frames);
+    assertEquals(1, metrics.outbound().getFrames());
+  }
+
+  private static class RecordingSink implements FrameRelay.Sink {
+    final List<String> frames = new ArrayList<>();
+    final List<FrameRelay.Callback> inFlight = new ArrayList<>();
+    boolean async;
+    boolean fail;
+
+    @Override
+    public void sendText(String text, boolean last, boolean whole, FrameRelay.Callback callback) {
+      complete("text:" + text + flags(last, whole), callback);
+    }
+
+    @Override
+    public void sendBinary(ByteBuffer data, boolean last, boolean whole, FrameRelay.Callback callback) {
+      complete("binary:" + StandardCharsets.UTF_8.decode(data.duplicate()) + flags(last, whole), callback);
+    }
+
+    @Override
+    public void sendPing(ByteBuffer data, FrameRelay.Callback callback) {
+      complete("ping:" + StandardCharsets.UTF_8.decode(data.duplicate()), callback);
+    }
+
+    void completeAll() {
+      while (!inFlight.isEmpty()) {
+        inFlight.remove(0).succeeded();
+      }
+    }
+
+    private void complete(String frame, FrameRelay.Callback callback) {
+      if (fail) {
+        callback.failed(new IllegalStateException("closed"));
+        return;
+      }
+      frames.add(frame);
+      if (async) {
+        inFlight.add(callback);
+      } else {
+        callback.succeeded();
+      }
+    }
+
+    private static String flags(boolean last, boolean whole) {
+      return (last ? ":last" : "") + (whole ? ":whole" : ":partial");
+    }
+  }
+
+  private static class RecordingFlowControl implements FrameRelay.FlowControl {
+    int suspended;
+    int resumed;
+
+    @Override
+    public void suspend() {
+      suspended++;
+    }
+
+    @Override
+    public void resume() {
+      resumed++;
+    }
+  }
+}
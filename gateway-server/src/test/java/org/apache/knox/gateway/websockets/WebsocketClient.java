@@ -47,6 +47,7 @@ public class WebsocketClient {
   private Session session;
   public CloseReason close;
   public MessageQueue messageQueue = new MessageQueue();
+  public MessageQueue binaryMessageQueue = new MessageQueue();
   public List<Throwable> errors = new LinkedList<>();
   public CountDownLatch closeLatch = new CountDownLatch(1);
 
@@ -64,6 +65,11 @@ public class WebsocketClient {
     this.messageQueue.offer(message);
   }
 
+  @OnMessage
+  public void onMessage(ByteBuffer message) {
+    this.binaryMessageQueue.offer(StandardCharsets.UTF_8.decode(message).toString());
+  }
+
   @OnMessage
   public void onMessage(PongMessage message) {
     ByteBuffer byteMessage = message.getApplicationData();
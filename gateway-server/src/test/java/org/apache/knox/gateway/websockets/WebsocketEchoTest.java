@@ -22,6 +22,8 @@ import org.junit.BeforeClass;
 import org.junit.Test;
 
 import java.net.URI;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
 import javax.websocket.ContainerProvider;
 import javax.websocket.Session;
 import javax.websocket.WebSocketContainer;
@@ -116,4 +118,44 @@ public class WebsocketEchoTest extends WebsocketEchoTestBase {
 
     assertThat(client.messageQueue.get(0), is("Echo"));
   }
+
+  /*
+   * Test binary messages proxying through gateway.
+   */
+  @Test
+  public void testGatewayBinaryEcho() throws Exception {
+    WebSocketContainer container = ContainerProvider.getWebSocketContainer();
+
+    WebsocketClient client = new WebsocketClient();
+    Session session = container.connectToServer(client,
+        new URI(serverUri.toString() + "gateway/websocket/ws"));
+
+    session.getBasicRemote().sendBinary(ByteBuffer.wrap("Echo".getBytes(StandardCharsets.UTF_8)));
+    client.binaryMessageQueue.awaitMessages(1, 1000, TimeUnit.MILLISECONDS);
+
+    assertThat(client.binaryMessageQueue.get(0), is("Echo"));
+  }
+
+  /*
+   * Test fragmented messages proxying through gateway, the backend
+   * reassembles the fragments before echoing the message.
+   */
+  @Test
+  public void testGatewayFragmentedEcho() throws Exception {
+    WebSocketContainer container = ContainerProvider.getWebSocketContainer();
+
+    WebsocketClient client = new WebsocketClient();
+    Session session = container.connectToServer(client,
+        new URI(serverUri.toString() + "gateway/websocket/ws"));
+
+    session.getBasicRemote().sendText("Ec", false);
+    session.getBasicRemote().sendText("ho", true);
+    session.getBasicRemote().sendBinary(ByteBuffer.wrap("Bin".getBytes(StandardCharsets.UTF_8)), false);
+    session.getBasicRemote().sendBinary(ByteBuffer.wrap("ary".getBytes(StandardCharsets.UTF_8)), true);
+    client.messageQueue.awaitMessages(1, 1000, TimeUnit.MILLISECONDS);
+    client.binaryMessageQueue.awaitMessages(1, 1000, TimeUnit.MILLISECONDS);
+
+    assertThat(client.messageQueue.get(0), is("Echo"));
+    assertThat(client.binaryMessageQueue.get(0), is("Binary"));
+  }
 }
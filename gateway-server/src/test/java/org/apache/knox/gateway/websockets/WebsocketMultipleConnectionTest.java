@@ -23,6 +23,7 @@ import static org.apache.knox.gateway.config.GatewayConfig.DEFAULT_SIGNING_KEY_P
 import static org.apache.knox.gateway.config.GatewayConfig.DEFAULT_IDENTITY_KEYSTORE_PASSWORD_ALIAS;
 import static org.apache.knox.gateway.config.GatewayConfig.DEFAULT_IDENTITY_KEYSTORE_TYPE;
 import static org.apache.knox.gateway.config.GatewayConfig.DEFAULT_IDENTITY_KEY_PASSPHRASE_ALIAS;
+import static org.junit.Assert.assertTrue;
 
 import com.mycila.xmltool.XMLDoc;
 import com.mycila.xmltool.XMLTag;
@@ -59,6 +60,7 @@ import java.io.IOException;
 import java.io.OutputStream;
 import java.net.URI;
 import java.net.URL;
+import java.nio.ByteBuffer;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
@@ -115,6 +117,17 @@ public class WebsocketMultipleConnectionTest {
    */
   private static int MAX_CONNECTIONS = 99;
 
+  /**
+   * Number of connections for the mixed frames test, run with
+   * -Dknox.test.websocket.connections=2000 to simulate many notebook UIs.
+   */
+  private static final int LOAD_CONNECTIONS = Integer.getInteger("knox.test.websocket.connections", MAX_CONNECTIONS);
+
+  /**
+   * Messages of each kind sent on every connection by the mixed frames test.
+   */
+  private static final int LOAD_MESSAGES = 10;
+
   public WebsocketMultipleConnectionTest() {
     super();
   }
@@ -181,6 +194,46 @@ public class WebsocketMultipleConnectionTest {
     */
   }
 
+  /*
+   * Test text and binary messages relayed concurrently over many connections.
+   */
+  @Test
+  public void testMultipleConnectionsMixedFrames() throws Exception {
+    WebSocketContainer container = ContainerProvider.getWebSocketContainer();
+
+    final CountDownLatch latch = new CountDownLatch(LOAD_CONNECTIONS * LOAD_MESSAGES * 2);
+
+    Session[] sessions = new Session[LOAD_CONNECTIONS];
+
+    for (int i = 0; i < LOAD_CONNECTIONS; i++) {
+      sessions[i] = container.connectToServer(new WebsocketClient() {
+        @Override
+        public void onMessage(String message) {
+          latch.countDown();
+        }
+
+        @Override
+        public void onMessage(ByteBuffer message) {
+          latch.countDown();
+        }
+      }, new URI(serverUri.toString() + "gateway/websocket/ws"));
+    }
+
+    final byte[] payload = new byte[1024];
+    for (int j = 0; j < LOAD_MESSAGES; j++) {
+      for (int i = 0; i < LOAD_CONNECTIONS; i++) {
+        sessions[i].getBasicRemote().sendText("message-" + j);
+        sessions[i].getBasicRemote().sendBinary(ByteBuffer.wrap(payload));
+      }
+    }
+
+    assertTrue("all messages echoed", latch.await(60, TimeUnit.SECONDS));
+
+    for (Session session : sessions) {
+      session.close();
+    }
+  }
+
   /**
    * Start Mock Websocket server that acts as backend.
    * @throws Exception exception on websocket server start
@@ -71,6 +71,11 @@ public abstract class AbstractHdfsHaDispatch extends HdfsHttpClientDispatch {
     this.haProvider = haProvider;
   }
 
+  @Override
+  protected boolean isRequestReplayRequired() {
+    return haProvider != null && maxFailoverAttempts > 0;
+  }
+
   @Override
   protected void executeRequest(HttpUriRequest outboundRequest, HttpServletRequest inboundRequest, HttpServletResponse outboundResponse) throws IOException {
       HttpResponse inboundResponse = null;
@@ -119,6 +124,10 @@ public abstract class AbstractHdfsHaDispatch extends HdfsHttpClientDispatch {
       inboundRequest.setAttribute(FAILOVER_COUNTER_ATTRIBUTE, counter);
       if (counter.incrementAndGet() <= maxFailoverAttempts) {
          haProvider.markFailedURL(getResourceRole(), outboundRequest.getURI().toString());
+         if (!isRequestReplayable(outboundRequest)) {
+            LOG.requestNotReplayable(getResourceRole());
+            throw new IOException(exception);
+         }
          //null out target url so that rewriters run again
          inboundRequest.setAttribute(AbstractGatewayFilter.TARGET_REQUEST_URL_ATTRIBUTE_NAME, null);
          URI uri = getDispatchUrl(inboundRequest);
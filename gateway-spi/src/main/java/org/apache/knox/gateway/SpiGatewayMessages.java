@@ -108,4 +108,40 @@ public interface SpiGatewayMessages {
 
   @Message( level = MessageLevel.DEBUG, text = "Skipped adding outbound header {0} and value {1}" )
   void skippedOutboundHeader(String header, String value);
+
+  @Message( level = MessageLevel.DEBUG, text = "Dispatching {0} {1} asynchronously" )
+  void dispatchAsync(String method, URI uri);
+
+  @Message( level = MessageLevel.WARN, text = "Asynchronous dispatch executor is saturated; rejecting request to {0}" )
+  void asyncDispatchRejected(URI uri);
+
+  @Message( level = MessageLevel.WARN, text = "Asynchronous dispatch to {0} timed out" )
+  void asyncDispatchTimedOut(URI uri);
+
+  @Message( level = MessageLevel.ERROR, text = "Failed to execute asynchronous dispatch: {0}" )
+  void failedToExecuteAsyncDispatch(@StackTrace(level=MessageLevel.DEBUG) Exception e);
+
+  @Message( level = MessageLevel.INFO, text = "Created asynchronous dispatch executor with {0} threads and a queue of {1}" )
+  void createdAsyncDispatchExecutor(int threads, int queueSize);
+
+  @Message( level = MessageLevel.INFO, text = "Created shared HTTP client connection pool {0} with {1} total and {2} per route connections" )
+  void createdSharedConnectionPool(String name, int maxTotal, int maxPerRoute);
+
+  @Message( level = MessageLevel.INFO, text = "Replacing shared HTTP client connection pool {0} as its TLS material has changed" )
+  void replacingSharedConnectionPool(String name);
+
+  @Message( level = MessageLevel.DEBUG, text = "Using dedicated HTTP client connection pool with {0} connections for {1}" )
+  void usingDedicatedConnectionPool(int maxConnections, String serviceRole);
+
+  @Message( level = MessageLevel.INFO, text = "Using replay buffers with {0} heap bytes per request, a heap quota of {1} bytes and a disk quota of {2} bytes in {3}" )
+  void createdReplayBufferPool(int heapBufferSize, long heapQuota, long diskQuota, String spillDirectory);
+
+  @Message( level = MessageLevel.WARN, text = "Request body exceeded the replay buffer quota after {0} bytes, the request cannot be replayed" )
+  void replayBufferQuotaExceeded(long recordedBytes);
+
+  @Message( level = MessageLevel.WARN, text = "Failed to spill request body to {0}: {1}" )
+  void failedToSpillReplayBuffer(String spillFile, @StackTrace(level=MessageLevel.DEBUG) Exception e);
+
+  @Message( level = MessageLevel.WARN, text = "Failed to delete replay buffer file {0}: {1}" )
+  void failedToDeleteReplayBuffer(String spillFile, @StackTrace(level=MessageLevel.DEBUG) Exception e);
 }
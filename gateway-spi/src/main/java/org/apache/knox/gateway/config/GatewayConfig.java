@@ -23,6 +23,7 @@ import java.security.KeyStore;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.TimeUnit;
 
 public interface GatewayConfig {
 
@@ -94,6 +95,10 @@ public interface GatewayConfig {
   String CREDENTIAL_STORE_TYPE = "gateway.credential.store.type";
   String DEFAULT_CREDENTIAL_STORE_TYPE = "JCEKS";
 
+  int DEFAULT_ASYNC_DISPATCH_THREAD_POOL_SIZE = 64;
+  int DEFAULT_ASYNC_DISPATCH_QUEUE_SIZE = 1024;
+  long DEFAULT_ASYNC_DISPATCH_TIMEOUT = TimeUnit.MINUTES.toMillis(5);
+
   String REMOTE_CONFIG_REGISTRY_TYPE = "type";
   String REMOTE_CONFIG_REGISTRY_ADDRESS = "address";
   String REMOTE_CONFIG_REGISTRY_NAMESPACE = "namespace";
@@ -401,7 +406,8 @@ public interface GatewayConfig {
   int getWebsocketIdleTimeout();
 
   /**
-   * Max count of messages that can be temporarily buffered in memory before a connection is properly setup.
+   * Max count of messages that can be temporarily buffered in memory for each direction of a websocket
+   * connection, either before the connection is properly setup or while the receiving peer is slow.
    * @since 0.10
    * @return buffer size
    */
@@ -740,4 +746,147 @@ public interface GatewayConfig {
    * @return true if incoming X-Forwarded headers are enabled
    */
   boolean isGatewayServerIncomingXForwardedSupportEnabled();
+
+  /**
+   * @return the maximum number of threads used to execute asynchronous dispatches
+   */
+  int getAsyncDispatchThreadPoolSize();
+
+  /**
+   * @return the maximum number of asynchronous dispatches waiting for an executor thread
+   */
+  int getAsyncDispatchQueueSize();
+
+  /**
+   * @return the time - in milliseconds - an asynchronous dispatch, including the streaming of the
+   * backend response, may take before it is aborted with a gateway timeout
+   */
+  long getAsyncDispatchTimeout();
+
+  /**
+   * @return true if dispatch HTTP clients should lease connections from gateway wide pools shared across topologies;
+   * disabled by default, as the per route limit of a shared pool applies to all topologies together
+   */
+  boolean isHttpClientConnectionPoolShared();
+
+  /**
+   * @return the maximum number of connections in a shared connection pool across all routes;
+   * the per route limit is {@link #getHttpClientMaxConnections()}
+   */
+  int getHttpClientConnectionPoolMaxTotal();
+
+  /**
+   * @return the time - in milliseconds - after which idle pooled connections are evicted
+   */
+  long getHttpClientConnectionPoolIdleTimeout();
+
+  /**
+   * @return the period of inactivity - in milliseconds - after which a pooled connection is checked for staleness before being leased
+   */
+  int getHttpClientConnectionPoolValidateAfterInactivity();
+
+  /**
+   * @return the maximum lifetime - in milliseconds - of a pooled connection; a negative value means no limit
+   */
+  long getHttpClientConnectionPoolTimeToLive();
+
+  /**
+   * @return the age - in milliseconds - after which a cached JWKS key set is refreshed in the background
+   */
+  long getJwksCacheRefreshInterval();
+
+  /**
+   * @return the age - in milliseconds - after which a cached JWKS key set is no longer used
+   */
+  long getJwksCacheTimeToLive();
+
+  /**
+   * @return the minimum time - in milliseconds - between two fetches of a JWKS key set triggered by an unknown key id
+   */
+  long getJwksRefetchRateLimit();
+
+  /**
+   * @return true, if the AliasBasedTokenStateService should persist token state in an append-only log instead of
+   *         the gateway credential store.
+   */
+  boolean isKnoxTokenStateAliasPersistenceLogEnabled();
+
+  /**
+   * @return The minimum number of token state log records after which the log is compacted into a snapshot.
+   */
+  int getKnoxTokenStateAliasPersistenceLogCompactionThreshold();
+
+  /**
+   * @return the compression level (0-9, or -1 for the codec default) used when re-compressing a rewritten response body
+   */
+  int getRewriteResponseCompressionLevel();
+
+  /**
+   * Indicates whether the CryptoService and MasterService implementations should encrypt new
+   * values with a single random salt per encryptor, so the password based key is only derived once.
+   * A random IV is still used for every value.
+   * @return true if the salt is reused for new values, false to use a new salt for every value
+   */
+  boolean isCryptoSaltReuseEnabled();
+
+  /**
+   * @return true if HA dispatches record request bodies so that they can be replayed on failover
+   */
+  boolean isDispatchReplayEnabled();
+
+  /**
+   * @return the number of bytes of a request body kept on the heap before the rest is spilled to disk
+   */
+  int getDispatchReplayHeapBufferSize();
+
+  /**
+   * @return the maximum number of heap bytes used to record request bodies across the gateway
+   */
+  long getDispatchReplayHeapQuota();
+
+  /**
+   * @return the maximum number of disk bytes used to record request bodies across the gateway
+   */
+  long getDispatchReplayDiskQuota();
+
+  /**
+   * Number of threads shared by all websocket connections to relay frames and clean up closed sessions.
+   * @return thread pool size
+   */
+  int getWebsocketThreadPoolSize();
+
+  /**
+   * The deployment descriptors themselves are generated one topology at a time because the deployment
+   * contributors are shared; exporting and activating the deployments runs in parallel.
+   * @return the number of topologies that are deployed in parallel
+   */
+  int getGatewayDeploymentThreadPoolSize();
+
+  /**
+   * @return true if annotation and JSP scanning should be skipped for topology archives without JSPs, classes or libraries;
+   * disabled by default
+   */
+  boolean isGatewayDeploymentAnnotationScanSkipEnabled();
+
+  /**
+   * @return true if topologies without applications should be deployed in memory instead of being exported to the deployment directory
+   */
+  boolean isGatewayDeploymentInMemoryEnabled();
+
+  /**
+   * @return the maximum number of concurrent requests issued to Cloudera Manager during service discovery
+   */
+  int getClouderaManagerServiceDiscoveryThreadPoolSize();
+
+  /**
+   * @return true, if the JournalBasedTokenStateService should persist token state in an append-only log instead of
+   *         one file per token.
+   */
+  boolean isKnoxTokenStateJournalLogEnabled();
+
+  /**
+   * @return The interval - in milliseconds - at which the token state log changes are forced to the storage device,
+   *         and the log is compacted if needed.
+   */
+  long getKnoxTokenStateJournalLogSyncInterval();
 }
@@ -0,0 +1,43 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.knox.gateway.dispatch;
+
+import org.apache.http.client.methods.HttpUriRequest;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+
+/**
+ * A {@link ConfigurableDispatch} that does not hold the container request thread
+ * for the duration of the backend round trip.
+ * <p>
+ * Service definitions opt into it by using this class as their dispatch
+ * <code>classname</code>. Header handling and auditing are inherited unchanged;
+ * only the thread executing them differs. See {@link AsyncDispatchSupport}.
+ */
+public class AsyncDispatch extends ConfigurableDispatch {
+
+  @Override
+  protected void executeRequestWrapper(HttpUriRequest outboundRequest,
+      HttpServletRequest inboundRequest, HttpServletResponse outboundResponse)
+      throws IOException {
+    AsyncDispatchSupport.execute(outboundRequest, inboundRequest, outboundResponse,
+        () -> super.executeRequestWrapper(outboundRequest, inboundRequest, outboundResponse));
+  }
+}
@@ -0,0 +1,343 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.knox.gateway.dispatch;
+
+import org.apache.commons.lang3.concurrent.BasicThreadFactory;
+import org.apache.http.HttpEntityEnclosingRequest;
+import org.apache.http.client.methods.HttpUriRequest;
+import org.apache.knox.gateway.SpiGatewayMessages;
+import org.apache.knox.gateway.audit.api.AuditContext;
+import org.apache.knox.gateway.audit.api.AuditService;
+import org.apache.knox.gateway.audit.api.AuditServiceFactory;
+import org.apache.knox.gateway.audit.api.CorrelationContext;
+import org.apache.knox.gateway.audit.api.CorrelationService;
+import org.apache.knox.gateway.audit.api.CorrelationServiceFactory;
+import org.apache.knox.gateway.config.GatewayConfig;
+import org.apache.knox.gateway.i18n.messages.MessagesFactory;
+
+import javax.security.auth.Subject;
+import javax.servlet.AsyncContext;
+import javax.servlet.AsyncEvent;
+import javax.servlet.AsyncListener;
+import javax.servlet.ServletContext;
+import javax.servlet.ServletRequest;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.security.AccessController;
+import java.security.PrivilegedActionException;
+import java.security.PrivilegedExceptionAction;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Moves the execution of a dispatch off the container request thread.
+ * <p>
+ * The inbound request is put into asynchronous mode and the blocking part of the
+ * dispatch (the backend round trip and the streaming of the backend response) runs
+ * on a bounded executor shared by all topologies. The audit and correlation contexts,
+ * the authenticated {@link Subject} and the {@link ThreadState} registered by the
+ * filters of the request are carried over to the executor thread so the existing
+ * dispatch code behaves exactly as it does on the request thread.
+ * <p>
+ * A dispatch that does not complete within the asynchronous dispatch timeout is aborted
+ * and answered with a <code>504 Gateway Timeout</code>.
+ * <p>
+ * If the container does not allow asynchronous processing for the request the task
+ * is executed synchronously.
+ */
+public final class AsyncDispatchSupport {
+
+  private static final SpiGatewayMessages LOG = MessagesFactory.get(SpiGatewayMessages.class);
+
+  private static final AuditService auditService = AuditServiceFactory.getAuditService();
+  private static final CorrelationService correlationService = CorrelationServiceFactory.getCorrelationService();
+
+  private static final String ASYNC_DISPATCH_ATTRIBUTE = AsyncDispatchSupport.class.getName() + ".dispatched";
+  private static final String ASYNC_DISPATCH_FAILED_ATTRIBUTE = AsyncDispatchSupport.class.getName() + ".failed";
+  private static final String THREAD_STATES_ATTRIBUTE = AsyncDispatchSupport.class.getName() + ".threadStates";
+
+  private static volatile ExecutorService executor;
+
+  /**
+   * The blocking part of a dispatch.
+   */
+  @FunctionalInterface
+  public interface DispatchTask {
+    void execute() throws IOException;
+  }
+
+  /**
+   * State a filter binds to the request thread that the dispatch depends on, e.g. the security
+   * context of an authentication provider. It is bound to the executor thread for the duration
+   * of an asynchronous dispatch.
+   */
+  @FunctionalInterface
+  public interface ThreadState {
+    /**
+     * Binds the state to the current thread.
+     *
+     * @return restores the state that was bound to the thread before
+     */
+    Runnable bind();
+  }
+
+  private AsyncDispatchSupport() {
+  }
+
+  /**
+   * Registers thread bound state of a filter for the dispatch of the request. Filters register their
+   * state before invoking the rest of the chain.
+   *
+   * @param request the request received by the gateway
+   * @param state the state captured on the request thread
+   */
+  @SuppressWarnings("unchecked")
+  public static void addThreadState(final ServletRequest request, final ThreadState state) {
+    List<ThreadState> states = (List<ThreadState>) request.getAttribute(THREAD_STATES_ATTRIBUTE);
+    if (states == null) {
+      states = new ArrayList<>(2);
+      request.setAttribute(THREAD_STATES_ATTRIBUTE, states);
+    }
+    states.add(state);
+  }
+
+  /**
+   * Executes the given task asynchronously if the inbound request supports it.
+   *
+   * @param outboundRequest the request that will be sent to the backend
+   * @param inboundRequest the request received by the gateway
+   * @param outboundResponse the response sent back to the client
+   * @param task the blocking part of the dispatch
+   * @return true if the task was handed off to the dispatch executor, false if it was executed synchronously
+   * @throws IOException if the task was executed synchronously and failed
+   */
+  public static boolean execute(final HttpUriRequest outboundRequest,
+                                final HttpServletRequest inboundRequest,
+                                final HttpServletResponse outboundResponse,
+                                final DispatchTask task) throws IOException {
+    if (!inboundRequest.isAsyncSupported() || inboundRequest.isAsyncStarted()) {
+      task.execute();
+      return false;
+    }
+
+    final GatewayConfig config = getGatewayConfig(inboundRequest.getServletContext());
+    final ExecutorService dispatchExecutor = getExecutor(config);
+    final Subject subject = Subject.getSubject(AccessController.getContext());
+    final AuditContext auditContext = auditService.getContext();
+    final CorrelationContext correlationContext = correlationService.getContext();
+    final List<ThreadState> threadStates = getThreadStates(inboundRequest);
+
+    final AsyncContext asyncContext = inboundRequest.startAsync(inboundRequest, outboundResponse);
+    asyncContext.setTimeout(config == null ? GatewayConfig.DEFAULT_ASYNC_DISPATCH_TIMEOUT : config.getAsyncDispatchTimeout());
+    // Whoever completes the request first, the dispatch or the timeout, owns the response
+    final AtomicBoolean completed = new AtomicBoolean();
+    asyncContext.addListener(new TimeoutListener(outboundRequest, outboundResponse, completed));
+
+    LOG.dispatchAsync(outboundRequest.getMethod(), outboundRequest.getURI());
+    // From here on the request entity is owned, and released, by the asynchronous dispatch
+    inboundRequest.setAttribute(ASYNC_DISPATCH_ATTRIBUTE, Boolean.TRUE);
+    try {
+      dispatchExecutor.execute(() -> {
+        auditService.attachContext(auditContext);
+        correlationService.attachContext(correlationContext);
+        final List<Runnable> restores = bind(threadStates);
+        try {
+          executeAs(subject, task);
+        } catch (Exception e) {
+          if (!completed.get()) {
+            LOG.failedToExecuteAsyncDispatch(e);
+            inboundRequest.setAttribute(ASYNC_DISPATCH_FAILED_ATTRIBUTE, Boolean.TRUE);
+            sendError(outboundResponse, HttpServletResponse.SC_INTERNAL_SERVER_ERROR);
+          }
+        } finally {
+          restore(restores);
+          releaseRequestEntity(outboundRequest);
+          if (completed.compareAndSet(false, true)) {
+            asyncContext.complete();
+          }
+          correlationService.detachContext();
+          auditService.detachContext();
+        }
+      });
+    } catch (RejectedExecutionException e) {
+      LOG.asyncDispatchRejected(outboundRequest.getURI());
+      releaseRequestEntity(outboundRequest);
+      if (completed.compareAndSet(false, true)) {
+        sendError(outboundResponse, HttpServletResponse.SC_SERVICE_UNAVAILABLE);
+        asyncContext.complete();
+      }
+    }
+    return true;
+  }
+
+  /**
+   * @param inboundRequest the request received by the gateway
+   * @return true if the dispatch of the request was handed off to the dispatch executor, which then
+   *         releases the outbound request entity once the dispatch completes
+   */
+  public static boolean isDispatchedAsync(final HttpServletRequest inboundRequest) {
+    return Boolean.TRUE.equals(inboundRequest.getAttribute(ASYNC_DISPATCH_ATTRIBUTE));
+  }
+
+  /**
+   * @param inboundRequest the request received by the gateway
+   * @return true if the asynchronous dispatch of the request failed, the counterpart of the exception
+   *         a synchronous dispatch throws
+   */
+  public static boolean isFailed(final ServletRequest inboundRequest) {
+    return Boolean.TRUE.equals(inboundRequest.getAttribute(ASYNC_DISPATCH_FAILED_ATTRIBUTE));
+  }
+
+  /**
+   * Stops the dispatch executor; meant to be called on gateway shutdown. Dispatches still
+   * in flight are interrupted.
+   */
+  public static synchronized void shutdown() {
+    if (executor != null) {
+      executor.shutdownNow();
+      executor = null;
+    }
+  }
+
+  @SuppressWarnings("unchecked")
+  private static List<ThreadState> getThreadStates(final ServletRequest request) {
+    List<ThreadState> states = (List<ThreadState>) request.getAttribute(THREAD_STATES_ATTRIBUTE);
+    return states == null ? Collections.emptyList() : new ArrayList<>(states);
+  }
+
+  private static List<Runnable> bind(final List<ThreadState> states) {
+    final List<Runnable> restores = new ArrayList<>(states.size());
+    for (ThreadState state : states) {
+      restores.add(state.bind());
+    }
+    return restores;
+  }
+
+  private static void restore(final List<Runnable> restores) {
+    for (int i = restores.size() - 1; i >= 0; i--) {
+      restores.get(i).run();
+    }
+  }
+
+  private static void releaseRequestEntity(final HttpUriRequest outboundRequest) {
+    if (outboundRequest instanceof HttpEntityEnclosingRequest) {
+      DefaultDispatch.releaseRequestEntity(((HttpEntityEnclosingRequest) outboundRequest).getEntity());
+    }
+  }
+
+  private static void executeAs(Subject subject, DispatchTask task) throws Exception {
+    if (subject == null) {
+      task.execute();
+    } else {
+      try {
+        Subject.doAs(subject, (PrivilegedExceptionAction<Void>) () -> {
+          task.execute();
+          return null;
+        });
+      } catch (PrivilegedActionException e) {
+        throw e.getException();
+      }
+    }
+  }
+
+  private static void sendError(HttpServletResponse response, int status) {
+    if (!response.isCommitted()) {
+      try {
+        response.sendError(status);
+      } catch (IOException e) {
+        LOG.failedToExecuteAsyncDispatch(e);
+      }
+    }
+  }
+
+  private static GatewayConfig getGatewayConfig(ServletContext servletContext) {
+    return servletContext == null ? null
+        : (GatewayConfig) servletContext.getAttribute(GatewayConfig.GATEWAY_CONFIG_ATTRIBUTE);
+  }
+
+  private static ExecutorService getExecutor(GatewayConfig config) {
+    ExecutorService result = executor;
+    if (result == null) {
+      synchronized (AsyncDispatchSupport.class) {
+        result = executor;
+        if (result == null) {
+          int threads = GatewayConfig.DEFAULT_ASYNC_DISPATCH_THREAD_POOL_SIZE;
+          int queueSize = GatewayConfig.DEFAULT_ASYNC_DISPATCH_QUEUE_SIZE;
+          if (config != null) {
+            threads = Math.max(1, config.getAsyncDispatchThreadPoolSize());
+            queueSize = Math.max(1, config.getAsyncDispatchQueueSize());
+          }
+          ThreadPoolExecutor pool = new ThreadPoolExecutor(threads, threads, 60L, TimeUnit.SECONDS,
+              new ArrayBlockingQueue<>(queueSize),
+              new BasicThreadFactory.Builder().namingPattern("AsyncDispatch-%d").daemon(true).build());
+          pool.allowCoreThreadTimeOut(true);
+          LOG.createdAsyncDispatchExecutor(threads, queueSize);
+          executor = pool;
+          result = pool;
+        }
+      }
+    }
+    return result;
+  }
+
+  /**
+   * Aborts a dispatch that did not complete in time and answers the request with a gateway timeout.
+   */
+  private static class TimeoutListener implements AsyncListener {
+    private final HttpUriRequest outboundRequest;
+    private final HttpServletResponse outboundResponse;
+    private final AtomicBoolean completed;
+
+    TimeoutListener(HttpUriRequest outboundRequest, HttpServletResponse outboundResponse, AtomicBoolean completed) {
+      this.outboundRequest = outboundRequest;
+      this.outboundResponse = outboundResponse;
+      this.completed = completed;
+    }
+
+    @Override
+    public void onTimeout(AsyncEvent event) {
+      if (completed.compareAndSet(false, true)) {
+        LOG.asyncDispatchTimedOut(outboundRequest.getURI());
+        // Fails the backend round trip, and any failover attempt, of the dispatch still in flight
+        outboundRequest.abort();
+        sendError(outboundResponse, HttpServletResponse.SC_GATEWAY_TIMEOUT);
+        event.getAsyncContext().complete();
+      }
+    }
+
+    @Override
+    public void onComplete(AsyncEvent event) {
+    }
+
+    @Override
+    public void onError(AsyncEvent event) {
+    }
+
+    @Override
+    public void onStartAsync(AsyncEvent event) {
+    }
+  }
+}
@@ -19,6 +19,7 @@ package org.apache.knox.gateway.dispatch;
 
 import org.apache.http.Header;
 import org.apache.http.HttpEntity;
+import org.apache.http.HttpEntityEnclosingRequest;
 import org.apache.http.HttpResponse;
 import org.apache.http.client.methods.HttpDelete;
 import org.apache.http.client.methods.HttpGet;
@@ -268,6 +269,10 @@ public class DefaultDispatch extends AbstractGatewayDispatch {
       }
       GatewayConfig config =
          (GatewayConfig)request.getServletContext().getAttribute( GatewayConfig.GATEWAY_CONFIG_ATTRIBUTE );
+      if( config != null && config.isDispatchReplayEnabled() && isRequestReplayRequired() ) {
+        // The recorded body also covers the replays needed for SPNEGO authentication.
+        return new ReplayableHttpEntity(entity, ReplayBufferPool.getInstance(config));
+      }
       if( config != null && config.isHadoopKerberosSecured() ) {
         //Check if delegation token is supplied in the request
         boolean delegationTokenPresent = false;
@@ -286,6 +291,34 @@ public class DefaultDispatch extends AbstractGatewayDispatch {
       return entity;
    }
 
+   /**
+    * Whether request bodies have to be recorded so that the request can be sent again,
+    * e.g. to another backend after a failover. Only honored when replay is enabled in the gateway configuration.
+    *
+    * @return true if request bodies should be recorded for replay
+    */
+   protected boolean isRequestReplayRequired() {
+     return false;
+   }
+
+   /**
+    * @param outboundRequest the request that is about to be sent again
+    * @return false if the request body was recorded for replay but exceeded the replay quota
+    */
+   protected boolean isRequestReplayable(HttpUriRequest outboundRequest) {
+     if (outboundRequest instanceof HttpEntityEnclosingRequest) {
+       HttpEntity entity = ((HttpEntityEnclosingRequest) outboundRequest).getEntity();
+       return !(entity instanceof ReplayableHttpEntity) || entity.isRepeatable();
+     }
+     return true;
+   }
+
+   static void releaseRequestEntity(HttpEntity entity) {
+     if (entity instanceof ReplayableHttpEntity) {
+       ((ReplayableHttpEntity) entity).close();
+     }
+   }
+
    @Override
    public void doGet(URI url, HttpServletRequest request, HttpServletResponse response)
          throws IOException {
@@ -312,7 +345,14 @@ public class DefaultDispatch extends AbstractGatewayDispatch {
       HttpEntity entity = createRequestEntity(request);
       method.setEntity(entity);
       copyRequestHeaderFields(method, request);
-     executeRequestWrapper(method, request, response);
+      try {
+        executeRequestWrapper(method, request, response);
+      } finally {
+        // An asynchronous dispatch is still using the entity, and releases it once it completes
+        if (!AsyncDispatchSupport.isDispatchedAsync(request)) {
+          releaseRequestEntity(entity);
+        }
+      }
    }
 
    @Override
@@ -322,7 +362,14 @@ public class DefaultDispatch extends AbstractGatewayDispatch {
       HttpEntity entity = createRequestEntity(request);
       method.setEntity(entity);
       copyRequestHeaderFields(method, request);
-     executeRequestWrapper(method, request, response);
+      try {
+        executeRequestWrapper(method, request, response);
+      } finally {
+        // An asynchronous dispatch is still using the entity, and releases it once it completes
+        if (!AsyncDispatchSupport.isDispatchedAsync(request)) {
+          releaseRequestEntity(entity);
+        }
+      }
    }
 
    @Override
@@ -332,7 +379,14 @@ public class DefaultDispatch extends AbstractGatewayDispatch {
       HttpEntity entity = createRequestEntity(request);
       method.setEntity(entity);
       copyRequestHeaderFields(method, request);
-     executeRequestWrapper(method, request, response);
+      try {
+        executeRequestWrapper(method, request, response);
+      } finally {
+        // An asynchronous dispatch is still using the entity, and releases it once it completes
+        if (!AsyncDispatchSupport.isDispatchedAsync(request)) {
+          releaseRequestEntity(entity);
+        }
+      }
    }
 
    @Override
@@ -36,6 +36,7 @@ import org.apache.knox.gateway.config.GatewayConfig;
 import org.apache.knox.gateway.i18n.messages.MessagesFactory;
 import org.apache.knox.gateway.services.GatewayServices;
 import org.apache.knox.gateway.services.metrics.MetricsService;
+import org.apache.knox.gateway.util.TruststoreSSLContextUtils;
 import org.apache.http.HttpRequest;
 import org.apache.http.HttpResponse;
 import org.apache.http.ProtocolException;
@@ -69,6 +70,7 @@ public class DefaultHttpClientFactory implements HttpClientFactory {
   private static final SpiGatewayMessages LOG = MessagesFactory.get(SpiGatewayMessages.class);
   private static final String PARAMETER_SERVICE_ROLE = "serviceRole";
   static final String PARAMETER_USE_TWO_WAY_SSL = "useTwoWaySsl";
+  private static final String PARAMETER_MAX_CONNECTIONS = "httpclient.maxConnections";
 
   @Override
   public HttpClient createHttpClient(FilterConfig filterConfig) {
@@ -84,10 +86,28 @@ public class DefaultHttpClientFactory implements HttpClientFactory {
       builder = HttpClients.custom();
     }
 
-    // Conditionally set a custom SSLContext
-    SSLContext sslContext = createSSLContext(services, filterConfig, serviceRole);
-    if(sslContext != null) {
-      builder.setSSLSocketFactory(new SSLConnectionSocketFactory(sslContext));
+    if (useSharedConnectionPool(gatewayConfig, filterConfig)) {
+      // The SSLContext is only created once per TLS material, when the shared pool is created or
+      // replaced because the keystores it was created from have changed
+      SharedHttpClientConnectionManager.Lease lease = HttpClientConnectionPoolRegistry.getInstance()
+          .leaseConnectionManager(getTlsKey(filterConfig), getTlsMaterialDigest(services, filterConfig),
+              () -> createSSLContext(services, filterConfig, serviceRole), gatewayConfig);
+      if (gatewayConfig.isMetricsEnabled()) {
+        MetricsService metricsService = services.getService(ServiceType.METRICS_SERVICE);
+        metricsService.getInstrumented(lease.getPool());
+      }
+      // Closing the client shuts down the lease only, which releases the pool once it is replaced
+      builder.setConnectionManager(lease);
+    } else {
+      // Conditionally set a custom SSLContext
+      SSLContext sslContext = createSSLContext(services, filterConfig, serviceRole);
+      if(sslContext != null) {
+        builder.setSSLSocketFactory(new SSLConnectionSocketFactory(sslContext));
+      }
+      int maxConnections = getMaxConnections( filterConfig );
+      builder.setMaxConnTotal( maxConnections );
+      builder.setMaxConnPerRoute( maxConnections );
+      LOG.usingDedicatedConnectionPool(maxConnections, serviceRole == null ? "N/A" : serviceRole);
     }
 
     if (Boolean.parseBoolean(System.getProperty(GatewayConfig.HADOOP_KERBEROS_SECURED))) {
@@ -110,10 +130,6 @@ public class DefaultHttpClientFactory implements HttpClientFactory {
     builder.setRedirectStrategy( new NeverRedirectStrategy() );
     builder.setRetryHandler( new NeverRetryHandler() );
 
-    int maxConnections = getMaxConnections( filterConfig );
-    builder.setMaxConnTotal( maxConnections );
-    builder.setMaxConnPerRoute( maxConnections );
-
     builder.setDefaultRequestConfig(getRequestConfig(filterConfig, serviceRole));
 
     // See KNOX-1530 for details
@@ -122,6 +138,42 @@ public class DefaultHttpClientFactory implements HttpClientFactory {
     return builder.build();
   }
 
+  /**
+   * Connections are leased from a gateway wide pool if shared pools are enabled, unless the
+   * service explicitly sizes its own pool with the <code>httpclient.maxConnections</code> parameter.
+   */
+  private static boolean useSharedConnectionPool(GatewayConfig gatewayConfig, FilterConfig filterConfig) {
+    return gatewayConfig != null
+        && gatewayConfig.isHttpClientConnectionPoolShared()
+        && filterConfig.getInitParameter(PARAMETER_MAX_CONNECTIONS) == null;
+  }
+
+  private static String getTlsKey(FilterConfig filterConfig) {
+    return Boolean.parseBoolean(filterConfig.getInitParameter(PARAMETER_USE_TWO_WAY_SSL)) ? "two-way-ssl" : "one-way-ssl";
+  }
+
+  /**
+   * Computes a digest over the certificates of the keystores {@link #createSSLContext} creates the
+   * {@link SSLContext} from, so that a shared pool is replaced once those keystores change.
+   * <p>
+   * This method is package private to allow access to unit tests
+   *
+   * @param services     the {@link GatewayServices}
+   * @param filterConfig a {@link FilterConfig} used to query for parameters for this operation
+   * @return the hex encoded digest
+   */
+  String getTlsMaterialDigest(GatewayServices services, FilterConfig filterConfig) {
+    KeystoreService ks = services.getService(ServiceType.KEYSTORE_SERVICE);
+    try {
+      if (Boolean.parseBoolean(filterConfig.getInitParameter(PARAMETER_USE_TWO_WAY_SSL))) {
+        return TruststoreSSLContextUtils.getCertificatesDigest(ks.getTruststoreForHttpClient(), ks.getKeystoreForGateway());
+      }
+      return TruststoreSSLContextUtils.getCertificatesDigest(ks.getTruststoreForHttpClient());
+    } catch (Exception e) {
+      throw new IllegalArgumentException("Unable to read the TLS material", e);
+    }
+  }
+
   /**
    * Conditionally creates a custom {@link SSLContext} based on the Gateway's configuration and whether
    * two-way SSL is enabled or not.
@@ -287,7 +339,7 @@ public class DefaultHttpClientFactory implements HttpClientFactory {
     if( config != null ) {
       maxConnections = config.getHttpClientMaxConnections();
     }
-    String str = filterConfig.getInitParameter( "httpclient.maxConnections" );
+    String str = filterConfig.getInitParameter( PARAMETER_MAX_CONNECTIONS );
     if( str != null ) {
       try {
         maxConnections = Integer.parseInt( str );
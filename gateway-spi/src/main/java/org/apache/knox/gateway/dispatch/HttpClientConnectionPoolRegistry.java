@@ -0,0 +1,138 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.knox.gateway.dispatch;
+
+import org.apache.http.config.Registry;
+import org.apache.http.config.RegistryBuilder;
+import org.apache.http.conn.socket.ConnectionSocketFactory;
+import org.apache.http.conn.socket.PlainConnectionSocketFactory;
+import org.apache.http.conn.ssl.SSLConnectionSocketFactory;
+import org.apache.knox.gateway.SpiGatewayMessages;
+import org.apache.knox.gateway.config.GatewayConfig;
+import org.apache.knox.gateway.i18n.messages.MessagesFactory;
+
+import javax.net.ssl.SSLContext;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+/**
+ * Gateway wide registry of {@link SharedHttpClientConnectionManager}s.
+ * <p>
+ * One pool exists per distinct TLS material (e.g. one-way vs. two-way SSL), so
+ * every topology dispatching to the same backend route leases connections from
+ * the same pool and reuses the TLS sessions cached by the shared {@link SSLContext}.
+ * <p>
+ * A pool is replaced once its TLS material changes (e.g. an updated truststore on
+ * redeploy). The replaced pool stops evicting connections in the background, is left
+ * to the HTTP clients still using it and is shut down once the last of them is closed.
+ */
+public final class HttpClientConnectionPoolRegistry {
+  private static final SpiGatewayMessages LOG = MessagesFactory.get(SpiGatewayMessages.class);
+
+  private static final HttpClientConnectionPoolRegistry INSTANCE = new HttpClientConnectionPoolRegistry();
+
+  private final Map<String, SharedHttpClientConnectionManager> pools = new ConcurrentHashMap<>();
+
+  private HttpClientConnectionPoolRegistry() {
+  }
+
+  public static HttpClientConnectionPoolRegistry getInstance() {
+    return INSTANCE;
+  }
+
+  /**
+   * Leases the connection pool for the given TLS material to a new HTTP client, creating the pool
+   * on first use or when the TLS material has changed since the pool was created. The lease is
+   * taken while the pool cannot be replaced, so a replaced pool is never shut down under a new client.
+   *
+   * @param tlsKey a key identifying the TLS material of the pool
+   * @param tlsMaterialDigest a digest of the keystores the {@link SSLContext} is created from
+   * @param sslContextSupplier supplies the {@link SSLContext} of a new pool; it may supply <code>null</code>
+   *                           in which case the default SSL socket factory is used
+   * @param config the gateway configuration holding the pool settings
+   * @return the connection manager the client must be built with; closing the client releases the lease
+   */
+  SharedHttpClientConnectionManager.Lease leaseConnectionManager(String tlsKey,
+                                                                 String tlsMaterialDigest,
+                                                                 Supplier<SSLContext> sslContextSupplier,
+                                                                 GatewayConfig config) {
+    final SharedHttpClientConnectionManager.Lease[] lease = new SharedHttpClientConnectionManager.Lease[1];
+    pools.compute(tlsKey, (key, current) -> {
+      SharedHttpClientConnectionManager manager = current;
+      if (manager == null || !manager.getTlsMaterialDigest().equals(tlsMaterialDigest)) {
+        if (manager != null) {
+          LOG.replacingSharedConnectionPool(key);
+          manager.retire();
+        }
+        manager = createConnectionManager(key, tlsMaterialDigest, sslContextSupplier.get(), config);
+      }
+      lease[0] = manager.lease();
+      return manager;
+    });
+    return lease[0];
+  }
+
+  /**
+   * @param tlsKey a key identifying the TLS material of the pool
+   * @return the current connection pool for the given TLS material or <code>null</code> if there is none
+   */
+  public SharedHttpClientConnectionManager getConnectionManager(String tlsKey) {
+    return pools.get(tlsKey);
+  }
+
+  public Collection<SharedHttpClientConnectionManager> getConnectionManagers() {
+    return Collections.unmodifiableCollection(pools.values());
+  }
+
+  /**
+   * Closes all pooled connections; meant to be called on gateway shutdown.
+   */
+  public void shutdown() {
+    for (SharedHttpClientConnectionManager manager : pools.values()) {
+      manager.shutdown();
+    }
+    pools.clear();
+  }
+
+  private static SharedHttpClientConnectionManager createConnectionManager(String name,
+                                                                           String tlsMaterialDigest,
+                                                                           SSLContext sslContext,
+                                                                           GatewayConfig config) {
+    final SSLConnectionSocketFactory sslSocketFactory = sslContext == null
+        ? SSLConnectionSocketFactory.getSocketFactory()
+        : new SSLConnectionSocketFactory(sslContext);
+    final Registry<ConnectionSocketFactory> socketFactoryRegistry = RegistryBuilder.<ConnectionSocketFactory>create()
+        .register("http", PlainConnectionSocketFactory.getSocketFactory())
+        .register("https", sslSocketFactory)
+        .build();
+
+    final SharedHttpClientConnectionManager manager = new SharedHttpClientConnectionManager(name,
+        tlsMaterialDigest,
+        socketFactoryRegistry,
+        config.getHttpClientConnectionPoolTimeToLive(),
+        config.getHttpClientConnectionPoolIdleTimeout());
+    manager.setMaxTotal(config.getHttpClientConnectionPoolMaxTotal());
+    manager.setDefaultMaxPerRoute(config.getHttpClientMaxConnections());
+    manager.setValidateAfterInactivity(config.getHttpClientConnectionPoolValidateAfterInactivity());
+    LOG.createdSharedConnectionPool(name, manager.getMaxTotal(), manager.getDefaultMaxPerRoute());
+    return manager;
+  }
+}
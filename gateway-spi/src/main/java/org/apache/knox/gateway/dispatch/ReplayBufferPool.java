@@ -0,0 +1,155 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.knox.gateway.dispatch;
+
+import org.apache.knox.gateway.SpiGatewayMessages;
+import org.apache.knox.gateway.config.GatewayConfig;
+import org.apache.knox.gateway.i18n.messages.MessagesFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Gateway wide accounting of the heap chunks and the disk space used by {@link ReplayableHttpEntity}
+ * to record request bodies. Heap chunks are recycled between requests.
+ */
+public class ReplayBufferPool {
+
+  private static final SpiGatewayMessages LOG = MessagesFactory.get(SpiGatewayMessages.class);
+
+  static final int CHUNK_SIZE = 16 * 1024;
+
+  private static final String SPILL_FILE_PREFIX = "replay-";
+
+  private static final String SPILL_FILE_SUFFIX = ".tmp";
+
+  private static ReplayBufferPool instance;
+
+  private final int heapBufferSize;
+  private final int maxChunks;
+  private final long diskQuota;
+  private final Path spillDirectory;
+  private final AtomicInteger chunksInUse = new AtomicInteger();
+  private final AtomicLong diskInUse = new AtomicLong();
+  private final ConcurrentLinkedQueue<byte[]> freeChunks = new ConcurrentLinkedQueue<>();
+
+  /**
+   * @param heapBufferSize number of bytes of each request body that are kept on the heap
+   * @param heapQuota      maximum number of heap bytes in use across all requests
+   * @param diskQuota      maximum number of spilled bytes across all requests
+   * @param spillDirectory directory receiving the spill files
+   */
+  public ReplayBufferPool(int heapBufferSize, long heapQuota, long diskQuota, File spillDirectory) {
+    this.heapBufferSize = Math.max(heapBufferSize, 0);
+    this.maxChunks = (int) Math.min(Math.max(heapQuota, 0) / CHUNK_SIZE, Integer.MAX_VALUE);
+    this.diskQuota = Math.max(diskQuota, 0);
+    this.spillDirectory = spillDirectory.toPath();
+    deleteStaleSpillFiles();
+  }
+
+  /**
+   * @param config the gateway configuration, only used the first time the pool is requested
+   * @return the pool shared by all the dispatches of this gateway
+   */
+  public static synchronized ReplayBufferPool getInstance(GatewayConfig config) {
+    if (instance == null) {
+      instance = new ReplayBufferPool(config.getDispatchReplayHeapBufferSize(),
+          config.getDispatchReplayHeapQuota(),
+          config.getDispatchReplayDiskQuota(),
+          new File(config.getGatewayDataDir(), "replay"));
+      LOG.createdReplayBufferPool(instance.heapBufferSize, (long) instance.maxChunks * CHUNK_SIZE,
+          instance.diskQuota, instance.spillDirectory.toString());
+    }
+    return instance;
+  }
+
+  int getHeapBufferSize() {
+    return heapBufferSize;
+  }
+
+  public long getHeapBytesInUse() {
+    return (long) chunksInUse.get() * CHUNK_SIZE;
+  }
+
+  public long getDiskBytesInUse() {
+    return diskInUse.get();
+  }
+
+  /**
+   * @return a chunk of {@link #CHUNK_SIZE} bytes, or null if the heap quota is exhausted
+   */
+  byte[] acquireChunk() {
+    if (chunksInUse.incrementAndGet() > maxChunks) {
+      chunksInUse.decrementAndGet();
+      return null;
+    }
+    byte[] chunk = freeChunks.poll();
+    return chunk == null ? new byte[CHUNK_SIZE] : chunk;
+  }
+
+  void releaseChunk(byte[] chunk) {
+    freeChunks.offer(chunk);
+    chunksInUse.decrementAndGet();
+  }
+
+  /**
+   * @return true if the bytes fit in the disk quota and were reserved
+   */
+  boolean reserveDisk(long bytes) {
+    long used;
+    do {
+      used = diskInUse.get();
+      if (used + bytes > diskQuota) {
+        return false;
+      }
+    } while (!diskInUse.compareAndSet(used, used + bytes));
+    return true;
+  }
+
+  void releaseDisk(long bytes) {
+    diskInUse.addAndGet(-bytes);
+  }
+
+  Path createSpillFile() throws IOException {
+    Files.createDirectories(spillDirectory);
+    return Files.createTempFile(spillDirectory, SPILL_FILE_PREFIX, SPILL_FILE_SUFFIX);
+  }
+
+  /*
+   * Spill files are only referenced by in-flight requests, anything left over is from a previous run.
+   */
+  private void deleteStaleSpillFiles() {
+    if (!Files.isDirectory(spillDirectory)) {
+      return;
+    }
+    try (DirectoryStream<Path> files = Files.newDirectoryStream(spillDirectory,
+        SPILL_FILE_PREFIX + "*" + SPILL_FILE_SUFFIX)) {
+      for (Path file : files) {
+        Files.deleteIfExists(file);
+      }
+    } catch (IOException e) {
+      LOG.failedToDeleteReplayBuffer(spillDirectory.toString(), e);
+    }
+  }
+}
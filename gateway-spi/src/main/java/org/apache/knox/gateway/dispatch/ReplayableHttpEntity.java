@@ -0,0 +1,284 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.knox.gateway.dispatch;
+
+import org.apache.commons.io.IOUtils;
+import org.apache.http.HttpEntity;
+import org.apache.http.entity.HttpEntityWrapper;
+import org.apache.knox.gateway.SpiGatewayMessages;
+import org.apache.knox.gateway.i18n.messages.MessagesFactory;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * An entity that records the body of a non-repeatable entity while it is being sent so that it can be
+ * sent again, e.g. to another backend after a failover.
+ * <p>
+ * The body is streamed to the backend as it is read, recording does not delay the first attempt. The first
+ * bytes are recorded into heap chunks taken from the {@link ReplayBufferPool}, the remainder is appended to a
+ * spill file that is memory mapped when replayed. When the heap and disk quotas of the pool are exhausted
+ * recording stops and the entity is no longer repeatable once the first consumer has read past the recording.
+ * <p>
+ * The entity must be {@link #close() closed} once the request is done to return the buffers to the pool.
+ */
+public class ReplayableHttpEntity extends HttpEntityWrapper implements Closeable {
+
+  private static final SpiGatewayMessages LOG = MessagesFactory.get(SpiGatewayMessages.class);
+
+  private static final int OUTPUT_BUFFER_SIZE = 16 * 1024;
+
+  private static final int MAP_WINDOW_SIZE = 64 * 1024 * 1024;
+
+  private final ReplayBufferPool pool;
+  private final List<byte[]> chunks = new ArrayList<>();
+  private long heapBytes;
+  private Path spillFile;
+  private FileChannel spillChannel;
+  private long spillBytes;
+  private long spillReserved;
+  private MappedByteBuffer mapped;
+  private long mappedStart;
+  private boolean overflowed;
+  private boolean closed;
+  private InputStream source;
+  private boolean sourceExhausted;
+  private ReplayStream currentStream;
+
+  public ReplayableHttpEntity(final HttpEntity entity, final ReplayBufferPool pool) {
+    super( entity );
+    this.pool = pool;
+  }
+
+  @Override
+  public boolean isRepeatable() {
+    return !overflowed && !closed;
+  }
+
+  @Override
+  public boolean isStreaming() {
+    return wrappedEntity.isStreaming();
+  }
+
+  @Override
+  public boolean isChunked() {
+    return wrappedEntity.isChunked();
+  }
+
+  @Override
+  public long getContentLength() {
+    return wrappedEntity.getContentLength();
+  }
+
+  /**
+   * @return the number of bytes recorded so far
+   */
+  public long getRecordedLength() {
+    return heapBytes + spillBytes;
+  }
+
+  // Every call returns a stream that starts from the beginning of the body and invalidates the
+  // previously returned stream. This will throw an IOException once the recording has overflowed.
+  @Override
+  public InputStream getContent() throws IOException {
+    if( closed ) {
+      throw new IOException( "Replay buffer already released." );
+    }
+    if( overflowed ) {
+      throw new IOException( "Request body exceeded the replay buffer quota." );
+    }
+    currentStream = new ReplayStream();
+    return currentStream;
+  }
+
+  @Override
+  public void writeTo( final OutputStream stream ) throws IOException {
+    IOUtils.copyLarge( getContent(), stream, new byte[ OUTPUT_BUFFER_SIZE ] );
+  }
+
+  @Override
+  @SuppressWarnings( "deprecation" )
+  public void consumeContent() throws IOException {
+    throw new UnsupportedOperationException();
+  }
+
+  /**
+   * Returns the heap chunks to the pool and deletes the spill file.
+   */
+  @Override
+  public void close() {
+    if( closed ) {
+      return;
+    }
+    closed = true;
+    currentStream = null;
+    for( byte[] chunk : chunks ) {
+      pool.releaseChunk( chunk );
+    }
+    chunks.clear();
+    mapped = null;
+    if( spillFile != null ) {
+      try {
+        if( spillChannel != null ) {
+          spillChannel.close();
+        }
+        Files.deleteIfExists( spillFile );
+      } catch( IOException e ) {
+        LOG.failedToDeleteReplayBuffer( spillFile.toString(), e );
+      }
+      spillChannel = null;
+      spillFile = null;
+    }
+    pool.releaseDisk( spillReserved );
+    spillReserved = 0;
+  }
+
+  private InputStream source() throws IOException {
+    if( source == null ) {
+      source = wrappedEntity.getContent();
+    }
+    return source;
+  }
+
+  private void record( byte[] buffer, int offset, int length ) {
+    if( overflowed ) {
+      return;
+    }
+    // Fill the heap chunks first, the spill file only takes over once the heap part is complete.
+    while( length > 0 && spillBytes == 0 && heapBytes < pool.getHeapBufferSize() ) {
+      int chunkOffset = (int)( heapBytes % ReplayBufferPool.CHUNK_SIZE );
+      if( chunkOffset == 0 ) {
+        byte[] chunk = pool.acquireChunk();
+        if( chunk == null ) {
+          break;
+        }
+        chunks.add( chunk );
+      }
+      int count = (int)Math.min( Math.min( length, ReplayBufferPool.CHUNK_SIZE - chunkOffset ),
+          pool.getHeapBufferSize() - heapBytes );
+      System.arraycopy( buffer, offset, chunks.get( chunks.size() - 1 ), chunkOffset, count );
+      heapBytes += count;
+      offset += count;
+      length -= count;
+    }
+    if( length > 0 ) {
+      spill( buffer, offset, length );
+    }
+  }
+
+  private void spill( byte[] buffer, int offset, int length ) {
+    if( !pool.reserveDisk( length ) ) {
+      overflow();
+      return;
+    }
+    spillReserved += length;
+    try {
+      if( spillFile == null ) {
+        spillFile = pool.createSpillFile();
+        spillChannel = FileChannel.open( spillFile, StandardOpenOption.READ, StandardOpenOption.WRITE );
+      }
+      ByteBuffer bytes = ByteBuffer.wrap( buffer, offset, length );
+      long position = spillBytes;
+      while( bytes.hasRemaining() ) {
+        position += spillChannel.write( bytes, position );
+      }
+      spillBytes = position;
+    } catch( IOException e ) {
+      LOG.failedToSpillReplayBuffer( String.valueOf( spillFile ), e );
+      overflow();
+    }
+  }
+
+  private void overflow() {
+    overflowed = true;
+    LOG.replayBufferQuotaExceeded( getRecordedLength() );
+  }
+
+  private int readRecorded( long position, byte[] buffer, int offset, int length ) throws IOException {
+    if( position < heapBytes ) {
+      int chunkOffset = (int)( position % ReplayBufferPool.CHUNK_SIZE );
+      byte[] chunk = chunks.get( (int)( position / ReplayBufferPool.CHUNK_SIZE ) );
+      int count = (int)Math.min( Math.min( length, ReplayBufferPool.CHUNK_SIZE - chunkOffset ), heapBytes - position );
+      System.arraycopy( chunk, chunkOffset, buffer, offset, count );
+      return count;
+    }
+    long filePosition = position - heapBytes;
+    if( mapped == null || filePosition < mappedStart || filePosition >= mappedStart + mapped.capacity() ) {
+      mappedStart = filePosition;
+      mapped = spillChannel.map( FileChannel.MapMode.READ_ONLY, filePosition,
+          Math.min( MAP_WINDOW_SIZE, spillBytes - filePosition ) );
+    }
+    ByteBuffer view = mapped.duplicate();
+    view.position( (int)( filePosition - mappedStart ) );
+    int count = Math.min( length, view.remaining() );
+    view.get( buffer, offset, count );
+    return count;
+  }
+
+  private class ReplayStream extends InputStream {
+
+    private long position;
+
+    @Override
+    public int read() throws IOException {
+      byte[] single = new byte[ 1 ];
+      int count;
+      do {
+        count = read( single, 0, 1 );
+      } while( count == 0 );
+      return count < 0 ? -1 : single[ 0 ] & 0xFF;
+    }
+
+    @Override
+    public int read( byte[] buffer, int offset, int length ) throws IOException {
+      if( currentStream != this ) {
+        throw new IOException( "Replay stream taken over by another consumer." );
+      }
+      if( length == 0 ) {
+        return 0;
+      }
+      // Serve what was recorded by earlier consumers before continuing with the original body.
+      if( position < getRecordedLength() ) {
+        int count = readRecorded( position, buffer, offset, length );
+        position += count;
+        return count;
+      }
+      if( sourceExhausted ) {
+        return -1;
+      }
+      int count = source().read( buffer, offset, length );
+      if( count < 0 ) {
+        sourceExhausted = true;
+        return -1;
+      }
+      record( buffer, offset, count );
+      position += count;
+      return count;
+    }
+  }
+}
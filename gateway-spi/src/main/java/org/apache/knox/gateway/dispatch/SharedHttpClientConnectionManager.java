@@ -0,0 +1,186 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.knox.gateway.dispatch;
+
+import org.apache.http.HttpClientConnection;
+import org.apache.http.config.Registry;
+import org.apache.http.conn.ConnectionRequest;
+import org.apache.http.conn.HttpClientConnectionManager;
+import org.apache.http.conn.routing.HttpRoute;
+import org.apache.http.conn.socket.ConnectionSocketFactory;
+import org.apache.http.impl.client.IdleConnectionEvictor;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
+import org.apache.http.protocol.HttpContext;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * A pooling connection manager that is shared by the HTTP clients of all
+ * dispatches using the same TLS material. Connections are pooled per backend
+ * route; idle and expired connections are evicted in the background.
+ * <p>
+ * HTTP clients are built with a {@link #lease()} of the pool rather than the pool itself,
+ * so that closing a client releases its lease. A replaced pool is shut down as soon as it
+ * has been retired and the last client holding a lease has been closed.
+ */
+public class SharedHttpClientConnectionManager extends PoolingHttpClientConnectionManager {
+  private final String name;
+  private final String tlsMaterialDigest;
+  private final IdleConnectionEvictor evictor;
+  private int leases;
+  private boolean retired;
+
+  SharedHttpClientConnectionManager(String name,
+                                    String tlsMaterialDigest,
+                                    Registry<ConnectionSocketFactory> socketFactoryRegistry,
+                                    long timeToLive,
+                                    long idleTimeout) {
+    super(socketFactoryRegistry, null, null, null, timeToLive, TimeUnit.MILLISECONDS);
+    this.name = name;
+    this.tlsMaterialDigest = tlsMaterialDigest;
+    if (idleTimeout > 0) {
+      evictor = new IdleConnectionEvictor(this, idleTimeout, TimeUnit.MILLISECONDS);
+      evictor.start();
+    } else {
+      evictor = null;
+    }
+  }
+
+  public String getName() {
+    return name;
+  }
+
+  public String getTlsMaterialDigest() {
+    return tlsMaterialDigest;
+  }
+
+  public int getLeased() {
+    return getTotalStats().getLeased();
+  }
+
+  public int getAvailable() {
+    return getTotalStats().getAvailable();
+  }
+
+  public int getPending() {
+    return getTotalStats().getPending();
+  }
+
+  /**
+   * @return a connection manager for one HTTP client, delegating to this pool; shutting it down,
+   * as closing the client does, releases the lease but leaves the pool to its other clients
+   */
+  synchronized Lease lease() {
+    leases++;
+    return new Lease();
+  }
+
+  synchronized int getLeases() {
+    return leases;
+  }
+
+  synchronized boolean isRetired() {
+    return retired;
+  }
+
+  private synchronized void release() {
+    leases--;
+    if (retired && leases == 0) {
+      shutdown();
+    }
+  }
+
+  /**
+   * Called once the pool has been replaced. The background eviction is stopped and idle
+   * connections are closed; the pool itself is shut down once no HTTP client holds a lease anymore.
+   */
+  synchronized void retire() {
+    retired = true;
+    stopEvictor();
+    if (leases == 0) {
+      shutdown();
+    } else {
+      closeIdleConnections(0, TimeUnit.MILLISECONDS);
+    }
+  }
+
+  @Override
+  public void shutdown() {
+    stopEvictor();
+    super.shutdown();
+  }
+
+  private void stopEvictor() {
+    if (evictor != null) {
+      evictor.shutdown();
+    }
+  }
+
+  final class Lease implements HttpClientConnectionManager {
+    private final AtomicBoolean released = new AtomicBoolean();
+
+    SharedHttpClientConnectionManager getPool() {
+      return SharedHttpClientConnectionManager.this;
+    }
+
+    @Override
+    public ConnectionRequest requestConnection(HttpRoute route, Object state) {
+      return SharedHttpClientConnectionManager.this.requestConnection(route, state);
+    }
+
+    @Override
+    public void releaseConnection(HttpClientConnection conn, Object newState, long validDuration, TimeUnit timeUnit) {
+      SharedHttpClientConnectionManager.this.releaseConnection(conn, newState, validDuration, timeUnit);
+    }
+
+    @Override
+    public void connect(HttpClientConnection conn, HttpRoute route, int connectTimeout, HttpContext context)
+        throws IOException {
+      SharedHttpClientConnectionManager.this.connect(conn, route, connectTimeout, context);
+    }
+
+    @Override
+    public void upgrade(HttpClientConnection conn, HttpRoute route, HttpContext context) throws IOException {
+      SharedHttpClientConnectionManager.this.upgrade(conn, route, context);
+    }
+
+    @Override
+    public void routeComplete(HttpClientConnection conn, HttpRoute route, HttpContext context) throws IOException {
+      SharedHttpClientConnectionManager.this.routeComplete(conn, route, context);
+    }
+
+    @Override
+    public void closeIdleConnections(long idletime, TimeUnit timeUnit) {
+      SharedHttpClientConnectionManager.this.closeIdleConnections(idletime, timeUnit);
+    }
+
+    @Override
+    public void closeExpiredConnections() {
+      SharedHttpClientConnectionManager.this.closeExpiredConnections();
+    }
+
+    @Override
+    public void shutdown() {
+      if (released.compareAndSet(false, true)) {
+        release();
+      }
+    }
+  }
+}
@@ -17,7 +17,10 @@
  */
 package org.apache.knox.gateway.services.security.impl;
 
+import java.nio.ByteBuffer;
 import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.InvalidKeyException;
 import java.security.NoSuchAlgorithmException;
 import java.security.SecureRandom;
 import java.security.spec.InvalidKeySpecException;
@@ -35,11 +38,18 @@ import org.apache.knox.gateway.i18n.GatewaySpiMessages;
 import org.apache.knox.gateway.i18n.messages.MessagesFactory;
 import org.apache.knox.gateway.services.security.EncryptionResult;
 
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+
 public class ConfigurableEncryptor {
   private static final GatewaySpiMessages LOG = MessagesFactory.get( GatewaySpiMessages.class );
 
   private static final int ITERATION_COUNT = 65536;
   private static final int KEY_LENGTH = 128;
+  private static final int DERIVED_KEY_CACHE_SIZE = 1024;
+
+  // SecureRandom is thread safe and expensive to seed, so a single instance is shared
+  private static final SecureRandom RANDOM = new SecureRandom();
 
   private char[] passPhrase;
   private String alg = "AES";
@@ -48,6 +58,17 @@ public class ConfigurableEncryptor {
   private int saltSize = 8;
   private int iterationCount = ITERATION_COUNT;
   private int keyLength = KEY_LENGTH;
+  private boolean reuseSalt;
+
+  // Deriving a key from the passphrase is deliberately slow, so keys are kept per salt
+  private final Cache<ByteBuffer, SecretKey> derivedKeys =
+      Caffeine.newBuilder().maximumSize(DERIVED_KEY_CACHE_SIZE).build();
+
+  // Ciphers are not thread safe but can be re-initialized for every use
+  private final ThreadLocal<Cipher> ciphers = new ThreadLocal<>();
+
+  // The salt used for all new values when the salt is reused
+  private volatile byte[] encryptionSalt;
 
   public ConfigurableEncryptor(String passPhrase) {
     this.passPhrase = passPhrase.toCharArray();
@@ -79,7 +100,12 @@ public class ConfigurableEncryptor {
       if (keyLength != null) {
       this.keyLength = Integer.parseInt(keyLength);
       }
+      this.reuseSalt = config.isCryptoSaltReuseEnabled();
     }
+    // Anything derived from the previous settings is no longer valid
+    derivedKeys.invalidateAll();
+    ciphers.remove();
+    encryptionSalt = null;
   }
 
   public SecretKey getKeyFromPassword(String passPhrase, byte[] salt) {
@@ -102,25 +128,60 @@ public class ConfigurableEncryptor {
   }
 
   public EncryptionResult encrypt(byte[] plain) throws Exception {
-    byte[] salt = new byte[saltSize];
-    SecureRandom rnd = new SecureRandom();
-    rnd.nextBytes(salt);
+    byte[] salt = getEncryptionSalt();
 
-    SecretKey tmp = getKeyFromPassword(new String(passPhrase), salt);
-    SecretKey secret = new SecretKeySpec(tmp.getEncoded(), alg);
-    Cipher ecipher = Cipher.getInstance(transformation);
-    ecipher.init(Cipher.ENCRYPT_MODE, secret);
+    SecretKey secret = getSecretKey(salt);
+    Cipher ecipher = getCipher();
+    ecipher.init(Cipher.ENCRYPT_MODE, secret, RANDOM);
     return new EncryptionResult(salt,
         ecipher.getParameters().getParameterSpec(IvParameterSpec.class).getIV(),
         ecipher.doFinal(plain));
   }
 
   public byte[] decrypt(byte[] salt, byte[] iv, byte[] encrypt) throws Exception {
-    SecretKey tmp = getKeyFromPassword(new String(passPhrase), salt);
-    SecretKey secret = new SecretKeySpec(tmp.getEncoded(), alg);
+    SecretKey secret = getSecretKey(salt);
 
-    Cipher dcipher = Cipher.getInstance(transformation);
+    Cipher dcipher = getCipher();
     dcipher.init(Cipher.DECRYPT_MODE, secret, new IvParameterSpec(iv));
     return dcipher.doFinal(encrypt);
   }
+
+  private byte[] getEncryptionSalt() {
+    if (reuseSalt) {
+      byte[] salt = encryptionSalt;
+      if (salt == null) {
+        // Racing threads may each create a salt; whichever is stored last is used from then on
+        salt = newSalt();
+        encryptionSalt = salt;
+      }
+      return salt.clone();
+    }
+    return newSalt();
+  }
+
+  private byte[] newSalt() {
+    byte[] salt = new byte[saltSize];
+    RANDOM.nextBytes(salt);
+    return salt;
+  }
+
+  private SecretKey getSecretKey(byte[] salt) throws InvalidKeyException {
+    SecretKey secret = derivedKeys.get(ByteBuffer.wrap(salt.clone()), key -> {
+      SecretKey tmp = getKeyFromPassword(new String(passPhrase), salt);
+      return tmp == null ? null : new SecretKeySpec(tmp.getEncoded(), alg);
+    });
+    if (secret == null) {
+      throw new InvalidKeyException("Unable to derive a key from the passphrase");
+    }
+    return secret;
+  }
+
+  private Cipher getCipher() throws GeneralSecurityException {
+    Cipher cipher = ciphers.get();
+    if (cipher == null || !transformation.equals(cipher.getAlgorithm())) {
+      cipher = Cipher.getInstance(transformation);
+      ciphers.set(cipher);
+    }
+    return cipher;
+  }
 }
@@ -0,0 +1,131 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.knox.gateway.services.security.token;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import org.apache.commons.codec.digest.DigestUtils;
+import org.apache.knox.gateway.services.security.token.impl.JWT;
+
+import java.util.Date;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A bounded cache of tokens whose signature has already been verified.
+ * <p>
+ * Entries are keyed by the SHA-256 hash of the serialized token, so the cache never holds
+ * the tokens themselves. An entry lives for the configured time-to-live, but never beyond the
+ * expiration time of the token it represents. Only the signature check is cached; callers are
+ * still responsible for the expiration, revocation, audience and other claim checks.
+ */
+public class VerifiedTokenCache {
+
+  private final String name;
+  private final long timeToLive;
+  private final Cache<String, Long> cache;
+  private final LongAdder hits = new LongAdder();
+  private final LongAdder misses = new LongAdder();
+
+  /**
+   * @param name       a name identifying the cache in metrics
+   * @param maxSize    the maximum number of verified tokens to remember
+   * @param timeToLive the maximum time, in milliseconds, a verification result is trusted
+   */
+  public VerifiedTokenCache(String name, long maxSize, long timeToLive) {
+    this.name = name;
+    this.timeToLive = timeToLive;
+    this.cache = Caffeine.newBuilder()
+                         .maximumSize(maxSize)
+                         .expireAfter(new TokenExpiry())
+                         .build();
+  }
+
+  public String getName() {
+    return name;
+  }
+
+  /**
+   * @param token the token to look up
+   * @return true if the signature of the token has been verified and the result has not expired yet
+   */
+  public boolean isVerified(JWT token) {
+    Long expires = cache.getIfPresent(getKey(token));
+    if (expires != null && expires > System.currentTimeMillis()) {
+      hits.increment();
+      return true;
+    }
+    misses.increment();
+    return false;
+  }
+
+  /**
+   * Records that the signature of the token has been successfully verified.
+   *
+   * @param token the verified token
+   */
+  public void markVerified(JWT token) {
+    long now = System.currentTimeMillis();
+    long expires = now + timeToLive;
+    Date tokenExpiration = token.getExpiresDate();
+    if (tokenExpiration != null) {
+      expires = Math.min(expires, tokenExpiration.getTime());
+    }
+    if (expires > now) {
+      cache.put(getKey(token), expires);
+    }
+  }
+
+  public void invalidate(JWT token) {
+    cache.invalidate(getKey(token));
+  }
+
+  public long getHits() {
+    return hits.sum();
+  }
+
+  public long getMisses() {
+    return misses.sum();
+  }
+
+  public long getSize() {
+    return cache.estimatedSize();
+  }
+
+  private static String getKey(JWT token) {
+    return DigestUtils.sha256Hex(token.toString());
+  }
+
+  private static class TokenExpiry implements Expiry<String, Long> {
+    @Override
+    public long expireAfterCreate(String key, Long expires, long currentTime) {
+      return TimeUnit.MILLISECONDS.toNanos(Math.max(0L, expires - System.currentTimeMillis()));
+    }
+
+    @Override
+    public long expireAfterUpdate(String key, Long expires, long currentTime, long currentDuration) {
+      return expireAfterCreate(key, expires, currentTime);
+    }
+
+    @Override
+    public long expireAfterRead(String key, Long expires, long currentTime, long currentDuration) {
+      return currentDuration;
+    }
+  }
+}
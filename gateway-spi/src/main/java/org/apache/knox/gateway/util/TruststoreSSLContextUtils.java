@@ -23,11 +23,19 @@ import org.apache.knox.gateway.i18n.messages.MessagesFactory;
 import org.apache.knox.gateway.services.security.KeystoreService;
 import org.apache.knox.gateway.services.security.KeystoreServiceException;
 
+import org.apache.commons.codec.binary.Hex;
+
 import javax.net.ssl.SSLContext;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
 import java.security.KeyManagementException;
 import java.security.KeyStore;
 import java.security.KeyStoreException;
+import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
+import java.security.cert.Certificate;
+import java.util.Collections;
+import java.util.List;
 
 public class TruststoreSSLContextUtils {
   private static final GatewaySpiMessages LOGGER = MessagesFactory.get(GatewaySpiMessages.class);
@@ -52,4 +60,33 @@ public class TruststoreSSLContextUtils {
     }
     return sslContext;
   }
+
+  /**
+   * Computes a digest over the aliases and certificates of the given keystores, so that clients
+   * built from them can tell when the trust material changed.
+   *
+   * @param keyStores the keystores, any of them may be null
+   * @return the hex encoded SHA-256 digest
+   * @throws GeneralSecurityException if a keystore cannot be read
+   */
+  public static String getCertificatesDigest(KeyStore... keyStores) throws GeneralSecurityException {
+    MessageDigest digest = MessageDigest.getInstance("SHA-256");
+    for (KeyStore keyStore : keyStores) {
+      // A missing keystore is digested differently from an empty one
+      digest.update((byte) (keyStore == null ? 0 : 1));
+      if (keyStore == null) {
+        continue;
+      }
+      List<String> aliases = Collections.list(keyStore.aliases());
+      Collections.sort(aliases);
+      for (String alias : aliases) {
+        digest.update(alias.getBytes(StandardCharsets.UTF_8));
+        Certificate certificate = keyStore.getCertificate(alias);
+        if (certificate != null) {
+          digest.update(certificate.getEncoded());
+        }
+      }
+    }
+    return Hex.encodeHexString(digest.digest());
+  }
 }
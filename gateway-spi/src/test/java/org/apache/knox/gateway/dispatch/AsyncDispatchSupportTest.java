@@ -0,0 +1,223 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.knox.gateway.dispatch;
+
+import org.apache.http.client.methods.HttpGet;
+import org.apache.knox.gateway.config.GatewayConfig;
+import org.apache.knox.test.category.FastTests;
+import org.apache.knox.test.category.UnitTests;
+import org.easymock.Capture;
+import org.easymock.EasyMock;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+
+import javax.servlet.AsyncContext;
+import javax.servlet.AsyncEvent;
+import javax.servlet.AsyncListener;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+
+@Category( { UnitTests.class, FastTests.class } )
+public class AsyncDispatchSupportTest {
+
+  @Test
+  public void testSynchronousWhenAsyncNotSupported() throws Exception {
+    HttpServletRequest inboundRequest = EasyMock.createNiceMock(HttpServletRequest.class);
+    EasyMock.expect(inboundRequest.isAsyncSupported()).andReturn(false).anyTimes();
+    HttpServletResponse outboundResponse = EasyMock.createNiceMock(HttpServletResponse.class);
+    EasyMock.replay(inboundRequest, outboundResponse);
+
+    AtomicReference<Thread> executedOn = new AtomicReference<>();
+    boolean async = AsyncDispatchSupport.execute(new HttpGet("http://localhost:1234/"), inboundRequest, outboundResponse,
+        () -> executedOn.set(Thread.currentThread()));
+
+    assertFalse(async);
+    assertEquals(Thread.currentThread(), executedOn.get());
+  }
+
+  @Test
+  public void testAsynchronousDispatchCompletesContext() throws Exception {
+    final CountDownLatch completed = new CountDownLatch(1);
+    AsyncContext asyncContext = EasyMock.createNiceMock(AsyncContext.class);
+    asyncContext.complete();
+    EasyMock.expectLastCall().andAnswer(() -> {
+      completed.countDown();
+      return null;
+    });
+
+    HttpServletResponse outboundResponse = EasyMock.createNiceMock(HttpServletResponse.class);
+    HttpServletRequest inboundRequest = EasyMock.createNiceMock(HttpServletRequest.class);
+    EasyMock.expect(inboundRequest.isAsyncSupported()).andReturn(true).anyTimes();
+    EasyMock.expect(inboundRequest.isAsyncStarted()).andReturn(false).anyTimes();
+    EasyMock.expect(inboundRequest.startAsync(inboundRequest, outboundResponse)).andReturn(asyncContext).once();
+    EasyMock.replay(inboundRequest, outboundResponse, asyncContext);
+
+    AtomicReference<Thread> executedOn = new AtomicReference<>();
+    boolean async = AsyncDispatchSupport.execute(new HttpGet("http://localhost:1234/"), inboundRequest, outboundResponse,
+        () -> executedOn.set(Thread.currentThread()));
+
+    assertTrue(async);
+    assertTrue(completed.await(10, TimeUnit.SECONDS));
+    assertNotEquals(Thread.currentThread(), executedOn.get());
+    EasyMock.verify(inboundRequest);
+  }
+
+  @Test
+  public void testFailedAsynchronousDispatchSendsError() throws Exception {
+    final CountDownLatch completed = new CountDownLatch(1);
+    AsyncContext asyncContext = EasyMock.createNiceMock(AsyncContext.class);
+    asyncContext.complete();
+    EasyMock.expectLastCall().andAnswer(() -> {
+      completed.countDown();
+      return null;
+    });
+
+    HttpServletResponse outboundResponse = EasyMock.createNiceMock(HttpServletResponse.class);
+    EasyMock.expect(outboundResponse.isCommitted()).andReturn(false).anyTimes();
+    outboundResponse.sendError(HttpServletResponse.SC_INTERNAL_SERVER_ERROR);
+    EasyMock.expectLastCall().once();
+    HttpServletRequest inboundRequest = EasyMock.createNiceMock(HttpServletRequest.class);
+    EasyMock.expect(inboundRequest.isAsyncSupported()).andReturn(true).anyTimes();
+    EasyMock.expect(inboundRequest.startAsync(inboundRequest, outboundResponse)).andReturn(asyncContext).once();
+    EasyMock.replay(inboundRequest, outboundResponse, asyncContext);
+
+    AsyncDispatchSupport.execute(new HttpGet("http://localhost:1234/"), inboundRequest, outboundResponse,
+        () -> {
+          throw new IOException("backend unavailable");
+        });
+
+    assertTrue(completed.await(10, TimeUnit.SECONDS));
+    EasyMock.verify(outboundResponse);
+  }
+
+  @Test
+  public void testTimedOutDispatchIsAbortedWithGatewayTimeout() throws Exception {
+    final AtomicInteger completions = new AtomicInteger();
+    final Capture<AsyncListener> listener = EasyMock.newCapture();
+    AsyncContext asyncContext = EasyMock.createNiceMock(AsyncContext.class);
+    asyncContext.setTimeout(GatewayConfig.DEFAULT_ASYNC_DISPATCH_TIMEOUT);
+    EasyMock.expectLastCall().once();
+    asyncContext.addListener(EasyMock.capture(listener));
+    EasyMock.expectLastCall().once();
+    asyncContext.complete();
+    EasyMock.expectLastCall().andAnswer(() -> {
+      completions.incrementAndGet();
+      return null;
+    }).anyTimes();
+
+    HttpServletResponse outboundResponse = EasyMock.createNiceMock(HttpServletResponse.class);
+    EasyMock.expect(outboundResponse.isCommitted()).andReturn(false).anyTimes();
+    outboundResponse.sendError(HttpServletResponse.SC_GATEWAY_TIMEOUT);
+    EasyMock.expectLastCall().once();
+    HttpServletRequest inboundRequest = createAsyncRequest(outboundResponse, asyncContext);
+    EasyMock.replay(outboundResponse, asyncContext);
+
+    final HttpGet outboundRequest = new HttpGet("http://localhost:1234/");
+    final CountDownLatch started = new CountDownLatch(1);
+    final CountDownLatch release = new CountDownLatch(1);
+    final CountDownLatch restored = new CountDownLatch(1);
+    AsyncDispatchSupport.addThreadState(inboundRequest, () -> restored::countDown);
+    AsyncDispatchSupport.execute(outboundRequest, inboundRequest, outboundResponse, () -> {
+      started.countDown();
+      try {
+        release.await(10, TimeUnit.SECONDS);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+    });
+    assertTrue(started.await(10, TimeUnit.SECONDS));
+
+    listener.getValue().onTimeout(new AsyncEvent(asyncContext));
+    assertTrue(outboundRequest.isAborted());
+    assertEquals(1, completions.get());
+
+    // The dispatch finishing late must neither complete the request again nor touch the response
+    release.countDown();
+    assertTrue(restored.await(10, TimeUnit.SECONDS));
+    Thread.sleep(100);
+    assertEquals(1, completions.get());
+    EasyMock.verify(outboundResponse, asyncContext);
+  }
+
+  @Test
+  public void testThreadStateIsBoundToTheDispatchThread() throws Exception {
+    final ThreadLocal<String> state = new ThreadLocal<>();
+    final CountDownLatch completed = new CountDownLatch(1);
+    AsyncContext asyncContext = EasyMock.createNiceMock(AsyncContext.class);
+    asyncContext.complete();
+    EasyMock.expectLastCall().andAnswer(() -> {
+      completed.countDown();
+      return null;
+    });
+
+    HttpServletResponse outboundResponse = EasyMock.createNiceMock(HttpServletResponse.class);
+    HttpServletRequest inboundRequest = createAsyncRequest(outboundResponse, asyncContext);
+    EasyMock.replay(outboundResponse, asyncContext);
+
+    final AtomicReference<String> boundDuringRestore = new AtomicReference<>();
+    AsyncDispatchSupport.addThreadState(inboundRequest, () -> {
+      final String previous = state.get();
+      state.set("request-state");
+      return () -> {
+        boundDuringRestore.set(state.get());
+        state.set(previous);
+      };
+    });
+
+    final AtomicReference<String> seen = new AtomicReference<>();
+    final AtomicReference<Thread> executedOn = new AtomicReference<>();
+    AsyncDispatchSupport.execute(new HttpGet("http://localhost:1234/"), inboundRequest, outboundResponse, () -> {
+      executedOn.set(Thread.currentThread());
+      seen.set(state.get());
+    });
+
+    assertTrue(completed.await(10, TimeUnit.SECONDS));
+    assertNotEquals(Thread.currentThread(), executedOn.get());
+    assertEquals("request-state", seen.get());
+    assertEquals("request-state", boundDuringRestore.get());
+  }
+
+  private static HttpServletRequest createAsyncRequest(HttpServletResponse outboundResponse, AsyncContext asyncContext) {
+    final Map<Object, Object> attributes = new HashMap<>();
+    HttpServletRequest inboundRequest = EasyMock.createNiceMock(HttpServletRequest.class);
+    EasyMock.expect(inboundRequest.isAsyncSupported()).andReturn(true).anyTimes();
+    EasyMock.expect(inboundRequest.isAsyncStarted()).andReturn(false).anyTimes();
+    EasyMock.expect(inboundRequest.startAsync(inboundRequest, outboundResponse)).andReturn(asyncContext).once();
+    EasyMock.expect(inboundRequest.getAttribute(EasyMock.anyString()))
+        .andAnswer(() -> attributes.get(EasyMock.getCurrentArguments()[0])).anyTimes();
+    inboundRequest.setAttribute(EasyMock.anyString(), EasyMock.anyObject());
+    EasyMock.expectLastCall().andAnswer(() -> {
+      attributes.put(EasyMock.getCurrentArguments()[0], EasyMock.getCurrentArguments()[1]);
+      return null;
+    }).anyTimes();
+    EasyMock.replay(inboundRequest);
+    return inboundRequest;
+  }
+}
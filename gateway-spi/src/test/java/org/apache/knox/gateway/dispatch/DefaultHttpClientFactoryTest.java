@@ -21,15 +21,22 @@ package org.apache.knox.gateway.dispatch;
 import static org.apache.knox.gateway.dispatch.DefaultHttpClientFactory.PARAMETER_USE_TWO_WAY_SSL;
 
 import static org.easymock.EasyMock.createMock;
+import static org.easymock.EasyMock.createNiceMock;
 import static org.easymock.EasyMock.expect;
 import static org.easymock.EasyMock.replay;
 import static org.easymock.EasyMock.verify;
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNotSame;
 import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
 
+import org.apache.http.HttpHost;
 import org.apache.http.client.HttpClient;
 import org.apache.http.client.config.RequestConfig;
+import org.apache.http.conn.routing.HttpRoute;
+import org.apache.http.impl.client.CloseableHttpClient;
 import org.apache.knox.gateway.config.GatewayConfig;
 import org.apache.knox.gateway.services.GatewayServices;
 import org.apache.knox.gateway.services.ServiceType;
@@ -58,6 +65,7 @@ public class DefaultHttpClientFactoryTest {
 
     GatewayConfig gatewayConfig = createMock(GatewayConfig.class);
     expect(gatewayConfig.isMetricsEnabled()).andReturn(false).once();
+    expect(gatewayConfig.isHttpClientConnectionPoolShared()).andReturn(false).once();
     expect(gatewayConfig.getHttpClientMaxConnections()).andReturn(32).once();
     expect(gatewayConfig.getHttpClientConnectionTimeout()).andReturn(20000).once();
     expect(gatewayConfig.getHttpClientSocketTimeout()).andReturn(20000).once();
@@ -86,6 +94,126 @@ public class DefaultHttpClientFactoryTest {
     verify(keystoreService, gatewayConfig, gatewayServices, servletContext, filterConfig);
   }
 
+  @Test
+  public void testCreateHttpClientSharesConnectionPool() throws Exception {
+    KeystoreService keystoreService = createMock(KeystoreService.class);
+    // Read for the TLS material digest of each client and once more to create the SSLContext
+    expect(keystoreService.getTruststoreForHttpClient()).andReturn(null).times(3);
+
+    GatewayConfig gatewayConfig = createNiceMock(GatewayConfig.class);
+    expect(gatewayConfig.isMetricsEnabled()).andReturn(false).anyTimes();
+    expect(gatewayConfig.isHttpClientConnectionPoolShared()).andReturn(true).anyTimes();
+    expect(gatewayConfig.getHttpClientMaxConnections()).andReturn(32).anyTimes();
+    expect(gatewayConfig.getHttpClientConnectionPoolMaxTotal()).andReturn(64).anyTimes();
+    expect(gatewayConfig.getHttpClientConnectionPoolTimeToLive()).andReturn(-1L).anyTimes();
+    expect(gatewayConfig.getHttpClientConnectionPoolIdleTimeout()).andReturn(0L).anyTimes();
+    expect(gatewayConfig.getHttpClientConnectionTimeout()).andReturn(20000).anyTimes();
+    expect(gatewayConfig.getHttpClientSocketTimeout()).andReturn(20000).anyTimes();
+
+    GatewayServices gatewayServices = createMock(GatewayServices.class);
+    expect(gatewayServices.getService(ServiceType.KEYSTORE_SERVICE)).andReturn(keystoreService).times(3);
+
+    ServletContext servletContext = createNiceMock(ServletContext.class);
+    expect(servletContext.getAttribute(GatewayConfig.GATEWAY_CONFIG_ATTRIBUTE)).andReturn(gatewayConfig).anyTimes();
+    expect(servletContext.getAttribute(GatewayServices.GATEWAY_SERVICES_ATTRIBUTE)).andReturn(gatewayServices).anyTimes();
+
+    FilterConfig filterConfig = createNiceMock(FilterConfig.class);
+    expect(filterConfig.getServletContext()).andReturn(servletContext).anyTimes();
+    expect(filterConfig.getInitParameter("useTwoWaySsl")).andReturn("false").anyTimes();
+
+    replay(keystoreService, gatewayConfig, gatewayServices, servletContext, filterConfig);
+
+    HttpClientConnectionPoolRegistry registry = HttpClientConnectionPoolRegistry.getInstance();
+    registry.shutdown();
+    try {
+      DefaultHttpClientFactory factory = new DefaultHttpClientFactory();
+      HttpClient client1 = factory.createHttpClient(filterConfig);
+      HttpClient client2 = factory.createHttpClient(filterConfig);
+
+      // Both clients lease from one pool and the SSLContext was only created once
+      assertEquals(1, registry.getConnectionManagers().size());
+      SharedHttpClientConnectionManager connectionManager = registry.getConnectionManagers().iterator().next();
+      assertEquals(64, connectionManager.getMaxTotal());
+      assertEquals(32, connectionManager.getDefaultMaxPerRoute());
+      assertEquals(0, connectionManager.getLeased());
+      assertEquals(2, connectionManager.getLeases());
+
+      // Closing a client releases its lease only, the pool stays with the other client
+      ((CloseableHttpClient) client1).close();
+      ((CloseableHttpClient) client1).close();
+      assertEquals(1, connectionManager.getLeases());
+      assertNotNull(connectionManager.requestConnection(new HttpRoute(new HttpHost("localhost")), null));
+      ((CloseableHttpClient) client2).close();
+      verify(keystoreService, gatewayServices);
+    } finally {
+      registry.shutdown();
+    }
+  }
+
+  @Test
+  public void testSharedConnectionPoolIsReplacedWhenTheTruststoreChanges() throws Exception {
+    KeyStore truststore = KeyStore.getInstance(KeyStore.getDefaultType());
+    truststore.load(null, null);
+
+    KeystoreService keystoreService = createMock(KeystoreService.class);
+    expect(keystoreService.getTruststoreForHttpClient()).andReturn(null).times(2);
+    expect(keystoreService.getTruststoreForHttpClient()).andReturn(truststore).times(2);
+
+    GatewayConfig gatewayConfig = createNiceMock(GatewayConfig.class);
+    expect(gatewayConfig.isMetricsEnabled()).andReturn(false).anyTimes();
+    expect(gatewayConfig.isHttpClientConnectionPoolShared()).andReturn(true).anyTimes();
+    expect(gatewayConfig.getHttpClientMaxConnections()).andReturn(32).anyTimes();
+    expect(gatewayConfig.getHttpClientConnectionPoolMaxTotal()).andReturn(64).anyTimes();
+    expect(gatewayConfig.getHttpClientConnectionPoolTimeToLive()).andReturn(-1L).anyTimes();
+    expect(gatewayConfig.getHttpClientConnectionPoolIdleTimeout()).andReturn(0L).anyTimes();
+
+    GatewayServices gatewayServices = createMock(GatewayServices.class);
+    expect(gatewayServices.getService(ServiceType.KEYSTORE_SERVICE)).andReturn(keystoreService).times(4);
+
+    ServletContext servletContext = createNiceMock(ServletContext.class);
+    expect(servletContext.getAttribute(GatewayConfig.GATEWAY_CONFIG_ATTRIBUTE)).andReturn(gatewayConfig).anyTimes();
+    expect(servletContext.getAttribute(GatewayServices.GATEWAY_SERVICES_ATTRIBUTE)).andReturn(gatewayServices).anyTimes();
+
+    FilterConfig filterConfig = createNiceMock(FilterConfig.class);
+    expect(filterConfig.getServletContext()).andReturn(servletContext).anyTimes();
+    expect(filterConfig.getInitParameter("useTwoWaySsl")).andReturn("false").anyTimes();
+
+    replay(keystoreService, gatewayConfig, gatewayServices, servletContext, filterConfig);
+
+    HttpClientConnectionPoolRegistry registry = HttpClientConnectionPoolRegistry.getInstance();
+    registry.shutdown();
+    try {
+      DefaultHttpClientFactory factory = new DefaultHttpClientFactory();
+      HttpClient originalClient = factory.createHttpClient(filterConfig);
+      SharedHttpClientConnectionManager original = registry.getConnectionManager("one-way-ssl");
+
+      // A truststore configured on redeploy results in a new pool with a new SSLContext
+      assertNotNull(factory.createHttpClient(filterConfig));
+      SharedHttpClientConnectionManager replacement = registry.getConnectionManager("one-way-ssl");
+      assertNotNull(original);
+      assertNotSame(original, replacement);
+      assertEquals(1, registry.getConnectionManagers().size());
+
+      // The replaced pool stays usable until the last client leasing it is closed, then it is shut down
+      HttpRoute route = new HttpRoute(new HttpHost("localhost"));
+      assertTrue(original.isRetired());
+      assertEquals(1, original.getLeases());
+      assertNotNull(original.requestConnection(route, null));
+      ((CloseableHttpClient) originalClient).close();
+      assertEquals(0, original.getLeases());
+      try {
+        original.requestConnection(route, null);
+        fail("Expected the replaced pool to be shut down");
+      } catch (IllegalStateException e) {
+        // expected
+      }
+      assertNotNull(replacement.requestConnection(route, null));
+      verify(keystoreService, gatewayServices);
+    } finally {
+      registry.shutdown();
+    }
+  }
+
   @Test
   public void testCreateSSLContextDefaults() throws Exception {
     KeystoreService keystoreService = createMock(KeystoreService.class);
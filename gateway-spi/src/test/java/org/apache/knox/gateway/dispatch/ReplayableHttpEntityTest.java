@@ -0,0 +1,166 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.knox.gateway.dispatch;
+
+import org.apache.http.entity.BasicHttpEntity;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.core.Is.is;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.fail;
+
+public class ReplayableHttpEntityTest {
+
+  @Rule
+  public TemporaryFolder folder = new TemporaryFolder();
+
+  @Test
+  public void testReplayFromHeap() throws IOException {
+    byte[] data = randomBytes( 1000 );
+    ReplayBufferPool pool = new ReplayBufferPool( 4096, 1024 * 1024, 0, folder.getRoot() );
+    ReplayableHttpEntity replay = new ReplayableHttpEntity( entity( data ), pool );
+
+    assertArrayEquals( data, write( replay ) );
+    assertThat( replay.isRepeatable(), is( true ) );
+    assertArrayEquals( data, write( replay ) );
+    assertThat( pool.getHeapBytesInUse(), is( (long) ReplayBufferPool.CHUNK_SIZE ) );
+
+    replay.close();
+    assertThat( pool.getHeapBytesInUse(), is( 0L ) );
+  }
+
+  @Test
+  public void testReplaySpilledToDisk() throws IOException {
+    byte[] data = randomBytes( 100 * 1024 );
+    ReplayBufferPool pool = new ReplayBufferPool( 20 * 1024, 1024 * 1024, 1024 * 1024, folder.getRoot() );
+    ReplayableHttpEntity replay = new ReplayableHttpEntity( entity( data ), pool );
+
+    assertArrayEquals( data, write( replay ) );
+    assertThat( pool.getDiskBytesInUse(), is( 80L * 1024 ) );
+    assertThat( folder.getRoot().list().length, is( 1 ) );
+    assertArrayEquals( data, write( replay ) );
+    assertArrayEquals( data, write( replay ) );
+
+    replay.close();
+    assertThat( pool.getHeapBytesInUse(), is( 0L ) );
+    assertThat( pool.getDiskBytesInUse(), is( 0L ) );
+    assertThat( folder.getRoot().list().length, is( 0 ) );
+  }
+
+  @Test
+  public void testReplayAfterPartialRead() throws IOException {
+    byte[] data = randomBytes( 50 * 1024 );
+    ReplayBufferPool pool = new ReplayBufferPool( 16 * 1024, 1024 * 1024, 1024 * 1024, folder.getRoot() );
+    ReplayableHttpEntity replay = new ReplayableHttpEntity( entity( data ), pool );
+
+    // A first attempt that fails part way through the body
+    InputStream first = replay.getContent();
+    byte[] partial = new byte[ 30 * 1024 ];
+    int read = 0;
+    while( read < partial.length ) {
+      read += first.read( partial, read, partial.length - read );
+    }
+    assertArrayEquals( Arrays.copyOf( data, partial.length ), partial );
+
+    // The retry sees the whole body and the first stream is no longer usable
+    assertArrayEquals( data, write( replay ) );
+    try {
+      first.read();
+      fail( "Expected IOException" );
+    } catch( IOException e ) {
+      // Expected.
+    }
+    replay.close();
+  }
+
+  @Test
+  public void testQuotaExceeded() throws IOException {
+    byte[] data = randomBytes( 64 * 1024 );
+    ReplayBufferPool pool = new ReplayBufferPool( 16 * 1024, 16 * 1024, 16 * 1024, folder.getRoot() );
+    ReplayableHttpEntity replay = new ReplayableHttpEntity( entity( data ), pool );
+
+    // The first attempt is not affected by the quota
+    assertArrayEquals( data, write( replay ) );
+    assertThat( replay.isRepeatable(), is( false ) );
+    try {
+      replay.getContent();
+      fail( "Expected IOException" );
+    } catch( IOException e ) {
+      // Expected.
+    }
+    replay.close();
+    assertThat( pool.getDiskBytesInUse(), is( 0L ) );
+  }
+
+  @Test
+  public void testHeapQuotaSharedBetweenRequests() throws IOException {
+    byte[] data = randomBytes( 20 * 1024 );
+    ReplayBufferPool pool = new ReplayBufferPool( 32 * 1024, 32 * 1024, 1024 * 1024, folder.getRoot() );
+    ReplayableHttpEntity first = new ReplayableHttpEntity( entity( data ), pool );
+    ReplayableHttpEntity second = new ReplayableHttpEntity( entity( data ), pool );
+
+    assertArrayEquals( data, write( first ) );
+    // The heap quota is used up by the first request so the second one spills the whole body
+    assertArrayEquals( data, write( second ) );
+    assertThat( pool.getDiskBytesInUse(), is( 20L * 1024 ) );
+    assertArrayEquals( data, write( second ) );
+
+    first.close();
+    second.close();
+    assertThat( pool.getHeapBytesInUse(), is( 0L ) );
+    assertThat( pool.getDiskBytesInUse(), is( 0L ) );
+  }
+
+  @Test
+  public void testStaleSpillFilesRemoved() throws IOException {
+    File stale = new File( folder.getRoot(), "replay-1.tmp" );
+    assertThat( stale.createNewFile(), is( true ) );
+    new ReplayBufferPool( 1024, 1024, 1024, folder.getRoot() );
+    assertThat( stale.exists(), is( false ) );
+  }
+
+  private static BasicHttpEntity entity( byte[] data ) {
+    BasicHttpEntity basic = new BasicHttpEntity();
+    basic.setContent( new ByteArrayInputStream( data ) );
+    basic.setContentLength( data.length );
+    return basic;
+  }
+
+  private static byte[] write( ReplayableHttpEntity entity ) throws IOException {
+    ByteArrayOutputStream output = new ByteArrayOutputStream();
+    entity.writeTo( output );
+    return output.toByteArray();
+  }
+
+  private static byte[] randomBytes( int size ) {
+    byte[] data = new byte[ size ];
+    new Random( size ).nextBytes( data );
+    return data;
+  }
+}
@@ -0,0 +1,105 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.knox.gateway.services.security.token;
+
+import com.nimbusds.jose.crypto.RSASSASigner;
+import org.apache.knox.gateway.services.security.token.impl.JWT;
+import org.apache.knox.gateway.services.security.token.impl.JWTToken;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.security.KeyPairGenerator;
+import java.security.interfaces.RSAPrivateKey;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class VerifiedTokenCacheTest {
+
+  private static RSAPrivateKey privateKey;
+
+  @BeforeClass
+  public static void setUpBeforeClass() throws Exception {
+    KeyPairGenerator kpg = KeyPairGenerator.getInstance("RSA");
+    kpg.initialize(2048);
+    privateKey = (RSAPrivateKey) kpg.genKeyPair().getPrivate();
+  }
+
+  @Test
+  public void testVerifiedTokenIsRemembered() throws Exception {
+    VerifiedTokenCache cache = new VerifiedTokenCache("test", 10, TimeUnit.MINUTES.toMillis(5));
+    JWT token = createToken(System.currentTimeMillis() + TimeUnit.MINUTES.toMillis(1));
+    JWT other = createToken(System.currentTimeMillis() + TimeUnit.MINUTES.toMillis(1));
+
+    assertFalse(cache.isVerified(token));
+    cache.markVerified(token);
+    assertTrue(cache.isVerified(token));
+    assertTrue(cache.isVerified(token));
+    assertFalse(cache.isVerified(other));
+
+    assertEquals(2, cache.getHits());
+    assertEquals(2, cache.getMisses());
+  }
+
+  @Test
+  public void testEntryDoesNotOutliveToken() throws Exception {
+    VerifiedTokenCache cache = new VerifiedTokenCache("test", 10, TimeUnit.MINUTES.toMillis(5));
+    JWT expired = createToken(System.currentTimeMillis() - 1000);
+    cache.markVerified(expired);
+    assertFalse(cache.isVerified(expired));
+
+    // Token expiration times only have a precision of seconds
+    JWT expiring = createToken(System.currentTimeMillis() + 2000);
+    cache.markVerified(expiring);
+    assertTrue(cache.isVerified(expiring));
+    Thread.sleep(2500);
+    assertFalse(cache.isVerified(expiring));
+  }
+
+  @Test
+  public void testEntryDoesNotOutliveTimeToLive() throws Exception {
+    VerifiedTokenCache cache = new VerifiedTokenCache("test", 10, 200);
+    JWT token = createToken(System.currentTimeMillis() + TimeUnit.MINUTES.toMillis(5));
+    cache.markVerified(token);
+    assertTrue(cache.isVerified(token));
+    Thread.sleep(400);
+    assertFalse(cache.isVerified(token));
+  }
+
+  @Test
+  public void testInvalidate() throws Exception {
+    VerifiedTokenCache cache = new VerifiedTokenCache("test", 10, TimeUnit.MINUTES.toMillis(5));
+    JWT token = createToken(System.currentTimeMillis() + TimeUnit.MINUTES.toMillis(1));
+    cache.markVerified(token);
+    cache.invalidate(token);
+    assertFalse(cache.isVerified(token));
+  }
+
+  private static JWT createToken(long expires) {
+    String[] claims = new String[4];
+    claims[0] = "KNOXSSO";
+    claims[1] = "john.doe@example.com";
+    claims[2] = "https://login.example.com";
+    claims[3] = Long.toString(expires);
+    JWT token = new JWTToken("RS256", claims);
+    token.sign(new RSASSASigner(privateKey));
+    return token;
+  }
+}
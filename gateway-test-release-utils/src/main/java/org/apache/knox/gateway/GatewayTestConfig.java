@@ -35,6 +35,8 @@ import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.Deflater;
 
 public class GatewayTestConfig extends Configuration implements GatewayConfig {
 
@@ -72,6 +74,9 @@ public class GatewayTestConfig extends Configuration implements GatewayConfig {
   private ConcurrentMap<String, Integer> topologyPortMapping = new ConcurrentHashMap<>();
   private int backupVersionLimit = -1;
   private long backupAgeLimit = -1;
+  private int deploymentThreadPoolSize = 4;
+  private boolean deploymentAnnotationScanSkipEnabled;
+  private boolean deploymentInMemoryEnabled;
 
   public GatewayTestConfig() {
 
@@ -847,4 +852,146 @@ public class GatewayTestConfig extends Configuration implements GatewayConfig {
   public boolean isGatewayServerIncomingXForwardedSupportEnabled() {
     return true;
   }
+
+  @Override
+  public int getAsyncDispatchThreadPoolSize() {
+    return DEFAULT_ASYNC_DISPATCH_THREAD_POOL_SIZE;
+  }
+
+  @Override
+  public int getAsyncDispatchQueueSize() {
+    return DEFAULT_ASYNC_DISPATCH_QUEUE_SIZE;
+  }
+
+  @Override
+  public long getAsyncDispatchTimeout() {
+    return DEFAULT_ASYNC_DISPATCH_TIMEOUT;
+  }
+
+  @Override
+  public boolean isHttpClientConnectionPoolShared() {
+    return false;
+  }
+
+  @Override
+  public int getHttpClientConnectionPoolMaxTotal() {
+    return 2048;
+  }
+
+  @Override
+  public long getHttpClientConnectionPoolIdleTimeout() {
+    return TimeUnit.SECONDS.toMillis(60);
+  }
+
+  @Override
+  public int getHttpClientConnectionPoolValidateAfterInactivity() {
+    return 2000;
+  }
+
+  @Override
+  public long getHttpClientConnectionPoolTimeToLive() {
+    return -1L;
+  }
+
+  @Override
+  public long getJwksCacheRefreshInterval() {
+    return TimeUnit.MINUTES.toMillis(5);
+  }
+
+  @Override
+  public long getJwksCacheTimeToLive() {
+    return TimeUnit.MINUTES.toMillis(15);
+  }
+
+  @Override
+  public long getJwksRefetchRateLimit() {
+    return TimeUnit.SECONDS.toMillis(30);
+  }
+
+  @Override
+  public boolean isKnoxTokenStateAliasPersistenceLogEnabled() {
+    return false;
+  }
+
+  @Override
+  public int getKnoxTokenStateAliasPersistenceLogCompactionThreshold() {
+    return 100000;
+  }
+
+  @Override
+  public int getRewriteResponseCompressionLevel() {
+    return Deflater.DEFAULT_COMPRESSION;
+  }
+
+  @Override
+  public boolean isCryptoSaltReuseEnabled() {
+    return false;
+  }
+
+  @Override
+  public boolean isDispatchReplayEnabled() {
+    return false;
+  }
+
+  @Override
+  public int getDispatchReplayHeapBufferSize() {
+    return 64 * 1024;
+  }
+
+  @Override
+  public long getDispatchReplayHeapQuota() {
+    return 64L * 1024 * 1024;
+  }
+
+  @Override
+  public long getDispatchReplayDiskQuota() {
+    return 1024L * 1024 * 1024;
+  }
+
+  @Override
+  public int getWebsocketThreadPoolSize() {
+    return 20;
+  }
+
+  @Override
+  public int getGatewayDeploymentThreadPoolSize() {
+    return deploymentThreadPoolSize;
+  }
+
+  public void setGatewayDeploymentThreadPoolSize( int deploymentThreadPoolSize ) {
+    this.deploymentThreadPoolSize = deploymentThreadPoolSize;
+  }
+
+  @Override
+  public boolean isGatewayDeploymentAnnotationScanSkipEnabled() {
+    return deploymentAnnotationScanSkipEnabled;
+  }
+
+  public void setGatewayDeploymentAnnotationScanSkipEnabled( boolean deploymentAnnotationScanSkipEnabled ) {
+    this.deploymentAnnotationScanSkipEnabled = deploymentAnnotationScanSkipEnabled;
+  }
+
+  @Override
+  public boolean isGatewayDeploymentInMemoryEnabled() {
+    return deploymentInMemoryEnabled;
+  }
+
+  public void setGatewayDeploymentInMemoryEnabled( boolean deploymentInMemoryEnabled ) {
+    this.deploymentInMemoryEnabled = deploymentInMemoryEnabled;
+  }
+
+  @Override
+  public int getClouderaManagerServiceDiscoveryThreadPoolSize() {
+    return 8;
+  }
+
+  @Override
+  public boolean isKnoxTokenStateJournalLogEnabled() {
+    return false;
+  }
+
+  @Override
+  public long getKnoxTokenStateJournalLogSyncInterval() {
+    return 1000L;
+  }
 }
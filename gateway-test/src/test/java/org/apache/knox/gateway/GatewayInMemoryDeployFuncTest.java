@@ -0,0 +1,256 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.knox.gateway;
+
+import io.restassured.http.Cookie;
+import io.restassured.response.Response;
+import com.mycila.xmltool.XMLDoc;
+import com.mycila.xmltool.XMLTag;
+import org.apache.commons.io.FileUtils;
+import org.apache.knox.gateway.services.DefaultGatewayServices;
+import org.apache.knox.gateway.services.ServiceLifecycleException;
+import org.apache.knox.test.TestUtils;
+import org.apache.knox.test.category.ReleaseTest;
+import org.apache.http.HttpStatus;
+import org.junit.After;
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+
+import static io.restassured.RestAssured.given;
+import static org.apache.knox.test.TestUtils.LOG_ENTER;
+import static org.apache.knox.test.TestUtils.LOG_EXIT;
+import static org.hamcrest.CoreMatchers.containsString;
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.notNullValue;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.greaterThan;
+
+/**
+ * Deploys topologies with in-memory deployments enabled. The Shiro and rewrite listeners read
+ * their configuration from the web archive through the servlet context, so a successful
+ * authenticated request shows the archive resources are served from memory.
+ */
+@Category(ReleaseTest.class)
+public class GatewayInMemoryDeployFuncTest {
+  private static final Logger LOG = LoggerFactory.getLogger( GatewayInMemoryDeployFuncTest.class );
+
+  private static GatewayTestConfig config;
+  private static GatewayServer gateway;
+  private static File gatewayHome;
+  private static String clusterUrl;
+  private static GatewayTestDriver driver = new GatewayTestDriver();
+
+  @BeforeClass
+  public static void setUpBeforeClass() throws Exception {
+    LOG_ENTER();
+    driver.setupLdap(0);
+    LOG_EXIT();
+  }
+
+  @AfterClass
+  public static void tearDownAfterClass() throws Exception {
+    LOG_ENTER();
+    driver.cleanup();
+    LOG_EXIT();
+  }
+
+  @Before
+  public void setupGateway() throws Exception {
+    File targetDir = new File( System.getProperty( "user.dir" ), "target" );
+    File gatewayDir = new File( targetDir, "gateway-home-" + UUID.randomUUID() );
+    gatewayDir.mkdirs();
+    gatewayHome = gatewayDir;
+
+    config = new GatewayTestConfig();
+    config.setGatewayHomeDir( gatewayDir.getAbsolutePath() );
+    config.setGatewayDeploymentInMemoryEnabled( true );
+
+    new File( config.getGatewayTopologyDir() ).mkdirs();
+    new File( config.getGatewayDescriptorsDir() ).mkdirs();
+    new File( config.getGatewayProvidersConfigDir() ).mkdirs();
+    new File( config.getGatewayDeploymentDir() ).mkdirs();
+
+    DefaultGatewayServices srvcs = new DefaultGatewayServices();
+    Map<String,String> options = new HashMap<>();
+    options.put( "persist-master", "false" );
+    options.put( "master", "password" );
+    try {
+      srvcs.init( config, options );
+    } catch ( ServiceLifecycleException e ) {
+      e.printStackTrace(); // I18N not required.
+    }
+    gateway = GatewayServer.startGateway( config, srvcs );
+    assertThat( "Failed to start gateway.", gateway, notNullValue() );
+
+    LOG.info( "Gateway port = " + gateway.getAddresses()[ 0 ].getPort() );
+
+    String gatewayUrl = "http://localhost:" + gateway.getAddresses()[0].getPort() + "/" + config.getGatewayPath();
+    clusterUrl = gatewayUrl + "/test-cluster";
+  }
+
+  @After
+  public void cleanupGateway() throws Exception {
+    gateway.stop();
+    FileUtils.deleteQuietly( gatewayHome );
+  }
+
+  private static XMLTag createTopology() {
+    return XMLDoc.newDocument( true )
+        .addRoot( "topology" )
+        .addTag( "gateway" )
+
+        .addTag( "provider" )
+        .addTag( "role" ).addText( "authentication" )
+        .addTag( "name" ).addText( "ShiroProvider" )
+        .addTag( "enabled" ).addText( "true" )
+        .addTag( "param" )
+        .addTag( "name" ).addText( "main.ldapRealm" )
+        .addTag( "value" ).addText( "org.apache.knox.gateway.shirorealm.KnoxLdapRealm" ).gotoParent()
+        .addTag( "param" )
+        .addTag( "name" ).addText( "main.ldapRealm.userDnTemplate" )
+        .addTag( "value" ).addText( "uid={0},ou=people,dc=hadoop,dc=apache,dc=org" ).gotoParent()
+        .addTag( "param" )
+        .addTag( "name" ).addText( "main.ldapRealm.contextFactory.url" )
+        .addTag( "value" ).addText( driver.getLdapUrl() ).gotoParent()
+        .addTag( "param" )
+        .addTag( "name" ).addText( "main.ldapRealm.contextFactory.authenticationMechanism" )
+        .addTag( "value" ).addText( "simple" ).gotoParent()
+        .addTag( "param" )
+        .addTag( "name" ).addText( "urls./**" )
+        .addTag( "value" ).addText( "authcBasic" ).gotoParent().gotoParent()
+        .addTag( "provider" )
+        .addTag( "role" ).addText( "identity-assertion" )
+        .addTag( "enabled" ).addText( "true" )
+        .addTag( "name" ).addText( "Default" ).gotoParent()
+        .addTag( "provider" )
+        .gotoRoot()
+        .addTag( "service" )
+        .addTag( "role" ).addText( "test-service-role" )
+        .gotoRoot();
+  }
+
+  @Test( timeout = TestUtils.LONG_TIMEOUT )
+  public void testInMemoryDeployRedeployUndeploy() throws InterruptedException, IOException {
+    LOG_ENTER();
+    long sleep = 200;
+    String username = "guest";
+    String password = "guest-password";
+    String serviceUrl = clusterUrl + "/test-service-path/test-service-resource";
+
+    File topoDir = new File( config.getGatewayTopologyDir() );
+    File deployDir = new File( config.getGatewayDeploymentDir() );
+    assertThat( topoDir.listFiles().length, is( 0 ) );
+    assertThat( deployDir.listFiles().length, is( 0 ) );
+
+    File descriptor = writeTestTopology( "test-cluster", createTopology() );
+    long writeTime = System.currentTimeMillis();
+    waitForAccess( serviceUrl, username, password, sleep );
+    assertSessionCookie( serviceUrl, username, password );
+    // Nothing is written to the deployment directory.
+    assertThat( deployDir.listFiles().length, is( 0 ) );
+
+    // Wait to make sure a second has passed to ensure the the file timestamps are different.
+    waitForElapsed( writeTime, 1000, 100 );
+
+    // Redeploy all topologies and then only the test topology.
+    long topoTimestampBefore = descriptor.lastModified();
+    GatewayServer.redeployTopologies( null );
+    writeTime = System.currentTimeMillis();
+    assertThat( descriptor.lastModified(), greaterThan( topoTimestampBefore ) );
+    waitForAccess( serviceUrl, username, password, sleep );
+
+    waitForElapsed( writeTime, 1000, 100 );
+
+    topoTimestampBefore = descriptor.lastModified();
+    GatewayServer.redeployTopologies( "test-cluster" );
+    assertThat( descriptor.lastModified(), greaterThan( topoTimestampBefore ) );
+    waitForAccess( serviceUrl, username, password, sleep );
+    assertSessionCookie( serviceUrl, username, password );
+    assertThat( deployDir.listFiles().length, is( 0 ) );
+
+    // Delete the test topology and make sure it is no longer accessible.
+    assertThat( "Failed to delete the topology file.", descriptor.delete(), is( true ) );
+    waitForStatus( serviceUrl, username, password, HttpStatus.SC_NOT_FOUND, sleep );
+    assertThat( topoDir.listFiles().length, is( 0 ) );
+    assertThat( deployDir.listFiles().length, is( 0 ) );
+    LOG_EXIT();
+  }
+
+  private void assertSessionCookie( String url, String username, String password ) {
+    Cookie cookie = given()
+        .auth().preemptive().basic( username, password )
+        .then()
+        .statusCode( HttpStatus.SC_OK )
+        .when().get( url )
+        .getDetailedCookie( GatewayServer.KNOXSESSIONCOOKIENAME );
+    assertThat( cookie, notNullValue() );
+    assertThat( cookie.isSecured(), is( true ) );
+    assertThat( cookie.isHttpOnly(), is( true ) );
+    assertThat( cookie.getPath(), is( "/gateway/test-cluster" ) );
+  }
+
+  private void waitForElapsed( long from, long total, long sleep ) throws InterruptedException {
+    while( System.currentTimeMillis() - from < total ) {
+      Thread.sleep( sleep );
+    }
+  }
+
+  private File writeTestTopology( String name, XMLTag xml ) throws IOException {
+    File tempFile = new File( config.getGatewayTopologyDir(), name + ".xml." + UUID.randomUUID() );
+    try(OutputStream stream = Files.newOutputStream(tempFile.toPath())) {
+      xml.toStream(stream);
+    }
+    File descriptor = new File( config.getGatewayTopologyDir(), name + ".xml" );
+    tempFile.renameTo( descriptor );
+    return descriptor;
+  }
+
+  private void waitForAccess( String url, String username, String password, long sleep ) throws InterruptedException {
+    while( true ) {
+      Response response = given()
+          .auth().preemptive().basic( username, password )
+          .when().get( url ).andReturn();
+      if( response.getStatusCode() == HttpStatus.SC_NOT_FOUND ) {
+        Thread.sleep( sleep );
+        continue;
+      }
+      assertThat( response.getContentType(), containsString( "text/plain" ) );
+      assertThat( response.getBody().asString(), is( "test-service-response" ) );
+      break;
+    }
+  }
+
+  private void waitForStatus( String url, String username, String password, int status, long sleep ) throws InterruptedException {
+    while( given().auth().preemptive().basic( username, password ).when().get( url ).getStatusCode() != status ) {
+      Thread.sleep( sleep );
+    }
+  }
+}
@@ -33,6 +33,7 @@ import javax.xml.xpath.XPathFactory;
 import org.apache.commons.io.FileUtils;
 import org.apache.knox.gateway.GatewayTestConfig;
 import org.apache.knox.gateway.config.GatewayConfig;
+import org.apache.knox.gateway.descriptor.ResourceDescriptor;
 import org.apache.knox.gateway.filter.XForwardedHeaderFilter;
 import org.apache.knox.gateway.filter.rewrite.api.UrlRewriteServletFilter;
 import org.apache.knox.gateway.services.DefaultGatewayServices;
@@ -48,6 +49,7 @@ import org.apache.knox.test.log.NoOpAppender;
 import org.apache.log4j.Appender;
 import org.jboss.shrinkwrap.api.spec.EnterpriseArchive;
 import org.jboss.shrinkwrap.api.spec.WebArchive;
+import org.jboss.shrinkwrap.descriptor.api.webapp30.WebAppDescriptor;
 import org.junit.Test;
 import org.w3c.dom.Document;
 import org.w3c.dom.Node;
@@ -319,6 +321,68 @@ public class DeploymentFactoryFuncTest {
   }
 
 
+  @Test( timeout = LONG_TIMEOUT )
+  public void testInMemoryDeployment() throws IOException {
+    LOG_ENTER();
+    GatewayTestConfig config = new GatewayTestConfig();
+    File targetDir = new File( System.getProperty( "user.dir" ), "target" );
+    File gatewayDir = new File( targetDir, "gateway-home-" + UUID.randomUUID() );
+    gatewayDir.mkdirs();
+    config.setGatewayHomeDir( gatewayDir.getAbsolutePath() );
+
+    DefaultGatewayServices srvcs = new DefaultGatewayServices();
+    Map<String,String> options = new HashMap<>();
+    options.put("persist-master", "false");
+    options.put("master", "password");
+    try {
+      DeploymentFactory.setGatewayServices(srvcs);
+      srvcs.init(config, options);
+    } catch (ServiceLifecycleException e) {
+      e.printStackTrace(); // I18N not required.
+    }
+
+    Topology topology = new Topology();
+    topology.setName( "test-cluster" );
+    Service service = new Service();
+    service.setRole( "WEBHDFS" );
+    service.addUrl( "http://localhost:50070/webhdfs" );
+    topology.addService( service );
+    Provider provider = new Provider();
+    provider.setRole( "authentication" );
+    provider.setName( "ShiroProvider" );
+    provider.setEnabled( true );
+    topology.addProvider( provider );
+    Provider asserter = new Provider();
+    asserter.setRole( "identity-assertion" );
+    asserter.setName("Default");
+    asserter.setEnabled( true );
+    topology.addProvider( asserter );
+
+    InMemoryDeployment deployment = DeploymentFactory.createInMemoryDeployment( config, topology );
+    assertThat( deployment, notNullValue() );
+    assertThat( deployment.getTopology(), is( topology ) );
+
+    // Neither descriptor is serialized, provider resources are still contributed.
+    WebArchive archive = deployment.getWebArchive();
+    assertThat( archive.get( "/WEB-INF/gateway.xml" ), nullValue() );
+    assertThat( archive.get( "/WEB-INF/web.xml" ), nullValue() );
+    assertThat( archive.get( "/WEB-INF/shiro.ini" ), notNullValue() );
+    assertThat( archive.get( "/WEB-INF/rewrite.xml" ), notNullValue() );
+
+    WebAppDescriptor web = deployment.getWebAppDescriptor();
+    assertThat( web.getAllServlet().size(), is( 1 ) );
+    assertThat( web.getAllServlet().get( 0 ).getServletName(), is( "test-cluster-knox-gateway-servlet" ) );
+    assertThat( web.getAllServlet().get( 0 ).getServletClass(), is( "org.apache.knox.gateway.GatewayServlet" ) );
+    assertThat( web.getAllServlet().get( 0 ).getAllInitParam().isEmpty(), is( true ) );
+    assertThat( web.getAllServletMapping().get( 0 ).getAllUrlPattern().get( 0 ), is( "/*" ) );
+
+    ResourceDescriptor resource = deployment.getGatewayDescriptor().resources().get( 0 );
+    assertThat( resource.pattern(), is( "/webhdfs/v1/?**" ) );
+    assertThat( resource.filters().get( 0 ).role(), is( "authentication" ) );
+
+    LOG_EXIT();
+  }
+
   @Test( timeout = LONG_TIMEOUT )
   public void testWebXmlGeneration() throws IOException, SAXException, ParserConfigurationException {
     LOG_ENTER();
@@ -24,6 +24,9 @@ import jdbm.htree.HTree;
 import java.io.File;
 import java.io.IOException;
 import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
 import java.util.Properties;
 
 public class JdbmQueue<E> {
@@ -62,6 +65,34 @@ public class JdbmQueue<E> {
     }
   }
 
+  /**
+   * Adds all of the given elements to the queue in a single commit.
+   *
+   * @param es the elements to add, in order
+   * @throws IOException if the elements could not be stored, in which case none of them are
+   */
+  public synchronized void enqueueAll( Collection<? extends E> es ) throws IOException {
+    if( es.isEmpty() ) {
+      return;
+    }
+    boolean committed = false;
+    try {
+      Stat stat = getStat();
+      for( E e : es ) {
+        stat.lastEnqueue++;
+        data.put( stat.lastEnqueue, e );
+      }
+      setStat( stat );
+      db.commit();
+      committed = true;
+      notifyAll();
+    } finally {
+      if( !committed ) {
+        db.rollback();
+      }
+    }
+  }
+
   public synchronized E dequeue() throws InterruptedException, IOException {
     boolean committed = false;
     try {
@@ -110,6 +141,70 @@ public class JdbmQueue<E> {
     return committed;
   }
 
+  /**
+   * Returns up to <code>limit</code> elements from the head of the queue without removing them, so
+   * that a consumer can handle them without holding the lock of the queue. The consumer removes the
+   * elements it is done with using {@link #remove(int)}; there must only be a single consumer.
+   * <p>
+   * Waits for an element if the queue is empty. Once the queue has been stopped and is empty an
+   * empty list is returned.
+   *
+   * @param limit the maximum number of elements to return
+   * @return the elements at the head of the queue, in order
+   * @throws IOException if the queue could not be read
+   * @throws InterruptedException if interrupted while waiting for an element
+   */
+  public synchronized List<E> peek( int limit ) throws IOException, InterruptedException {
+    Stat s = getStat();
+    while( open && s.size() == 0 ) {
+      wait();
+      s = getStat();
+    }
+    int available = (int)Math.min( limit, s.size() );
+    List<E> elements = new ArrayList<>( available );
+    for( long key = s.nextDequeue + 1; elements.size() < available; key++ ) {
+      @SuppressWarnings("unchecked")
+      E e = (E)data.get( key );
+      elements.add( e );
+    }
+    return elements;
+  }
+
+  /**
+   * Removes up to <code>count</code> elements from the head of the queue in a single commit.
+   *
+   * @param count the number of elements to remove
+   * @throws IOException if the queue could not be updated, in which case no element is removed
+   */
+  public synchronized void remove( int count ) throws IOException {
+    if( count <= 0 ) {
+      return;
+    }
+    boolean committed = false;
+    try {
+      Stat s = getStat();
+      long removed = Math.min( count, s.size() );
+      for( long i = 0; i < removed; i++ ) {
+        s.nextDequeue++;
+        data.remove( s.nextDequeue );
+      }
+      setStat( s );
+      db.commit();
+      committed = true;
+    } finally {
+      if( !committed ) {
+        db.rollback();
+      }
+    }
+  }
+
+  /**
+   * @return the number of elements stored in the queue
+   */
+  public synchronized long size() throws IOException {
+    return getStat().size();
+  }
+
   public synchronized void stop() {
     open = false;
     notifyAll();
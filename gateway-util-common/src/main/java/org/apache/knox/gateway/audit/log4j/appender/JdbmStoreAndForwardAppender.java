@@ -19,19 +19,75 @@ package org.apache.knox.gateway.audit.log4j.appender;
 
 import java.io.File;
 import java.io.IOException;
-import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 
 import org.apache.log4j.AppenderSkeleton;
 import org.apache.log4j.Logger;
+import org.apache.log4j.spi.ErrorCode;
 import org.apache.log4j.spi.LoggingEvent;
 
+/**
+ * Stores audit events in a JDBM backed queue and forwards them to the <code>audit.forward</code>
+ * logger from a background thread.
+ * <p>
+ * How events are stored depends on the durability level:
+ * <ul>
+ *   <li><code>sync</code> (default) - every event is committed to the store before the logging call returns</li>
+ *   <li><code>batch</code> - events are buffered in memory and a writer thread commits them to the
+ *   store in groups of up to <code>batchSize</code> events, waiting at most <code>batchInterval</code>
+ *   milliseconds for a group to fill up</li>
+ *   <li><code>none</code> - events are buffered in memory and forwarded without being stored</li>
+ * </ul>
+ * When the in-memory buffer of <code>bufferSize</code> events is full the overflow policy decides
+ * whether the logging thread waits for space (<code>block</code>) or the event is discarded
+ * (<code>drop</code>).
+ * <p>
+ * A group that cannot be stored is reported to the appender's error handler and kept, and storing
+ * it is retried every <code>retryInterval</code> milliseconds until it succeeds or the appender
+ * is closed.
+ * <p>
+ * An event that cannot be forwarded is retried, backing off exponentially from <code>retryInterval</code>
+ * milliseconds, and discarded and reported to the error handler after three failed attempts.
+ */
 public class JdbmStoreAndForwardAppender extends AppenderSkeleton {
 
+  public enum Durability { SYNC, BATCH, NONE }
+
+  public enum OverflowPolicy { BLOCK, DROP }
+
+  private static final int DEFAULT_BUFFER_SIZE = 8192;
+  private static final int DEFAULT_BATCH_SIZE = 256;
+  private static final long DEFAULT_BATCH_INTERVAL = 50L;
+  private static final long DEFAULT_RETRY_INTERVAL = 1000L;
+  private static final int FORWARD_BATCH_SIZE = 256;
+  private static final int MAX_FORWARD_ATTEMPTS = 3;
+
   private File file;
   private Thread forwarder; //NOPMD - Expected use of threading
+  private Thread writer; //NOPMD - Expected use of threading
   private JdbmQueue<LoggingEvent> queue;
+  private BlockingQueue<LoggingEvent> buffer;
+  private volatile boolean writing;
   private Logger forward;
   private boolean fetchLocationInfo = true;
+  private Durability durability = Durability.SYNC;
+  private OverflowPolicy overflowPolicy = OverflowPolicy.BLOCK;
+  private int bufferSize = DEFAULT_BUFFER_SIZE;
+  private int batchSize = DEFAULT_BATCH_SIZE;
+  private long batchInterval = DEFAULT_BATCH_INTERVAL;
+  private long retryInterval = DEFAULT_RETRY_INTERVAL;
+
+  private final AtomicLong droppedEvents = new AtomicLong();
+  private final AtomicLong commits = new AtomicLong();
+  private final AtomicLong committedEvents = new AtomicLong();
+  private volatile long lastCommitLatency;
+  private volatile long maxCommitLatency;
 
   @Override
   public boolean requiresLayout() {
@@ -50,6 +106,108 @@ public class JdbmStoreAndForwardAppender extends AppenderSkeleton {
     return fetchLocationInfo;
   }
 
+  public void setDurability( String durability ) {
+    this.durability = Durability.valueOf( durability.trim().toUpperCase( Locale.ROOT ) );
+  }
+
+  public String getDurability() {
+    return durability.name().toLowerCase( Locale.ROOT );
+  }
+
+  public void setOverflowPolicy( String overflowPolicy ) {
+    this.overflowPolicy = OverflowPolicy.valueOf( overflowPolicy.trim().toUpperCase( Locale.ROOT ) );
+  }
+
+  public String getOverflowPolicy() {
+    return overflowPolicy.name().toLowerCase( Locale.ROOT );
+  }
+
+  public void setBufferSize( int bufferSize ) {
+    this.bufferSize = Math.max( 1, bufferSize );
+  }
+
+  public int getBufferSize() {
+    return bufferSize;
+  }
+
+  public void setBatchSize( int batchSize ) {
+    this.batchSize = Math.max( 1, batchSize );
+  }
+
+  public int getBatchSize() {
+    return batchSize;
+  }
+
+  public void setBatchInterval( long batchInterval ) {
+    this.batchInterval = batchInterval;
+  }
+
+  public long getBatchInterval() {
+    return batchInterval;
+  }
+
+  public void setRetryInterval( long retryInterval ) {
+    this.retryInterval = Math.max( 0, retryInterval );
+  }
+
+  public long getRetryInterval() {
+    return retryInterval;
+  }
+
+  /**
+   * @return the number of events waiting in memory to be stored or forwarded
+   */
+  public int getBufferedEventCount() {
+    return buffer == null ? 0 : buffer.size();
+  }
+
+  /**
+   * @return the number of events stored but not yet forwarded, or -1 if unknown
+   */
+  public long getStoredEventCount() {
+    try {
+      return queue == null ? 0 : queue.size();
+    } catch ( IOException e ) {
+      return -1;
+    }
+  }
+
+  /**
+   * @return the number of events discarded because the buffer was full, or because they could not be
+   *         stored or forwarded
+   */
+  public long getDroppedEventCount() {
+    return droppedEvents.get();
+  }
+
+  /**
+   * @return the number of commits made to the store for new events
+   */
+  public long getCommitCount() {
+    return commits.get();
+  }
+
+  /**
+   * @return the number of events committed to the store
+   */
+  public long getCommittedEventCount() {
+    return committedEvents.get();
+  }
+
+  /**
+   * @return the time the most recent commit of new events took, in microseconds
+   */
+  public long getLastCommitLatency() {
+    return lastCommitLatency;
+  }
+
+  /**
+   * @return the longest time a commit of new events took, in microseconds
+   */
+  public long getMaxCommitLatency() {
+    return maxCommitLatency;
+  }
+
   @Override
   public void activateOptions() {
     try {
@@ -62,6 +220,13 @@ public class JdbmStoreAndForwardAppender extends AppenderSkeleton {
     forwarder = new Forwarder();
     forwarder.setDaemon( true );
     forwarder.start();
+    if( durability != Durability.SYNC ) {
+      buffer = new ArrayBlockingQueue<>( bufferSize );
+      writing = true;
+      writer = new Writer();
+      writer.setDaemon( true );
+      writer.start();
+    }
   }
 
   @Override
@@ -70,15 +235,59 @@ public class JdbmStoreAndForwardAppender extends AppenderSkeleton {
       if( fetchLocationInfo ) {
         event.getLocationInformation();
       }
-      queue.enqueue( event );
+      if( buffer == null || !writing ) {
+        store( event );
+      } else {
+        // The event is stored by another thread, so capture everything that depends on this one
+        event.getNDC();
+        event.getThreadName();
+        event.getMDCCopy();
+        event.getRenderedMessage();
+        if( overflowPolicy == OverflowPolicy.DROP ) {
+          if( !buffer.offer( event ) ) {
+            droppedEvents.incrementAndGet();
+          }
+        } else {
+          buffer.put( event );
+        }
+      }
+    } catch( InterruptedException e ) {
+      Thread.currentThread().interrupt();
+      throw new RuntimeException( e );
     } catch ( IOException e ) {
       throw new RuntimeException( e );
     }
   }
 
+  private void store( LoggingEvent event ) throws IOException {
+    long start = System.nanoTime();
+    queue.enqueue( event );
+    committed( 1, start );
+  }
+
+  private void store( List<LoggingEvent> events ) throws IOException {
+    long start = System.nanoTime();
+    queue.enqueueAll( events );
+    committed( events.size(), start );
+  }
+
+  private void committed( int events, long start ) {
+    long latency = TimeUnit.NANOSECONDS.toMicros( System.nanoTime() - start );
+    lastCommitLatency = latency;
+    if( latency > maxCommitLatency ) {
+      maxCommitLatency = latency;
+    }
+    commits.incrementAndGet();
+    committedEvents.addAndGet( events );
+  }
+
   @Override
   public void close() {
     try {
+      if( writer != null ) {
+        writing = false;
+        writer.join();
+      }
       queue.stop();
       forwarder.join();
       queue.close();
@@ -90,33 +299,142 @@ public class JdbmStoreAndForwardAppender extends AppenderSkeleton {
     }
   }
 
+  @SuppressWarnings("PMD.DoNotUseThreads")
+  private class Writer extends Thread {
+    Writer() {
+      super( "audit-store-writer" );
+    }
+
+    @Override
+    public void run() {
+      final List<LoggingEvent> batch = new ArrayList<>( batchSize );
+      // Keep going until closed and everything buffered has been handled
+      while( writing || !buffer.isEmpty() || !batch.isEmpty() ) {
+        try {
+          // A batch that failed to be stored is retried before taking new events
+          if( batch.isEmpty() ) {
+            LoggingEvent first = buffer.poll( 100, TimeUnit.MILLISECONDS );
+            if( first == null ) {
+              continue;
+            }
+            batch.add( first );
+            fill( batch );
+          }
+          if( durability == Durability.NONE ) {
+            forward( batch );
+          } else {
+            store( batch );
+          }
+          batch.clear();
+        } catch ( InterruptedException e ) {
+          Thread.currentThread().interrupt();
+          return;
+        } catch ( Exception e ) {
+          if( !failed( batch, e ) ) {
+            return;
+          }
+        }
+      }
+    }
+
+    private void forward( List<LoggingEvent> batch ) {
+      for( LoggingEvent event : batch ) {
+        forward.callAppenders( event );
+      }
+    }
+
+    /**
+     * @return false if the writer was interrupted while waiting to retry
+     */
+    private boolean failed( List<LoggingEvent> batch, Exception e ) {
+      // Forwarding is not transactional, retrying could forward events twice
+      if( durability == Durability.NONE || !writing ) {
+        errorHandler.error( "Failed to " + ( durability == Durability.NONE ? "forward " : "store " )
+            + batch.size() + " audit events, discarding them", e, ErrorCode.WRITE_FAILURE );
+        droppedEvents.addAndGet( batch.size() );
+        batch.clear();
+        return true;
+      }
+      errorHandler.error( "Failed to store " + batch.size() + " audit events, retrying in "
+          + retryInterval + " ms", e, ErrorCode.WRITE_FAILURE );
+      try {
+        Thread.sleep( retryInterval );
+        return true;
+      } catch ( InterruptedException ie ) {
+        Thread.currentThread().interrupt();
+        return false;
+      }
+    }
+
+    private void fill( List<LoggingEvent> batch ) throws InterruptedException {
+      buffer.drainTo( batch, batchSize - batch.size() );
+      long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos( batchInterval );
+      while( writing && batch.size() < batchSize ) {
+        long remaining = deadline - System.nanoTime();
+        if( remaining <= 0 ) {
+          break;
+        }
+        LoggingEvent event = buffer.poll( remaining, TimeUnit.NANOSECONDS );
+        if( event == null ) {
+          break;
+        }
+        batch.add( event );
+        buffer.drainTo( batch, batchSize - batch.size() );
+      }
+    }
+  }
+
   @SuppressWarnings("PMD.DoNotUseThreads")
   private class Forwarder extends Thread {
     @Override
     public void run() {
-      final AtomicBoolean done = new AtomicBoolean( false );
-      while( !done.get() ) {
+      int attempts = 0;
+      while( true ) {
         try {
-          queue.process( new JdbmQueue.Consumer<LoggingEvent>() {
-            @Override
-            public boolean consume( LoggingEvent event ) {
-              try {
-                if( event == null ) {
-                  done.set( true );
-                } else {
-                  forward.callAppenders( event );
-                }
-                return true;
-              } catch ( Exception e ) {
-                e.printStackTrace();
-                return false;
+          // Events are forwarded without holding the lock of the queue, so storing new events does not wait
+          List<LoggingEvent> events = queue.peek( FORWARD_BATCH_SIZE );
+          if( events.isEmpty() ) {
+            return;
+          }
+          int handled = 0;
+          RuntimeException failure = null;
+          for( LoggingEvent event : events ) {
+            try {
+              forward.callAppenders( event );
+            } catch ( RuntimeException e ) {
+              if( ++attempts < MAX_FORWARD_ATTEMPTS ) {
+                failure = e;
+                break;
               }
+              errorHandler.error( "Failed to forward an audit event " + attempts + " times, discarding it",
+                  e, ErrorCode.WRITE_FAILURE );
+              droppedEvents.incrementAndGet();
             }
-          } );
+            attempts = 0;
+            handled++;
+          }
+          queue.remove( handled );
+          if( failure != null ) {
+            // Back off exponentially before forwarding the event again
+            long delay = retryInterval << ( attempts - 1 );
+            errorHandler.error( "Failed to forward an audit event, retrying in " + delay + " ms",
+                failure, ErrorCode.WRITE_FAILURE );
+            Thread.sleep( delay );
+          }
+        } catch ( InterruptedException e ) {
+          Thread.currentThread().interrupt();
+          return;
         } catch ( ThreadDeath e ) {
           throw e;
         } catch ( Throwable t ) {
-          t.printStackTrace();
+          errorHandler.error( "Failed to read audit events from the store", t instanceof Exception ? (Exception)t : null,
+              ErrorCode.GENERIC_FAILURE );
+          try {
+            Thread.sleep( retryInterval );
+          } catch ( InterruptedException e ) {
+            Thread.currentThread().interrupt();
+            return;
+          }
         }
       }
     }
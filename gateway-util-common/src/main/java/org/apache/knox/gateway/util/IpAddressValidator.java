@@ -17,12 +17,23 @@
  */
 package org.apache.knox.gateway.util;
 
+import java.net.InetAddress;
+import java.net.UnknownHostException;
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
 
 /**
  * Validate a given IP Address against a list of comma separated list of addresses.
+ *
+ * <p>
+ * Entries are either exact addresses, wildcards such as <code>192.168.*</code> that match every
+ * address starting with the text before the '*', or CIDR ranges such as <code>10.0.0.0/8</code> or
+ * <code>fd00::/8</code>. The list is indexed when the validator is created, so validating an address
+ * does not depend on the number of entries.
  */
 public class IpAddressValidator {
   /**
@@ -31,9 +42,25 @@ public class IpAddressValidator {
   private List<String> ipaddr = new ArrayList<>();
 
   /**
-   * IP addresses from the ipaddr list that contain a wildcard character '*'
+   * Exact ip addresses from the ipaddr list
+   */
+  private Set<String> exactIPs = new HashSet<>();
+
+  /**
+   * Prefixes of the ip addresses from the ipaddr list that contain a wildcard character '*'
+   */
+  private Set<String> wildCardIPs = new HashSet<>();
+
+  /**
+   * The distinct lengths of the wildcard prefixes, shortest first
    */
-  private List<String> wildCardIPs = new ArrayList<>();
+  private int[] wildCardLengths = new int[0];
+
+  /**
+   * CIDR ranges from the ipaddr list
+   */
+  private final AddressTrie ipv4Ranges = new AddressTrie();
+  private final AddressTrie ipv6Ranges = new AddressTrie();
 
   /**
    * Optimization based on empty IP address list or an explicit '*' wildcard
@@ -56,17 +83,44 @@ public class IpAddressValidator {
   private void parseIpAddesses(String commaSeparatedIpAddresses) {
     String[] ips = commaSeparatedIpAddresses.split(",");
     ipaddr = new ArrayList<>();
-    wildCardIPs = new ArrayList<>();
     Collections.addAll(ipaddr, ips);
     if (!ipaddr.contains("*")) {
       anyIP = false;
-      // check whether there are any wildcarded ip's - example: 192.* or 192.168.* or 192.168.1.*
+      Set<Integer> lengths = new TreeSet<>();
       for (String addr : ipaddr) {
+        // check whether there are any wildcarded ip's - example: 192.* or 192.168.* or 192.168.1.*
         if (addr.contains("*")) {
-          wildCardIPs.add(addr.substring(0, addr.lastIndexOf('*')));
+          String prefix = addr.substring(0, addr.lastIndexOf('*'));
+          wildCardIPs.add(prefix);
+          lengths.add(prefix.length());
+        } else if (!addCidrRange(addr)) {
+          exactIPs.add(addr);
         }
       }
+      wildCardLengths = lengths.stream().mapToInt(Integer::intValue).toArray();
+    }
+  }
+
+  private boolean addCidrRange(String range) {
+    int slash = range.indexOf('/');
+    if (slash < 0) {
+      return false;
     }
+    byte[] address = toBytes(range.substring(0, slash));
+    if (address == null) {
+      return false;
+    }
+    int prefixLength;
+    try {
+      prefixLength = Integer.parseInt(range.substring(slash + 1).trim());
+    } catch (NumberFormatException e) {
+      return false;
+    }
+    if (prefixLength < 0 || prefixLength > address.length * 8) {
+      return false;
+    }
+    (address.length == 4 ? ipv4Ranges : ipv6Ranges).add(address, prefixLength);
+    return true;
   }
 
   public boolean validateIpAddress(String addr) {
@@ -80,17 +134,24 @@ public class IpAddressValidator {
       valid = true;
     }
     else {
-      if (ipaddr.contains(addr)) {
+      if (exactIPs.contains(addr)) {
         valid = true;
       }
       else {
         // check for wildcards if there are wildcardIP acls configured
-        if (!wildCardIPs.isEmpty()) {
-          for (String ip : wildCardIPs) {
-            if (addr.startsWith(ip)) {
-              valid = true;
-              break;
-            }
+        for (int length : wildCardLengths) {
+          if (length > addr.length()) {
+            break;
+          }
+          if (wildCardIPs.contains(addr.substring(0, length))) {
+            valid = true;
+            break;
+          }
+        }
+        if (!valid && !(ipv4Ranges.isEmpty() && ipv6Ranges.isEmpty())) {
+          byte[] address = toBytes(addr);
+          if (address != null) {
+            valid = (address.length == 4 ? ipv4Ranges : ipv6Ranges).contains(address);
           }
         }
       }
@@ -105,4 +166,96 @@ public class IpAddressValidator {
   public List<String> getIPAddresses() {
     return ipaddr;
   }
+
+  /**
+   * Parses an IPv4 or IPv6 literal, without ever resolving it as a host name.
+   *
+   * @return the address bytes, or <code>null</code> if the text is not an address
+   */
+  private static byte[] toBytes(String addr) {
+    String text = addr.trim();
+    if (text.indexOf(':') >= 0) {
+      // host names never contain a ':' so this will not go to DNS
+      try {
+        return InetAddress.getByName(text).getAddress();
+      } catch (UnknownHostException | SecurityException e) {
+        return null;
+      }
+    }
+    String[] parts = text.split("\\.", -1);
+    if (parts.length != 4) {
+      return null;
+    }
+    byte[] address = new byte[4];
+    for (int i = 0; i < 4; i++) {
+      String part = parts[i];
+      if (part.isEmpty() || part.length() > 3) {
+        return null;
+      }
+      int value = 0;
+      for (int j = 0; j < part.length(); j++) {
+        char c = part.charAt(j);
+        if (c < '0' || c > '9') {
+          return null;
+        }
+        value = value * 10 + (c - '0');
+      }
+      if (value > 255) {
+        return null;
+      }
+      address[i] = (byte) value;
+    }
+    return address;
+  }
+
+  /**
+   * A binary trie of address prefixes, one level per bit.
+   */
+  private static final class AddressTrie {
+    private final Node root = new Node();
+    private boolean empty = true;
+
+    void add(byte[] address, int prefixLength) {
+      Node node = root;
+      for (int i = 0; i < prefixLength && !node.terminal; i++) {
+        int bit = bit(address, i);
+        if (node.children[bit] == null) {
+          node.children[bit] = new Node();
+        }
+        node = node.children[bit];
+      }
+      // a shorter prefix already covers this range, or this one covers everything below it
+      node.terminal = true;
+      node.children[0] = null;
+      node.children[1] = null;
+      empty = false;
+    }
+
+    boolean contains(byte[] address) {
+      Node node = root;
+      for (int i = 0; node != null; i++) {
+        if (node.terminal) {
+          return true;
+        }
+        if (i == address.length * 8) {
+          return false;
+        }
+        node = node.children[bit(address, i)];
+      }
+      return false;
+    }
+
+    boolean isEmpty() {
+      return empty;
+    }
+
+    private static int bit(byte[] address, int index) {
+      return (address[index >> 3] >> (7 - (index & 7))) & 1;
+    }
+
+    private static final class Node {
+      private final Node[] children = new Node[2];
+      private boolean terminal;
+    }
+  }
 }
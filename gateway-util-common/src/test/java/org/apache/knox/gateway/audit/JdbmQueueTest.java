@@ -26,6 +26,7 @@ import org.junit.Test;
 
 import java.io.File;
 import java.io.IOException;
+import java.util.Arrays;
 import java.util.HashSet;
 import java.util.Set;
 import java.util.UUID;
@@ -92,6 +93,30 @@ public class JdbmQueueTest {
     assertThat( counter.get(), is( 1 ) );
   }
 
+  @Test
+  public void testBatches() throws IOException, InterruptedException {
+    System.out.println( "Running " + Thread.currentThread().getStackTrace()[1].getClassName() + "#" + Thread.currentThread().getStackTrace()[1].getMethodName() );
+    queue.enqueueAll( Arrays.asList( "one", "two", "three", "four" ) );
+    assertThat( queue.size(), is( 4L ) );
+
+    // Elements stay in the queue until they are removed
+    assertThat( queue.peek( 3 ), is( Arrays.asList( "one", "two", "three" ) ) );
+    assertThat( queue.peek( 10 ), is( Arrays.asList( "one", "two", "three", "four" ) ) );
+    assertThat( queue.size(), is( 4L ) );
+
+    queue.remove( 3 );
+    assertThat( queue.size(), is( 1L ) );
+    queue.enqueue( "five" );
+    assertThat( queue.peek( 10 ), is( Arrays.asList( "four", "five" ) ) );
+    queue.remove( 1 );
+    assertThat( queue.dequeue(), is( "five" ) );
+    assertThat( queue.size(), is( 0L ) );
+
+    // Once stopped, an empty queue no longer waits for elements
+    queue.stop();
+    assertThat( queue.peek( 10 ).isEmpty(), is( true ) );
+  }
+
   @Test( timeout = 120000 )
   public void testConcurrentConsumer() throws InterruptedException, IOException {
     System.out.println( "Running " + Thread.currentThread().getStackTrace()[1].getClassName() + "#" + Thread.currentThread().getStackTrace()[1].getMethodName() );
@@ -17,16 +17,22 @@
  */
 package org.apache.knox.gateway.audit;
 
+import org.apache.knox.gateway.audit.log4j.appender.JdbmStoreAndForwardAppender;
 import org.apache.knox.test.log.CollectAppender;
+import org.apache.log4j.AppenderSkeleton;
 import org.apache.log4j.LogManager;
 import org.apache.log4j.Logger;
 import org.apache.log4j.PropertyConfigurator;
+import org.apache.log4j.spi.LoggingEvent;
 import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
 
 import java.io.File;
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
 
 import static org.hamcrest.CoreMatchers.is;
 import static org.hamcrest.MatcherAssert.assertThat;
@@ -41,7 +47,14 @@ public class StoreAndForwardAppenderTest {
   @After
   public void cleanup() throws IOException {
     LogManager.shutdown();
-    String absolutePath = "target/audit";
+    CollectAppender.queue.clear();
+    deleteStore( "target/audit" );
+    deleteStore( "target/audit-sync" );
+    deleteStore( "target/audit-poison" );
+    PropertyConfigurator.configure( ClassLoader.getSystemResourceAsStream( "audit-log4j.properties" ) );
+  }
+
+  private static void deleteStore( String absolutePath ) {
     File db = new File( absolutePath + ".db" );
     if( db.exists() ) {
       assertThat( "Failed to delete audit store db file.", db.delete(), is( true ) );
@@ -50,7 +63,6 @@ public class StoreAndForwardAppenderTest {
     if( lg.exists() ) {
       assertThat( "Failed to delete audit store lg file.", lg.delete(), is( true ) );
     }
-    PropertyConfigurator.configure( ClassLoader.getSystemResourceAsStream( "audit-log4j.properties" ) );
   }
 
   @Test(timeout = 500000)
@@ -68,4 +80,116 @@ public class StoreAndForwardAppenderTest {
     assertThat( CollectAppender.queue.size(), is( iterations ) );
   }
 
-}
\ No newline at end of file
+  @Test(timeout = 500000)
+  public void testBatchedCommits() throws Exception {
+    System.out.println( "Running " + Thread.currentThread().getStackTrace()[1].getClassName() + "#" + Thread.currentThread().getStackTrace()[1].getMethodName() );
+
+    JdbmStoreAndForwardAppender appender = (JdbmStoreAndForwardAppender)Logger.getLogger( "audit.store" ).getAppender( "audit-store" );
+    assertThat( appender.getDurability(), is( "batch" ) );
+
+    int iterations = 1000;
+    Logger logger = Logger.getLogger( "audit.store" );
+    for( int i = 1; i <= iterations; i++ ) {
+      logger.info( Integer.toString( i ) );
+    }
+    while( CollectAppender.queue.size() < iterations ) {
+      Thread.sleep( 20 );
+    }
+    assertThat( CollectAppender.queue.size(), is( iterations ) );
+    assertThat( appender.getCommittedEventCount(), is( (long)iterations ) );
+    assertThat( appender.getCommitCount() < iterations, is( true ) );
+    assertThat( appender.getDroppedEventCount(), is( 0L ) );
+
+    // Events are forwarded in the order they were logged
+    int expected = 1;
+    for( LoggingEvent event : CollectAppender.queue ) {
+      assertThat( event.getRenderedMessage(), is( Integer.toString( expected++ ) ) );
+    }
+  }
+
+  @Test(timeout = 500000)
+  public void testSyncDurability() throws Exception {
+    System.out.println( "Running " + Thread.currentThread().getStackTrace()[1].getClassName() + "#" + Thread.currentThread().getStackTrace()[1].getMethodName() );
+
+    JdbmStoreAndForwardAppender appender = new JdbmStoreAndForwardAppender();
+    // Events are committed on the logging thread unless another durability level is configured
+    assertThat( appender.getDurability(), is( "sync" ) );
+    appender.setName( "audit-sync" );
+    appender.setFile( "target/audit-sync" );
+    appender.activateOptions();
+
+    Logger logger = Logger.getLogger( "audit.sync" );
+    logger.setAdditivity( false );
+    logger.addAppender( appender );
+    try {
+      int iterations = 100;
+      for( int i = 1; i <= iterations; i++ ) {
+        logger.info( Integer.toString( i ) );
+        // Every event is committed before the logging call returns
+        assertThat( appender.getCommittedEventCount(), is( (long)i ) );
+      }
+      assertThat( appender.getCommitCount(), is( (long)iterations ) );
+      while( CollectAppender.queue.size() < iterations ) {
+        Thread.sleep( 20 );
+      }
+    } finally {
+      logger.removeAppender( appender );
+      appender.close();
+    }
+  }
+
+  @Test(timeout = 500000)
+  public void testEventThatCannotBeForwardedIsDiscarded() throws Exception {
+    System.out.println( "Running " + Thread.currentThread().getStackTrace()[1].getClassName() + "#" + Thread.currentThread().getStackTrace()[1].getMethodName() );
+
+    // Appended after the collecting appender, so every attempt to forward the poison event is collected
+    AppenderSkeleton failing = new AppenderSkeleton() {
+      @Override
+      protected void append( LoggingEvent event ) {
+        if( "poison".equals( event.getRenderedMessage() ) ) {
+          throw new IllegalStateException( "Failed to forward" );
+        }
+      }
+
+      @Override
+      public void close() {
+      }
+
+      @Override
+      public boolean requiresLayout() {
+        return false;
+      }
+    };
+    Logger forward = Logger.getLogger( "audit.forward" );
+    forward.addAppender( failing );
+
+    JdbmStoreAndForwardAppender appender = new JdbmStoreAndForwardAppender();
+    appender.setName( "audit-poison" );
+    appender.setFile( "target/audit-poison" );
+    appender.setRetryInterval( 1 );
+    appender.activateOptions();
+
+    Logger logger = Logger.getLogger( "audit.poison" );
+    logger.setAdditivity( false );
+    logger.addAppender( appender );
+    try {
+      logger.info( "before" );
+      logger.info( "poison" );
+      logger.info( "after" );
+      while( CollectAppender.queue.size() < 5 || appender.getStoredEventCount() != 0 ) {
+        Thread.sleep( 20 );
+      }
+      // The poison event is attempted three times and then discarded, the events after it are still forwarded
+      List<String> forwarded = new ArrayList<>();
+      for( LoggingEvent event : CollectAppender.queue ) {
+        forwarded.add( event.getRenderedMessage() );
+      }
+      assertThat( forwarded, is( Arrays.asList( "before", "poison", "poison", "poison", "after" ) ) );
+      assertThat( appender.getDroppedEventCount(), is( 1L ) );
+    } finally {
+      logger.removeAppender( appender );
+      appender.close();
+      forward.removeAppender( failing );
+    }
+  }
+}
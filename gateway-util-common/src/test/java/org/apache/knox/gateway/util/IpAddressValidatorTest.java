@@ -75,4 +75,41 @@ public class IpAddressValidatorTest {
 
     assertTrue("Should have validated 293.168.1.1", ipv.validateIpAddress("293.168.1.1"));
   }
+
+  @Test
+  public void testCidrRanges() throws Exception {
+    IpAddressValidator ipv = new IpAddressValidator("10.0.0.0/8,192.168.16.0/20,172.16.5.4/32,fd00::/8,2001:db8::/126");
+
+    assertTrue("Should have validated 10.1.2.3", ipv.validateIpAddress("10.1.2.3"));
+    assertFalse("Should not have validated 11.1.2.3", ipv.validateIpAddress("11.1.2.3"));
+    assertTrue("Should have validated 192.168.31.255", ipv.validateIpAddress("192.168.31.255"));
+    assertFalse("Should not have validated 192.168.32.0", ipv.validateIpAddress("192.168.32.0"));
+    assertTrue("Should have validated 172.16.5.4", ipv.validateIpAddress("172.16.5.4"));
+    assertFalse("Should not have validated 172.16.5.5", ipv.validateIpAddress("172.16.5.5"));
+
+    assertTrue("Should have validated fd12:3456::1", ipv.validateIpAddress("fd12:3456::1"));
+    assertFalse("Should not have validated fe80::1", ipv.validateIpAddress("fe80::1"));
+    assertTrue("Should have validated 2001:db8:0:0:0:0:0:3", ipv.validateIpAddress("2001:db8:0:0:0:0:0:3"));
+    assertFalse("Should not have validated 2001:db8::4", ipv.validateIpAddress("2001:db8::4"));
+
+    assertFalse("Should not have validated a host name", ipv.validateIpAddress("localhost"));
+  }
+
+  @Test
+  public void testLargeAddressLists() throws Exception {
+    StringBuilder config = new StringBuilder("127.0.0.1");
+    for (int i = 0; i < 250; i++) {
+      config.append(",10.").append(i).append(".0.*");
+      config.append(",172.16.").append(i).append(".7");
+      config.append(",192.").append(i).append(".0.0/16");
+    }
+    IpAddressValidator ipv = new IpAddressValidator(config.toString());
+
+    assertTrue("Should have validated 10.249.0.42", ipv.validateIpAddress("10.249.0.42"));
+    assertFalse("Should not have validated 10.249.1.42", ipv.validateIpAddress("10.249.1.42"));
+    assertTrue("Should have validated 172.16.123.7", ipv.validateIpAddress("172.16.123.7"));
+    assertFalse("Should not have validated 172.16.123.8", ipv.validateIpAddress("172.16.123.8"));
+    assertTrue("Should have validated 192.200.255.1", ipv.validateIpAddress("192.200.255.1"));
+    assertFalse("Should not have validated 192.251.0.1", ipv.validateIpAddress("192.251.0.1"));
+  }
 }
@@ -18,6 +18,8 @@
 package org.apache.knox.gateway.util.urltemplate;
 
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.Iterator;
 import java.util.LinkedHashMap;
 import java.util.LinkedHashSet;
@@ -51,12 +53,27 @@ import java.util.Set;
  */
 public class Matcher<V> {
 
+  private static final Params NO_PARAMS = new Params() {
+    @Override
+    public Set<String> getNames() {
+      return Collections.emptySet();
+    }
+
+    @Override
+    public List<String> resolve( String name ) {
+      return null;
+    }
+  };
+
   private Map<Template,V> map;
   private PathNode root;
+  private PrefixNode prefixRoot;
+  private final Match fallback = new Match( null, null );
 
   public Matcher() {
     map = new LinkedHashMap<>();
     root = new PathNode( null, null );
+    prefixRoot = new PrefixNode();
   }
 
   public Matcher( Template template, V value ) {
@@ -103,6 +120,147 @@ public class Matcher<V> {
       // Insert a query pathNode into the tree.
       node.addQuery( template, value );
     }
+
+    addPrefix( template, node );
+  }
+
+  /*
+   * Literal prefix index
+   *
+   * Most templates consist of literal path segments optionally followed by a trailing {path=**} glob
+   * and an optional ?** query glob (e.g. /webhdfs/v1/**?**).  For these the best match only depends
+   * on the literal values of the input path segments, so it can be found by walking a trie of the
+   * literal segments without allocating any match state.  All other templates "taint" the trie node
+   * of their literal prefix; inputs that reach a tainted node fall back to the general matcher.
+   */
+  private void addPrefix( Template template, PathNode node ) {
+    PrefixNode prefix = prefixRoot;
+    if( template.getScheme() != null || template.getUsername() != null || template.getPassword() != null
+        || template.getHost() != null || template.getPort() != null || template.getFragment() != null ) {
+      prefix.tainted = true;
+      return;
+    }
+    List<Path> path = template.getPath();
+    int last = path.size() - 1;
+    for( int i = 0; i <= last; i++ ) {
+      Path segment = path.get( i );
+      String literal = getLiteral( segment );
+      if( literal == null ) {
+        if( i == last && isGlob( segment ) && isQueryIndependent( template ) &&
+            ( prefix.glob == null || prefix.glob == node ) ) {
+          prefix.glob = node;
+        } else {
+          prefix.tainted = true;
+        }
+        return;
+      }
+      prefix = prefix.addChild( literal );
+    }
+    if( isQueryIndependent( template ) ) {
+      prefix.exact = node;
+    } else {
+      prefix.tainted = true;
+    }
+  }
+
+  private static String getLiteral( Segment segment ) {
+    if( segment.getValues().size() == 1 && segment.getParamName().isEmpty() ) {
+      Segment.Value value = segment.getFirstValue();
+      if( value.getType() == Segment.STATIC ) {
+        return value.getOriginalPattern();
+      }
+    }
+    return null;
+  }
+
+  private static boolean isGlob( Segment segment ) {
+    return segment.getValues().size() == 1 && segment.getFirstValue().getType() == Segment.GLOB;
+  }
+
+  private static boolean isQueryIndependent( Template template ) {
+    Query extra = template.getExtra();
+    return template.getQuery().isEmpty() && ( extra == null || Segment.GLOB_PATTERN.equals( extra.getQueryName() ) );
+  }
+
+  /**
+   * Finds the best match using the literal prefix index.
+   * @return the match, null if there is no match, or the parameter miss if the general matcher must be used
+   */
+  private Match matchPrefix( Template input, Match miss ) {
+    if( input.getScheme() != null || input.getUsername() != null || input.getPassword() != null
+        || input.getHost() != null || input.getFragment() != null ) {
+      return miss;
+    }
+    List<Path> path = input.getPath();
+    int size = path.size();
+    PrefixNode prefix = prefixRoot;
+    PathNode globNode = null;
+    int globIndex = 0;
+    int i = 0;
+    while( prefix != null ) {
+      if( prefix.tainted ) {
+        return miss;
+      }
+      if( i == size ) {
+        break;
+      }
+      if( prefix.glob != null ) {
+        globNode = prefix.glob;
+        globIndex = i;
+      }
+      Path segment = path.get( i );
+      if( segment.getValues().size() != 1 ) {
+        return miss;
+      }
+      prefix = prefix.children == null ? null : prefix.children.get( segment.getFirstValue().getOriginalPattern() );
+      i++;
+    }
+    if( prefix != null && prefix.exact != null ) {
+      return createPrefixMatch( input, prefix.exact, size );
+    } else if( globNode != null ) {
+      return createPrefixMatch( input, globNode, globIndex );
+    } else {
+      return null;
+    }
+  }
+
+  private Match createPrefixMatch( Template input, PathNode node, int globIndex ) {
+    // Mirrors pickBestMatch: a query node (which can only be an ?** extra here) wins over the path node.
+    Node best = node;
+    Query extra = null;
+    if( node.hasQueries() ) {
+      best = node.queries.iterator().next();
+      extra = best.template.getExtra();
+    }
+    Match match = new Match( best.template, best.value );
+    String globName = node.segment == null ? "" : node.segment.getParamName();
+    boolean captureExtra = extra != null && extra.getParamName() != null && !extra.getParamName().isEmpty();
+    if( globName.isEmpty() && !captureExtra ) {
+      match.params = NO_PARAMS;
+    } else {
+      // Mirrors createMatch: unmatched query parameters first, then the globbed path segments.
+      MatchParams params = new MatchParams();
+      if( captureExtra ) {
+        for( Query query: input.getQuery().values() ) {
+          String queryName = query.getQueryName();
+          if( params.resolve( queryName ) == null ) {
+            for( Segment.Value value: query.getValues() ) {
+              params.addValue( queryName, value.getEffectivePattern() );
+            }
+          }
+        }
+      }
+      if( !globName.isEmpty() ) {
+        List<Path> path = input.getPath();
+        for( int i = path.size() - 1; i >= globIndex; i-- ) {
+          for( Segment.Value value: path.get( i ).getValues() ) {
+            params.insertValue( globName, value.getEffectivePattern() );
+          }
+        }
+      }
+      match.params = params;
+    }
+    return match;
   }
 
   private PathNode add( PathNode parent, Segment segment ) {
@@ -118,6 +276,15 @@ public class Matcher<V> {
   }
 
   public Match match( Template input ) {
+    Match prefixMatch = matchPrefix( input, fallback );
+    if( prefixMatch != fallback ) {
+      return prefixMatch;
+    }
+    return matchTree( input );
+  }
+
+  // Package private to allow tests to compare the literal prefix index with the general matcher.
+  Match matchTree( Template input ) {
     Status status = new Status();
     status.candidates.add( new MatchSegment( null, root, null, null ) );
     boolean matches = true;
@@ -497,6 +664,20 @@ public class Matcher<V> {
 
   }
 
+  private class PrefixNode {
+    Map<String,PrefixNode> children;
+    PathNode exact;
+    PathNode glob;
+    boolean tainted;
+
+    private PrefixNode addChild( String literal ) {
+      if( children == null ) {
+        children = new HashMap<>();
+      }
+      return children.computeIfAbsent( literal, k -> new PrefixNode() );
+    }
+  }
+
   private class QueryNode extends Node {
     QueryNode( Template template, V value ) {
       super( template, value );
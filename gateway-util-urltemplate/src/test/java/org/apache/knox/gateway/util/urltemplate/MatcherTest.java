@@ -24,6 +24,7 @@ import org.junit.experimental.categories.Category;
 
 import java.net.URI;
 import java.net.URISyntaxException;
+import java.util.Random;
 
 import static org.hamcrest.CoreMatchers.containsString;
 import static org.hamcrest.CoreMatchers.equalTo;
@@ -1002,4 +1003,68 @@ public class MatcherTest {
     assertThat( expandedStr, containsString( "createparent=true" ) );
     assertThat( expandedStr, containsString( "&" ) );
   }
+
+  @Test
+  public void testLiteralPrefixIndexMatchesGeneralMatcher() throws Exception {
+    String[] templates = {
+        "/", "/a", "/a/b", "/a/b/c", "/a/**", "/a/b/{path=**}", "/a/b/{path=**}?{**}",
+        "/webhdfs/v1/**?**", "/webhdfs/v1/{path=**}?{**}", "/webhdfs/v1", "/x/y/z?**" };
+    String[] inputs = {
+        "/", "/a", "/a/b", "/a/b/c", "/a/b/c/d", "/a/c", "/b", "/a/b?x=1", "/a/b/c?x=1&y=2",
+        "/webhdfs/v1", "/webhdfs/v1/tmp", "/webhdfs/v1/tmp/f?op=OPEN&user.name=hdfs", "/x/y/z", "/x/y/z/w", "/x/y" };
+
+    Random random = new Random( 42 );
+    for( int round = 0; round < 200; round++ ) {
+      Matcher<String> matcher = new Matcher<>();
+      for( String template : templates ) {
+        if( random.nextBoolean() ) {
+          addTemplate( matcher, template );
+        }
+      }
+      if( round % 4 == 0 ) {
+        // Ineligible templates must send the inputs sharing their literal prefix to the general matcher.
+        addTemplate( matcher, random.nextBoolean() ? "/a/{b}/c" : "*://*:*/**/webhdfs/v1/{path=**}?{**}" );
+      }
+      for( String input : inputs ) {
+        Template inputTemplate = Parser.parseLiteral( input );
+        assertSameMatch( input, matcher.match( inputTemplate ), matcher.matchTree( inputTemplate ) );
+      }
+    }
+  }
+
+  @Test
+  public void testLiteralPrefixIndexParams() throws Exception {
+    Matcher<String> matcher = new Matcher<>();
+    addTemplate( matcher, "/webhdfs/v1" );
+    addTemplate( matcher, "/webhdfs/v1/{path=**}?{**}" );
+    addTemplate( matcher, "/a/{b}/c" );
+
+    Matcher<String>.Match match = matcher.match( Parser.parseLiteral( "/webhdfs/v1/tmp/f?op=OPEN" ) );
+    assertThat( match.getValue(), is( "/webhdfs/v1/{path=**}?{**}" ) );
+    assertThat( match.getParams().resolve( "path" ), hasItems( "tmp", "f" ) );
+    assertThat( match.getParams().resolve( "op" ), hasItem( "OPEN" ) );
+
+    match = matcher.match( Parser.parseLiteral( "/webhdfs/v1" ) );
+    assertThat( match.getValue(), is( "/webhdfs/v1" ) );
+    assertThat( match.getParams().getNames().isEmpty(), is( true ) );
+
+    match = matcher.match( Parser.parseLiteral( "/a/x/c" ) );
+    assertThat( match.getValue(), is( "/a/{b}/c" ) );
+    assertThat( match.getParams().resolve( "b" ), hasItem( "x" ) );
+
+    assertThat( matcher.match( Parser.parseLiteral( "/webhdfs" ) ), nullValue() );
+  }
+
+  private void assertSameMatch( String input, Matcher<String>.Match actual, Matcher<String>.Match expected ) {
+    if( expected == null ) {
+      assertThat( input, actual, nullValue() );
+    } else {
+      assertThat( input, actual, notNullValue() );
+      assertThat( input, actual.getValue(), is( expected.getValue() ) );
+      assertThat( input, actual.getParams().getNames(), is( expected.getParams().getNames() ) );
+      for( String name : expected.getParams().getNames() ) {
+        assertThat( input, actual.getParams().resolve( name ), is( expected.getParams().resolve( name ) ) );
+      }
+    }
+  }
 }